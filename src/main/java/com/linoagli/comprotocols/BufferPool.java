@@ -0,0 +1,69 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fixed size heap buffers, so that the data going through a connection doesn't allocate new memory for
+ * every message. Larger buffers can be asked for too, but they are allocated every time and not kept once given
+ * back, nor are buffers given back while the pool is full.
+ */
+public class BufferPool {
+    public static final int CHUNK_SIZE = 16 * 1024;
+
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxSize;
+
+    /**
+     * @param maxSize the maximum number of buffers kept in the pool
+     */
+    public BufferPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return a cleared buffer of {@link #CHUNK_SIZE} bytes.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+
+        if (buffer == null) return ByteBuffer.allocate(CHUNK_SIZE);
+
+        size.decrementAndGet();
+        buffer.clear();
+
+        return buffer;
+    }
+
+    /**
+     * @param capacity the minimum capacity of the buffer
+     * @return a cleared buffer of at least the given capacity, from the pool if it fits in {@link #CHUNK_SIZE} bytes.
+     */
+    public ByteBuffer acquire(int capacity) {
+        return (capacity <= CHUNK_SIZE) ? acquire() : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Gives a buffer back to the pool. The buffer must not be used anymore.
+     *
+     * @param buffer the buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != CHUNK_SIZE || !buffer.hasArray()) return;
+
+        if (size.incrementAndGet() <= maxSize) {
+            buffers.offer(buffer);
+        } else {
+            size.decrementAndGet();
+        }
+    }
+}
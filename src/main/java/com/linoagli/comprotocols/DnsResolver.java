@@ -0,0 +1,375 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves host names without blocking the caller, caching the results.
+ *
+ * Lookups run on a small pool of background threads and concurrent lookups of the same name share a single query.
+ * Resolved names are kept for the time to live, failed ones for the negative time to live, so a name that doesn't
+ * resolve is not queried again on every send. A name used during the last fifth of its time to live is refreshed in
+ * the background while the cached addresses keep being served, so busy names never expire under their users; if the
+ * refresh fails, the cached addresses are kept until they expire.
+ *
+ * The JVM does not expose the time to live of DNS records, so both delays default to the JVM's own address cache
+ * settings, the <i>networkaddress.cache.ttl</i> and <i>networkaddress.cache.negative.ttl</i> security properties.
+ * As for the JVM, a negative property caches forever.
+ *
+ * The lookup itself is pluggable, see {@link Lookup}, so that tests can resolve names without a DNS server. The
+ * transports use the resolver returned by {@link #getDefault()}, which may be replaced with
+ * {@link #setDefault(DnsResolver)}.
+ */
+public class DnsResolver {
+    /**
+     * Looks a host name up. Called on the resolver's background threads.
+     */
+    public interface Lookup {
+        /**
+         * @param host the host name
+         * @return the host's addresses, at least one
+         * @throws UnknownHostException if the name doesn't resolve
+         */
+        public InetAddress[] lookup(String host) throws UnknownHostException;
+    }
+
+    /** Resolves names with the system's resolver */
+    public static final Lookup SYSTEM_LOOKUP = InetAddress::getAllByName;
+
+    /** A time to live that never expires, as set by a negative cache property */
+    public static final long FOREVER = Long.MAX_VALUE;
+    public static final long DEFAULT_TIME_TO_LIVE = securityPropertyMillis("networkaddress.cache.ttl", 30);
+    public static final long DEFAULT_NEGATIVE_TIME_TO_LIVE = securityPropertyMillis("networkaddress.cache.negative.ttl", 10);
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final int LOOKUP_THREADS = 4;
+
+    private static volatile DnsResolver defaultResolver;
+
+    private final Lookup lookup;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<InetAddress[]>> pendingLookups = new ConcurrentHashMap<>();
+    private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+    private volatile long negativeTimeToLive = DEFAULT_NEGATIVE_TIME_TO_LIVE;
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    public DnsResolver() {
+        this(SYSTEM_LOOKUP);
+    }
+
+    public DnsResolver(Lookup lookup) {
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        this.lookup = lookup;
+        this.executor = new ThreadPoolExecutor(LOOKUP_THREADS, LOOKUP_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "DnsResolver-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the resolver shared by the library's transports.
+     */
+    public static DnsResolver getDefault() {
+        DnsResolver resolver = defaultResolver;
+
+        if (resolver == null) {
+            synchronized (DnsResolver.class) {
+                if (defaultResolver == null) defaultResolver = new DnsResolver();
+
+                resolver = defaultResolver;
+            }
+        }
+
+        return resolver;
+    }
+
+    /**
+     * Replaces the resolver shared by the library's transports, for instance with one backed by a stand-in
+     * {@link Lookup} in tests.
+     *
+     * @param resolver the resolver
+     */
+    public static void setDefault(DnsResolver resolver) {
+        defaultResolver = resolver;
+    }
+
+    /**
+     * Sets how long resolved names are cached. {@link #FOREVER}, or any negative value, caches them forever.
+     * This value defaults to the <i>networkaddress.cache.ttl</i> security property, or <b>30000</b> milliseconds
+     *
+     * @param timeToLive the delay in milliseconds
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Sets how long names that failed to resolve are cached. {@link #FOREVER}, or any negative value, caches them
+     * forever.
+     * This value defaults to the <i>networkaddress.cache.negative.ttl</i> security property, or <b>10000</b>
+     * milliseconds
+     *
+     * @param negativeTimeToLive the delay in milliseconds
+     */
+    public void setNegativeTimeToLive(long negativeTimeToLive) {
+        this.negativeTimeToLive = negativeTimeToLive;
+    }
+
+    /**
+     * Sets the maximum number of names kept in the cache.
+     * This value defaults to <b>1024</b>
+     *
+     * @param maxEntries the number of names
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the number of names currently cached, resolved or not.
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Resolves a host name to its first address. Completes right away when the name is cached.
+     *
+     * @param host the host name or IP address
+     * @return a future completed with the address, or with an {@link UnknownHostException}.
+     */
+    public CompletableFuture<InetAddress> resolveAsync(String host) {
+        return resolveAllAsync(host).thenApply(addresses -> addresses[0]);
+    }
+
+    /**
+     * Resolves a host name to all its addresses. Completes right away when the name is cached.
+     *
+     * @param host the host name or IP address
+     * @return a future completed with the addresses, or with an {@link UnknownHostException}.
+     */
+    public CompletableFuture<InetAddress[]> resolveAllAsync(String host) {
+        if (isAddressLiteral(host)) {
+            CompletableFuture<InetAddress[]> future = new CompletableFuture<>();
+
+            try {
+                future.complete(InetAddress.getAllByName(host)); // Parsed, never looked up
+            } catch (UnknownHostException e) {
+                future.completeExceptionally(e);
+            }
+
+            return future;
+        }
+
+        String key = host.toLowerCase(Locale.ROOT);
+        Entry entry = cache.get(key);
+        long now = System.nanoTime();
+
+        if (entry != null && !entry.isExpired(now)) {
+            if (entry.addresses != null && entry.isDueForRefresh(now) && entry.isRefreshing.compareAndSet(false, true)) {
+                lookUp(key, host);
+            }
+
+            return entry.toFuture();
+        }
+
+        return lookUp(key, host);
+    }
+
+    /**
+     * Resolves a host name to its first address, waiting for the lookup if the name isn't cached.
+     *
+     * @param host the host name or IP address
+     * @return the address
+     * @throws UnknownHostException if the name doesn't resolve
+     */
+    public InetAddress resolve(String host) throws UnknownHostException {
+        try {
+            return resolveAsync(host).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnknownHostException) throw (UnknownHostException) e.getCause();
+
+            throw new UnknownHostException(host + ": " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new UnknownHostException(host + ": interrupted");
+        }
+    }
+
+    /**
+     * @param host the host name
+     * @return the cached first address of the host, or <i>null</i> if it isn't cached or didn't resolve. Never
+     * starts a lookup.
+     */
+    public InetAddress getCached(String host) {
+        Entry entry = cache.get(host.toLowerCase(Locale.ROOT));
+
+        return (entry != null && entry.addresses != null && !entry.isExpired(System.nanoTime())) ? entry.addresses[0] : null;
+    }
+
+    /**
+     * Removes a name from the cache, so that it is looked up again on next use.
+     *
+     * @param host the host name
+     */
+    public void invalidate(String host) {
+        cache.remove(host.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    private CompletableFuture<InetAddress[]> lookUp(final String key, final String host) {
+        return pendingLookups.computeIfAbsent(key, k -> {
+            final CompletableFuture<InetAddress[]> future = new CompletableFuture<>();
+
+            executor.execute(() -> {
+                InetAddress[] addresses = null;
+                UnknownHostException error = null;
+
+                try {
+                    addresses = lookup.lookup(host);
+
+                    if (addresses == null || addresses.length == 0) throw new UnknownHostException(host);
+
+                    store(key, new Entry(addresses, null, timeToLive));
+                } catch (Exception e) {
+                    error = (e instanceof UnknownHostException) ? (UnknownHostException) e : new UnknownHostException(host + ": " + e);
+                    Entry cached = cache.get(key);
+
+                    if (cached != null && cached.addresses != null && !cached.isExpired(System.nanoTime())) {
+                        // A failed refresh keeps serving the addresses until they expire
+                        cached.isRefreshing.set(false);
+                        addresses = cached.addresses;
+                        error = null;
+                    } else {
+                        store(key, new Entry(null, error, negativeTimeToLive));
+                    }
+                }
+
+                // Leaves the pending lookups before completing, so that a caller invalidating the name on
+                // completion never joins this lookup again
+                pendingLookups.remove(key, future);
+
+                if (error != null) future.completeExceptionally(error);
+                else future.complete(addresses);
+            });
+
+            return future;
+        });
+    }
+
+    private void store(String key, Entry entry) {
+        if (cache.size() >= maxEntries && !cache.containsKey(key)) {
+            long now = System.nanoTime();
+
+            cache.values().removeIf(cached -> cached.isExpired(now));
+
+            Iterator<String> iterator = cache.keySet().iterator();
+            while (cache.size() >= maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        cache.put(key, entry);
+    }
+
+    private static boolean isAddressLiteral(String host) {
+        if (host.indexOf(':') >= 0) return true; // IPv6
+
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+
+            if (c != '.' && (c < '0' || c > '9')) return false;
+        }
+
+        return !host.isEmpty();
+    }
+
+    static long securityPropertyMillis(String name, long defaultSeconds) {
+        try {
+            String value = Security.getProperty(name);
+
+            if (value != null) {
+                long seconds = Long.parseLong(value.trim());
+
+                return (seconds < 0) ? FOREVER : TimeUnit.SECONDS.toMillis(seconds);
+            }
+        } catch (Exception e) {
+            // Falls back to the default
+        }
+
+        return TimeUnit.SECONDS.toMillis(defaultSeconds);
+    }
+
+    private static class Entry {
+        private final InetAddress[] addresses;
+        private final UnknownHostException error;
+        private final boolean isPermanent;
+        private final long expiresAt;
+        private final long refreshAt;
+        private final AtomicBoolean isRefreshing = new AtomicBoolean(false);
+
+        private Entry(InetAddress[] addresses, UnknownHostException error, long timeToLive) {
+            long now = System.nanoTime();
+            long nanos = (timeToLive < 0) ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(timeToLive);
+
+            this.addresses = addresses;
+            this.error = error;
+
+            // Deadlines are compared as differences of nano times, which only hold for half of the long range, so
+            // longer times to live, FOREVER included since the conversion saturates, are taken as forever
+            this.isPermanent = nanos > Long.MAX_VALUE / 2;
+            this.expiresAt = isPermanent ? 0 : now + nanos;
+            this.refreshAt = isPermanent ? 0 : now + nanos / 5 * 4;
+        }
+
+        private boolean isExpired(long now) {
+            return !isPermanent && now - expiresAt >= 0;
+        }
+
+        private boolean isDueForRefresh(long now) {
+            return !isPermanent && now - refreshAt >= 0;
+        }
+
+        private CompletableFuture<InetAddress[]> toFuture() {
+            CompletableFuture<InetAddress[]> future = new CompletableFuture<>();
+
+            if (addresses != null) {
+                future.complete(addresses);
+            } else {
+                future.completeExceptionally(error);
+            }
+
+            return future;
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The library's diagnostics. Events are handed to a lock-free ring buffer and written out to the {@link Sink} by a
+ * background thread, so the threads that log never wait on the console, or on each other.
+ *
+ * Messages are templates where each <i>{}</i> stands for the next argument; they are only formatted by the
+ * background thread, and events below the current level are dropped before anything is allocated. Arguments
+ * should therefore not change after the call. A trailing {@link Throwable} argument with no placeholder left for
+ * it is printed with its stack trace. Events logged while the ring is full are dropped and counted rather than
+ * slowing down the caller, see {@link #getDroppedCount()}.
+ */
+public final class Log {
+    /**
+     * The event levels, from the most to the least verbose.
+     */
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+    public static final int RING_CAPACITY = 8192;
+
+    private static final Ring RING = new Ring(RING_CAPACITY);
+    private static final AtomicLong droppedCount = new AtomicLong();
+    private static volatile int threshold = Level.INFO.ordinal();
+    private static volatile Sink sink = new ConsoleSink();
+    private static final DrainThread drainThread = new DrainThread();
+
+    static {
+        drainThread.start();
+
+        // Whatever is left in the ring is written out on the way down
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000)));
+    }
+
+    private Log() {}
+
+    /**
+     * Sets the level below which events are dropped.
+     * This value defaults to <b>INFO</b>
+     *
+     * @param level the level
+     */
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    /**
+     * @return the level below which events are dropped.
+     */
+    public static Level getLevel() {
+        return Level.values()[threshold];
+    }
+
+    /**
+     * @param level a level
+     * @return whether or not events of the given level are logged.
+     */
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    /**
+     * Sets where events are written to. The sink is only ever called by the background thread.
+     * This value defaults to a {@link ConsoleSink}
+     *
+     * @param sink the sink
+     */
+    public static void setSink(Sink sink) {
+        Log.sink = (sink != null) ? sink : new ConsoleSink();
+    }
+
+    /**
+     * @return the number of events dropped because the ring was full.
+     */
+    public static long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Logs a TRACE event. The overloads taking arguments fill in the message template without allocating anything
+     * when the level is disabled.
+     *
+     * @param source the class the event comes from
+     * @param message the message
+     */
+    public static void trace(Class<?> source, String message) {
+        if (Level.TRACE.ordinal() >= threshold) publish(Level.TRACE, source, message, null);
+    }
+
+    public static void trace(Class<?> source, String message, Object arg) {
+        if (Level.TRACE.ordinal() >= threshold) publish(Level.TRACE, source, message, new Object[] { arg });
+    }
+
+    public static void trace(Class<?> source, String message, Object arg1, Object arg2) {
+        if (Level.TRACE.ordinal() >= threshold) publish(Level.TRACE, source, message, new Object[] { arg1, arg2 });
+    }
+
+    /**
+     * Logs a DEBUG event. The overloads taking arguments fill in the message template without allocating anything
+     * when the level is disabled.
+     *
+     * @param source the class the event comes from
+     * @param message the message
+     */
+    public static void debug(Class<?> source, String message) {
+        if (Level.DEBUG.ordinal() >= threshold) publish(Level.DEBUG, source, message, null);
+    }
+
+    public static void debug(Class<?> source, String message, Object arg) {
+        if (Level.DEBUG.ordinal() >= threshold) publish(Level.DEBUG, source, message, new Object[] { arg });
+    }
+
+    public static void debug(Class<?> source, String message, Object arg1, Object arg2) {
+        if (Level.DEBUG.ordinal() >= threshold) publish(Level.DEBUG, source, message, new Object[] { arg1, arg2 });
+    }
+
+    /**
+     * Logs an INFO event. The overloads taking arguments fill in the message template without allocating anything
+     * when the level is disabled.
+     *
+     * @param source the class the event comes from
+     * @param message the message
+     */
+    public static void info(Class<?> source, String message) {
+        if (Level.INFO.ordinal() >= threshold) publish(Level.INFO, source, message, null);
+    }
+
+    public static void info(Class<?> source, String message, Object arg) {
+        if (Level.INFO.ordinal() >= threshold) publish(Level.INFO, source, message, new Object[] { arg });
+    }
+
+    public static void info(Class<?> source, String message, Object arg1, Object arg2) {
+        if (Level.INFO.ordinal() >= threshold) publish(Level.INFO, source, message, new Object[] { arg1, arg2 });
+    }
+
+    /**
+     * Logs a WARN event. The overloads taking arguments fill in the message template without allocating anything
+     * when the level is disabled.
+     *
+     * @param source the class the event comes from
+     * @param message the message
+     */
+    public static void warn(Class<?> source, String message) {
+        if (Level.WARN.ordinal() >= threshold) publish(Level.WARN, source, message, null);
+    }
+
+    public static void warn(Class<?> source, String message, Object arg) {
+        if (Level.WARN.ordinal() >= threshold) publish(Level.WARN, source, message, new Object[] { arg });
+    }
+
+    public static void warn(Class<?> source, String message, Object arg1, Object arg2) {
+        if (Level.WARN.ordinal() >= threshold) publish(Level.WARN, source, message, new Object[] { arg1, arg2 });
+    }
+
+    /**
+     * Logs an ERROR event. The overloads taking arguments fill in the message template without allocating anything
+     * when the level is disabled.
+     *
+     * @param source the class the event comes from
+     * @param message the message
+     */
+    public static void error(Class<?> source, String message) {
+        if (Level.ERROR.ordinal() >= threshold) publish(Level.ERROR, source, message, null);
+    }
+
+    public static void error(Class<?> source, String message, Object arg) {
+        if (Level.ERROR.ordinal() >= threshold) publish(Level.ERROR, source, message, new Object[] { arg });
+    }
+
+    public static void error(Class<?> source, String message, Object arg1, Object arg2) {
+        if (Level.ERROR.ordinal() >= threshold) publish(Level.ERROR, source, message, new Object[] { arg1, arg2 });
+    }
+
+    /**
+     * Logs an unexpected exception with its stack trace, in place of {@link Throwable#printStackTrace()}.
+     *
+     * @param source the class the exception was caught in
+     * @param throwable the exception
+     */
+    public static void error(Class<?> source, Throwable throwable) {
+        if (Level.ERROR.ordinal() >= threshold) {
+            publish(Level.ERROR, source, "{}", new Object[] { String.valueOf(throwable), throwable });
+        }
+    }
+
+    /**
+     * Logs an event with any number of arguments.
+     *
+     * @param level the level
+     * @param source the class the event comes from
+     * @param message the message template
+     * @param args the arguments
+     */
+    public static void log(Level level, Class<?> source, String message, Object... args) {
+        if (level.ordinal() >= threshold && level != Level.OFF) publish(level, source, message, args);
+    }
+
+    /**
+     * Waits for the events logged so far to be written out.
+     *
+     * @param timeOut the maximum time to wait in milliseconds
+     * @return whether or not every event was written out in time.
+     */
+    public static boolean flush(long timeOut) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeOut);
+        long target = RING.getTail();
+
+        while (drainThread.written < target) {
+            if (System.nanoTime() >= deadline) return false;
+
+            LockSupport.unpark(drainThread);
+            Thread.yield();
+        }
+
+        return true;
+    }
+
+    private static void publish(Level level, Class<?> source, String message, Object[] args) {
+        Event event = new Event(System.currentTimeMillis(), level, source, Thread.currentThread().getName(), message, args);
+
+        if (!RING.offer(event)) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+
+        if (drainThread.isWaiting) LockSupport.unpark(drainThread);
+    }
+
+    /**
+     * A logged event. The message is formatted on first use.
+     */
+    public static final class Event {
+        private final long time;
+        private final Level level;
+        private final Class<?> source;
+        private final String threadName;
+        private final String template;
+        private final Object[] args;
+        private String message;
+        private Throwable throwable;
+
+        private Event(long time, Level level, Class<?> source, String threadName, String template, Object[] args) {
+            this.time = time;
+            this.level = level;
+            this.source = source;
+            this.threadName = threadName;
+            this.template = template;
+            this.args = args;
+        }
+
+        /**
+         * @return the time the event was logged at, in milliseconds since the epoch.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+
+        /**
+         * @return the class the event comes from.
+         */
+        public Class<?> getSource() {
+            return source;
+        }
+
+        /**
+         * @return the name of the thread that logged the event.
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /**
+         * @return the formatted message.
+         */
+        public String getMessage() {
+            if (message == null) format();
+
+            return message;
+        }
+
+        /**
+         * @return the exception logged with the event, or <b>null</b> if there is none.
+         */
+        public Throwable getThrowable() {
+            if (message == null) format();
+
+            return throwable;
+        }
+
+        private void format() {
+            if (args == null || args.length == 0) {
+                message = String.valueOf(template);
+                return;
+            }
+
+            StringBuilder builder = new StringBuilder(template.length() + 32);
+            int argIndex = 0;
+            int start = 0;
+            int placeholder;
+
+            while (argIndex < args.length && (placeholder = template.indexOf("{}", start)) >= 0) {
+                builder.append(template, start, placeholder).append(args[argIndex++]);
+                start = placeholder + 2;
+            }
+
+            builder.append(template, start, template.length());
+
+            if (argIndex == args.length - 1 && args[argIndex] instanceof Throwable) throwable = (Throwable) args[argIndex];
+
+            message = builder.toString();
+        }
+    }
+
+    /**
+     * Where events are written to, see {@link Log#setSink(Sink)}.
+     */
+    public interface Sink {
+        /**
+         * Writes an event. Called by the background thread only.
+         *
+         * @param event the event
+         */
+        public void write(Event event);
+
+        /**
+         * Called after each batch of events.
+         */
+        public default void flush() {}
+    }
+
+    /**
+     * Writes events to the standard output, and warnings and errors to the standard error. Each batch of events is
+     * written at once.
+     */
+    public static class ConsoleSink implements Sink {
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+        private final StringBuilder out = new StringBuilder();
+        private final StringBuilder err = new StringBuilder();
+
+        @Override
+        public void write(Event event) {
+            StringBuilder builder = (event.getLevel().ordinal() >= Level.WARN.ordinal()) ? err : out;
+
+            builder.append(dateFormat.format(new Date(event.getTime()))).append(' ')
+                    .append(event.getLevel()).append(" [").append(event.getThreadName()).append("] ")
+                    .append(event.getSource().getSimpleName()).append(": ")
+                    .append(event.getMessage()).append(System.lineSeparator());
+
+            if (event.getThrowable() != null) {
+                StringWriter trace = new StringWriter();
+                event.getThrowable().printStackTrace(new PrintWriter(trace));
+                builder.append(trace);
+            }
+        }
+
+        @Override
+        public void flush() {
+            print(System.out, out);
+            print(System.err, err);
+        }
+
+        private static void print(PrintStream stream, StringBuilder builder) {
+            if (builder.length() == 0) return;
+
+            stream.print(builder);
+            stream.flush();
+            builder.setLength(0);
+        }
+    }
+
+    /**
+     * A bounded multiple producer, single consumer ring. Producers claim a slot by moving the tail forward and
+     * publish the event through the slot's sequence number, which also tells them when the ring is full.
+     */
+    private static final class Ring {
+        private final Event[] slots;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private final int mask;
+        private long head = 0;
+
+        private Ring(int capacity) {
+            slots = new Event[capacity];
+            sequences = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+
+            for (int i = 0; i < capacity; i++) sequences.set(i, i);
+        }
+
+        private long getTail() {
+            return tail.get();
+        }
+
+        private boolean offer(Event event) {
+            long position = tail.get();
+
+            while (true) {
+                int index = (int) position & mask;
+                long difference = sequences.get(index) - position;
+
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots[index] = event;
+                        sequences.lazySet(index, position + 1);
+
+                        return true;
+                    }
+                } else if (difference < 0) {
+                    return false;
+                }
+
+                position = tail.get();
+            }
+        }
+
+        private Event poll() {
+            int index = (int) head & mask;
+
+            if (sequences.get(index) != head + 1) return null;
+
+            Event event = slots[index];
+            slots[index] = null;
+            sequences.lazySet(index, head + slots.length);
+            head++;
+
+            return event;
+        }
+    }
+
+    /**
+     * This thread writes the events out, in batches, and parks while the ring is empty.
+     */
+    private static class DrainThread extends Thread {
+        private final long MAX_PARK_TIME = TimeUnit.MILLISECONDS.toNanos(100);
+        private volatile boolean isWaiting = false;
+        private volatile long written = 0;
+
+        private DrainThread() {
+            super("comprotocols-log");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Event event = RING.poll();
+
+                if (event == null) {
+                    isWaiting = true;
+
+                    // Checking again, as an event published just before the flag was set wouldn't wake us up
+                    event = RING.poll();
+
+                    if (event == null) {
+                        LockSupport.parkNanos(this, MAX_PARK_TIME);
+                        isWaiting = false;
+                        continue;
+                    }
+
+                    isWaiting = false;
+                }
+
+                // Read once the batch has events, so that events logged after a sink change go to the new sink
+                Sink sink = Log.sink;
+                long count = 0;
+
+                do {
+                    try {
+                        sink.write(event);
+                    } catch (RuntimeException e) {
+                        // Nowhere left to report it but the console
+                        e.printStackTrace();
+                    }
+
+                    count++;
+                } while ((event = RING.poll()) != null);
+
+                try {
+                    sink.flush();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+
+                written += count;
+            }
+        }
+    }
+}
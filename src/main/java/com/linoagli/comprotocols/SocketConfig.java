@@ -0,0 +1,343 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.DatagramSocket;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+
+/**
+ * A set of socket options applied by the transports to the sockets they open, see
+ * {@link com.linoagli.comprotocols.tcp.TCPServer#setSocketConfig(SocketConfig)},
+ * {@link com.linoagli.comprotocols.tcp.TCPClient#setSocketConfig(SocketConfig)},
+ * {@link com.linoagli.comprotocols.udp.UDPListener#setSocketConfig(SocketConfig)} and
+ * {@link com.linoagli.comprotocols.udp.UDPSender#setDefaultSocketConfig(SocketConfig)}.
+ *
+ * Options that are left unset keep the system's defaults, and options that don't apply to a socket, such as
+ * TCP_NODELAY on a UDP socket, are skipped. Two presets cover the common cases: {@link #lowLatency()} for
+ * request/response traffic and {@link #bulkThroughput()} for large transfers. They can be looked up by name with
+ * {@link #forName(String)} and tuned further with the setters:
+ * <pre>
+ * SocketConfig config = SocketConfig.bulkThroughput().setReceiveBufferSize(4 * 1024 * 1024);
+ * </pre>
+ *
+ * The keep-alive intervals and SO_REUSEPORT need Java 9 or later and an operating system that supports them; on
+ * other runtimes they are skipped.
+ */
+public class SocketConfig {
+    public static final String PRESET_DEFAULT = "default";
+    public static final String PRESET_LOW_LATENCY = "low-latency";
+    public static final String PRESET_BULK_THROUGHPUT = "bulk-throughput";
+
+    /** The traffic class asking routers to minimize delay */
+    public static final int IPTOS_LOWDELAY = 0x10;
+    /** The traffic class asking routers to maximize throughput */
+    public static final int IPTOS_THROUGHPUT = 0x08;
+
+    private static final SocketOption<?> SO_REUSEPORT = findOption("java.net.StandardSocketOptions", "SO_REUSEPORT");
+    private static final SocketOption<?> TCP_KEEPIDLE = findOption("jdk.net.ExtendedSocketOptions", "TCP_KEEPIDLE");
+    private static final SocketOption<?> TCP_KEEPINTERVAL = findOption("jdk.net.ExtendedSocketOptions", "TCP_KEEPINTERVAL");
+    private static final SocketOption<?> TCP_KEEPCOUNT = findOption("jdk.net.ExtendedSocketOptions", "TCP_KEEPCOUNT");
+
+    private Boolean tcpNoDelay;
+    private int sendBufferSize = 0;
+    private int receiveBufferSize = 0;
+    private Boolean keepAlive;
+    private int keepAliveIdle = 0;
+    private int keepAliveInterval = 0;
+    private int keepAliveCount = 0;
+    private Boolean reuseAddress;
+    private Boolean reusePort;
+    private int trafficClass = -1;
+    private int linger = -1;
+
+    /**
+     * Creates a set of options that leaves every option to the system's defaults.
+     */
+    public SocketConfig() {}
+
+    /**
+     * @return options for request/response traffic: Nagle's algorithm is disabled so small messages go out
+     * right away instead of waiting on the peer's delayed acknowledgement, packets are marked for low delay, and
+     * dead peers are detected by keep-alive probes within about a minute.
+     */
+    public static SocketConfig lowLatency() {
+        return new SocketConfig()
+                .setTcpNoDelay(true)
+                .setTrafficClass(IPTOS_LOWDELAY)
+                .setKeepAlive(true)
+                .setKeepAliveIntervals(30, 10, 3);
+    }
+
+    /**
+     * @return options for large transfers: Nagle's algorithm stays on to fill every segment, the send and receive
+     * buffers are raised to <b>1 MiB</b> and packets are marked for throughput. The system may cap the buffers,
+     * for instance at <i>net.core.rmem_max</i> on Linux.
+     */
+    public static SocketConfig bulkThroughput() {
+        return new SocketConfig()
+                .setTcpNoDelay(false)
+                .setSendBufferSize(1024 * 1024)
+                .setReceiveBufferSize(1024 * 1024)
+                .setTrafficClass(IPTOS_THROUGHPUT)
+                .setKeepAlive(true);
+    }
+
+    /**
+     * Looks up a preset by name, for instance from a configuration file.
+     *
+     * @param name {@link #PRESET_LOW_LATENCY}, {@link #PRESET_BULK_THROUGHPUT} or {@link #PRESET_DEFAULT}
+     * @return a new instance of the preset
+     * @throws IllegalArgumentException if there is no preset with the given name
+     */
+    public static SocketConfig forName(String name) {
+        if (PRESET_LOW_LATENCY.equals(name)) return lowLatency();
+        if (PRESET_BULK_THROUGHPUT.equals(name)) return bulkThroughput();
+        if (PRESET_DEFAULT.equals(name)) return new SocketConfig();
+
+        throw new IllegalArgumentException("Unknown socket options preset: " + name);
+    }
+
+    /**
+     * Sets whether or not Nagle's algorithm is disabled on TCP sockets (TCP_NODELAY).
+     *
+     * @param tcpNoDelay the flag
+     * @return this instance
+     */
+    public SocketConfig setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    /**
+     * Sets the size of the socket send buffer (SO_SNDBUF).
+     *
+     * @param sendBufferSize the size in bytes, <b>0</b> for the system's default
+     * @return this instance
+     */
+    public SocketConfig setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+        return this;
+    }
+
+    /**
+     * Sets the size of the socket receive buffer (SO_RCVBUF). On TCP sockets, sizes above <b>64 KiB</b> only take
+     * effect if set before the connection is established, which the transports take care of.
+     *
+     * @param receiveBufferSize the size in bytes, <b>0</b> for the system's default
+     * @return this instance
+     */
+    public SocketConfig setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+        return this;
+    }
+
+    /**
+     * Sets whether or not idle TCP connections are probed to detect dead peers (SO_KEEPALIVE).
+     *
+     * @param keepAlive the flag
+     * @return this instance
+     */
+    public SocketConfig setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * Sets the keep-alive timing of TCP sockets that have keep-alive enabled (TCP_KEEPIDLE, TCP_KEEPINTERVAL and
+     * TCP_KEEPCOUNT). A value of <b>0</b> keeps the system's default.
+     *
+     * @param idle the idle time before the first probe in seconds
+     * @param interval the time between probes in seconds
+     * @param count the number of unanswered probes after which the connection is dropped
+     * @return this instance
+     */
+    public SocketConfig setKeepAliveIntervals(int idle, int interval, int count) {
+        this.keepAliveIdle = idle;
+        this.keepAliveInterval = interval;
+        this.keepAliveCount = count;
+        return this;
+    }
+
+    /**
+     * Sets whether or not a local address still in the TIME_WAIT state may be bound again (SO_REUSEADDR).
+     *
+     * @param reuseAddress the flag
+     * @return this instance
+     */
+    public SocketConfig setReuseAddress(boolean reuseAddress) {
+        this.reuseAddress = reuseAddress;
+        return this;
+    }
+
+    /**
+     * Sets whether or not several sockets may bind the same address and port, in which case the system spreads
+     * the incoming connections or datagrams among them (SO_REUSEPORT).
+     *
+     * @param reusePort the flag
+     * @return this instance
+     */
+    public SocketConfig setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    /**
+     * Sets the traffic class, or type of service, of the sent packets (IP_TOS), such as {@link #IPTOS_LOWDELAY}.
+     *
+     * @param trafficClass the traffic class, <b>-1</b> for the system's default
+     * @return this instance
+     */
+    public SocketConfig setTrafficClass(int trafficClass) {
+        this.trafficClass = trafficClass;
+        return this;
+    }
+
+    /**
+     * Sets how long closing a TCP socket blocks while unsent data is still being transmitted (SO_LINGER). A value
+     * of <b>0</b> resets the connection on close, discarding the unsent data.
+     *
+     * @param linger the time in seconds, <b>-1</b> to close in the background as the system does by default
+     * @return this instance
+     */
+    public SocketConfig setLinger(int linger) {
+        this.linger = linger;
+        return this;
+    }
+
+    /**
+     * Applies the options to a TCP socket. Should be called before the socket is connected.
+     *
+     * @param socket the socket
+     * @throws IOException if an option can't be set
+     */
+    public void apply(Socket socket) throws IOException {
+        if (tcpNoDelay != null) socket.setTcpNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0) socket.setSendBufferSize(sendBufferSize);
+        if (receiveBufferSize > 0) socket.setReceiveBufferSize(receiveBufferSize);
+        if (reuseAddress != null) socket.setReuseAddress(reuseAddress);
+        if (trafficClass >= 0) socket.setTrafficClass(trafficClass);
+        if (linger >= 0) socket.setSoLinger(true, linger);
+
+        if (keepAlive != null) {
+            socket.setKeepAlive(keepAlive);
+
+            if (keepAlive) {
+                if (keepAliveIdle > 0) setOption(socket, TCP_KEEPIDLE, keepAliveIdle);
+                if (keepAliveInterval > 0) setOption(socket, TCP_KEEPINTERVAL, keepAliveInterval);
+                if (keepAliveCount > 0) setOption(socket, TCP_KEEPCOUNT, keepAliveCount);
+            }
+        }
+    }
+
+    /**
+     * Applies the listening options to a TCP server socket: the receive buffer, inherited by the accepted
+     * sockets, and the address reuse. Should be called before the socket is bound. The other options are applied
+     * to each accepted socket with {@link #apply(Socket)}.
+     *
+     * @param serverSocket the server socket
+     * @throws IOException if an option can't be set
+     */
+    public void apply(ServerSocket serverSocket) throws IOException {
+        if (receiveBufferSize > 0) serverSocket.setReceiveBufferSize(receiveBufferSize);
+        if (reuseAddress != null) serverSocket.setReuseAddress(reuseAddress);
+        if (reusePort != null) setOption(serverSocket, SO_REUSEPORT, reusePort);
+    }
+
+    /**
+     * Applies the options that make sense for UDP to a datagram socket. Should be called before the socket is
+     * bound.
+     *
+     * @param socket the socket
+     * @throws IOException if an option can't be set
+     */
+    public void apply(DatagramSocket socket) throws IOException {
+        if (sendBufferSize > 0) socket.setSendBufferSize(sendBufferSize);
+        if (receiveBufferSize > 0) socket.setReceiveBufferSize(receiveBufferSize);
+        if (reuseAddress != null) socket.setReuseAddress(reuseAddress);
+        if (reusePort != null) setOption(socket, SO_REUSEPORT, reusePort);
+        if (trafficClass >= 0) socket.setTrafficClass(trafficClass);
+    }
+
+    /**
+     * Applies the options the given channel supports, such as a DatagramChannel or a SocketChannel. Should be
+     * called before the channel is bound or connected.
+     *
+     * @param channel the channel
+     * @throws IOException if an option can't be set
+     */
+    public void apply(NetworkChannel channel) throws IOException {
+        if (tcpNoDelay != null) setOption(channel, StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        if (sendBufferSize > 0) setOption(channel, StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+        if (receiveBufferSize > 0) setOption(channel, StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        if (reuseAddress != null) setOption(channel, StandardSocketOptions.SO_REUSEADDR, reuseAddress);
+        if (reusePort != null) setOption(channel, SO_REUSEPORT, reusePort);
+        if (trafficClass >= 0) setOption(channel, StandardSocketOptions.IP_TOS, trafficClass);
+        if (linger >= 0) setOption(channel, StandardSocketOptions.SO_LINGER, linger);
+
+        if (keepAlive != null) {
+            setOption(channel, StandardSocketOptions.SO_KEEPALIVE, keepAlive);
+
+            if (keepAlive) {
+                if (keepAliveIdle > 0) setOption(channel, TCP_KEEPIDLE, keepAliveIdle);
+                if (keepAliveInterval > 0) setOption(channel, TCP_KEEPINTERVAL, keepAliveInterval);
+                if (keepAliveCount > 0) setOption(channel, TCP_KEEPCOUNT, keepAliveCount);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setOption(NetworkChannel channel, SocketOption<?> option, Object value) throws IOException {
+        if (option == null || !channel.supportedOptions().contains(option)) return;
+
+        channel.setOption((SocketOption<Object>) option, value);
+    }
+
+    /**
+     * Sets an option through the <i>setOption</i> method the sockets gained in Java 9, skipping it on older
+     * runtimes and on systems that don't support it.
+     */
+    private static void setOption(Object socket, SocketOption<?> option, Object value) throws IOException {
+        if (option == null) return;
+
+        try {
+            // Looked up on the public base class, as the actual class may be an implementation one
+            Class<?> type = (socket instanceof Socket) ? Socket.class : (socket instanceof ServerSocket) ? ServerSocket.class : DatagramSocket.class;
+            Method method = type.getMethod("setOption", SocketOption.class, Object.class);
+            method.invoke(socket, option, value);
+        }
+        catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof UnsupportedOperationException) {
+                Log.debug(SocketConfig.class, "Socket option {} is not supported. Skipping it...", option.name());
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+        catch (ReflectiveOperationException e) {
+            Log.debug(SocketConfig.class, "Socket option {} is not supported. Skipping it...", option.name());
+        }
+    }
+
+    private static SocketOption<?> findOption(String className, String fieldName) {
+        try {
+            return (SocketOption<?>) Class.forName(className).getField(fieldName).get(null);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -6,8 +6,12 @@
  */
 package com.linoagli.comprotocols;
 
+import com.linoagli.comprotocols.serialization.MessageSerializer;
+
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.List;
 import java.util.ListIterator;
@@ -32,7 +36,55 @@ public class Utils {
         return sb.toString();
     }
 
+    /**
+     * Encodes a string as a single line of text, terminated by a line feed, using the platform's default charset.
+     *
+     * @param line the line string
+     * @return the encoded line bytes
+     */
+    public static byte[] encodeLine(String line) {
+        byte[] bytes = line.getBytes();
+        byte[] encoded = new byte[bytes.length + 1];
+
+        System.arraycopy(bytes, 0, encoded, 0, bytes.length);
+        encoded[bytes.length] = '\n';
+
+        return encoded;
+    }
+
+    /**
+     * Returns the remaining bytes of a buffer as an array, without copying them when the buffer spans its whole
+     * backing array.
+     *
+     * @param buffer the buffer
+     * @return the remaining bytes
+     */
+    public static byte[] toByteArray(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Encodes an object as a Base64 string. Strings are encoded as their UTF-8 bytes and byte arrays as they are;
+     * types registered with {@link MessageSerializer#getDefault()} are encoded with their codec. Any other object
+     * falls back to the much slower and larger Java serialization.
+     *
+     * @param object the object to encode
+     * @return the Base64 string, or <i>null</i> if the object could not be encoded
+     */
     public static String encodeBase64(Object object) {
+        if (object instanceof String) return Base64.getEncoder().encodeToString(((String) object).getBytes(StandardCharsets.UTF_8));
+        if (object instanceof byte[]) return Base64.getEncoder().encodeToString((byte[]) object);
+
+        MessageSerializer serializer = MessageSerializer.getDefault();
+        if (object != null && serializer.isRegistered(object.getClass())) return Base64.getEncoder().encodeToString(serializer.serialize(object));
+
         String encodedObject = null;
 
         try {
@@ -45,7 +97,7 @@ public class Utils {
             encodedObject = Base64.getEncoder().encodeToString(baos.toByteArray());
         }
         catch (Exception e) {
-            e.printStackTrace();
+            Log.error(Utils.class, e);
         }
 
         return encodedObject;
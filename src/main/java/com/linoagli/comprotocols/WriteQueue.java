@@ -0,0 +1,248 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import com.linoagli.comprotocols.jfr.Events;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An outbound message queue for stream based connections. Messages queued from any number of threads are
+ * written out in batches: everything pending at the time of a write is copied into a single buffer, written
+ * with one call to the underlying stream and flushed once at the end of the batch.
+ *
+ * The queue keeps track of the number of bytes waiting to be written and reports backpressure through its
+ * {@link Callback} once that number crosses the high-water mark. Backpressure is lifted once the pending bytes
+ * fall back to half of the high-water mark.
+ *
+ * Messages may be queued with a conflation key, in which case a pending message with the same key is replaced
+ * in place by the newer one instead of both being written.
+ */
+public class WriteQueue {
+    public static final int DEFAULT_HIGH_WATER_MARK = 1024 * 1024;
+    public static final int DEFAULT_BATCH_BUFFER_SIZE = 64 * 1024;
+
+    private Callback callback;
+
+    private final ArrayDeque<Message> messages = new ArrayDeque<>();
+    private final Map<Object, Message> conflatedMessages = new HashMap<>();
+    private final byte[] batchBuffer;
+    private int highWaterMark = DEFAULT_HIGH_WATER_MARK;
+    private long pendingBytes = 0;
+    private boolean isBackpressured = false;
+    private boolean isClosed = false;
+    private String transport = Events.TRANSPORT_TCP;
+    private Object peer;
+
+    public WriteQueue(Callback callback) {
+        this(callback, DEFAULT_BATCH_BUFFER_SIZE);
+    }
+
+    public WriteQueue(Callback callback, int batchBufferSize) {
+        this.callback = callback;
+        this.batchBuffer = new byte[batchBufferSize];
+    }
+
+    /**
+     * Sets the number of pending bytes above which this queue reports backpressure.
+     * This value defaults to <b>1 MiB</b>
+     *
+     * @param highWaterMark the high-water mark in bytes
+     */
+    public void setHighWaterMark(int highWaterMark) {
+        this.highWaterMark = highWaterMark;
+    }
+
+    /**
+     * Describes the connection this queue writes to, as reported by the Flight Recorder write events.
+     *
+     * @param transport the transport, such as {@link Events#TRANSPORT_TCP}
+     * @param peer the address of the other end
+     */
+    public void setPeer(String transport, Object peer) {
+        this.transport = transport;
+        this.peer = peer;
+    }
+
+    /**
+     * @return the number of bytes queued and not yet written.
+     */
+    public synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * @return the number of messages queued and not yet written.
+     */
+    public synchronized int size() {
+        return messages.size();
+    }
+
+    /**
+     * @return whether or not the pending bytes are currently above the high-water mark.
+     */
+    public synchronized boolean isBackpressured() {
+        return isBackpressured;
+    }
+
+    /**
+     * Queues an already encoded message. The array is not copied and must not be modified afterwards; the same
+     * array may safely be queued on several queues at once.
+     *
+     * @param message the message bytes
+     * @return <b>false</b> if this queue was closed and the message was discarded.
+     */
+    public boolean offer(byte[] message) {
+        return offer(message, null);
+    }
+
+    /**
+     * Queues an already encoded message, replacing the pending message queued with the same conflation key if
+     * there is one. The replaced message keeps its place in the queue. The array is not copied and must not be
+     * modified afterwards.
+     *
+     * @param message the message bytes
+     * @param conflationKey the key identifying messages that supersede each other, or <i>null</i> to never conflate
+     * @return <b>false</b> if this queue was closed and the message was discarded.
+     */
+    public boolean offer(byte[] message, Object conflationKey) {
+        boolean becameBackpressured = false;
+
+        synchronized (this) {
+            if (isClosed) return false;
+
+            Message pending = (conflationKey != null) ? conflatedMessages.get(conflationKey) : null;
+
+            if (pending != null) {
+                pendingBytes -= pending.bytes.length;
+                pending.bytes = message;
+            } else {
+                pending = new Message(message);
+                messages.addLast(pending);
+
+                if (conflationKey != null) conflatedMessages.put(conflationKey, pending);
+            }
+
+            pendingBytes += message.length;
+
+            if (!isBackpressured && pendingBytes > highWaterMark) {
+                isBackpressured = true;
+                becameBackpressured = true;
+            }
+
+            notifyAll();
+        }
+
+        if (becameBackpressured && callback != null) callback.onBackpressureChanged(true);
+
+        return true;
+    }
+
+    /**
+     * Waits for at least one message to be queued and writes every pending message to the given stream as a
+     * single batch. Only one thread should be writing batches from a given queue at a time.
+     *
+     * @param out the stream to write to
+     * @param timeOut the maximum time to wait for a message in milliseconds, <b>0</b> waits indefinitely
+     * @return the number of messages written, <b>0</b> if the wait timed out, or <b>-1</b> if this queue is closed
+     * @throws IOException if writing to the stream fails
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public int writeBatch(OutputStream out, long timeOut) throws IOException, InterruptedException {
+        byte[][] batch;
+        long batchBytes = 0;
+
+        synchronized (this) {
+            if (messages.isEmpty() && !isClosed) wait(timeOut);
+            if (messages.isEmpty()) return isClosed ? -1 : 0;
+
+            batch = new byte[messages.size()][];
+
+            for (int i = 0; i < batch.length; i++) batch[i] = messages.pollFirst().bytes;
+
+            conflatedMessages.clear();
+        }
+
+        Object event = Events.beginWrite();
+        int count = batch.length;
+        int position = 0;
+
+        for (byte[] message : batch) {
+            if (position + message.length > batchBuffer.length) {
+                out.write(batchBuffer, 0, position);
+                position = 0;
+            }
+
+            if (message.length > batchBuffer.length) {
+                out.write(message);
+            } else {
+                System.arraycopy(message, 0, batchBuffer, position, message.length);
+                position += message.length;
+            }
+
+            batchBytes += message.length;
+        }
+
+        if (position > 0) out.write(batchBuffer, 0, position);
+        out.flush();
+
+        Events.commitWrite(event, transport, peer, count, batchBytes);
+
+        boolean becameWritable = false;
+
+        synchronized (this) {
+            pendingBytes = Math.max(0, pendingBytes - batchBytes);
+
+            if (isBackpressured && pendingBytes <= highWaterMark / 2) {
+                isBackpressured = false;
+                becameWritable = true;
+            }
+        }
+
+        if (becameWritable && callback != null) callback.onBackpressureChanged(false);
+
+        return count;
+    }
+
+    /**
+     * Closes this queue. Pending messages are discarded and any thread waiting in
+     * {@link #writeBatch(OutputStream, long)} is released.
+     */
+    public synchronized void close() {
+        isClosed = true;
+        messages.clear();
+        conflatedMessages.clear();
+        pendingBytes = 0;
+
+        notifyAll();
+    }
+
+    private static class Message {
+        private byte[] bytes;
+
+        private Message(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The write queue events callback interface.
+     */
+    public interface Callback {
+        /**
+         * Notifies the object implementing this interface that the queue crossed its high-water mark, or that it
+         * drained back below half of it.
+         *
+         * @param isBackpressured whether or not the queue is now above its high-water mark
+         */
+        public void onBackpressureChanged(boolean isBackpressured);
+    }
+}
@@ -0,0 +1,443 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.java.comprotocols.bluetooth
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.bluetooth;
+
+import com.linoagli.comprotocols.Log;
+import com.linoagli.comprotocols.Utils;
+
+import javax.bluetooth.DeviceClass;
+import javax.bluetooth.DiscoveryAgent;
+import javax.bluetooth.DiscoveryListener;
+import javax.bluetooth.LocalDevice;
+import javax.bluetooth.RemoteDevice;
+import javax.bluetooth.ServiceRecord;
+import javax.bluetooth.UUID;
+import javax.microedition.io.Connector;
+import javax.microedition.io.StreamConnection;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Provides a simplified client side implementation of RFComm connections to the services of remote devices.
+ *
+ * Service discovery results are cached per device address and service UUID, and sessions that are released
+ * rather than closed are kept open in a pool for a while, so talking to the same devices again usually skips both
+ * the discovery and the connection set up. A cached URL that fails to connect is discarded and the service is
+ * discovered again.
+ */
+public class BluetoothRFCommClient {
+    public static final long DEFAULT_DISCOVERY_CACHE_TTL = 10 * 60 * 1000;
+    public static final long DEFAULT_SESSION_IDLE_TIME_OUT = 60 * 1000;
+    public static final long DEFAULT_DISCOVERY_TIME_OUT = 30 * 1000;
+
+    private long sessionIdleTimeOut = DEFAULT_SESSION_IDLE_TIME_OUT;
+    private long discoveryTimeOut = DEFAULT_DISCOVERY_TIME_OUT;
+    private int security = ServiceRecord.NOAUTHENTICATE_NOENCRYPT;
+
+    private final ServiceDiscoveryCache discoveryCache = new ServiceDiscoveryCache(DEFAULT_DISCOVERY_CACHE_TTL);
+    private final Map<String, List<Session>> idleSessions = new HashMap<>();
+    private IdleSessionsThread idleSessionsThread;
+
+    /**
+     * Sets how long discovered service URLs are reused before the service is discovered again.
+     *
+     * This value defaults to <b>10 minutes</b>
+     *
+     * @param ttl the time to live in milliseconds
+     */
+    public void setDiscoveryCacheTTL(long ttl) {
+        discoveryCache.setTTL(ttl);
+    }
+
+    /**
+     * Sets how long a released session is kept open in the pool before it gets closed.
+     *
+     * This value defaults to <b>1 minute</b>
+     *
+     * @param sessionIdleTimeOut the time out in milliseconds, <b>0</b> disables pooling
+     */
+    public void setSessionIdleTimeOut(long sessionIdleTimeOut) {
+        this.sessionIdleTimeOut = sessionIdleTimeOut;
+    }
+
+    /**
+     * Sets the maximum time to wait for a service discovery to complete.
+     *
+     * This value defaults to <b>30 seconds</b>
+     *
+     * @param discoveryTimeOut the time out in milliseconds
+     */
+    public void setDiscoveryTimeOut(long discoveryTimeOut) {
+        this.discoveryTimeOut = discoveryTimeOut;
+    }
+
+    /**
+     * Sets the security requirements of the connections made by this client.
+     *
+     * This value defaults to {@link ServiceRecord#NOAUTHENTICATE_NOENCRYPT}
+     *
+     * @param security one of the {@link ServiceRecord} security constants
+     */
+    public void setSecurity(int security) {
+        this.security = security;
+    }
+
+    /**
+     * Forgets the discovered URL of a service, forcing it to be discovered again on the next connection.
+     *
+     * @param deviceAddress the remote device's bluetooth address
+     * @param serviceUUID the service's UUID
+     */
+    public void invalidate(String deviceAddress, String serviceUUID) {
+        discoveryCache.invalidate(deviceAddress, serviceUUID);
+    }
+
+    /**
+     * Opens a session with the given service of the given device. A pooled session is reused when one is
+     * available; otherwise the service URL is taken from the discovery cache, or discovered, and a new connection
+     * is made. This call blocks until the session is ready.
+     *
+     * @param deviceAddress the remote device's bluetooth address
+     * @param serviceUUID the service's UUID
+     * @return the open session
+     * @throws IOException if the service can't be found or connected to
+     */
+    public Session open(String deviceAddress, String serviceUUID) throws IOException {
+        Session session = takeIdleSession(ServiceDiscoveryCache.key(deviceAddress, serviceUUID));
+        if (session != null) return session;
+
+        String url = discoveryCache.get(deviceAddress, serviceUUID);
+
+        if (url != null) {
+            try {
+                return connect(deviceAddress, serviceUUID, url);
+            } catch (IOException e) {
+                Log.info(BluetoothRFCommClient.class, "Cached RFComm service URL failed, discovering it again: {}", e.getMessage());
+                discoveryCache.invalidate(deviceAddress, serviceUUID);
+            }
+        }
+
+        url = discoverServiceURL(deviceAddress, serviceUUID);
+        discoveryCache.put(deviceAddress, serviceUUID, url);
+
+        try {
+            return connect(deviceAddress, serviceUUID, url);
+        } catch (IOException e) {
+            discoveryCache.invalidate(deviceAddress, serviceUUID);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes every pooled session and clears the discovery cache.
+     */
+    public void shutdown() {
+        synchronized (idleSessions) {
+            if (idleSessionsThread != null) {
+                idleSessionsThread.cancel();
+                idleSessionsThread = null;
+            }
+
+            for (List<Session> sessions : idleSessions.values()) {
+                for (Session session : sessions) session.close();
+            }
+
+            idleSessions.clear();
+        }
+
+        discoveryCache.clear();
+    }
+
+    private Session connect(String deviceAddress, String serviceUUID, String url) throws IOException {
+        StreamConnection connection = (StreamConnection) Connector.open(url);
+
+        try {
+            return new Session(ServiceDiscoveryCache.key(deviceAddress, serviceUUID), deviceAddress, serviceUUID, connection);
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private Session takeIdleSession(String key) {
+        synchronized (idleSessions) {
+            List<Session> sessions = idleSessions.get(key);
+
+            while (sessions != null && !sessions.isEmpty()) {
+                Session session = sessions.remove(sessions.size() - 1);
+
+                if (session.isOpen()) return session;
+            }
+
+            return null;
+        }
+    }
+
+    private void release(Session session) {
+        if (sessionIdleTimeOut <= 0 || !session.isOpen()) {
+            session.close();
+            return;
+        }
+
+        synchronized (idleSessions) {
+            session.releasedAt = System.currentTimeMillis();
+            idleSessions.computeIfAbsent(session.key, key -> new ArrayList<>()).add(session);
+
+            if (idleSessionsThread == null) {
+                idleSessionsThread = new IdleSessionsThread();
+                idleSessionsThread.setDaemon(true);
+                idleSessionsThread.start();
+            }
+        }
+    }
+
+    private String discoverServiceURL(String deviceAddress, final String serviceUUID) throws IOException {
+        DiscoveryAgent agent = LocalDevice.getLocalDevice().getDiscoveryAgent();
+        RemoteDevice device = new RemoteDevice(deviceAddress.replaceAll(":", "")) {}; // The constructor is protected
+        UUID[] uuids = new UUID[] { new UUID(serviceUUID.replaceAll("-", ""), false) };
+
+        final String[] url = new String[1];
+        final boolean[] isComplete = new boolean[1];
+        final Object lock = new Object();
+
+        DiscoveryListener listener = new DiscoveryListener() {
+            @Override
+            public void deviceDiscovered(RemoteDevice remoteDevice, DeviceClass deviceClass) {}
+
+            @Override
+            public void inquiryCompleted(int discType) {}
+
+            @Override
+            public void servicesDiscovered(int transID, ServiceRecord[] serviceRecords) {
+                for (ServiceRecord record : serviceRecords) {
+                    String recordUrl = record.getConnectionURL(security, false);
+
+                    if (recordUrl != null) {
+                        synchronized (lock) {
+                            if (url[0] == null) url[0] = recordUrl;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void serviceSearchCompleted(int transID, int respCode) {
+                synchronized (lock) {
+                    isComplete[0] = true;
+                    lock.notifyAll();
+                }
+            }
+        };
+
+        int transID = agent.searchServices(null, uuids, device, listener);
+        long deadline = System.currentTimeMillis() + discoveryTimeOut;
+
+        synchronized (lock) {
+            try {
+                while (!isComplete[0] && System.currentTimeMillis() < deadline) {
+                    lock.wait(Math.max(1, deadline - System.currentTimeMillis()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (!isComplete[0]) agent.cancelServiceSearch(transID);
+            if (url[0] == null) throw new IOException("RFComm service " + serviceUUID + " not found on device " + deviceAddress);
+
+            return url[0];
+        }
+    }
+
+    /**
+     * This class represents an open connection to a remote RFComm service. Sessions exchange lines of text.
+     */
+    public class Session {
+        private final String key;
+        private final String deviceAddress;
+        private final String serviceUUID;
+        private StreamConnection connection;
+        private InputStream inputStream;
+        private BufferedReader in;
+        private OutputStream out;
+        private final AtomicBoolean isOpen = new AtomicBoolean(true);
+        private long releasedAt;
+
+        private Session(String key, String deviceAddress, String serviceUUID, StreamConnection connection) throws IOException {
+            this.key = key;
+            this.deviceAddress = deviceAddress;
+            this.serviceUUID = serviceUUID;
+            this.connection = connection;
+            this.inputStream = connection.openInputStream();
+            this.in = new BufferedReader(new InputStreamReader(inputStream));
+            this.out = connection.openOutputStream();
+        }
+
+        /**
+         * @return the remote device's bluetooth address.
+         */
+        public String getDeviceAddress() {
+            return deviceAddress;
+        }
+
+        /**
+         * @return the remote service's UUID.
+         */
+        public String getServiceUUID() {
+            return serviceUUID;
+        }
+
+        /**
+         * @return whether or not the connection is still open.
+         */
+        public boolean isOpen() {
+            return isOpen.get();
+        }
+
+        /**
+         * Sends a line of text to the service.
+         *
+         * @param data the data string
+         * @throws IOException if writing fails, in which case the session is closed
+         */
+        public synchronized void send(String data) throws IOException {
+            try {
+                out.write(Utils.encodeLine(data));
+                out.flush();
+            } catch (IOException e) {
+                fail();
+                throw e;
+            }
+        }
+
+        /**
+         * Reads the next line of text sent by the service, blocking until one is available.
+         *
+         * @return the received line, or <i>null</i> if the service closed the connection or the session was closed
+         * @throws IOException if reading fails, in which case the session is closed
+         */
+        public synchronized String receive() throws IOException {
+            try {
+                String data = in.readLine();
+                if (data == null) close();
+
+                return data;
+            } catch (IOException e) {
+                if (!isOpen.get()) return null;
+
+                fail();
+                throw e;
+            }
+        }
+
+        /**
+         * Sends a line of text to the service and waits for the line it sends back.
+         *
+         * @param query the query string
+         * @return the response line, or <i>null</i> if the service closed the connection
+         * @throws IOException if the exchange fails, in which case the session is closed
+         */
+        public synchronized String query(String query) throws IOException {
+            send(query);
+            return receive();
+        }
+
+        /**
+         * Hands this session back to its client, which keeps it open for a while so it can be reused by the next
+         * call to {@link BluetoothRFCommClient#open(String, String)} for the same service.
+         */
+        public void release() {
+            BluetoothRFCommClient.this.release(this);
+        }
+
+        /**
+         * Closes the connection to the service. May be called from any thread, and releases a pending
+         * {@link #receive()}.
+         */
+        public void close() {
+            // Neither the session's monitor nor the reader's lock is taken, since a pending receive holds both
+            if (!isOpen.compareAndSet(true, false)) return;
+
+            try {
+                inputStream.close();
+            } catch (Exception e) {
+                Log.error(BluetoothRFCommClient.class, e);
+            }
+
+            try {
+                out.close();
+            } catch (Exception e) {
+                Log.error(BluetoothRFCommClient.class, e);
+            }
+
+            try {
+                connection.close();
+            } catch (Exception e) {
+                Log.error(BluetoothRFCommClient.class, e);
+            }
+        }
+
+        private void fail() {
+            // A session closed on purpose says nothing about the service
+            if (!isOpen.get()) return;
+
+            close();
+
+            // The device may have moved its service to another channel
+            discoveryCache.invalidate(deviceAddress, serviceUUID);
+        }
+    }
+
+    /**
+     * This thread closes the pooled sessions that stayed idle for too long.
+     */
+    private class IdleSessionsThread extends Thread {
+        private final long SLEEP_TIME = 1000;
+        private volatile boolean runLoop = true;
+
+        @Override
+        public void run() {
+            while (runLoop) {
+                long now = System.currentTimeMillis();
+
+                synchronized (idleSessions) {
+                    for (List<Session> sessions : idleSessions.values()) {
+                        Iterator<Session> iterator = sessions.iterator();
+
+                        while (iterator.hasNext()) {
+                            Session session = iterator.next();
+
+                            if (!session.isOpen() || now - session.releasedAt >= sessionIdleTimeOut) {
+                                session.close();
+                                iterator.remove();
+                            }
+                        }
+                    }
+                }
+
+                try {
+                    Thread.sleep(SLEEP_TIME);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void cancel() {
+            runLoop = false;
+            interrupt();
+        }
+    }
+}
@@ -6,23 +6,63 @@
  */
 package com.linoagli.comprotocols.bluetooth;
 
+import com.linoagli.comprotocols.Log;
+import com.linoagli.comprotocols.Utils;
+import com.linoagli.comprotocols.pipeline.Channel;
+import com.linoagli.comprotocols.pipeline.LengthFieldCodec;
+import com.linoagli.comprotocols.pipeline.LineCodec;
+import com.linoagli.comprotocols.pipeline.Pipeline;
+
 import javax.microedition.io.Connector;
 import javax.microedition.io.StreamConnection;
 import javax.microedition.io.StreamConnectionNotifier;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Provides a simplified RFComm server implementation. The service is registered once when the server starts and
+ * stays registered until it stops; every client that connects gets its own {@link Session}, served by a pool of
+ * session workers, so several clients can be hosted at the same time.
+ *
+ * In {@link Mode#TEXT} mode, the default, clients exchange lines of text. In {@link Mode#BINARY} mode they exchange
+ * framed binary messages: each message is preceded by its length as a 4 byte big-endian integer.
+ *
+ * The traffic of each session flows through a {@link Pipeline} whose framing stage, named <i>codec</i>, matches
+ * the mode. Additional stages can be installed with {@link #setPipelineInitializer(Pipeline.Initializer)}.
+ */
 public class BluetoothRFCommServer {
+    /**
+     * The supported message formats
+     */
+    public enum Mode { TEXT, BINARY }
+
+    public static final int DEFAULT_MAX_SESSIONS = 7;
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
     private Callback callback;
 
     private String serviceUUID;
-    private boolean isRunning = false;
-    private boolean isBound = false;
+    private int maxSessions = DEFAULT_MAX_SESSIONS;
+    private Mode mode = Mode.TEXT;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private Pipeline.Initializer pipelineInitializer;
+    private volatile boolean isRunning = false;
     private StreamConnectionNotifier notifier;
-    private StreamConnection connection;
-    private BufferedReader in;
-    private PrintWriter out;
+    private final List<Session> sessions = new ArrayList<>();
+    private ExecutorService sessionWorkers;
+    private BluetoothStackContext stackContext;
     private WorkerThread workerThread;
 
     public BluetoothRFCommServer(Callback callback) {
@@ -37,10 +77,79 @@ public class BluetoothRFCommServer {
     }
 
     /**
-     * @return whether or not this server instance is connected to bluetooth client.
+     * @return whether or not this server instance is connected to at least one bluetooth client.
      */
     public boolean isBound() {
-        return isBound;
+        return getSessionCount() > 0;
+    }
+
+    /**
+     * @return the number of bluetooth clients currently connected to this server.
+     */
+    public int getSessionCount() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    /**
+     * Sets the maximum number of clients this server hosts at the same time, which is also the number of session
+     * workers. Connections beyond that are closed as soon as they are accepted. Must be set before calling
+     * {@link #start(String)}.
+     *
+     * This value defaults to <b>7</b>, the number of active devices in a piconet.
+     *
+     * @param maxSessions the maximum number of simultaneous sessions
+     */
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = Math.max(1, maxSessions);
+    }
+
+    /**
+     * Sets the format of the messages exchanged with clients. Must be set before calling {@link #start(String)}.
+     *
+     * This value defaults to {@link Mode#TEXT}
+     *
+     * @param mode the message format
+     */
+    public void setMode(Mode mode) {
+        if (mode == null) return;
+
+        this.mode = mode;
+    }
+
+    /**
+     * Sets the size of each session's read and write buffers. Reads and writes reach the bluetooth stack in chunks
+     * of up to this size, so it should span several RFComm frames of the link.
+     *
+     * This value defaults to <b>16 KiB</b>
+     *
+     * @param bufferSize the buffer size in bytes
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = Math.max(512, bufferSize);
+    }
+
+    /**
+     * Sets the largest binary message a client may send. A session receiving a larger frame is closed.
+     *
+     * This value defaults to <b>64 MiB</b>
+     *
+     * @param maxFrameSize the maximum message size in bytes
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Sets the initializer called with the pipeline of every new session. The pipeline already holds the framing
+     * stage of the server's mode, named <i>codec</i>, which the initializer may keep, surround or replace.
+     * Must be set before calling {@link #start(String)}.
+     *
+     * @param pipelineInitializer the initializer
+     */
+    public void setPipelineInitializer(Pipeline.Initializer pipelineInitializer) {
+        this.pipelineInitializer = pipelineInitializer;
     }
 
     /**
@@ -50,13 +159,16 @@ public class BluetoothRFCommServer {
      */
     public void start(String serviceUUID) {
         this.serviceUUID = serviceUUID;
+        this.stackContext = BluetoothStackContext.capture();
+
+        sessionWorkers = Executors.newFixedThreadPool(maxSessions);
 
         workerThread = new WorkerThread();
         workerThread.start();
     }
 
     /**
-     * Powers down the server instance and cleans up all resources.
+     * Powers down the server instance, closes every session and cleans up all resources.
      */
     public void stop() {
         if (workerThread != null) {
@@ -64,108 +176,305 @@ public class BluetoothRFCommServer {
             workerThread = null;
         }
 
-        closeAllStreamsAndConnections();
+        closeNotifier();
+
+        synchronized (sessions) {
+            for (Session session : new ArrayList<>(sessions)) session.close();
+
+            sessions.clear();
+        }
+
+        if (sessionWorkers != null) {
+            sessionWorkers.shutdownNow();
+            sessionWorkers = null;
+        }
+    }
+
+    private void closeNotifier() {
+        if (notifier != null) {
+            try {
+                notifier.close();
+            } catch (Exception e) {
+                Log.error(BluetoothRFCommServer.class, e);
+            }
+
+            notifier = null;
+        }
     }
 
     /**
-     * Send data as a response to the client that linked to this connection.
-     *
-     * @param response the response data
+     * This class represents a connected bluetooth client. The session stays open while the client is connected.
      */
-    public void respond(String response) {
-        try {
-            out.println(response);
-        } catch (Exception e) {
-            e.printStackTrace();
+    public class Session implements Channel, Runnable {
+        private StreamConnection connection;
+        private InputStream in;
+        private OutputStream out;
+        private Pipeline pipeline;
+        private volatile boolean isOpen = true;
+
+        private Session(StreamConnection connection) {
+            this.connection = connection;
+            this.pipeline = new Pipeline(this::onMessage, this::write);
+
+            if (mode == Mode.BINARY) {
+                pipeline.addLast("codec", new LengthFieldCodec(maxFrameSize));
+            } else {
+                pipeline.addLast("codec", new LineCodec());
+            }
+
+            if (pipelineInitializer != null) pipelineInitializer.initialize(pipeline);
+        }
+
+        /**
+         * @return whether or not the client is still connected.
+         */
+        @Override
+        public boolean isOpen() {
+            return isOpen;
+        }
+
+        @Override
+        public Pipeline getPipeline() {
+            return pipeline;
+        }
+
+        /**
+         * Send data as a response to the client linked to this session. In {@link Mode#BINARY} mode, the string's
+         * bytes are sent as a single message.
+         *
+         * @param response the response data
+         */
+        public void respond(String response) {
+            send(response.getBytes());
         }
-    }
 
-    private void closeAllStreamsAndConnections() {
-        if (in != null) {
+        /**
+         * Send a binary message to the client linked to this session. Only valid in {@link Mode#BINARY} mode.
+         *
+         * @param data the message bytes
+         */
+        public void respond(byte[] data) {
+            send(data);
+        }
+
+        @Override
+        public void send(byte[] data) {
             try {
-                in.close();
+                pipeline.fireOutbound(ByteBuffer.wrap(data));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error(BluetoothRFCommServer.class, e);
             }
+        }
 
-            in = null;
+        /**
+         * Streams the content of a file to the client as a single binary message. Only valid in
+         * {@link Mode#BINARY} mode.
+         *
+         * @param file the file to send
+         * @param transferCallback notified of the transfer's progress, may be <i>null</i>
+         * @throws IOException if reading the file or writing to the client fails
+         */
+        public void sendFile(File file, TransferCallback transferCallback) throws IOException {
+            try (InputStream is = new FileInputStream(file)) {
+                sendStream(is, file.length(), transferCallback);
+            }
         }
 
-        if (out != null) {
+        /**
+         * Streams exactly <i>length</i> bytes from the given stream to the client as a single binary message,
+         * one buffer at a time. Only valid in {@link Mode#BINARY} mode. Other messages sent to this session wait
+         * until the transfer is complete.
+         *
+         * The message is framed and written directly so that it never has to be held in memory as a whole; it
+         * does not go through the pipeline's outbound stages.
+         *
+         * @param is the stream to read the message from. It is not closed
+         * @param length the number of bytes to send
+         * @param transferCallback notified of the transfer's progress, may be <i>null</i>
+         * @throws IOException if reading the stream or writing to the client fails
+         */
+        public void sendStream(InputStream is, long length, TransferCallback transferCallback) throws IOException {
+            if (mode != Mode.BINARY) throw new IOException("Bulk transfers require the binary mode");
+            if (length > Integer.MAX_VALUE) throw new IOException("Message too large: " + length + " bytes");
+
+            byte[] buffer = new byte[bufferSize];
+            long sent = 0;
+
+            synchronized (this) {
+                // Held on to, so a session closed during the transfer fails the write instead of pulling the stream
+                // from under it
+                OutputStream out = this.out;
+                if (out == null) throw new IOException("Session is closed");
+
+                writeFrameHeader(out, (int) length);
+
+                while (sent < length) {
+                    int read = is.read(buffer, 0, (int) Math.min(buffer.length, length - sent));
+                    if (read < 0) throw new EOFException("Stream ended after " + sent + " of " + length + " bytes");
+
+                    out.write(buffer, 0, read);
+                    sent += read;
+
+                    if (transferCallback != null) transferCallback.onProgress(sent, length);
+                }
+
+                out.flush();
+            }
+        }
+
+        private synchronized void write(ByteBuffer data) throws IOException {
+            OutputStream out = this.out;
+            if (out == null) throw new IOException("Session is closed");
+
+            if (data.hasArray()) {
+                out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            } else {
+                out.write(Utils.toByteArray(data));
+            }
+
             out.flush();
-            out.close();
-            out = null;
         }
 
-        if (connection != null) {
+        private void onMessage(ByteBuffer data) {
+            if (callback == null) return;
+
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+
+            if (mode == Mode.BINARY) {
+                callback.onBinaryDataReceived(this, bytes);
+            } else {
+                callback.onDataReceived(this, new String(bytes));
+            }
+        }
+
+        private void writeFrameHeader(OutputStream out, int length) throws IOException {
+            out.write(length >>> 24);
+            out.write(length >>> 16);
+            out.write(length >>> 8);
+            out.write(length);
+        }
+
+        @Override
+        public void run() {
+            stackContext.apply();
+
             try {
-                connection.close();
+                in = connection.openInputStream();
+
+                byte[] buffer = new byte[bufferSize];
+                int read;
+
+                while ((read = in.read(buffer)) >= 0) {
+                    pipeline.fireInbound(ByteBuffer.wrap(buffer, 0, read));
+                }
             } catch (Exception e) {
-                e.printStackTrace();
+                if (isOpen) Log.error(BluetoothRFCommServer.class, e);
             }
 
-            connection = null;
+            close();
         }
 
-        if (notifier != null) {
+        private void open() throws IOException {
+            out = new BufferedOutputStream(connection.openOutputStream(), bufferSize);
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (!isOpen) return;
+
+                isOpen = false;
+            }
+
+            synchronized (sessions) {
+                sessions.remove(this);
+            }
+
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (Exception e) {
+                    Log.error(BluetoothRFCommServer.class, e);
+                }
+
+                in = null;
+            }
+
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (Exception e) {
+                    Log.error(BluetoothRFCommServer.class, e);
+                }
+
+                out = null;
+            }
+
             try {
-                notifier.close();
+                connection.close();
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error(BluetoothRFCommServer.class, e);
             }
 
-            notifier = null;
+            if (callback != null) callback.onDisconnected(this);
         }
     }
 
     /**
-     * This thread does all the heavy lifting.
+     * This thread registers the service and accepts incoming connections, handing each one to a session worker.
      */
     private class WorkerThread extends Thread {
-        private boolean runLoop = true;
+        private final long RETRY_SLEEP_TIME = 1000;
+        private volatile boolean runLoop = true;
 
         @Override
         public void run() {
+            stackContext.apply();
+
             isRunning = true;
 
             while (runLoop) {
                 try {
-                    String uri = "btspp://localhost:" + serviceUUID.replaceAll("-", "") + ";name=" + getClass().getSimpleName();
-                    notifier = (StreamConnectionNotifier) Connector.open(uri);
-
-                    if (callback != null) callback.onWaitingForConnection(serviceUUID);
+                    if (notifier == null) {
+                        String uri = "btspp://localhost:" + serviceUUID.replaceAll("-", "") + ";name=" + getClass().getSimpleName();
+                        notifier = (StreamConnectionNotifier) Connector.open(uri);
 
-                    connection = notifier.acceptAndOpen();
-
-                    isBound = true;
+                        if (callback != null) callback.onWaitingForConnection(serviceUUID);
+                    }
 
-                    if (callback != null) callback.onConnected();
+                    StreamConnection connection = notifier.acceptAndOpen();
 
-                    try {
-                        in = new BufferedReader(new InputStreamReader(connection.openInputStream()));
-                        out = new PrintWriter(connection.openOutputStream(), true);
+                    if (getSessionCount() >= maxSessions) {
+                        Log.warn(BluetoothRFCommServer.class, "RFComm server maximum number of sessions reached. Rejecting connection...");
+                        connection.close();
+                        continue;
+                    }
 
-                        String input;
+                    Session session = new Session(connection);
+                    session.open();
 
-                        while ((input = in.readLine()) != null) {
-                            if (callback != null) callback.onDataReceived(BluetoothRFCommServer.this, input);
-                        }
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                    synchronized (sessions) {
+                        sessions.add(session);
                     }
 
-                    isBound = false;
+                    if (callback != null) callback.onConnected(session);
+
+                    sessionWorkers.execute(session);
                 } catch (Exception e) {
-                    e.printStackTrace();
-                } finally {
-                    closeAllStreamsAndConnections();
-                }
+                    if (!runLoop) break;
 
-                try {
-                    Thread.sleep(3000);
-                }
-                catch (Exception e) {
-                    e.printStackTrace();
+                    Log.error(BluetoothRFCommServer.class, e);
+
+                    // The notifier is only re-registered if it failed
+                    closeNotifier();
+
+                    try {
+                        Thread.sleep(RETRY_SLEEP_TIME);
+                    }
+                    catch (Exception ie) {
+                        Log.error(BluetoothRFCommServer.class, ie);
+                    }
                 }
             }
 
@@ -182,8 +491,8 @@ public class BluetoothRFCommServer {
      */
     public interface Callback {
         /**
-         * Notifies the object implementing this interface that the RFComm server is currently waiting for an
-         * incoming TCP client connection.
+         * Notifies the object implementing this interface that the RFComm server has registered its service and is
+         * waiting for incoming bluetooth client connections.
          *
          * @param serviceUUID the UUID used to initiate the server
          */
@@ -191,15 +500,46 @@ public class BluetoothRFCommServer {
 
         /**
          * Notifies the object implementing this interface that the RFComm server has accepted a Bluetooth connection.
+         *
+         * @param session the newly created session
          */
-        public void onConnected();
+        public void onConnected(Session session);
 
         /**
-         * Notifies the object implementing this interface that the server received data from the connected BT client.
+         * Notifies the object implementing this interface that the server received data from a connected BT client.
          *
-         * @param rfCommServer the server instance that received the data
+         * @param session the session that received the data
          * @param data the received data string
          */
-        public void onDataReceived(BluetoothRFCommServer rfCommServer, String data);
+        public void onDataReceived(Session session, String data);
+
+        /**
+         * Notifies the object implementing this interface that a bluetooth client has disconnected.
+         *
+         * @param session the session that was closed
+         */
+        public default void onDisconnected(Session session) {}
+
+        /**
+         * Notifies the object implementing this interface that the server received a binary message from a
+         * connected BT client. Only used in {@link Mode#BINARY} mode.
+         *
+         * @param session the session that received the data
+         * @param data the received message bytes
+         */
+        public default void onBinaryDataReceived(Session session, byte[] data) {}
+    }
+
+    /**
+     * The bulk transfer progress callback interface.
+     */
+    public interface TransferCallback {
+        /**
+         * Notifies the object implementing this interface that another buffer was written to the client.
+         *
+         * @param bytesSent the number of bytes sent so far
+         * @param totalBytes the total number of bytes to send
+         */
+        public void onProgress(long bytesSent, long totalBytes);
     }
 }
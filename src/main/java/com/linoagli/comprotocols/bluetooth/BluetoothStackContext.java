@@ -0,0 +1,37 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.java.comprotocols.bluetooth
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.bluetooth;
+
+import com.intel.bluetooth.BlueCoveImpl;
+
+/**
+ * Carries bluecove's thread local bluetooth stack, if the calling thread uses one, over to the worker threads
+ * started on its behalf. This is what lets several stacks, such as the ones provided by the bluecove emulator,
+ * live in the same process.
+ */
+class BluetoothStackContext {
+    private final Object stackID;
+
+    private BluetoothStackContext(Object stackID) {
+        this.stackID = stackID;
+    }
+
+    /**
+     * @return the bluetooth stack context of the calling thread.
+     */
+    static BluetoothStackContext capture() {
+        return new BluetoothStackContext(BlueCoveImpl.getCurrentThreadBluetoothStackID());
+    }
+
+    /**
+     * Makes the calling thread use the captured bluetooth stack. Does nothing if the capturing thread was using
+     * the default, global stack.
+     */
+    void apply() {
+        if (stackID != null) BlueCoveImpl.setThreadBluetoothStackID(stackID);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.java.comprotocols.bluetooth
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.bluetooth;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the connection URLs found through SDP service discovery, per device address and service UUID, for a
+ * limited amount of time.
+ */
+class ServiceDiscoveryCache {
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long ttl;
+
+    ServiceDiscoveryCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    void setTTL(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return the cached connection URL, or <i>null</i> if there is none or it expired.
+     */
+    synchronized String get(String deviceAddress, String serviceUUID) {
+        String key = key(deviceAddress, serviceUUID);
+        Entry entry = entries.get(key);
+
+        if (entry == null) return null;
+
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.url;
+    }
+
+    synchronized void put(String deviceAddress, String serviceUUID, String url) {
+        entries.put(key(deviceAddress, serviceUUID), new Entry(url, System.currentTimeMillis() + ttl));
+    }
+
+    synchronized void invalidate(String deviceAddress, String serviceUUID) {
+        entries.remove(key(deviceAddress, serviceUUID));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    static String key(String deviceAddress, String serviceUUID) {
+        return deviceAddress.replaceAll(":", "").toUpperCase() + "/" + serviceUUID.replaceAll("-", "").toLowerCase();
+    }
+
+    private static class Entry {
+        private final String url;
+        private final long expiresAt;
+
+        private Entry(String url, long expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
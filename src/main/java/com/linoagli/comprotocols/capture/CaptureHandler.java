@@ -0,0 +1,58 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.capture
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.capture;
+
+import com.linoagli.comprotocols.pipeline.Handler;
+import com.linoagli.comprotocols.pipeline.HandlerContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A pipeline stage recording the data flowing through its position to a {@link CaptureJournal}, without altering
+ * it. Added first, it records the bytes exactly as they were read from and written to the connection, which is
+ * what the transports do when given a journal; added after a codec, it records whole messages instead.
+ *
+ * Each handler belongs to a single connection and is given a connection id of its own.
+ */
+public class CaptureHandler implements Handler {
+    private final CaptureJournal journal;
+    private final int connectionId;
+    private final byte[] peer;
+
+    /**
+     * @param journal the journal to record to
+     * @param peer the address of the connection's peer
+     */
+    public CaptureHandler(CaptureJournal journal, String peer) {
+        this.journal = journal;
+        this.connectionId = journal.nextConnectionId();
+        this.peer = peer.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the id this handler's connection is recorded under.
+     */
+    public int getConnectionId() {
+        return connectionId;
+    }
+
+    @Override
+    public void onInbound(HandlerContext context, ByteBuffer data) throws IOException {
+        journal.record(connectionId, CaptureJournal.Direction.INBOUND, peer, data);
+
+        context.fireInbound(data);
+    }
+
+    @Override
+    public void onOutbound(HandlerContext context, ByteBuffer data) throws IOException {
+        journal.record(connectionId, CaptureJournal.Direction.OUTBOUND, peer, data);
+
+        context.fireOutbound(data);
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.capture
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.capture;
+
+import com.linoagli.comprotocols.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An append-only journal of the messages flowing in and out of connections, kept in a directory of memory-mapped
+ * segment files. Recording a message is a copy into the current segment under a short lock; the operating system
+ * takes care of writing the pages out. Once a segment is full, the journal rolls over to a new one.
+ *
+ * Each record holds the time the message was seen, the connection it belongs to, its direction, the peer's address
+ * and the message bytes. Journals are read back with a {@link CaptureReader} and replayed with a
+ * {@link TrafficReplayer}.
+ *
+ * Record a transport's traffic by handing the journal to its <i>setCaptureJournal</i> method, or by adding a
+ * {@link CaptureHandler} to a pipeline directly. A single journal may be shared by any number of connections.
+ */
+public class CaptureJournal implements Closeable {
+    public enum Direction {
+        /** Received from the peer */
+        INBOUND,
+        /** Sent to the peer */
+        OUTBOUND
+    }
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final String SEGMENT_PREFIX = "capture-";
+    public static final String SEGMENT_SUFFIX = ".journal";
+
+    static final int MAGIC = 0x43415054; // "CAPT"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_HEADER_SIZE = 4 + 8 + 4 + 1 + 1 + 2;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long baseEpochNanos;
+    private final long baseNanoTime;
+    private final AtomicInteger nextConnectionId = new AtomicInteger(1);
+
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private long recordCount = 0;
+    private long droppedCount = 0;
+    private boolean isClosed = false;
+
+    /**
+     * Opens a journal with the default segment size of <b>64 MiB</b>.
+     *
+     * @param directory the directory of the segment files, created if needed
+     * @throws IOException if the first segment can't be created
+     */
+    public CaptureJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a journal. Segments already present in the directory are kept and new ones are numbered after them,
+     * so a directory may hold several capture sessions back to back.
+     *
+     * @param directory the directory of the segment files, created if needed
+     * @param segmentSize the size of each segment file in bytes
+     * @throws IOException if the first segment can't be created
+     */
+    public CaptureJournal(File directory, int segmentSize) throws IOException {
+        if (segmentSize < 4096) throw new IllegalArgumentException("Segments must be at least 4096 bytes");
+
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create directory " + directory);
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.baseEpochNanos = System.currentTimeMillis() * 1000000L;
+        this.baseNanoTime = System.nanoTime();
+
+        File[] segments = listSegments(directory);
+        this.segmentIndex = (segments.length > 0) ? segmentIndex(segments[segments.length - 1]) : -1;
+
+        roll();
+    }
+
+    /**
+     * @return the directory of the segment files.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of messages recorded so far.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return the number of messages too large to fit in a segment, which were not recorded.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return a new connection id, unique within this journal. Connectionless traffic is recorded under id <b>0</b>.
+     */
+    public int nextConnectionId() {
+        return nextConnectionId.getAndIncrement();
+    }
+
+    /**
+     * Records a message. The buffer's position is left untouched.
+     *
+     * @param connectionId the id of the connection, see {@link #nextConnectionId()}
+     * @param direction the direction of the message
+     * @param peer the peer's address
+     * @param data the message bytes
+     */
+    public void record(int connectionId, Direction direction, String peer, ByteBuffer data) {
+        record(connectionId, direction, peer.getBytes(StandardCharsets.UTF_8), data);
+    }
+
+    void record(int connectionId, Direction direction, byte[] peer, ByteBuffer data) {
+        long timestamp = baseEpochNanos + (System.nanoTime() - baseNanoTime);
+        int size = RECORD_HEADER_SIZE + peer.length + data.remaining();
+
+        synchronized (this) {
+            if (isClosed) return;
+
+            if (size > segmentSize - HEADER_SIZE) {
+                droppedCount++;
+                return;
+            }
+
+            try {
+                if (segment.remaining() < size) roll();
+            } catch (IOException e) {
+                Log.error(CaptureJournal.class, e);
+                droppedCount++;
+                return;
+            }
+
+            int start = segment.position();
+
+            segment.position(start + 4);
+            segment.putLong(timestamp)
+                    .putInt(connectionId)
+                    .put((byte) direction.ordinal())
+                    .put((byte) 0)
+                    .putShort((short) peer.length)
+                    .put(peer)
+                    .put(data.duplicate());
+
+            // The length goes in last, a zero length marks the end of the written records
+            segment.putInt(start, size);
+            recordCount++;
+        }
+    }
+
+    /**
+     * Asks the operating system to write the current segment's pages to disk.
+     */
+    public synchronized void flush() {
+        if (segment != null) segment.force();
+    }
+
+    /**
+     * Flushes and closes this journal. Messages recorded afterwards are ignored.
+     */
+    @Override
+    public synchronized void close() {
+        if (isClosed) return;
+
+        flush();
+        isClosed = true;
+        segment = null;
+    }
+
+    private void roll() throws IOException {
+        if (segment != null) segment.force();
+
+        segmentIndex++;
+
+        File file = new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(segmentSize);
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+
+        segment.putInt(MAGIC).putInt(VERSION).putInt(segmentIndex);
+        segment.position(HEADER_SIZE);
+    }
+
+    static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+
+        if (segments == null) return new File[0];
+
+        Arrays.sort(segments, (a, b) -> Integer.compare(segmentIndex(a), segmentIndex(b)));
+
+        return segments;
+    }
+
+    private static int segmentIndex(File segment) {
+        String name = segment.getName();
+
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.capture
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the records of a {@link CaptureJournal} back, segment after segment, in the order they were recorded.
+ */
+public class CaptureReader implements Closeable {
+    private final File[] segments;
+    private int nextSegment = 0;
+    private MappedByteBuffer segment;
+
+    /**
+     * @param directory the journal's directory
+     */
+    public CaptureReader(File directory) {
+        this.segments = CaptureJournal.listSegments(directory);
+    }
+
+    /**
+     * @return the next record, or <i>null</i> once every record was read.
+     * @throws IOException if a segment can't be read or is corrupted
+     */
+    public CaptureRecord next() throws IOException {
+        while (true) {
+            if (segment == null) {
+                if (nextSegment >= segments.length) return null;
+
+                openSegment(segments[nextSegment++]);
+            }
+
+            if (segment.remaining() >= CaptureJournal.RECORD_HEADER_SIZE) {
+                int start = segment.position();
+                int size = segment.getInt(start);
+
+                if (size > 0) {
+                    if (size > segment.limit() - start) throw new IOException("Corrupted record at offset " + start + " of " + segments[nextSegment - 1]);
+
+                    segment.position(start + 4);
+
+                    long timestamp = segment.getLong();
+                    int connectionId = segment.getInt();
+                    CaptureJournal.Direction direction = CaptureJournal.Direction.values()[segment.get()];
+                    segment.get();
+                    byte[] peer = new byte[segment.getShort()];
+                    segment.get(peer);
+                    byte[] data = new byte[size - CaptureJournal.RECORD_HEADER_SIZE - peer.length];
+                    segment.get(data);
+
+                    return new CaptureRecord(timestamp, connectionId, direction, new String(peer, StandardCharsets.UTF_8), data);
+                }
+            }
+
+            segment = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        nextSegment = segments.length;
+    }
+
+    private void openSegment(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+
+        if (segment.limit() < CaptureJournal.HEADER_SIZE || segment.getInt(0) != CaptureJournal.MAGIC) {
+            throw new IOException("Not a capture journal segment: " + file);
+        }
+
+        if (segment.getInt(4) != CaptureJournal.VERSION) throw new IOException("Unsupported capture journal version: " + file);
+
+        segment.position(CaptureJournal.HEADER_SIZE);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.capture
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.capture;
+
+/**
+ * A message read back from a {@link CaptureJournal}.
+ */
+public class CaptureRecord {
+    private final long timestamp;
+    private final int connectionId;
+    private final CaptureJournal.Direction direction;
+    private final String peer;
+    private final byte[] data;
+
+    CaptureRecord(long timestamp, int connectionId, CaptureJournal.Direction direction, String peer, byte[] data) {
+        this.timestamp = timestamp;
+        this.connectionId = connectionId;
+        this.direction = direction;
+        this.peer = peer;
+        this.data = data;
+    }
+
+    /**
+     * @return the time the message was recorded, in nanoseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the id of the connection the message belongs to, <b>0</b> for connectionless traffic.
+     */
+    public int getConnectionId() {
+        return connectionId;
+    }
+
+    public CaptureJournal.Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the address of the peer the message was received from or sent to.
+     */
+    public String getPeer() {
+        return peer;
+    }
+
+    /**
+     * @return the message bytes.
+     */
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,273 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.capture
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.capture;
+
+import com.linoagli.comprotocols.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-drives a server with traffic recorded in a {@link CaptureJournal}, keeping the original spacing between
+ * messages, scaled by the replay speed.
+ *
+ * Over TCP, each recorded connection is replayed on a connection of its own and its bytes are written exactly as
+ * they were recorded; the server's responses are read and counted but not checked. Over UDP, each record is sent as
+ * one datagram.
+ *
+ * By default the records received by the captured side are replayed, which suits a capture taken on a server. For a
+ * capture taken on a client, replay the records it sent instead, see {@link #setDirection(CaptureJournal.Direction)}.
+ *
+ * <pre>
+ * TrafficReplayer &lt;directory&gt; &lt;tcp|udp&gt; &lt;host&gt; &lt;port&gt; [--speed &lt;factor&gt;] [--outbound]
+ * </pre>
+ */
+public class TrafficReplayer {
+    public enum Transport {
+        TCP,
+        UDP
+    }
+
+    public static final long DEFAULT_DRAIN_TIME = 1000;
+
+    private double speed = 1;
+    private CaptureJournal.Direction direction = CaptureJournal.Direction.INBOUND;
+    private long drainTime = DEFAULT_DRAIN_TIME;
+
+    /**
+     * Sets the replay speed relative to the recording: <b>2</b> replays twice as fast, <b>0</b> sends every message
+     * as fast as possible.
+     * This value defaults to <b>1</b>
+     *
+     * @param speed the speed factor
+     */
+    public void setSpeed(double speed) {
+        this.speed = Math.max(0, speed);
+    }
+
+    /**
+     * Sets the direction of the records to replay.
+     * This value defaults to <b>INBOUND</b>
+     *
+     * @param direction the direction
+     */
+    public void setDirection(CaptureJournal.Direction direction) {
+        this.direction = direction;
+    }
+
+    /**
+     * Sets how long to keep reading responses after the last message was sent, before closing the connections.
+     * This value defaults to <b>1000</b> milliseconds
+     *
+     * @param drainTime the delay in milliseconds
+     */
+    public void setDrainTime(long drainTime) {
+        this.drainTime = drainTime;
+    }
+
+    /**
+     * Replays a journal against a server. Blocks until every message was sent and the drain time elapsed.
+     *
+     * @param directory the journal's directory
+     * @param transport the transport to replay over
+     * @param address the server's address
+     * @param port the server's port
+     * @return the replay's statistics
+     * @throws IOException if the journal can't be read or a connection can't be opened
+     */
+    public Result replay(File directory, Transport transport, InetAddress address, int port) throws IOException {
+        Result result = new Result();
+        Map<Integer, Socket> sockets = new HashMap<>();
+        List<Thread> readers = new ArrayList<>();
+        DatagramSocket datagramSocket = (transport == Transport.UDP) ? new DatagramSocket() : null;
+
+        long firstTimestamp = -1;
+        long startTime = System.nanoTime();
+
+        try (CaptureReader reader = new CaptureReader(directory)) {
+            CaptureRecord record;
+
+            while ((record = reader.next()) != null) {
+                if (record.getDirection() != direction) continue;
+
+                if (firstTimestamp < 0) {
+                    firstTimestamp = record.getTimestamp();
+                    startTime = System.nanoTime();
+                }
+
+                if (speed > 0) {
+                    long dueTime = startTime + (long) ((record.getTimestamp() - firstTimestamp) / speed);
+                    long delay;
+
+                    while ((delay = dueTime - System.nanoTime()) > 0) LockSupport.parkNanos(delay);
+
+                    result.maxLagNanos = Math.max(result.maxLagNanos, -delay);
+                }
+
+                byte[] data = record.getData();
+
+                if (transport == Transport.UDP) {
+                    datagramSocket.send(new DatagramPacket(data, data.length, address, port));
+                } else {
+                    Socket socket = sockets.get(record.getConnectionId());
+
+                    if (socket == null) {
+                        socket = new Socket(address, port);
+                        socket.setTcpNoDelay(true);
+                        sockets.put(record.getConnectionId(), socket);
+                        readers.add(startReading(socket, result.bytesReceived));
+                        result.connections++;
+                    }
+
+                    socket.getOutputStream().write(data);
+                }
+
+                result.messagesSent++;
+                result.bytesSent += data.length;
+            }
+
+            result.elapsedNanos = System.nanoTime() - startTime;
+
+            if (!sockets.isEmpty()) {
+                long deadline = System.currentTimeMillis() + drainTime;
+
+                for (Thread thread : readers) {
+                    try {
+                        thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+                    } catch (InterruptedException e) {
+                        Log.error(TrafficReplayer.class, e);
+                    }
+                }
+            }
+        } finally {
+            for (Socket socket : sockets.values()) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    Log.error(TrafficReplayer.class, e);
+                }
+            }
+
+            if (datagramSocket != null) datagramSocket.close();
+        }
+
+        return result;
+    }
+
+    private Thread startReading(final Socket socket, final AtomicLong bytesReceived) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[8192];
+                int read;
+
+                try {
+                    InputStream in = socket.getInputStream();
+
+                    while ((read = in.read(buffer)) >= 0) bytesReceived.addAndGet(read);
+                } catch (IOException e) {
+                    // The connection was closed at the end of the replay
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+
+        return thread;
+    }
+
+    /**
+     * The statistics of a replay.
+     */
+    public static class Result {
+        private long messagesSent = 0;
+        private long bytesSent = 0;
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private int connections = 0;
+        private long elapsedNanos = 0;
+        private long maxLagNanos = 0;
+
+        public long getMessagesSent() {
+            return messagesSent;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * @return the number of response bytes read over TCP, up to the end of the drain time.
+         */
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+
+        /**
+         * @return the number of TCP connections opened.
+         */
+        public int getConnections() {
+            return connections;
+        }
+
+        /**
+         * @return the time between the first and the last message sent, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return how late the most delayed message was sent compared to its schedule, in nanoseconds. A lag that
+         * keeps growing means the server, or the replayer, could not keep up with the replay speed.
+         */
+        public long getMaxLagNanos() {
+            return maxLagNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+
+            return String.format("%d messages, %d bytes sent over %d connections in %.3f s (%.0f messages/s), %d bytes received, max lag %.3f ms",
+                    messagesSent, bytesSent, connections, seconds, (seconds > 0) ? messagesSent / seconds : 0.0,
+                    getBytesReceived(), maxLagNanos / 1e6);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.out.println("Usage: TrafficReplayer <directory> <tcp|udp> <host> <port> [--speed <factor>] [--outbound]");
+            return;
+        }
+
+        TrafficReplayer replayer = new TrafficReplayer();
+
+        for (int i = 4; i < args.length; i++) {
+            if (args[i].equals("--speed") && i + 1 < args.length) {
+                replayer.setSpeed(Double.parseDouble(args[++i]));
+            } else if (args[i].equals("--outbound")) {
+                replayer.setDirection(CaptureJournal.Direction.OUTBOUND);
+            }
+        }
+
+        Result result = replayer.replay(new File(args[0]), Transport.valueOf(args[1].toUpperCase()),
+                InetAddress.getByName(args[2]), Integer.parseInt(args[3]));
+
+        System.out.println(result);
+    }
+}
@@ -0,0 +1,456 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Limits the number of requests in progress to each host, adapting the limit to the host's measured latency.
+ *
+ * The limit follows an additive increase, multiplicative decrease scheme. Each host's baseline latency is the
+ * lowest latency measured. It is only raised once the limit was driven down to its minimum, which is where a host
+ * that became slower for good ends up, so that queueing delay never makes its way into the baseline. While the
+ * smoothed latency of recent requests stays within the latency tolerance of that baseline and the host is busy,
+ * each request raises the limit so that it grows by about one per round trip. Latency beyond the tolerance, a
+ * failure or an overload response cuts the limit by the backoff ratio, at most once per baseline latency so that
+ * the requests already in flight don't cut it again for the same episode.
+ *
+ * Requests over the limit wait in a bounded queue per host, without holding a thread. They are rejected right away
+ * once the queue is full, and as soon as they waited longer than the maximum queue time, whether or not a permit
+ * was released meanwhile. Throughput then stays close to what the host can serve while queueing delay stays
+ * bounded.
+ *
+ * A single limiter is meant to be shared by all requests, see
+ * {@link HttpRequest#setDefaultConcurrencyLimiter(AdaptiveConcurrencyLimiter)}.
+ */
+public class AdaptiveConcurrencyLimiter {
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 100;
+    public static final long DEFAULT_MAX_QUEUE_TIME = 1000;
+
+    private static final int BASELINE_WINDOW = 100;
+    private static final double SMOOTHING = 0.2;
+
+    // Rejects the requests that waited too long for a host whose permits are all held by slow requests
+    private static final ScheduledThreadPoolExecutor EXPIRY_TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "AdaptiveConcurrencyLimiter-Expiry");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    static {
+        EXPIRY_TIMER.setRemoveOnCancelPolicy(true);
+        EXPIRY_TIMER.setKeepAliveTime(30, TimeUnit.SECONDS);
+        EXPIRY_TIMER.allowCoreThreadTimeOut(true);
+    }
+
+    private final Map<String, HostLimit> hostLimits = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private volatile int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private volatile int minLimit = DEFAULT_MIN_LIMIT;
+    private volatile int maxLimit = DEFAULT_MAX_LIMIT;
+    private volatile double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+    private volatile double backoffRatio = DEFAULT_BACKOFF_RATIO;
+    private volatile int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+    private volatile long maxQueueTime = DEFAULT_MAX_QUEUE_TIME;
+
+    /**
+     * Sets the limit a host starts with.
+     * This value defaults to <b>20</b>
+     *
+     * @param initialLimit the number of concurrent requests
+     */
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    /**
+     * Sets the bounds the limit adapts within.
+     * These values default to <b>1</b> and <b>200</b>
+     *
+     * @param minLimit the lowest limit
+     * @param maxLimit the highest limit
+     */
+    public void setLimitBounds(int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+    }
+
+    /**
+     * Sets how many times slower than the baseline a request may be before the limit is cut.
+     * This value defaults to <b>2.0</b>
+     *
+     * @param latencyTolerance the ratio to the baseline latency
+     */
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Sets the factor the limit is multiplied by when it is cut.
+     * This value defaults to <b>0.9</b>
+     *
+     * @param backoffRatio the factor, between 0 and 1
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Sets the number of requests that may wait for each host once its limit is reached.
+     * This value defaults to <b>100</b>
+     *
+     * @param maxQueueSize the number of requests, <b>0</b> rejects every request over the limit
+     */
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * Sets how long a request may wait for its turn before it is rejected.
+     * This value defaults to <b>1000</b> milliseconds
+     *
+     * @param maxQueueTime the delay in milliseconds
+     */
+    public void setMaxQueueTime(long maxQueueTime) {
+        this.maxQueueTime = maxQueueTime;
+    }
+
+    /**
+     * @param host the host, as <i>name:port</i>
+     * @return the current limit of the host.
+     */
+    public int getLimit(String host) {
+        HostLimit hostLimit = hostLimits.get(host);
+
+        return (hostLimit != null) ? hostLimit.getLimit() : initialLimit;
+    }
+
+    /**
+     * @param host the host, as <i>name:port</i>
+     * @return the number of requests currently in progress to the host.
+     */
+    public int getInFlightCount(String host) {
+        HostLimit hostLimit = hostLimits.get(host);
+
+        return (hostLimit != null) ? hostLimit.getInFlightCount() : 0;
+    }
+
+    /**
+     * @param host the host, as <i>name:port</i>
+     * @return the number of requests currently waiting for the host.
+     */
+    public int getQueueSize(String host) {
+        HostLimit hostLimit = hostLimits.get(host);
+
+        return (hostLimit != null) ? hostLimit.getQueueSize() : 0;
+    }
+
+    /**
+     * @return the number of requests rejected so far, over all hosts.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Waits for a permit to send a request to the host.
+     *
+     * @param host the host, as <i>name:port</i>
+     * @return the permit, or <i>null</i> if the request was rejected.
+     */
+    public Permit acquire(String host) {
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        Waiter waiter = acquireAsync(host, future::complete, () -> future.complete(null));
+
+        if (waiter == null) return future.getNow(null);
+
+        try {
+            return future.get(maxQueueTime, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Either the waiter is still queued and gets rejected, or it was just granted a permit
+            if (hostLimits.get(host).cancel(waiter)) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+
+            return future.join();
+        } catch (InterruptedException | ExecutionException e) {
+            if (!hostLimits.get(host).cancel(waiter)) {
+                Permit permit = future.join();
+                if (permit != null) permit.abandon();
+            }
+
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+
+            return null;
+        }
+    }
+
+    /**
+     * Takes a permit to send a request to the host if one is free right away, without queueing. Meant for extra
+     * requests such as hedges, which are better skipped than delayed, so a missing permit isn't counted as a
+     * rejection.
+     *
+     * @param host the host, as <i>name:port</i>
+     * @return the permit, or <i>null</i> if the host is at its limit.
+     */
+    public Permit tryAcquire(String host) {
+        return hostLimits.computeIfAbsent(host, key -> new HostLimit()).tryAcquire();
+    }
+
+    /**
+     * Asks for a permit to send a request to the host, without waiting. Exactly one of the two callbacks is called,
+     * either right away on the calling thread, or later on the thread releasing a permit of the same host or on the
+     * limiter's timer thread, so neither should block.
+     *
+     * @param host the host, as <i>name:port</i>
+     * @param onAcquired called with the permit once the request may be sent
+     * @param onRejected called if the request is rejected
+     */
+    public void acquire(String host, Consumer<Permit> onAcquired, Runnable onRejected) {
+        acquireAsync(host, onAcquired, onRejected);
+    }
+
+    private Waiter acquireAsync(String host, Consumer<Permit> onAcquired, Runnable onRejected) {
+        HostLimit hostLimit = hostLimits.computeIfAbsent(host, key -> new HostLimit());
+        Waiter waiter = new Waiter(onAcquired, onRejected);
+        Permit permit = hostLimit.tryAcquire(waiter);
+
+        if (permit != null) {
+            onAcquired.accept(permit);
+            return null;
+        }
+
+        if (waiter.isRejected) {
+            rejectedCount.incrementAndGet();
+            onRejected.run();
+            return null;
+        }
+
+        waiter.expiry = EXPIRY_TIMER.schedule(() -> {
+            if (hostLimit.cancel(waiter)) {
+                rejectedCount.incrementAndGet();
+                onRejected.run();
+            }
+        }, maxQueueTime, TimeUnit.MILLISECONDS);
+
+        return waiter;
+    }
+
+    /**
+     * @param url a request url
+     * @return the url's host as <i>name:port</i>, or <i>null</i> if the url is malformed.
+     */
+    public static String hostOf(String url) {
+        try {
+            URL parsed = new URL(url);
+            int port = (parsed.getPort() >= 0) ? parsed.getPort() : parsed.getDefaultPort();
+
+            return parsed.getHost().toLowerCase() + ":" + port;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * The right to send one request to a host. Must be released once the request completes, exactly once.
+     */
+    public class Permit {
+        private final HostLimit hostLimit;
+        private final long startTime = System.nanoTime();
+        private final AtomicBoolean isReleased = new AtomicBoolean(false);
+
+        private Permit(HostLimit hostLimit) {
+            this.hostLimit = hostLimit;
+        }
+
+        /**
+         * Releases this permit, feeding the request's latency to the host's limit.
+         *
+         * @param isDropped whether the request failed or the host reported being overloaded, which cuts the limit
+         */
+        public void release(boolean isDropped) {
+            if (isReleased.compareAndSet(false, true)) hostLimit.release(System.nanoTime() - startTime, isDropped);
+        }
+
+        /**
+         * Releases this permit without feeding the host's limit, for a request that was never sent.
+         */
+        public void abandon() {
+            if (isReleased.compareAndSet(false, true)) hostLimit.release(-1, false);
+        }
+    }
+
+    private static class Waiter {
+        private final Consumer<Permit> onAcquired;
+        private final Runnable onRejected;
+        private final long enqueueTime = System.nanoTime();
+        private boolean isRejected = false;
+        private volatile ScheduledFuture<?> expiry;
+
+        private Waiter(Consumer<Permit> onAcquired, Runnable onRejected) {
+            this.onAcquired = onAcquired;
+            this.onRejected = onRejected;
+        }
+
+        private void cancelExpiry() {
+            ScheduledFuture<?> expiry = this.expiry;
+            if (expiry != null) expiry.cancel(false);
+        }
+    }
+
+    /**
+     * The limit, requests in flight and waiting requests of one host.
+     */
+    private class HostLimit {
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private double limit = initialLimit;
+        private int inFlightCount = 0;
+        private long baselineLatency = 0;
+        private double smoothedLatency = 0;
+        private long windowMinLatency = Long.MAX_VALUE;
+        private int windowSamples = 0;
+        private long lastDecreaseTime = System.nanoTime();
+
+        private synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        private synchronized int getInFlightCount() {
+            return inFlightCount;
+        }
+
+        private synchronized int getQueueSize() {
+            return queue.size();
+        }
+
+        private synchronized Permit tryAcquire() {
+            if (inFlightCount < (int) limit && queue.isEmpty()) {
+                inFlightCount++;
+                return new Permit(this);
+            }
+
+            return null;
+        }
+
+        private synchronized Permit tryAcquire(Waiter waiter) {
+            if (inFlightCount < (int) limit && queue.isEmpty()) {
+                inFlightCount++;
+                return new Permit(this);
+            }
+
+            if (queue.size() < maxQueueSize) {
+                queue.addLast(waiter);
+            } else {
+                waiter.isRejected = true;
+            }
+
+            return null;
+        }
+
+        private boolean cancel(Waiter waiter) {
+            boolean isCanceled;
+
+            synchronized (this) {
+                isCanceled = queue.remove(waiter);
+            }
+
+            if (isCanceled) waiter.cancelExpiry();
+
+            return isCanceled;
+        }
+
+        private void release(long latency, boolean isDropped) {
+            List<Waiter> granted = new ArrayList<>();
+            List<Waiter> expired = new ArrayList<>();
+
+            synchronized (this) {
+                inFlightCount--;
+                if (latency >= 0) adapt(latency, isDropped);
+
+                long now = System.nanoTime();
+                long maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueTime);
+
+                while (!queue.isEmpty() && inFlightCount < (int) limit) {
+                    Waiter waiter = queue.pollFirst();
+
+                    if (now - waiter.enqueueTime > maxQueueNanos) {
+                        expired.add(waiter);
+                    } else {
+                        inFlightCount++;
+                        granted.add(waiter);
+                    }
+                }
+            }
+
+            for (Waiter waiter : expired) {
+                waiter.cancelExpiry();
+                rejectedCount.incrementAndGet();
+                waiter.onRejected.run();
+            }
+
+            for (Waiter waiter : granted) {
+                waiter.cancelExpiry();
+                waiter.onAcquired.accept(new Permit(this));
+            }
+        }
+
+        private void adapt(long latency, boolean isDropped) {
+            if (!isDropped) {
+                smoothedLatency = (smoothedLatency == 0)
+                        ? latency
+                        : smoothedLatency + SMOOTHING * (latency - smoothedLatency);
+                windowMinLatency = Math.min(windowMinLatency, latency);
+
+                if (baselineLatency == 0 || latency < baselineLatency) {
+                    baselineLatency = latency;
+                }
+
+                if (++windowSamples >= BASELINE_WINDOW) {
+                    // A host that became slower for good drives the limit down to its minimum, where its latency
+                    // carries no queueing delay
+                    if ((int) limit <= minLimit) baselineLatency = windowMinLatency;
+
+                    windowMinLatency = Long.MAX_VALUE;
+                    windowSamples = 0;
+                }
+            }
+
+            long now = System.nanoTime();
+
+            if (isDropped || smoothedLatency > baselineLatency * latencyTolerance) {
+                // The requests that were in flight with the previous limit complete within about one baseline
+                if (now - lastDecreaseTime > baselineLatency) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseTime = now;
+                }
+            } else if (inFlightCount + 1 >= limit / 2) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides when an {@link HttpRequest} is hedged: if no response arrived after a delay set at a high percentile of
+ * the host's recent latencies, the same request is sent a second time, the first response wins and the other
+ * request is cancelled. A request that hits a slow replica then costs little more than the hedging delay, at the
+ * price of a few percent of extra requests.
+ *
+ * Only idempotent requests are hedged, and only once the host's latency was measured over enough requests. Hedges
+ * are capped by a budget so that a host that slows down as a whole, where every request would be hedged, doesn't
+ * get twice the load: on top of a small reserve, hedges may not exceed a ratio of the requests sent through the
+ * policy.
+ *
+ * A single policy is meant to be shared by all requests, see {@link HttpRequest#setDefaultHedgingPolicy(HedgingPolicy)}.
+ */
+public class HedgingPolicy {
+    public static final double DEFAULT_PERCENTILE = 95;
+    public static final int DEFAULT_MIN_SAMPLES = 20;
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    public static final int BUDGET_RESERVE = 10;
+    public static final int WINDOW_SIZE = 200;
+
+    private final RequestBudget budget = new RequestBudget(DEFAULT_BUDGET_RATIO, BUDGET_RESERVE);
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private volatile double percentile = DEFAULT_PERCENTILE;
+    private volatile int minSamples = DEFAULT_MIN_SAMPLES;
+
+    /**
+     * Sets the percentile of the host's recent latencies after which a request is hedged.
+     * This value defaults to <b>95</b>
+     *
+     * @param percentile the percentile, between 0 and 100
+     */
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    /**
+     * Sets the number of latencies to measure for a host before its requests are hedged.
+     * This value defaults to <b>20</b>
+     *
+     * @param minSamples the number of latencies
+     */
+    public void setMinSamples(int minSamples) {
+        this.minSamples = Math.max(1, Math.min(WINDOW_SIZE, minSamples));
+    }
+
+    /**
+     * Sets the ratio of hedges to requests the budget allows, on top of a reserve of 10 hedges.
+     * This value defaults to <b>0.1</b>
+     *
+     * @param budgetRatio the ratio
+     */
+    public void setBudgetRatio(double budgetRatio) {
+        budget.setRatio(budgetRatio);
+    }
+
+    /**
+     * @param host the host, as <i>name:port</i>
+     * @return the current hedging delay of the host in milliseconds, or <b>-1</b> while its latency is unknown.
+     */
+    public long getHedgeDelay(String host) {
+        LatencyWindow window = latencies.get(host);
+
+        return (window != null) ? window.getPercentile(percentile, minSamples) : -1;
+    }
+
+    void onRequest() {
+        budget.deposit();
+    }
+
+    boolean tryHedge() {
+        return budget.tryWithdraw();
+    }
+
+    void recordLatency(String host, long latency) {
+        latencies.computeIfAbsent(host, key -> new LatencyWindow()).record(latency);
+    }
+
+    /**
+     * The last latencies measured for a host. The percentile is computed again every few samples only.
+     */
+    private static class LatencyWindow {
+        private static final int RECOMPUTE_INTERVAL = 10;
+
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count = 0;
+        private int next = 0;
+        private int samplesSinceComputed = 0;
+        private double computedPercentile = -1;
+        private long value = -1;
+
+        private synchronized void record(long latency) {
+            samples[next] = latency;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            samplesSinceComputed++;
+        }
+
+        private synchronized long getPercentile(double percentile, int minSamples) {
+            if (count < minSamples) return -1;
+
+            if (value < 0 || samplesSinceComputed >= RECOMPUTE_INTERVAL || percentile != computedPercentile) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+
+                int index = (int) Math.ceil(percentile / 100 * count) - 1;
+                value = sorted[Math.max(0, Math.min(count - 1, index))];
+                computedPercentile = percentile;
+                samplesSinceComputed = 0;
+            }
+
+            return value;
+        }
+    }
+}
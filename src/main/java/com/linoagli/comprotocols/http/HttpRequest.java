@@ -6,7 +6,9 @@
  */
 package com.linoagli.comprotocols.http;
 
+import com.linoagli.comprotocols.Log;
 import com.linoagli.comprotocols.Utils;
+import com.linoagli.comprotocols.jfr.Events;
 
 import java.io.*;
 import java.net.HttpURLConnection;
@@ -14,6 +16,9 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A simple HTTP request implementation class.
@@ -31,6 +36,10 @@ public class HttpRequest {
     public static final String MIME_TYPE_WEB_FORM = "application/x-www-form-urlencoded";
     public static final String MIME_TYPE_JSON = "application/json";
 
+    private static volatile AdaptiveConcurrencyLimiter defaultConcurrencyLimiter;
+    private static volatile RetryPolicy defaultRetryPolicy;
+    private static volatile HedgingPolicy defaultHedgingPolicy;
+
     private Callback callback;
 
     private String contentType;
@@ -43,6 +52,9 @@ public class HttpRequest {
     private boolean wasSuccessful;
     private int responseCode;
     private String responseString;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private RetryPolicy retryPolicy;
+    private HedgingPolicy hedgingPolicy;
 
     public HttpRequest() {
         contentType = MIME_TYPE_WEB_FORM;
@@ -97,6 +109,71 @@ public class HttpRequest {
         this.timeOutDelay = timeOutDelay;
     }
 
+    /**
+     * Sets the concurrency limiter shared by all requests that don't have one of their own. Requests over the
+     * limit of their host wait for their turn, or fail with a response code of -1 if they are rejected.
+     *
+     * This value defaults to <b>null</b>, which doesn't limit requests
+     *
+     * @param concurrencyLimiter the limiter
+     */
+    public static void setDefaultConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        defaultConcurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Sets the concurrency limiter of this HTTP request instance, in place of the default one, see
+     * {@link #setDefaultConcurrencyLimiter(AdaptiveConcurrencyLimiter)}.
+     *
+     * @param concurrencyLimiter the limiter
+     */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Sets the retry policy shared by all requests that don't have one of their own.
+     *
+     * This value defaults to <b>null</b>, which sends every request once
+     *
+     * @param retryPolicy the policy
+     */
+    public static void setDefaultRetryPolicy(RetryPolicy retryPolicy) {
+        defaultRetryPolicy = retryPolicy;
+    }
+
+    /**
+     * Sets the retry policy of this HTTP request instance, in place of the default one, see
+     * {@link #setDefaultRetryPolicy(RetryPolicy)}.
+     *
+     * @param retryPolicy the policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Sets the hedging policy shared by all requests that don't have one of their own. Hedged requests are sent a
+     * second time when the first response is late, and complete with whichever response arrives first.
+     *
+     * This value defaults to <b>null</b>, which never hedges requests
+     *
+     * @param hedgingPolicy the policy
+     */
+    public static void setDefaultHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        defaultHedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Sets the hedging policy of this HTTP request instance, in place of the default one, see
+     * {@link #setDefaultHedgingPolicy(HedgingPolicy)}.
+     *
+     * @param hedgingPolicy the policy
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
     /**
      * @return the url that was used to submit the HTTP request.
      */
@@ -159,56 +236,250 @@ public class HttpRequest {
         this.responseCode = -1;
         this.responseString = null;
 
-        if (async) {
-            new Thread(this::doRequest).start();
+        AdaptiveConcurrencyLimiter limiter = (concurrencyLimiter != null) ? concurrencyLimiter : defaultConcurrencyLimiter;
+        String host = (limiter != null) ? AdaptiveConcurrencyLimiter.hostOf(url) : null;
+
+        if (host == null) {
+            if (async) {
+                new Thread(() -> doRequest(null, null, null)).start();
+            } else {
+                doRequest(null, null, null);
+            }
+        } else if (async) {
+            // Requests waiting for their turn don't hold a thread
+            limiter.acquire(host,
+                    permit -> new Thread(() -> doRequest(limiter, host, permit)).start(),
+                    () -> reject(host));
         } else {
-            doRequest();
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(host);
+
+            if (permit != null) {
+                doRequest(limiter, host, permit);
+            } else {
+                reject(host);
+            }
         }
 
         return this;
     }
 
-    private void doRequest() {
+    private void reject(String host) {
+        responseString = "Request rejected by the concurrency limiter of " + host;
+
+        if (callback != null) callback.onRequestComplete(this);
+    }
+
+    /**
+     * Sends the request, retrying it as the retry policy allows. Every attempt, hedges included, holds its own
+     * permit of the limiter, which it gives back once it completes, so that a request waiting to be retried
+     * doesn't hold on to one.
+     *
+     * @param permit the permit of the first attempt, or <i>null</i> if there is no limiter
+     */
+    private void doRequest(AdaptiveConcurrencyLimiter limiter, String limiterHost,
+                           AdaptiveConcurrencyLimiter.Permit permit) {
+        RetryPolicy retry = (retryPolicy != null) ? retryPolicy : defaultRetryPolicy;
+        HedgingPolicy hedging = (hedgingPolicy != null) ? hedgingPolicy : defaultHedgingPolicy;
+        String host = (hedging != null && RetryPolicy.isIdempotent(method)) ? AdaptiveConcurrencyLimiter.hostOf(url) : null;
+
+        if (retry != null) retry.onRequest();
+        if (host != null) hedging.onRequest();
+
+        Attempt result;
+
+        for (int attempt = 1; ; attempt++) {
+            if (attempt > 1 && limiter != null) {
+                permit = limiter.acquire(limiterHost);
+
+                if (permit == null) {
+                    String message = "Request rejected by the concurrency limiter of " + limiterHost;
+                    result = new Attempt(null).fail(new IOException(message));
+                    break;
+                }
+            }
+
+            try {
+                result = (host != null) ? race(hedging, host, limiter, permit) : new Attempt(permit).run();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = new Attempt(null).fail(e);
+                break;
+            }
+
+            long delay = (retry != null) ? retry.getRetryDelay(method, attempt, result.responseCode, result.exception) : -1;
+
+            if (delay < 0) break;
+
+            try {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        responseCode = result.responseCode;
+        wasSuccessful = (responseCode / 100) == 2;
+        responseString = result.responseString;
+
+        if (callback != null) callback.onRequestComplete(this);
+    }
+
+    /**
+     * Sends the request and, if no response arrived by the host's hedging delay, sends it a second time. The first
+     * response wins and the other request is cancelled, unless the first one is worth retrying, in which case the
+     * other one gets its chance. A hedge is only sent if the limiter has a permit to spare right away.
+     */
+    private Attempt race(HedgingPolicy hedging, String host, AdaptiveConcurrencyLimiter limiter,
+                         AdaptiveConcurrencyLimiter.Permit permit) throws InterruptedException {
+        long hedgeDelay = hedging.getHedgeDelay(host);
+
+        if (hedgeDelay < 0) {
+            Attempt attempt = new Attempt(permit).run();
+            if (attempt.exception == null) hedging.recordLatency(host, attempt.latency);
+
+            return attempt;
+        }
+
+        BlockingQueue<Attempt> results = new LinkedBlockingQueue<>();
+        Attempt primary = new Attempt(permit).start(results);
+        Attempt hedge = null;
+        Attempt winner = null;
+
         try {
-            HttpURLConnection connection = generateConnection();
+            winner = results.poll(hedgeDelay, TimeUnit.MILLISECONDS);
 
-            // Retrieving string response code
-            responseCode = connection.getResponseCode();
-            wasSuccessful = (responseCode / 100) == 2;
+            if (winner == null) {
+                // A host at its limit gets no hedge, which would only add to its load
+                AdaptiveConcurrencyLimiter.Permit hedgePermit = (limiter != null) ? limiter.tryAcquire(host) : null;
+                boolean canHedge = limiter == null || hedgePermit != null;
 
-            // Retrieving the response string
-            if (responseCode != HttpURLConnection.HTTP_NO_CONTENT) {
-                try {
+                if (canHedge && hedging.tryHedge()) {
+                    hedge = new Attempt(hedgePermit).start(results);
+                } else if (hedgePermit != null) {
+                    hedgePermit.abandon();
+                }
+            }
+            if (winner == null) winner = results.take();
+
+            if (hedge != null && RetryPolicy.isRetryable(winner.responseCode, winner.exception)) {
+                if (winner.exception == null) hedging.recordLatency(host, winner.latency);
+                winner = results.take();
+            }
+        }
+        finally {
+            // The loser is cancelled before it completes, so only the winners' latencies are recorded
+            if (primary != winner) primary.cancel();
+            if (hedge != null && hedge != winner) hedge.cancel();
+        }
 
-                    InputStream is = (wasSuccessful) ? connection.getInputStream() : connection.getErrorStream();
-                    BufferedInputStream bis = new BufferedInputStream(is);
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    int data = 0;
-                    while ((data = bis.read()) != -1) baos.write(data);
+        if (winner.exception == null) hedging.recordLatency(host, winner.latency);
 
-                    is.close();
-                    responseString = new String(baos.toByteArray());
+        return winner;
+    }
+
+    /**
+     * A single try at the request. Attempts keep their results apart from the request's, as hedged attempts run
+     * side by side.
+     */
+    private class Attempt {
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+        private volatile HttpURLConnection connection;
+        private volatile boolean isCancelled = false;
+        private int responseCode = -1;
+        private String responseString = null;
+        private Exception exception = null;
+        private long latency = 0;
+        private long connectTime = 0;
+
+        private Attempt(AdaptiveConcurrencyLimiter.Permit permit) {
+            this.permit = permit;
+        }
+
+        private Attempt start(BlockingQueue<Attempt> results) {
+            new Thread(() -> results.add(run())).start();
+
+            return this;
+        }
+
+        private Attempt run() {
+            Object event = Events.beginHttpRequest();
+            long startTime = System.nanoTime();
+            long timeToFirstByte = 0;
+            long responseSize = 0;
+
+            try {
+                HttpURLConnection connection = generateConnection(this);
+
+                // Retrieving string response code
+                responseCode = connection.getResponseCode();
+                timeToFirstByte = System.nanoTime() - startTime;
+                boolean wasSuccessful = (responseCode / 100) == 2;
+
+                // Retrieving the response string
+                if (responseCode != HttpURLConnection.HTTP_NO_CONTENT) {
+                    try {
+
+                        InputStream is = (wasSuccessful) ? connection.getInputStream() : connection.getErrorStream();
+                        BufferedInputStream bis = new BufferedInputStream(is);
+                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                        int data = 0;
+                        while ((data = bis.read()) != -1) baos.write(data);
+
+                        is.close();
+                        responseSize = baos.size();
+                        responseString = new String(baos.toByteArray());
+                    }
+                    catch (Exception e) {
+                        if (!isCancelled) Log.error(HttpRequest.class, e);
+                    }
                 }
-                catch (Exception e) {
-                    e.printStackTrace();
+
+                // Cleaning up
+                connection.disconnect();
+            }
+            catch (Exception e) {
+                if (!isCancelled) Log.error(HttpRequest.class, e);
+
+                fail(e);
+            }
+
+            latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+            Events.commitHttpRequest(event, method.name(), url, responseCode, connectTime, timeToFirstByte, responseSize);
+
+            if (permit != null) {
+                if (isCancelled) {
+                    permit.abandon();
+                } else {
+                    boolean isOverloaded = responseCode == 429 || responseCode == HttpURLConnection.HTTP_UNAVAILABLE;
+                    permit.release(exception != null || isOverloaded);
                 }
             }
 
-            // Cleaning up
-            connection.disconnect();
+            return this;
         }
-        catch (Exception e) {
-            e.printStackTrace();
 
-            wasSuccessful = false;
+        private Attempt fail(Exception e) {
             responseCode = -1;
             responseString = e.getMessage();
+            exception = e;
+
+            return this;
         }
 
-        if (callback != null) callback.onRequestComplete(this);
+        private void cancel() {
+            isCancelled = true;
+            if (permit != null) permit.abandon();
+
+            HttpURLConnection connection = this.connection;
+            if (connection != null) connection.disconnect();
+        }
     }
 
-    private HttpURLConnection generateConnection() throws Exception {
+    private HttpURLConnection generateConnection(Attempt attempt) throws Exception {
         // Creating proper request string and java URL instance
         boolean isGetRequest = method == Method.GET;
         boolean hasParams = params != null && !params.trim().isEmpty();
@@ -221,6 +492,7 @@ public class HttpRequest {
 
         // Setting up the http connection
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        attempt.connection = connection;
         connection.setRequestMethod(method.name());
         connection.setDoInput(true);
         connection.setDoOutput(!isGetRequest && hasParams);
@@ -239,8 +511,12 @@ public class HttpRequest {
 
 //        conn.setRequestProperty("X-HTTP-Method-Override", "PATCH");   // TODO url special properties support
 
-        // Establishing connection
+        // Establishing connection, unless the attempt lost its race in the meantime
+        if (attempt.isCancelled) throw new IOException("Request cancelled");
+
+        long connectStartTime = System.nanoTime();
         connection.connect();
+        attempt.connectTime = System.nanoTime() - connectStartTime;
 
         // Writing the url parameters to the output stream if necessary
         if (connection.getDoOutput()) {
@@ -275,7 +551,7 @@ public class HttpRequest {
                 params.add(item);
             }
             catch (Exception e) {
-                System.err.println("Something bad happened while trying to add param " + key + "=" + value + ": " + e.getMessage());
+                Log.warn(HttpRequest.class, "Something bad happened while trying to add param {}: {}", key + "=" + value, e.getMessage());
             }
 
             return this;
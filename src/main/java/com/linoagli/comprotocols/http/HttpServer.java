@@ -0,0 +1,1108 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import com.linoagli.comprotocols.BufferPool;
+import com.linoagli.comprotocols.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small embedded HTTP/1.1 server, the counterpart of {@link HttpRequest}.
+ *
+ * Connections are accepted on a thread of their own and handed to a few selector threads, which read and write
+ * them without blocking. Connections are kept alive between requests, and pipelined requests are answered in the
+ * order they arrived even when they are answered out of order. Request bodies, sized or chunked, are parsed as
+ * they arrive into pooled buffers, and files are sent straight from the file system to the socket.
+ *
+ * Requests are dispatched to the first matching route, see {@link #route(HttpRequest.Method, String, Route)},
+ * or to the {@link Callback} otherwise. Routes and callbacks run on the selector threads, so they should answer
+ * quickly or hand the request off to another thread: a request can be answered once, at any time and from any
+ * thread.
+ */
+public class HttpServer {
+    public static final int DEFAULT_BACKLOG = 50;
+    public static final int DEFAULT_MAX_HEADER_SIZE = 16 * 1024;
+    public static final long DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
+    public static final int DEFAULT_MAX_PIPELINED_REQUESTS = 16;
+    public static final int DEFAULT_KEEP_ALIVE_TIME_OUT = 15000;
+    public static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_GATHERED_BUFFERS = 64;
+
+    private Callback callback;
+
+    private final List<RouteEntry> routes = new CopyOnWriteArrayList<>();
+    private ServerSocketChannel serverChannel;
+    private IncomingConnectionsThread incomingConnectionsThread;
+    private final List<SelectorThread> selectorThreads = new Vector<>();
+    private final AtomicInteger nextSelectorThread = new AtomicInteger();
+    private BufferPool bufferPool;
+    private int port;
+    private int backlog = DEFAULT_BACKLOG;
+    private int selectorCount = Runtime.getRuntime().availableProcessors();
+    private int maxHeaderSize = DEFAULT_MAX_HEADER_SIZE;
+    private long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+    private int maxPipelinedRequests = DEFAULT_MAX_PIPELINED_REQUESTS;
+    private int keepAliveTimeOut = DEFAULT_KEEP_ALIVE_TIME_OUT;
+
+    public HttpServer(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * @return the port this server instance is listening to, which is the port picked by the system if it was
+     * started on port <b>0</b>.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Sets the maximum length of the queue of incoming connections.
+     * This value defaults to <b>50</b>
+     *
+     * @param backlog the backlog
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * Sets the number of selector threads the connections are spread over. Takes effect on the next start.
+     * This value defaults to <b>the number of available processors</b>
+     *
+     * @param selectorCount the number of selector threads
+     */
+    public void setSelectorCount(int selectorCount) {
+        this.selectorCount = Math.max(1, selectorCount);
+    }
+
+    /**
+     * Sets the maximum size of a request's line and header fields. Larger requests are answered with a <i>431</i>.
+     * This value defaults to <b>16 KiB</b>
+     *
+     * @param maxHeaderSize the maximum size in bytes
+     */
+    public void setMaxHeaderSize(int maxHeaderSize) {
+        this.maxHeaderSize = maxHeaderSize;
+    }
+
+    /**
+     * Sets the maximum size of a request's body. Larger requests are answered with a <i>413</i>.
+     * This value defaults to <b>10 MiB</b>
+     *
+     * @param maxBodySize the maximum size in bytes
+     */
+    public void setMaxBodySize(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Sets the number of unanswered requests a connection may have. Past it, the connection isn't read from until
+     * some of its requests are answered.
+     * This value defaults to <b>16</b>
+     *
+     * @param maxPipelinedRequests the number of requests
+     */
+    public void setMaxPipelinedRequests(int maxPipelinedRequests) {
+        this.maxPipelinedRequests = Math.max(1, maxPipelinedRequests);
+    }
+
+    /**
+     * Sets how long an idle connection is kept open, waiting for its next request.
+     * This value defaults to <b>15000</b> milliseconds
+     *
+     * @param keepAliveTimeOut the time out in milliseconds
+     */
+    public void setKeepAliveTimeOut(int keepAliveTimeOut) {
+        this.keepAliveTimeOut = keepAliveTimeOut;
+    }
+
+    /**
+     * Adds a route. Requests are dispatched to the first route that matches their method and path, or to
+     * {@link Callback#onRequestReceived(Request)} if none does.
+     *
+     * @param method the method of the matching requests, or <b>null</b> for any method
+     * @param path the path of the matching requests, or a prefix of it when ending with <i>/*</i>
+     * @param route the route
+     */
+    public void route(HttpRequest.Method method, String path, Route route) {
+        routes.add(new RouteEntry(method, path, route));
+    }
+
+    /**
+     * Adds a route that serves the files of a directory, below the given path prefix, to <i>GET</i> and <i>HEAD</i>
+     * requests. The files are sent with {@link Request#respondFile(int, String, File)}.
+     *
+     * @param pathPrefix the path prefix, such as <i>/static</i>
+     * @param directory the directory
+     */
+    public void routeDirectory(String pathPrefix, File directory) {
+        String prefix = pathPrefix.endsWith("/") ? pathPrefix : pathPrefix + "/";
+
+        route(null, prefix + "*", request -> {
+            if (!request.getMethod().equals("GET") && !request.getMethod().equals("HEAD")) {
+                request.respond(405, "Method Not Allowed");
+                return;
+            }
+
+            try {
+                String path = URLDecoder.decode(request.getPath().substring(prefix.length()), HttpRequest.CHARSET_UTF_8);
+                File root = directory.getCanonicalFile();
+                File file = new File(root, path).getCanonicalFile();
+
+                // Paths climbing out of the directory are not served
+                if (!file.toPath().startsWith(root.toPath()) || !file.isFile()) {
+                    request.respond(404, "Not Found");
+                    return;
+                }
+
+                String contentType = URLConnection.guessContentTypeFromName(file.getName());
+                request.respondFile(200, (contentType != null) ? contentType : "application/octet-stream", file);
+            }
+            catch (Exception e) {
+                request.respond(400, "Bad Request");
+            }
+        });
+    }
+
+    /**
+     * @return the number of open connections.
+     */
+    public int getConnectionCount() {
+        int count = 0;
+
+        synchronized (selectorThreads) {
+            for (SelectorThread thread : selectorThreads) count += thread.connectionCount;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return whether or not this server instance is up and running (listening for incoming connections and requests)
+     */
+    public boolean isRunning() {
+        return incomingConnectionsThread != null && incomingConnectionsThread.isRunning;
+    }
+
+    /**
+     * Boots up this server instance and starts listening for incoming HTTP connections.
+     *
+     * @param port the port this server is listening to, or <b>0</b> to let the system pick one
+     */
+    public void start(int port) {
+        try {
+            bufferPool = new BufferPool(1024);
+
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.bind(new InetSocketAddress(port), backlog);
+            this.port = serverChannel.socket().getLocalPort();
+
+            for (int i = 0; i < selectorCount; i++) {
+                SelectorThread thread = new SelectorThread();
+                selectorThreads.add(thread);
+                thread.start();
+            }
+
+            incomingConnectionsThread = new IncomingConnectionsThread();
+            incomingConnectionsThread.start();
+        }
+        catch (Exception e) {
+            Log.error(HttpServer.class, e);
+            stop();
+        }
+    }
+
+    /**
+     * This will close all connections, power down the server instance and clean up all resources.
+     */
+    public void stop() {
+        if (incomingConnectionsThread != null) {
+            incomingConnectionsThread.cancel();
+            incomingConnectionsThread = null;
+        }
+
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                Log.error(HttpServer.class, e);
+            }
+
+            serverChannel = null;
+        }
+
+        synchronized (selectorThreads) {
+            for (SelectorThread thread : selectorThreads) thread.cancel();
+            selectorThreads.clear();
+        }
+    }
+
+    private void dispatch(Request request) {
+        try {
+            for (RouteEntry entry : routes) {
+                if (entry.matches(request)) {
+                    entry.route.onRequest(request);
+                    return;
+                }
+            }
+
+            if (callback != null) {
+                callback.onRequestReceived(request);
+            } else {
+                request.respond(404, "Not Found");
+            }
+        }
+        catch (Exception e) {
+            Log.error(HttpServer.class, e);
+
+            if (!request.isAnswered()) request.respond(500, "Internal Server Error");
+        }
+    }
+
+    private static String getReasonPhrase(int status) {
+        switch (status) {
+            case 100: return "Continue";
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 408: return "Request Timeout";
+            case 409: return "Conflict";
+            case 413: return "Payload Too Large";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 502: return "Bad Gateway";
+            case 503: return "Service Unavailable";
+            case 504: return "Gateway Timeout";
+            case 505: return "HTTP Version Not Supported";
+            default: return "";
+        }
+    }
+
+    /**
+     * A request received by the server. The request can be answered once, at any time and from any thread; the
+     * responses to the pipelined requests of a connection are sent in the order the requests were received.
+     *
+     * The body is held in pooled buffers that are given back once the request is answered, so it has to be read
+     * before then.
+     */
+    public static class Request {
+        private final Connection connection;
+        private final RequestParser.ParsedRequest parsed;
+        private final Output output;
+        private final AtomicBoolean isAnswered = new AtomicBoolean(false);
+        private final Map<String, String> responseHeaders = new HashMap<>();
+        private Map<String, String> parameters;
+        private byte[] body;
+
+        private Request(Connection connection, RequestParser.ParsedRequest parsed, Output output) {
+            this.connection = connection;
+            this.parsed = parsed;
+            this.output = output;
+        }
+
+        /**
+         * @return the request method, such as <i>GET</i>.
+         */
+        public String getMethod() {
+            return parsed.method;
+        }
+
+        /**
+         * @return the request target, as sent by the client: the path followed by the query string, if any.
+         */
+        public String getTarget() {
+            return parsed.target;
+        }
+
+        /**
+         * @return the path of the request target.
+         */
+        public String getPath() {
+            int question = parsed.target.indexOf('?');
+
+            return (question >= 0) ? parsed.target.substring(0, question) : parsed.target;
+        }
+
+        /**
+         * @return the query string of the request target, or <b>null</b> if it has none.
+         */
+        public String getQuery() {
+            int question = parsed.target.indexOf('?');
+
+            return (question >= 0) ? parsed.target.substring(question + 1) : null;
+        }
+
+        /**
+         * @param name the parameter name
+         * @return the decoded value of a query string parameter, or <b>null</b> if it is absent.
+         */
+        public synchronized String getParameter(String name) {
+            if (parameters == null) {
+                parameters = new HashMap<>();
+                String query = getQuery();
+
+                if (query != null) {
+                    for (String pair : query.split("&")) {
+                        int equals = pair.indexOf('=');
+
+                        try {
+                            String key = URLDecoder.decode((equals >= 0) ? pair.substring(0, equals) : pair, HttpRequest.CHARSET_UTF_8);
+                            String value = URLDecoder.decode((equals >= 0) ? pair.substring(equals + 1) : "", HttpRequest.CHARSET_UTF_8);
+                            parameters.putIfAbsent(key, value);
+                        }
+                        catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                            Log.debug(HttpServer.class, "HttpServer ignoring malformed query parameter: {}", pair);
+                        }
+                    }
+                }
+            }
+
+            return parameters.get(name);
+        }
+
+        /**
+         * @return the HTTP version of the request, such as <i>HTTP/1.1</i>.
+         */
+        public String getVersion() {
+            return parsed.version;
+        }
+
+        /**
+         * @param name the header name, in any case
+         * @return the header value, with the values of repeated headers separated by commas, or <b>null</b> if
+         * it is absent.
+         */
+        public String getHeader(String name) {
+            return parsed.headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        /**
+         * @return the request headers, with lower case names.
+         */
+        public Map<String, String> getHeaders() {
+            return Collections.unmodifiableMap(parsed.headers);
+        }
+
+        /**
+         * @return the address of the client.
+         */
+        public SocketAddress getRemoteAddress() {
+            return connection.remoteAddress;
+        }
+
+        /**
+         * @return the size of the request body in bytes.
+         */
+        public long getBodySize() {
+            return parsed.bodySize;
+        }
+
+        /**
+         * @return the request body, or an empty array once the request was answered.
+         */
+        public synchronized byte[] getBody() {
+            if (body == null) {
+                if (isAnswered()) return new byte[0];
+
+                body = new byte[(int) parsed.bodySize];
+                int offset = 0;
+
+                for (ByteBuffer buffer : parsed.body) {
+                    ByteBuffer view = buffer.duplicate();
+                    int count = view.remaining();
+
+                    view.get(body, offset, count);
+                    offset += count;
+                }
+            }
+
+            return body;
+        }
+
+        /**
+         * @return the request body as a string, decoded as UTF-8.
+         */
+        public String getBodyString() {
+            return new String(getBody(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return a stream over the request body that reads the pooled buffers without copying them first.
+         */
+        public synchronized InputStream getBodyStream() {
+            if (body != null || isAnswered()) return new ByteArrayInputStream(getBody());
+
+            List<InputStream> streams = new ArrayList<>();
+
+            for (ByteBuffer buffer : parsed.body) {
+                streams.add(new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+            }
+
+            return new SequenceInputStream(Collections.enumeration(streams));
+        }
+
+        /**
+         * Sets a header of the response. Content length and connection headers are set by the server.
+         *
+         * @param name the header name
+         * @param value the header value
+         */
+        public synchronized void setResponseHeader(String name, String value) {
+            responseHeaders.put(name, value);
+        }
+
+        /**
+         * @return whether or not the request was answered.
+         */
+        public boolean isAnswered() {
+            return isAnswered.get();
+        }
+
+        /**
+         * Answers the request with a plain text response.
+         *
+         * @param status the response status code
+         * @param body the response body
+         */
+        public void respond(int status, String body) {
+            respond(status, "text/plain; charset=utf-8", body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Answers the request.
+         *
+         * @param status the response status code
+         * @param contentType the content type of the body, or <b>null</b> if it has none
+         * @param body the response body
+         */
+        public void respond(int status, String contentType, byte[] body) {
+            if (!answer()) return;
+
+            ByteBuffer head = createHead(status, contentType, body.length);
+
+            if (parsed.method.equals("HEAD") || body.length == 0) {
+                output.buffers = new ByteBuffer[] { head };
+            } else {
+                output.buffers = new ByteBuffer[] { head, ByteBuffer.wrap(body) };
+            }
+
+            connection.onOutputReady(output);
+        }
+
+        /**
+         * Answers the request with the content of a file, which is sent straight from the file system to the
+         * socket without being copied through the JVM. The request is answered with a <i>404</i> if the file
+         * can't be read.
+         *
+         * @param status the response status code
+         * @param contentType the content type of the file
+         * @param file the file
+         */
+        public void respondFile(int status, String contentType, File file) {
+            FileChannel fileChannel;
+
+            try {
+                fileChannel = new FileInputStream(file).getChannel();
+            }
+            catch (IOException e) {
+                respond(404, "Not Found");
+                return;
+            }
+
+            if (!answer()) {
+                closeQuietly(fileChannel);
+                return;
+            }
+
+            try {
+                long size = fileChannel.size();
+
+                output.buffers = new ByteBuffer[] { createHead(status, contentType, size) };
+
+                if (parsed.method.equals("HEAD") || size == 0) {
+                    closeQuietly(fileChannel);
+                } else {
+                    output.file = fileChannel;
+                    output.fileEnd = size;
+                }
+            }
+            catch (IOException e) {
+                Log.error(HttpServer.class, e);
+                closeQuietly(fileChannel);
+                output.buffers = new ByteBuffer[] { createHead(500, null, 0) };
+            }
+
+            connection.onOutputReady(output);
+        }
+
+        private boolean answer() {
+            if (!isAnswered.compareAndSet(false, true)) {
+                Log.warn(HttpServer.class, "HTTP request {} {} was already answered. Response discarded.", parsed.method, parsed.target);
+                return false;
+            }
+
+            // The body buffers go back to the pool, unless a copy was asked for already
+            synchronized (this) {
+                for (ByteBuffer buffer : parsed.body) connection.server().bufferPool.release(buffer);
+                parsed.body.clear();
+            }
+
+            return true;
+        }
+
+        private synchronized ByteBuffer createHead(int status, String contentType, long contentLength) {
+            StringBuilder head = new StringBuilder(128);
+            head.append("HTTP/1.1 ").append(status).append(' ').append(getReasonPhrase(status)).append("\r\n");
+            head.append("Content-Length: ").append(contentLength).append("\r\n");
+
+            if (contentType != null) head.append("Content-Type: ").append(contentType).append("\r\n");
+
+            for (Map.Entry<String, String> header : responseHeaders.entrySet()) {
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+
+            if (!output.isKeepAlive) {
+                head.append("Connection: close\r\n");
+            } else if (parsed.version.equals("HTTP/1.0")) {
+                head.append("Connection: keep-alive\r\n");
+            }
+
+            head.append("\r\n");
+
+            return ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private static void closeQuietly(FileChannel fileChannel) {
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            Log.error(HttpServer.class, e);
+        }
+    }
+
+    /**
+     * A response waiting its turn to be written: the response head and body, and optionally a file region sent
+     * after them. Responses are filled in by whichever thread answers the request and only written by the
+     * connection's selector thread.
+     */
+    private static class Output {
+        private final boolean isKeepAlive;
+        private final boolean isInterim;
+        private volatile boolean isReady = false;
+        private ByteBuffer[] buffers;
+        private FileChannel file;
+        private long filePosition = 0;
+        private long fileEnd = 0;
+
+        private Output(boolean isKeepAlive, boolean isInterim) {
+            this.isKeepAlive = isKeepAlive;
+            this.isInterim = isInterim;
+        }
+
+        private boolean areBuffersWritten() {
+            for (ByteBuffer buffer : buffers) {
+                if (buffer.hasRemaining()) return false;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * A client connection, only ever read from and written to by its selector thread.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectorThread selectorThread;
+        private final SocketAddress remoteAddress;
+        private final RequestParser parser;
+        private final ArrayDeque<Output> outputs = new ArrayDeque<>();
+        private SelectionKey key;
+        private int pendingRequests = 0;
+        private boolean isReadPaused = false;
+        private boolean isReadClosed = false;
+        private boolean isOpen = true;
+        private long lastActivityTime = System.currentTimeMillis();
+
+        private Connection(SocketChannel channel, SelectorThread selectorThread) throws IOException {
+            this.channel = channel;
+            this.selectorThread = selectorThread;
+            this.remoteAddress = channel.getRemoteAddress();
+            this.parser = new RequestParser(bufferPool, maxHeaderSize, maxBodySize);
+        }
+
+        private HttpServer server() {
+            return HttpServer.this;
+        }
+
+        private void onReadable(ByteBuffer readBuffer) {
+            int count;
+
+            try {
+                readBuffer.clear();
+                count = channel.read(readBuffer);
+            }
+            catch (IOException e) {
+                close();
+                return;
+            }
+
+            if (count < 0) {
+                close();
+                return;
+            }
+
+            lastActivityTime = System.currentTimeMillis();
+            readBuffer.flip();
+
+            try {
+                while (readBuffer.hasRemaining() && !isReadClosed) {
+                    RequestParser.ParsedRequest parsed = parser.parse(readBuffer);
+
+                    if (parsed == null) {
+                        if (parser.takeContinueExpected()) queueContinue();
+                        break;
+                    }
+
+                    Output output = new Output(parsed.isKeepAlive, false);
+                    outputs.add(output);
+                    pendingRequests++;
+
+                    // Requests past a non persistent one are not read
+                    if (!parsed.isKeepAlive) isReadClosed = true;
+
+                    dispatch(new Request(this, parsed, output));
+                }
+            }
+            catch (RequestParser.BadRequestException e) {
+                parser.release();
+                isReadClosed = true;
+
+                Output output = new Output(false, false);
+                byte[] body = e.getMessage().getBytes(StandardCharsets.UTF_8);
+                String head = "HTTP/1.1 " + e.status + " " + getReasonPhrase(e.status) + "\r\n"
+                        + "Content-Length: " + body.length + "\r\n"
+                        + "Content-Type: text/plain; charset=utf-8\r\n"
+                        + "Connection: close\r\n\r\n";
+                output.buffers = new ByteBuffer[] { ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1)), ByteBuffer.wrap(body) };
+                output.isReady = true;
+                outputs.add(output);
+            }
+
+            if (isReadClosed || pendingRequests >= maxPipelinedRequests) pauseReading();
+
+            flush();
+        }
+
+        private void queueContinue() {
+            Output output = new Output(true, true);
+            output.buffers = new ByteBuffer[] { ByteBuffer.wrap("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)) };
+            output.isReady = true;
+            outputs.add(output);
+        }
+
+        /**
+         * Called by whichever thread answered a request. Answers given on the selector thread, while it reads, are
+         * written together once it is done reading.
+         */
+        private void onOutputReady(Output output) {
+            output.isReady = true;
+
+            if (Thread.currentThread() == selectorThread) {
+                if (!selectorThread.isReading) flush();
+            } else {
+                selectorThread.execute(this::flush);
+            }
+        }
+
+        private void flush() {
+            if (!isOpen) {
+                closeOutputs();
+                return;
+            }
+
+            try {
+                while (!outputs.isEmpty()) {
+                    Output first = outputs.peek();
+
+                    if (!first.isReady) break;
+
+                    if (first.file == null) {
+                        // Responses that are ready back to back are written with a single gathering write
+                        List<ByteBuffer> buffers = new ArrayList<>();
+
+                        for (Output output : outputs) {
+                            if (!output.isReady || output.file != null || buffers.size() >= MAX_GATHERED_BUFFERS) break;
+
+                            Collections.addAll(buffers, output.buffers);
+                            if (!output.isKeepAlive) break;
+                        }
+
+                        channel.write(buffers.toArray(new ByteBuffer[0]));
+                        lastActivityTime = System.currentTimeMillis();
+
+                        while (!outputs.isEmpty() && outputs.peek().isReady && outputs.peek().file == null
+                                && outputs.peek().areBuffersWritten()) {
+                            if (!complete(outputs.poll())) return;
+                        }
+
+                        if (!outputs.isEmpty() && outputs.peek() == first) {
+                            waitForWritable();
+                            return;
+                        }
+                    } else {
+                        if (!first.areBuffersWritten()) {
+                            channel.write(first.buffers);
+
+                            if (!first.areBuffersWritten()) {
+                                waitForWritable();
+                                return;
+                            }
+                        }
+
+                        while (first.filePosition < first.fileEnd) {
+                            long count = first.file.transferTo(first.filePosition, first.fileEnd - first.filePosition, channel);
+
+                            if (count <= 0) {
+                                waitForWritable();
+                                return;
+                            }
+
+                            first.filePosition += count;
+                            lastActivityTime = System.currentTimeMillis();
+                        }
+
+                        closeQuietly(first.file);
+                        first.file = null;
+
+                        if (!complete(outputs.poll())) return;
+                    }
+                }
+
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+
+                if (isReadPaused && !isReadClosed && pendingRequests < maxPipelinedRequests) {
+                    isReadPaused = false;
+                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                }
+            }
+            catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * @return whether or not the connection is still open after the response.
+         */
+        private boolean complete(Output output) {
+            if (!output.isInterim) pendingRequests--;
+
+            if (!output.isKeepAlive) {
+                close();
+                return false;
+            }
+
+            return true;
+        }
+
+        private void waitForWritable() {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+
+        private void pauseReading() {
+            if (isReadPaused) return;
+
+            isReadPaused = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+
+        private boolean isIdle(long now) {
+            return outputs.isEmpty() && now - lastActivityTime > keepAliveTimeOut;
+        }
+
+        private void close() {
+            if (!isOpen) return;
+
+            isOpen = false;
+            selectorThread.connections.remove(this);
+            selectorThread.connectionCount = selectorThread.connections.size();
+            parser.release();
+
+            if (key != null) key.cancel();
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.error(HttpServer.class, e);
+            }
+
+            closeOutputs();
+        }
+
+        private void closeOutputs() {
+            for (Output output : outputs) {
+                if (output.isReady && output.file != null) {
+                    closeQuietly(output.file);
+                    output.file = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * This thread is in charge of waiting for new incoming connections and handing them to the selector threads,
+     * one after the other.
+     */
+    private class IncomingConnectionsThread extends Thread {
+        private volatile boolean runLoop = true;
+        private volatile boolean isRunning = false;
+
+        @Override
+        public void run() {
+            isRunning = true;
+
+            while (runLoop) {
+                try {
+                    if (callback != null) callback.onWaitingForConnection(port);
+
+                    SocketChannel channel = serverChannel.accept();
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+
+                    SelectorThread thread = selectorThreads.get(Math.floorMod(nextSelectorThread.getAndIncrement(), selectorThreads.size()));
+                    thread.register(channel);
+                }
+                catch (Exception e) {
+                    if (!runLoop) break;
+
+                    if (e instanceof IOException) {
+                        Log.info(HttpServer.class, "{}", e.getMessage());
+                    } else {
+                        Log.error(HttpServer.class, e);
+                    }
+                }
+            }
+
+            isRunning = false;
+        }
+
+        private void cancel() {
+            runLoop = false;
+        }
+    }
+
+    /**
+     * This thread is in charge of reading requests from, and writing responses to, its share of the connections.
+     * Idle connections are closed once they pass the keep alive time out.
+     */
+    private class SelectorThread extends Thread {
+        private final long SWEEP_INTERVAL = 1000;
+        private final Selector selector;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Set<Connection> connections = new HashSet<>();
+        private volatile int connectionCount = 0;
+        private volatile boolean runLoop = true;
+        private boolean isReading = false;
+
+        private SelectorThread() throws IOException {
+            selector = Selector.open();
+        }
+
+        private void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    Connection connection = new Connection(channel, this);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    connections.add(connection);
+                    connectionCount = connections.size();
+                }
+                catch (IOException e) {
+                    Log.error(HttpServer.class, e);
+
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {}
+                }
+            });
+        }
+
+        private void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long lastSweepTime = System.currentTimeMillis();
+
+            while (runLoop) {
+                try {
+                    selector.select(SWEEP_INTERVAL);
+
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) task.run();
+
+                    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+
+                    while (iterator.hasNext()) {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+
+                        Connection connection = (Connection) key.attachment();
+
+                        if (!key.isValid()) continue;
+
+                        if (key.isWritable()) connection.flush();
+
+                        if (key.isValid() && key.isReadable()) {
+                            isReading = true;
+                            connection.onReadable(readBuffer);
+                            isReading = false;
+                        }
+                    }
+
+                    long now = System.currentTimeMillis();
+
+                    if (now - lastSweepTime >= SWEEP_INTERVAL) {
+                        lastSweepTime = now;
+
+                        for (Connection connection : new ArrayList<>(connections)) {
+                            if (connection.isIdle(now)) connection.close();
+                        }
+                    }
+                }
+                catch (Exception e) {
+                    isReading = false;
+                    Log.error(HttpServer.class, e);
+                }
+            }
+
+            for (Connection connection : new ArrayList<>(connections)) connection.close();
+
+            try {
+                selector.close();
+            } catch (IOException e) {
+                Log.error(HttpServer.class, e);
+            }
+        }
+
+        private void cancel() {
+            runLoop = false;
+            selector.wakeup();
+        }
+    }
+
+    private static class RouteEntry {
+        private final HttpRequest.Method method;
+        private final String path;
+        private final boolean isPrefix;
+        private final Route route;
+
+        private RouteEntry(HttpRequest.Method method, String path, Route route) {
+            this.method = method;
+            this.isPrefix = path.endsWith("/*");
+            this.path = isPrefix ? path.substring(0, path.length() - 1) : path;
+            this.route = route;
+        }
+
+        private boolean matches(Request request) {
+            if (method != null && !method.name().equals(request.getMethod())) return false;
+
+            String requestPath = request.getPath();
+
+            return isPrefix ? requestPath.startsWith(path) : requestPath.equals(path);
+        }
+    }
+
+    /**
+     * A request handler for the requests matching a route, see {@link HttpServer#route(HttpRequest.Method, String, Route)}.
+     */
+    public interface Route {
+        /**
+         * Handles a request matching the route. The request can be answered right away or later, from any thread.
+         *
+         * @param request the request
+         */
+        public void onRequest(Request request);
+    }
+
+    /**
+     * The HTTP server callback interface.
+     */
+    public interface Callback {
+        /**
+         * Notifies the object implementing this interface that the HttpServer is currently waiting for an incoming
+         * connection.
+         *
+         * @param port the port number that the server is listening to
+         */
+        public void onWaitingForConnection(int port);
+
+        /**
+         * Notifies the object implementing this interface that the server received a request that matches none of
+         * its routes. The request can be answered right away or later, from any thread.
+         *
+         * By default, the request is answered with a <i>404</i>.
+         *
+         * @param request the request
+         */
+        public default void onRequestReceived(Request request) {
+            request.respond(404, "Not Found");
+        }
+    }
+}
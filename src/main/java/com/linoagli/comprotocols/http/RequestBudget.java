@@ -0,0 +1,39 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+/**
+ * Caps the extra requests sent on top of the original ones, such as retries or hedges, to a ratio of them. Every
+ * request deposits the ratio into the budget and every extra request withdraws one; a small reserve lets the
+ * first extra requests through before any deposit was made.
+ */
+class RequestBudget {
+    private final double maxBalance;
+    private double ratio;
+    private double balance;
+
+    RequestBudget(double ratio, double maxBalance) {
+        this.ratio = ratio;
+        this.maxBalance = maxBalance;
+        this.balance = maxBalance;
+    }
+
+    synchronized void setRatio(double ratio) {
+        this.ratio = ratio;
+    }
+
+    synchronized void deposit() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        if (balance < 1) return false;
+
+        balance -= 1;
+        return true;
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import com.linoagli.comprotocols.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An incremental HTTP/1.1 request parser. Bytes are fed as they are read off the connection, in pieces of any size,
+ * and a request is handed out every time one is complete; the bytes left in the buffer belong to the next pipelined
+ * request. Bodies, sized or chunked, are copied into buffers taken from a {@link BufferPool}.
+ */
+class RequestParser {
+    private enum State { HEAD, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, TRAILERS }
+
+    private static final int MAX_LINE_SIZE = 1024;
+
+    private final BufferPool pool;
+    private final int maxHeadSize;
+    private final long maxBodySize;
+
+    private State state = State.HEAD;
+    private byte[] head = new byte[512];
+    private int headSize = 0;
+    private final StringBuilder line = new StringBuilder();
+    private int trailersSize = 0;
+
+    private String method;
+    private String target;
+    private String version;
+    private Map<String, String> headers;
+    private boolean isKeepAlive;
+    private boolean isContinueExpected;
+    private long remaining;
+    private long bodySize;
+    private List<ByteBuffer> body;
+
+    RequestParser(BufferPool pool, int maxHeadSize, long maxBodySize) {
+        this.pool = pool;
+        this.maxHeadSize = maxHeadSize;
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Consumes bytes from the buffer until a request is complete or the buffer is empty.
+     *
+     * @return the complete request, or <b>null</b> if more bytes are needed.
+     * @throws BadRequestException if the bytes are not a valid request
+     */
+    ParsedRequest parse(ByteBuffer in) throws BadRequestException {
+        while (in.hasRemaining()) {
+            switch (state) {
+                case HEAD:
+                    if (readHead(in)) {
+                        parseHead();
+
+                        if (state == State.HEAD) return complete();
+                    }
+                    break;
+
+                case BODY:
+                    copyBody(in);
+
+                    if (remaining == 0) return complete();
+                    break;
+
+                case CHUNK_SIZE:
+                    if (readLine(in)) {
+                        parseChunkSize();
+                    }
+                    break;
+
+                case CHUNK_DATA:
+                    copyBody(in);
+
+                    if (remaining == 0) state = State.CHUNK_DATA_END;
+                    break;
+
+                case CHUNK_DATA_END:
+                    if (readLine(in)) {
+                        if (line.length() != 0) throw new BadRequestException(400, "Malformed chunk");
+
+                        line.setLength(0);
+                        state = State.CHUNK_SIZE;
+                    }
+                    break;
+
+                case TRAILERS:
+                    if (readLine(in)) {
+                        // Trailer fields are read and dropped
+                        if (line.length() == 0) return complete();
+
+                        trailersSize += line.length();
+                        line.setLength(0);
+
+                        if (trailersSize > maxHeadSize) throw new BadRequestException(431, "Trailers too large");
+                    }
+                    break;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return whether or not the head of the request being parsed asked for a <i>100 Continue</i> response before
+     * its body is sent. The flag is cleared by this call.
+     */
+    boolean takeContinueExpected() {
+        boolean isContinueExpected = this.isContinueExpected;
+        this.isContinueExpected = false;
+
+        return isContinueExpected;
+    }
+
+    /**
+     * Gives the body buffers of the request being parsed back to the pool.
+     */
+    void release() {
+        if (body != null) {
+            for (ByteBuffer buffer : body) pool.release(buffer);
+            body = null;
+        }
+    }
+
+    private boolean readHead(ByteBuffer in) throws BadRequestException {
+        while (in.hasRemaining()) {
+            byte b = in.get();
+
+            // Empty lines ahead of a request line are ignored
+            if (headSize == 0 && (b == '\r' || b == '\n')) continue;
+
+            if (headSize == head.length) {
+                if (headSize >= maxHeadSize) throw new BadRequestException(431, "Request header fields too large");
+
+                byte[] grown = new byte[Math.min(maxHeadSize, head.length * 2)];
+                System.arraycopy(head, 0, grown, 0, headSize);
+                head = grown;
+            }
+
+            head[headSize++] = b;
+
+            if (b == '\n' && headSize >= 2) {
+                if (head[headSize - 2] == '\n') return true;
+                if (headSize >= 4 && head[headSize - 2] == '\r' && head[headSize - 3] == '\n') return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void parseHead() throws BadRequestException {
+        String[] lines = new String(head, 0, headSize, StandardCharsets.ISO_8859_1).split("\r?\n");
+        headSize = 0;
+
+        String[] requestLine = lines[0].split(" ");
+
+        if (requestLine.length != 3 || requestLine[0].isEmpty() || requestLine[1].isEmpty()) {
+            throw new BadRequestException(400, "Malformed request line");
+        }
+
+        method = requestLine[0];
+        target = requestLine[1];
+        version = requestLine[2];
+
+        if (!version.startsWith("HTTP/1.")) throw new BadRequestException(505, "HTTP version not supported");
+
+        headers = new LinkedHashMap<>();
+
+        for (int i = 1; i < lines.length; i++) {
+            String header = lines[i];
+            int colon = header.indexOf(':');
+
+            // Folded header values are obsolete and rejected, as the specification allows
+            if (colon <= 0 || header.charAt(0) == ' ' || header.charAt(0) == '\t') {
+                throw new BadRequestException(400, "Malformed header field");
+            }
+
+            String name = header.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = header.substring(colon + 1).trim();
+
+            headers.merge(name, value, (previous, next) -> previous + ", " + next);
+        }
+
+        String connection = headers.getOrDefault("connection", "").toLowerCase(Locale.ROOT);
+        isKeepAlive = version.equals("HTTP/1.0") ? connection.contains("keep-alive") : !connection.contains("close");
+
+        String transferEncoding = headers.get("transfer-encoding");
+        String contentLength = headers.get("content-length");
+        bodySize = 0;
+
+        if (transferEncoding != null) {
+            if (!transferEncoding.toLowerCase(Locale.ROOT).endsWith("chunked")) {
+                throw new BadRequestException(501, "Transfer encoding not supported");
+            }
+
+            state = State.CHUNK_SIZE;
+        } else if (contentLength != null) {
+            try {
+                remaining = Long.parseLong(contentLength);
+            }
+            catch (NumberFormatException e) {
+                throw new BadRequestException(400, "Malformed content length");
+            }
+
+            if (remaining < 0) throw new BadRequestException(400, "Malformed content length");
+            if (remaining > maxBodySize) throw new BadRequestException(413, "Request body too large");
+
+            state = (remaining > 0) ? State.BODY : State.HEAD;
+        } else {
+            state = State.HEAD;
+        }
+
+        isContinueExpected = state != State.HEAD && "100-continue".equalsIgnoreCase(headers.get("expect"));
+    }
+
+    private boolean readLine(ByteBuffer in) throws BadRequestException {
+        while (in.hasRemaining()) {
+            char c = (char) (in.get() & 0xFF);
+
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+
+                return true;
+            }
+
+            if (line.length() >= MAX_LINE_SIZE) throw new BadRequestException(400, "Chunk line too long");
+
+            line.append(c);
+        }
+
+        return false;
+    }
+
+    private void parseChunkSize() throws BadRequestException {
+        String size = line.toString();
+        line.setLength(0);
+
+        // Chunk extensions are ignored
+        int semicolon = size.indexOf(';');
+        if (semicolon >= 0) size = size.substring(0, semicolon);
+
+        try {
+            remaining = Long.parseLong(size.trim(), 16);
+        }
+        catch (NumberFormatException e) {
+            throw new BadRequestException(400, "Malformed chunk size");
+        }
+
+        if (remaining < 0) throw new BadRequestException(400, "Malformed chunk size");
+        if (bodySize + remaining > maxBodySize) throw new BadRequestException(413, "Request body too large");
+
+        if (remaining == 0) {
+            trailersSize = 0;
+            state = State.TRAILERS;
+        } else {
+            state = State.CHUNK_DATA;
+        }
+    }
+
+    private void copyBody(ByteBuffer in) {
+        if (body == null) body = new ArrayList<>();
+
+        while (remaining > 0 && in.hasRemaining()) {
+            ByteBuffer buffer = body.isEmpty() ? null : body.get(body.size() - 1);
+
+            if (buffer == null || !buffer.hasRemaining()) {
+                buffer = pool.acquire();
+                body.add(buffer);
+            }
+
+            int count = (int) Math.min(remaining, Math.min(in.remaining(), buffer.remaining()));
+            int limit = in.limit();
+
+            in.limit(in.position() + count);
+            buffer.put(in);
+            in.limit(limit);
+
+            remaining -= count;
+            bodySize += count;
+        }
+    }
+
+    private ParsedRequest complete() {
+        List<ByteBuffer> body = (this.body != null) ? this.body : new ArrayList<>();
+
+        for (ByteBuffer buffer : body) buffer.flip();
+
+        ParsedRequest request = new ParsedRequest(method, target, version, headers, isKeepAlive, body, bodySize);
+
+        this.state = State.HEAD;
+        this.line.setLength(0);
+        this.headers = null;
+        this.body = null;
+        this.isContinueExpected = false;
+
+        return request;
+    }
+
+    /**
+     * The parts of a complete request.
+     */
+    static class ParsedRequest {
+        final String method;
+        final String target;
+        final String version;
+        final Map<String, String> headers;
+        final boolean isKeepAlive;
+        final List<ByteBuffer> body;
+        final long bodySize;
+
+        private ParsedRequest(String method, String target, String version, Map<String, String> headers,
+                              boolean isKeepAlive, List<ByteBuffer> body, long bodySize) {
+            this.method = method;
+            this.target = target;
+            this.version = version;
+            this.headers = headers;
+            this.isKeepAlive = isKeepAlive;
+            this.body = body;
+            this.bodySize = bodySize;
+        }
+    }
+
+    /**
+     * Thrown when the bytes received are not a valid request. The connection is answered with the exception's
+     * status code and closed.
+     */
+    static class BadRequestException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed {@link HttpRequest} is sent again.
+ *
+ * A request is retried when it failed with an I/O error, such as a refused connection or a time out, or when the
+ * server answered 429, 502, 503 or 504. Only idempotent methods are retried unless told otherwise, since a request
+ * that timed out may well have been processed. Retries wait for an exponential backoff with full jitter, so that
+ * clients failing together don't retry together, and are capped by a budget: on top of a small reserve, retries may
+ * not exceed a ratio of the requests sent through the policy, which keeps retries from piling onto an upstream that
+ * is already failing.
+ *
+ * A single policy is meant to be shared by all requests, see {@link HttpRequest#setDefaultRetryPolicy(RetryPolicy)}.
+ */
+public class RetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF = 100;
+    public static final long DEFAULT_MAX_BACKOFF = 2000;
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    public static final int BUDGET_RESERVE = 10;
+
+    private final RequestBudget budget = new RequestBudget(DEFAULT_BUDGET_RATIO, BUDGET_RESERVE);
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private volatile long maxBackoff = DEFAULT_MAX_BACKOFF;
+    private volatile boolean retryNonIdempotent = false;
+
+    /**
+     * Sets the maximum number of times a request is sent, the first time included.
+     * This value defaults to <b>3</b>
+     *
+     * @param maxAttempts the number of attempts
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Sets the backoff bounds. The n-th retry waits a random delay of up to the initial backoff times 2^(n-1),
+     * capped to the maximum backoff.
+     * These values default to <b>100</b> and <b>2000</b> milliseconds
+     *
+     * @param initialBackoff the initial backoff in milliseconds
+     * @param maxBackoff the maximum backoff in milliseconds
+     */
+    public void setBackoff(long initialBackoff, long maxBackoff) {
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Sets the ratio of retries to requests the budget allows, on top of a reserve of 10 retries.
+     * This value defaults to <b>0.1</b>
+     *
+     * @param budgetRatio the ratio
+     */
+    public void setBudgetRatio(double budgetRatio) {
+        budget.setRatio(budgetRatio);
+    }
+
+    /**
+     * Sets whether or not requests with methods that are not idempotent, <i>POST</i> and <i>PATCH</i>, are retried.
+     * This value defaults to <b>false</b>
+     *
+     * @param retryNonIdempotent whether or not to retry them
+     */
+    public void setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+    }
+
+    /**
+     * @param method a request method
+     * @return whether or not sending a request with this method several times has the same effect as sending it once.
+     */
+    public static boolean isIdempotent(HttpRequest.Method method) {
+        return method != HttpRequest.Method.POST && method != HttpRequest.Method.PATCH;
+    }
+
+    void onRequest() {
+        budget.deposit();
+    }
+
+    /**
+     * @return the delay to wait before the retry, or <b>-1</b> if the request should not be retried.
+     */
+    long getRetryDelay(HttpRequest.Method method, int attempt, int responseCode, Exception exception) {
+        if (attempt >= maxAttempts) return -1;
+        if (!retryNonIdempotent && !isIdempotent(method)) return -1;
+        if (!isRetryable(responseCode, exception)) return -1;
+        if (!budget.tryWithdraw()) return -1;
+
+        long ceiling = Math.min(maxBackoff, initialBackoff << Math.min(attempt - 1, 30));
+
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    static boolean isRetryable(int responseCode, Exception exception) {
+        if (exception != null) {
+            // A malformed url or a name that doesn't resolve won't get any better
+            return exception instanceof IOException
+                    && !(exception instanceof MalformedURLException)
+                    && !(exception instanceof UnknownHostException);
+        }
+
+        return responseCode == 429
+                || responseCode == HttpURLConnection.HTTP_BAD_GATEWAY
+                || responseCode == HttpURLConnection.HTTP_UNAVAILABLE
+                || responseCode == HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
+    }
+}
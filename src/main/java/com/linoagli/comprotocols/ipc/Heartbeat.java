@@ -0,0 +1,84 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.ipc
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.ipc;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets each side of a shared memory connection notice that the other side's process died without closing it.
+ *
+ * Each side bumps a counter in the header of the ring it reads from at a fixed rate, on a timer thread shared by all
+ * the connections of the process, so the beat doesn't depend on how long callbacks take. The other side, which
+ * writes to that ring, watches the counter and gives up on the connection once it hasn't moved for longer than a
+ * time out. The counter is compared with its previous value rather than with a clock, so the two processes don't
+ * need to agree on the time.
+ *
+ * An instance watches one ring for one thread; it is not thread safe.
+ */
+class Heartbeat {
+    static final long INTERVAL = 100;
+
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "SharedMemory-Heartbeat");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+        TIMER.setKeepAliveTime(30, TimeUnit.SECONDS);
+        TIMER.allowCoreThreadTimeOut(true);
+    }
+
+    private final SharedMemoryRing ring;
+    private final long timeOut;
+    private long lastBeat;
+    private long lastBeatTime;
+
+    /**
+     * @param ring the ring the peer reads from
+     * @param timeOut how long the peer's counter may stay still, in milliseconds. <b>0</b> disables the check.
+     */
+    Heartbeat(SharedMemoryRing ring, long timeOut) {
+        this.ring = ring;
+        this.timeOut = TimeUnit.MILLISECONDS.toNanos(timeOut);
+        this.lastBeat = ring.getBeat();
+        this.lastBeatTime = System.nanoTime();
+    }
+
+    /**
+     * Starts beating on a ring this process reads from.
+     *
+     * @param ring the ring
+     * @return the task to cancel once the ring is closed
+     */
+    static ScheduledFuture<?> start(SharedMemoryRing ring) {
+        return TIMER.scheduleAtFixedRate(ring::beat, 0, INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return <b>false</b> once the peer's counter hasn't moved for longer than the time out.
+     */
+    boolean isAlive() {
+        if (timeOut <= 0) return true;
+
+        long beat = ring.getBeat();
+        long now = System.nanoTime();
+
+        if (beat != lastBeat) {
+            lastBeat = beat;
+            lastBeatTime = now;
+
+            return true;
+        }
+
+        return now - lastBeatTime <= timeOut;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.ipc
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.ipc;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides how a thread polling a ring waits when there is nothing to do: it first spins, which keeps latency below
+ * a microsecond, then yields, then parks for increasingly long periods so that idle connections cost next to no CPU.
+ */
+class Idler {
+    private static final int YIELD_COUNT = 100;
+    private static final long MIN_PARK_TIME = 1000; // 1 us
+    private static final long MAX_PARK_TIME = 1000 * 1000; // 1 ms
+    private static final boolean IS_MULTIPROCESSOR = Runtime.getRuntime().availableProcessors() > 1;
+
+    private final int spinCount;
+    private int idleCount = 0;
+    private long parkTime = MIN_PARK_TIME;
+
+    Idler(int spinCount) {
+        // Spinning on a single processor only delays the peer the thread is waiting for
+        this.spinCount = IS_MULTIPROCESSOR ? spinCount : 0;
+    }
+
+    void idle() {
+        if (idleCount < spinCount) {
+            idleCount++;
+        } else if (idleCount < spinCount + YIELD_COUNT) {
+            idleCount++;
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkTime);
+            parkTime = Math.min(parkTime * 2, MAX_PARK_TIME);
+        }
+    }
+
+    void reset() {
+        idleCount = 0;
+        parkTime = MIN_PARK_TIME;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.ipc
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.ipc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Ordered and volatile access to off-heap memory, which {@link ByteBuffer} does not offer before Java 9. The JVM's
+ * internal <i>Unsafe</i> is looked up reflectively, so that the library still compiles against the public Java 8
+ * API, and its methods are called through constant method handles that the JIT compiler inlines.
+ */
+final class MemoryAccess {
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle PUT_ORDERED_LONG;
+    private static final long BUFFER_ADDRESS_OFFSET;
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    static {
+        MethodHandle getLong = null;
+        MethodHandle getLongVolatile = null;
+        MethodHandle putOrderedLong = null;
+        long bufferAddressOffset = -1;
+        Throwable cause = null;
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType getType = MethodType.methodType(long.class, Object.class, long.class);
+
+            getLong = lookup.findVirtual(unsafeClass, "getLong", getType).bindTo(unsafe);
+            getLongVolatile = lookup.findVirtual(unsafeClass, "getLongVolatile", getType).bindTo(unsafe);
+            putOrderedLong = lookup.findVirtual(unsafeClass, "putOrderedLong",
+                    MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+
+            MethodHandle objectFieldOffset = lookup.findVirtual(unsafeClass, "objectFieldOffset",
+                    MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+            bufferAddressOffset = (long) objectFieldOffset.invoke(Buffer.class.getDeclaredField("address"));
+        } catch (Throwable t) {
+            cause = t;
+        }
+
+        GET_LONG = getLong;
+        GET_LONG_VOLATILE = getLongVolatile;
+        PUT_ORDERED_LONG = putOrderedLong;
+        BUFFER_ADDRESS_OFFSET = bufferAddressOffset;
+        UNAVAILABILITY_CAUSE = cause;
+    }
+
+    private MemoryAccess() {}
+
+    /**
+     * @throws UnsupportedOperationException if the JVM does not give access to off-heap memory
+     */
+    static void ensureAvailable() {
+        if (UNAVAILABILITY_CAUSE != null) {
+            throw new UnsupportedOperationException("Off-heap memory access is not available on this JVM", UNAVAILABILITY_CAUSE);
+        }
+    }
+
+    /**
+     * @param buffer a direct buffer
+     * @return the address of the buffer's first byte.
+     */
+    static long address(ByteBuffer buffer) {
+        if (!buffer.isDirect()) throw new IllegalArgumentException("Not a direct buffer");
+
+        try {
+            return (long) GET_LONG.invokeExact((Object) buffer, BUFFER_ADDRESS_OFFSET);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Reads a long with acquire semantics: reads made after this one are not moved ahead of it.
+     */
+    static long getLongVolatile(long address) {
+        try {
+            return (long) GET_LONG_VOLATILE.invokeExact((Object) null, address);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Writes a long with release semantics: writes made before this one are visible to a thread, or process, that
+     * reads this value with {@link #getLongVolatile(long)}.
+     */
+    static void putLongOrdered(long address, long value) {
+        try {
+            PUT_ORDERED_LONG.invokeExact((Object) null, address, value);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.ipc
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.ipc;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.Log;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Provides a client for a {@link SharedMemoryServer} running on the same host. It mirrors
+ * {@link com.linoagli.comprotocols.tcp.TCPClient}: queries are sent with {@link #query(String)} and responses are
+ * delivered through the callback.
+ */
+public class SharedMemoryClient {
+    public static final int DEFAULT_RING_CAPACITY = 1024 * 1024;
+    public static final long DEFAULT_CONNECT_TIME_OUT = 5000;
+
+    private Callback callback;
+
+    private File directory;
+    private int ringCapacity = DEFAULT_RING_CAPACITY;
+    private int spinCount = SharedMemoryServer.DEFAULT_SPIN_COUNT;
+    private long connectTimeOut = DEFAULT_CONNECT_TIME_OUT;
+    private long heartbeatTimeOut = SharedMemoryServer.DEFAULT_HEARTBEAT_TIME_OUT;
+
+    private volatile WorkerThread workerThread;
+
+    public SharedMemoryClient(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Sets the capacity of each of the connection's two rings, which bounds the size of a single message to half
+     * of it. Applies from the next call to {@link #connect(File)}.
+     *
+     * This value defaults to <b>1 MiB</b>
+     *
+     * @param ringCapacity the capacity in bytes, a power of two
+     */
+    public void setRingCapacity(int ringCapacity) {
+        this.ringCapacity = ringCapacity;
+    }
+
+    /**
+     * Sets the number of times the reading thread polls an empty ring before it starts yielding and parking.
+     * This value defaults to <b>10000</b>
+     *
+     * @param spinCount the number of polls
+     */
+    public void setSpinCount(int spinCount) {
+        this.spinCount = Math.max(0, spinCount);
+    }
+
+    /**
+     * Sets how long to wait for the server to pick up the connection.
+     * This value defaults to <b>5000</b> milliseconds
+     *
+     * @param connectTimeOut the time out delay in milliseconds
+     */
+    public void setConnectTimeOut(long connectTimeOut) {
+        this.connectTimeOut = connectTimeOut;
+    }
+
+    /**
+     * Sets how long the server's heartbeat may stop before its process is considered dead and the client
+     * disconnects. Applies from the next call to {@link #connect(File)}. <b>0</b> disables the check.
+     *
+     * This value defaults to <b>5000</b> milliseconds
+     *
+     * @param heartbeatTimeOut the time out delay in milliseconds
+     */
+    public void setHeartbeatTimeOut(long heartbeatTimeOut) {
+        this.heartbeatTimeOut = Math.max(0, heartbeatTimeOut);
+    }
+
+    /**
+     * @return the directory of the server this client connects to.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return whether or not this client is currently connected to a server.
+     */
+    public boolean isRunning() {
+        WorkerThread workerThread = this.workerThread;
+
+        return workerThread != null && workerThread.isRunning;
+    }
+
+    /**
+     * Attempt to connect to the shared memory server watching the given directory.
+     *
+     * @param directory the server's directory
+     */
+    public synchronized void connect(File directory) {
+        this.directory = directory;
+
+        disconnect();
+
+        workerThread = new WorkerThread();
+        workerThread.start();
+    }
+
+    /**
+     * Close this client's connection to the server.
+     */
+    public synchronized void disconnect() {
+        if (workerThread != null) {
+            workerThread.cancel();
+            workerThread = null;
+        }
+    }
+
+    /**
+     * Send a query to the server. When the server's ring is full, this waits for the server to catch up, or for
+     * its heartbeat to time out.
+     *
+     * @param query the query string
+     */
+    public void query(String query) {
+        send(query.getBytes());
+    }
+
+    /**
+     * Send a query to the server. When the server's ring is full, this waits for the server to catch up, or for
+     * its heartbeat to time out.
+     *
+     * @param query the query bytes
+     */
+    public void send(byte[] query) {
+        WorkerThread workerThread = this.workerThread;
+
+        if (workerThread == null || !workerThread.isRunning) {
+            Log.warn(SharedMemoryClient.class, "Shared memory client is not connected. Query discarded.");
+            return;
+        }
+
+        workerThread.send(query);
+    }
+
+    /**
+     * This thread sets up the connection's rings, waits for the server to pick them up and then reads responses.
+     *
+     * The thread owns its connection's rings and marker, so a worker that is still winding down after a disconnect
+     * can't touch the next connection's. {@link #cancel()} closes them and removes their files.
+     */
+    private class WorkerThread extends Thread {
+        private final File directory;
+        private final int ringCapacity;
+        private final int spinCount;
+        private final long connectTimeOut;
+        private final long heartbeatTimeOut;
+        private final Object lock = new Object();
+        private SharedMemoryRing in;
+        private SharedMemoryRing out;
+        private File marker;
+        private ScheduledFuture<?> heartbeat;
+        private volatile boolean runLoop = true;
+        private volatile boolean isRunning = false;
+
+        private WorkerThread() {
+            this.directory = SharedMemoryClient.this.directory;
+            this.ringCapacity = SharedMemoryClient.this.ringCapacity;
+            this.spinCount = SharedMemoryClient.this.spinCount;
+            this.connectTimeOut = SharedMemoryClient.this.connectTimeOut;
+            this.heartbeatTimeOut = SharedMemoryClient.this.heartbeatTimeOut;
+        }
+
+        @Override
+        public void run() {
+            if (init()) {
+                isRunning = true;
+
+                if (callback != null) callback.onConnected(directory);
+
+                Idler idler = new Idler(spinCount);
+                Heartbeat server = new Heartbeat(out, heartbeatTimeOut);
+                InetAddress address = InetAddress.getLoopbackAddress();
+
+                while (runLoop) {
+                    byte[] data = in.poll();
+
+                    if (data != null) {
+                        idler.reset();
+
+                        if (callback != null) callback.onDataReceived(new DataPacket(address, 0, data));
+                    } else if (in.isClosed()) {
+                        break;
+                    } else if (!server.isAlive()) {
+                        Log.warn(SharedMemoryClient.class, "Shared memory server at {} timed out.", directory);
+                        break;
+                    } else {
+                        idler.idle();
+                    }
+                }
+
+                isRunning = false;
+
+                cleanUp();
+
+                if (callback != null) callback.onDisconnected();
+            } else {
+                cleanUp();
+
+                if (callback != null) callback.onConnectionFailed(directory);
+            }
+        }
+
+        public void cancel() {
+            runLoop = false;
+
+            cleanUp();
+        }
+
+        private void send(byte[] query) {
+            Idler idler = new Idler(spinCount);
+            Heartbeat server = null;
+
+            synchronized (out) {
+                while (!out.offer(query, 0, query.length)) {
+                    if (!isRunning || out.isClosed()) {
+                        Log.warn(SharedMemoryClient.class, "Shared memory client is not connected. Query discarded.");
+                        return;
+                    }
+
+                    if (server == null) server = new Heartbeat(out, heartbeatTimeOut);
+
+                    if (!server.isAlive()) {
+                        Log.warn(SharedMemoryClient.class, "Shared memory server at {} timed out. Query discarded.", directory);
+                        cancel();
+                        return;
+                    }
+
+                    idler.idle();
+                }
+            }
+        }
+
+        private boolean init() {
+            try {
+                String id = UUID.randomUUID().toString().replace("-", "");
+
+                // Each file is published as soon as it exists, so that a cancel from another thread removes it
+                synchronized (lock) {
+                    if (!runLoop) return false;
+
+                    in = SharedMemoryRing.create(new File(directory, id + SharedMemoryServer.SERVER_TO_CLIENT_SUFFIX), ringCapacity);
+                    heartbeat = Heartbeat.start(in);
+                    out = SharedMemoryRing.create(new File(directory, id + SharedMemoryServer.CLIENT_TO_SERVER_SUFFIX), ringCapacity);
+
+                    // The marker is created last, once both rings are ready
+                    marker = new File(directory, id + SharedMemoryServer.CONNECT_SUFFIX);
+                    if (!marker.createNewFile()) return false;
+                }
+
+                long deadline = System.currentTimeMillis() + connectTimeOut;
+
+                while (!out.isAttached()) {
+                    if (!runLoop || System.currentTimeMillis() > deadline) return false;
+
+                    Thread.sleep(1);
+                }
+
+                return runLoop;
+            } catch (Exception e) {
+                Log.error(SharedMemoryClient.class, e);
+
+                return false;
+            }
+        }
+
+        private void cleanUp() {
+            synchronized (lock) {
+                if (marker != null) marker.delete();
+
+                if (heartbeat != null) heartbeat.cancel(false);
+
+                if (out != null) {
+                    out.markClosed();
+                    out.getFile().delete();
+                }
+
+                if (in != null) {
+                    in.markClosed();
+                    in.getFile().delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * The shared memory client events callback interface
+     */
+    public interface Callback {
+        /**
+         * Notifies the object implementing this interface that the client has successfully connected to the server
+         *
+         * @param directory the server's directory
+         */
+        public void onConnected(File directory);
+
+        /**
+         * Notifies the object implementing this interface that the connection attempt failed.
+         *
+         * @param directory the server's directory
+         */
+        public void onConnectionFailed(File directory);
+
+        /**
+         * Notifies the object implementing this interface that the client has been disconnected from its server.
+         */
+        public void onDisconnected();
+
+        /**
+         * Notifies the object implementing this interface that a data packet was received from the server.
+         * Called on the client's reading thread.
+         *
+         * @param dataPacket the data packet
+         */
+        public void onDataReceived(DataPacket dataPacket);
+    }
+}
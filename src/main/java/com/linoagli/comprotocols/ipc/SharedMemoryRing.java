@@ -0,0 +1,243 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.ipc
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.ipc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A single-producer, single-consumer ring buffer of messages living in a memory-mapped file, so that the producer
+ * and the consumer can be in different processes.
+ *
+ * The file starts with a header holding the ring's capacity and the producer's and consumer's positions, each on a
+ * cache line of its own, followed by the ring itself. Each message is stored as its length, a 4 byte integer,
+ * followed by its bytes, padded to 8 bytes. A message that doesn't fit before the end of the ring is preceded by a
+ * padding record and stored at the start.
+ *
+ * The header also holds flags telling whether each side attached or closed, and a counter the consumer bumps
+ * periodically to show its process is alive, see {@link Heartbeat}.
+ *
+ * The producer publishes a message by advancing its position with an ordered write after writing the message; the
+ * consumer reads that position before reading the message, and frees the space by advancing its own position. No
+ * lock nor system call is involved. A ring must only ever be written by one thread and read by one thread at a time.
+ */
+class SharedMemoryRing {
+    static final int HEADER_SIZE = 4096;
+
+    private static final int MAGIC = 0x52494E47; // "RING"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int WRITE_POSITION_OFFSET = 128;
+    private static final int READ_POSITION_OFFSET = 256;
+    private static final int ATTACHED_OFFSET = 384;
+    private static final int CLOSED_OFFSET = 512;
+    private static final int HEARTBEAT_OFFSET = 640;
+    private static final int PADDING = -1;
+    private static final int ALIGNMENT = 8;
+
+    private final File file;
+    private final MappedByteBuffer buffer; // Holds the mapping, which the raw address points into, alive
+    private final ByteBuffer writeView;
+    private final ByteBuffer readView;
+    private final long address;
+    private final int capacity;
+    private final int mask;
+
+    private long writePosition;
+    private long cachedReadPosition;
+    private long readPosition;
+    private long cachedWritePosition;
+
+    private SharedMemoryRing(File file, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.writeView = buffer.duplicate();
+        this.readView = buffer.duplicate();
+        this.address = MemoryAccess.address(buffer);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+
+        this.writePosition = MemoryAccess.getLongVolatile(address + WRITE_POSITION_OFFSET);
+        this.readPosition = MemoryAccess.getLongVolatile(address + READ_POSITION_OFFSET);
+        this.cachedReadPosition = readPosition;
+        this.cachedWritePosition = writePosition;
+    }
+
+    /**
+     * Creates a ring file, replacing any existing file.
+     *
+     * @param file the file to create
+     * @param capacity the ring's capacity in bytes, a power of two
+     * @return the ring
+     * @throws IOException if the file can't be created or mapped
+     */
+    static SharedMemoryRing create(File file, int capacity) throws IOException {
+        MemoryAccess.ensureAvailable();
+
+        if (capacity < 64 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("The capacity must be a power of two of at least 64 bytes");
+
+        MappedByteBuffer buffer;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.setLength(HEADER_SIZE + (long) capacity);
+
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+        }
+
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.force();
+
+        return new SharedMemoryRing(file, buffer, capacity);
+    }
+
+    /**
+     * Opens a ring file created by another process.
+     *
+     * @param file the file to open
+     * @return the ring
+     * @throws IOException if the file can't be mapped or is not a ring file
+     */
+    static SharedMemoryRing open(File file) throws IOException {
+        MemoryAccess.ensureAvailable();
+
+        MappedByteBuffer buffer;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() <= HEADER_SIZE) throw new IOException("Not a ring file: " + file);
+
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || HEADER_SIZE + (long) capacity != buffer.capacity()) {
+            throw new IOException("Not a ring file: " + file);
+        }
+
+        return new SharedMemoryRing(file, buffer, capacity);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the largest message this ring accepts, in bytes.
+     */
+    int getMaxMessageSize() {
+        return capacity / 2 - 4;
+    }
+
+    /**
+     * Writes a message, if there is room for it. Producer side only.
+     *
+     * @return <b>false</b> if the ring is full
+     */
+    boolean offer(byte[] data, int offset, int length) {
+        if (length > getMaxMessageSize()) throw new IllegalArgumentException("Message too large: " + length + " bytes");
+
+        int recordLength = align(4 + length);
+        int index = (int) (writePosition & mask);
+        int remaining = capacity - index;
+        int required = (recordLength > remaining) ? remaining + recordLength : recordLength;
+
+        if (writePosition + required - cachedReadPosition > capacity) {
+            cachedReadPosition = MemoryAccess.getLongVolatile(address + READ_POSITION_OFFSET);
+
+            if (writePosition + required - cachedReadPosition > capacity) return false;
+        }
+
+        if (recordLength > remaining) {
+            writeView.putInt(HEADER_SIZE + index, PADDING);
+            index = 0;
+        }
+
+        writeView.putInt(HEADER_SIZE + index, length);
+        writeView.position(HEADER_SIZE + index + 4);
+        writeView.put(data, offset, length);
+
+        writePosition += required;
+        MemoryAccess.putLongOrdered(address + WRITE_POSITION_OFFSET, writePosition);
+
+        return true;
+    }
+
+    /**
+     * Reads the next message, if there is one. Consumer side only.
+     *
+     * @return the message, or <i>null</i> if the ring is empty
+     */
+    byte[] poll() {
+        if (readPosition == cachedWritePosition) {
+            cachedWritePosition = MemoryAccess.getLongVolatile(address + WRITE_POSITION_OFFSET);
+
+            if (readPosition == cachedWritePosition) return null;
+        }
+
+        int index = (int) (readPosition & mask);
+        int length = readView.getInt(HEADER_SIZE + index);
+
+        if (length == PADDING) {
+            readPosition += capacity - index;
+            index = 0;
+            length = readView.getInt(HEADER_SIZE);
+        }
+
+        byte[] data = new byte[length];
+        readView.position(HEADER_SIZE + index + 4);
+        readView.get(data);
+
+        readPosition += align(4 + length);
+        MemoryAccess.putLongOrdered(address + READ_POSITION_OFFSET, readPosition);
+
+        return data;
+    }
+
+    /**
+     * @return whether or not every message written was read.
+     */
+    boolean isEmpty() {
+        return MemoryAccess.getLongVolatile(address + READ_POSITION_OFFSET) == MemoryAccess.getLongVolatile(address + WRITE_POSITION_OFFSET);
+    }
+
+    void markAttached() {
+        MemoryAccess.putLongOrdered(address + ATTACHED_OFFSET, 1);
+    }
+
+    boolean isAttached() {
+        return MemoryAccess.getLongVolatile(address + ATTACHED_OFFSET) != 0;
+    }
+
+    void markClosed() {
+        MemoryAccess.putLongOrdered(address + CLOSED_OFFSET, 1);
+    }
+
+    boolean isClosed() {
+        return MemoryAccess.getLongVolatile(address + CLOSED_OFFSET) != 0;
+    }
+
+    /**
+     * Bumps the heartbeat counter. Only ever called by the consumer's heartbeat timer.
+     */
+    void beat() {
+        MemoryAccess.putLongOrdered(address + HEARTBEAT_OFFSET, MemoryAccess.getLongVolatile(address + HEARTBEAT_OFFSET) + 1);
+    }
+
+    long getBeat() {
+        return MemoryAccess.getLongVolatile(address + HEARTBEAT_OFFSET);
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
@@ -0,0 +1,370 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.ipc
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.ipc;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Provides a server for processes running on the same host, exchanging messages through memory-mapped files
+ * instead of sockets. It mirrors {@link com.linoagli.comprotocols.tcp.TCPServer}: clients connect, send queries and
+ * receive responses through the same kind of callback.
+ *
+ * The server watches a directory. A {@link SharedMemoryClient} connects by creating a pair of ring files in it, one
+ * per direction, and announcing them with a marker file, which the server picks up within a few milliseconds. From
+ * then on, messages go through the rings without any system call: each side's reading thread spins for a while
+ * before backing off, so latency stays below a microsecond while traffic flows and idle connections cost next to
+ * no CPU.
+ *
+ * A peer closing its side is noticed right away. A peer process that dies without closing, killed or crashed, is
+ * noticed once its heartbeat stops for longer than {@link #setHeartbeatTimeOut(long)}: the connection is then
+ * closed, and a response waiting for room in its ring is discarded.
+ */
+public class SharedMemoryServer {
+    public static final String CONNECT_SUFFIX = ".connect";
+    public static final String CLIENT_TO_SERVER_SUFFIX = ".c2s";
+    public static final String SERVER_TO_CLIENT_SUFFIX = ".s2c";
+    public static final int DEFAULT_SPIN_COUNT = 10000;
+    public static final long DEFAULT_HEARTBEAT_TIME_OUT = 5000;
+
+    private Callback callback;
+
+    private File directory;
+    private int spinCount = DEFAULT_SPIN_COUNT;
+    private long heartbeatTimeOut = DEFAULT_HEARTBEAT_TIME_OUT;
+    private volatile boolean isRunning = false;
+    private final List<Connection> connections = new ArrayList<>();
+    private IncomingConnectionsThread incomingConnectionsThread;
+
+    public SharedMemoryServer(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * @return the directory this server is watching for connections.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return whether or not this server instance is up and running.
+     */
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    /**
+     * @return the number of client connections currently hosted by this server.
+     */
+    public int getConnectionCount() {
+        synchronized (connections) {
+            return connections.size();
+        }
+    }
+
+    /**
+     * Sets the number of times a connection's reading thread polls an empty ring before it starts yielding and
+     * parking. Higher values lower latency after quiet periods at the cost of CPU. Applies to connections accepted
+     * after this call.
+     *
+     * This value defaults to <b>10000</b>
+     *
+     * @param spinCount the number of polls
+     */
+    public void setSpinCount(int spinCount) {
+        this.spinCount = Math.max(0, spinCount);
+    }
+
+    /**
+     * Sets how long a client's heartbeat may stop before its process is considered dead and its connection closed.
+     * Applies to connections accepted after this call. <b>0</b> disables the check.
+     *
+     * This value defaults to <b>5000</b> milliseconds
+     *
+     * @param heartbeatTimeOut the time out delay in milliseconds
+     */
+    public void setHeartbeatTimeOut(long heartbeatTimeOut) {
+        this.heartbeatTimeOut = Math.max(0, heartbeatTimeOut);
+    }
+
+    /**
+     * Boots up this server instance and starts watching the given directory for incoming client connections.
+     *
+     * @param directory the directory shared with the clients, created if needed
+     */
+    public void start(File directory) {
+        this.directory = directory;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.warn(SharedMemoryServer.class, "SharedMemoryServer could not create directory {}", directory);
+            return;
+        }
+
+        incomingConnectionsThread = new IncomingConnectionsThread();
+        incomingConnectionsThread.start();
+    }
+
+    /**
+     * Closes all active connections and powers down the server instance.
+     */
+    public void stop() {
+        if (incomingConnectionsThread != null) {
+            incomingConnectionsThread.cancel();
+            incomingConnectionsThread = null;
+        }
+
+        synchronized (connections) {
+            for (Connection connection : new ArrayList<>(connections)) connection.close();
+
+            connections.clear();
+        }
+    }
+
+    /**
+     * This class represents an active connection to a client process.
+     *
+     * Responses may be sent from any thread; they are written to the client's ring one at a time. When the ring is
+     * full, sending waits for the client to catch up, or for its heartbeat to time out.
+     */
+    public class Connection {
+        private final String id;
+        private final SharedMemoryRing in;
+        private final SharedMemoryRing out;
+        private final long heartbeatTimeOut;
+        private final ScheduledFuture<?> heartbeat;
+        private volatile boolean isOpen = true;
+
+        private Connection(String id, SharedMemoryRing in, SharedMemoryRing out) {
+            this.id = id;
+            this.in = in;
+            this.out = out;
+            this.heartbeatTimeOut = SharedMemoryServer.this.heartbeatTimeOut;
+            this.heartbeat = Heartbeat.start(in);
+        }
+
+        /**
+         * @return the id the client picked for this connection.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return whether or not the connection is still open.
+         */
+        public boolean isOpen() {
+            return isOpen;
+        }
+
+        /**
+         * Send data as a response to the client linked to this connection.
+         *
+         * @param response the response data
+         */
+        public void respond(String response) {
+            respond(response.getBytes());
+        }
+
+        /**
+         * Send data as a response to the client linked to this connection.
+         *
+         * @param response the response bytes
+         */
+        public void respond(byte[] response) {
+            Idler idler = new Idler(spinCount);
+            Heartbeat client = null;
+            boolean isTimedOut = false;
+
+            synchronized (out) {
+                while (!out.offer(response, 0, response.length)) {
+                    if (!isOpen || in.isClosed()) {
+                        Log.warn(SharedMemoryServer.class, "Shared memory connection {} is closed. Response discarded.", id);
+                        return;
+                    }
+
+                    // Only watched once the ring is full, so the grace period starts from there
+                    if (client == null) client = new Heartbeat(out, heartbeatTimeOut);
+
+                    if (!client.isAlive()) {
+                        isTimedOut = true;
+                        break;
+                    }
+
+                    idler.idle();
+                }
+            }
+
+            if (!isTimedOut) return;
+
+            // Closed outside of the lock, so that the disconnection callback doesn't hold up the other responders
+            Log.warn(SharedMemoryServer.class, "Shared memory connection {} timed out. Response discarded.", id);
+            close();
+        }
+
+        private void listen() {
+            new Thread() {
+                @Override
+                public void run() {
+                    Idler idler = new Idler(spinCount);
+                    Heartbeat client = new Heartbeat(out, heartbeatTimeOut);
+                    InetAddress address = InetAddress.getLoopbackAddress();
+
+                    while (isOpen) {
+                        byte[] data = in.poll();
+
+                        if (data != null) {
+                            idler.reset();
+
+                            if (callback != null) callback.onDataReceived(Connection.this, new DataPacket(address, 0, data));
+                        } else if (in.isClosed()) {
+                            break;
+                        } else if (!client.isAlive()) {
+                            Log.warn(SharedMemoryServer.class, "Shared memory connection {} timed out.", id);
+                            break;
+                        } else {
+                            idler.idle();
+                        }
+                    }
+
+                    close();
+                }
+            }.start();
+        }
+
+        /**
+         * Closes the connection.
+         */
+        public void close() {
+            synchronized (this) {
+                if (!isOpen) return;
+
+                isOpen = false;
+            }
+
+            heartbeat.cancel(false);
+
+            out.markClosed();
+            in.markClosed();
+
+            synchronized (connections) {
+                connections.remove(this);
+            }
+
+            in.getFile().delete();
+            out.getFile().delete();
+
+            if (callback != null) callback.onDisconnected(this);
+        }
+    }
+
+    /**
+     * This thread watches the directory for connection markers left by new clients.
+     */
+    private class IncomingConnectionsThread extends Thread {
+        private final long SCAN_INTERVAL = 5;
+        private volatile boolean runLoop = true;
+
+        @Override
+        public void run() {
+            isRunning = true;
+
+            if (callback != null) callback.onWaitingForConnection(directory);
+
+            while (runLoop) {
+                File[] markers = directory.listFiles((dir, name) -> name.endsWith(CONNECT_SUFFIX));
+
+                if (markers != null) {
+                    for (File marker : markers) accept(marker);
+                }
+
+                try {
+                    Thread.sleep(SCAN_INTERVAL);
+                } catch (InterruptedException e) {
+                    Log.error(SharedMemoryServer.class, e);
+                }
+            }
+
+            isRunning = false;
+        }
+
+        private void accept(File marker) {
+            // Whoever deletes the marker owns the connection
+            if (!marker.delete()) return;
+
+            String name = marker.getName();
+            String id = name.substring(0, name.length() - CONNECT_SUFFIX.length());
+
+            try {
+                SharedMemoryRing in = SharedMemoryRing.open(new File(directory, id + CLIENT_TO_SERVER_SUFFIX));
+                SharedMemoryRing out = SharedMemoryRing.open(new File(directory, id + SERVER_TO_CLIENT_SUFFIX));
+
+                Connection connection = new Connection(id, in, out);
+
+                synchronized (connections) {
+                    connections.add(connection);
+                }
+
+                if (callback != null) callback.onConnected(connection);
+
+                connection.listen();
+
+                out.markAttached();
+                in.markAttached();
+            } catch (IOException e) {
+                Log.error(SharedMemoryServer.class, e);
+            }
+        }
+
+        private void cancel() {
+            runLoop = false;
+        }
+    }
+
+    /**
+     * The shared memory server events callback interface.
+     */
+    public interface Callback {
+        /**
+         * Notifies the object implementing this interface that the server is watching its directory for incoming
+         * client connections.
+         *
+         * @param directory the directory the server is watching
+         */
+        public void onWaitingForConnection(File directory);
+
+        /**
+         * Notifies the object implementing this interface that the server has accepted a new client.
+         *
+         * @param connection the newly created connection instance
+         */
+        public void onConnected(Connection connection);
+
+        /**
+         * Notifies the object implementing this interface that the server received data from one of its clients.
+         * Called on the connection's reading thread.
+         *
+         * @param connection the Connection instance that received the data
+         * @param dataPacket the received DataPacket
+         */
+        public void onDataReceived(Connection connection, DataPacket dataPacket);
+
+        /**
+         * Notifies the object implementing this interface that a connection was closed, by either side.
+         *
+         * @param connection the closed connection
+         */
+        public default void onDisconnected(Connection connection) {}
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.jfr
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A connection being opened, accepted or closed. Connect events are timed from the start of the connection
+ * attempt, the others are instant.
+ */
+@Name("com.linoagli.comprotocols.Connection")
+@Label("Connection")
+@Category({ "Comm Protocols", "Connections" })
+@Description("A connection being opened, accepted or closed")
+@StackTrace(false)
+class ConnectionEvent extends Event {
+    @Label("Transport")
+    String transport;
+
+    @Label("Action")
+    String action;
+
+    @Label("Peer")
+    String peer;
+
+    @Label("Successful")
+    boolean isSuccessful;
+
+    static ConnectionEvent start(boolean isTimed) {
+        ConnectionEvent event = new ConnectionEvent();
+        if (!event.isEnabled()) return null;
+
+        if (isTimed) event.begin();
+
+        return event;
+    }
+
+    void commit(String transport, String action, Object peer, boolean isSuccessful) {
+        if (!shouldCommit()) return;
+
+        this.transport = transport;
+        this.action = action;
+        this.peer = String.valueOf(peer);
+        this.isSuccessful = isSuccessful;
+        commit();
+    }
+}
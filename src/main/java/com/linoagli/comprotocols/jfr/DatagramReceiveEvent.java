@@ -0,0 +1,57 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.jfr
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A datagram received by a UDP listener, timed from the receive returning until the listener's pipeline is done
+ * with it.
+ */
+@Name("com.linoagli.comprotocols.DatagramReceive")
+@Label("Datagram Receive")
+@Category({ "Comm Protocols", "UDP" })
+@Description("A datagram received and handled by a UDP listener's pipeline")
+@StackTrace(false)
+@Threshold("10 ms")
+class DatagramReceiveEvent extends Event {
+    @Label("Peer")
+    String peer;
+
+    @Label("Port")
+    int port;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    static DatagramReceiveEvent start() {
+        DatagramReceiveEvent event = new DatagramReceiveEvent();
+        if (!event.isEnabled()) return null;
+
+        event.begin();
+
+        return event;
+    }
+
+    void commit(Object peer, int port, long size) {
+        end();
+        if (!shouldCommit()) return;
+
+        this.peer = String.valueOf(peer);
+        this.port = port;
+        this.size = size;
+        commit();
+    }
+}
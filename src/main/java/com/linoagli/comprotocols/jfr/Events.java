@@ -0,0 +1,165 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.jfr
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.jfr;
+
+/**
+ * The entry point of the library's JDK Flight Recorder events, used by the transports to report connections,
+ * reads, writes and HTTP requests.
+ *
+ * Timed events are started with one of the <i>begin</i> methods, which return <b>null</b> when the event isn't
+ * being recorded, and are handed back to the matching <i>commit</i> method once the work is done. The event
+ * classes are only loaded on runtimes that ship the <i>jdk.jfr</i> module; on the others every call here is a
+ * no-op. The events can be enabled, disabled and given a duration threshold in a recording's settings, under the
+ * <i>com.linoagli.comprotocols</i> names:
+ * <pre>
+ * java -XX:StartFlightRecording:settings=profile,com.linoagli.comprotocols.MessageRead#threshold=1ms ...
+ * </pre>
+ */
+public final class Events {
+    public static final String TRANSPORT_TCP = "TCP";
+    public static final String TRANSPORT_UNIX = "Unix";
+
+    public static final String ACTION_CONNECT = "connect";
+    public static final String ACTION_ACCEPT = "accept";
+    public static final String ACTION_DISCONNECT = "disconnect";
+
+    private static final boolean IS_AVAILABLE = isFlightRecorderPresent();
+
+    private Events() {}
+
+    /**
+     * @return whether or not this runtime supports Flight Recorder events.
+     */
+    public static boolean isAvailable() {
+        return IS_AVAILABLE;
+    }
+
+    /**
+     * Starts timing a connection attempt.
+     *
+     * @return the event to commit once the attempt is over, or <b>null</b>
+     */
+    public static Object beginConnect() {
+        return IS_AVAILABLE ? ConnectionEvent.start(true) : null;
+    }
+
+    /**
+     * @param event the event returned by {@link #beginConnect()}
+     * @param transport the transport, such as {@link #TRANSPORT_TCP}
+     * @param peer the address connected to
+     * @param isSuccessful whether or not the connection was established
+     */
+    public static void commitConnect(Object event, String transport, Object peer, boolean isSuccessful) {
+        if (event != null) ((ConnectionEvent) event).commit(transport, ACTION_CONNECT, peer, isSuccessful);
+    }
+
+    /**
+     * Records a connection being accepted or closed.
+     *
+     * @param transport the transport, such as {@link #TRANSPORT_TCP}
+     * @param action {@link #ACTION_ACCEPT} or {@link #ACTION_DISCONNECT}
+     * @param peer the address of the other end
+     */
+    public static void connection(String transport, String action, Object peer) {
+        if (!IS_AVAILABLE) return;
+
+        ConnectionEvent event = ConnectionEvent.start(false);
+        if (event != null) event.commit(transport, action, peer, true);
+    }
+
+    /**
+     * Starts timing the handling of bytes just read from a connection.
+     *
+     * @return the event to commit once the bytes are handled, or <b>null</b>
+     */
+    public static Object beginRead() {
+        return IS_AVAILABLE ? MessageReadEvent.start() : null;
+    }
+
+    /**
+     * @param event the event returned by {@link #beginRead()}
+     * @param transport the transport, such as {@link #TRANSPORT_TCP}
+     * @param peer the address of the other end, only turned into a string if the event is recorded
+     * @param size the number of bytes read
+     */
+    public static void commitRead(Object event, String transport, Object peer, long size) {
+        if (event != null) ((MessageReadEvent) event).commit(transport, peer, size);
+    }
+
+    /**
+     * Starts timing the write of a batch of messages.
+     *
+     * @return the event to commit once the batch is flushed, or <b>null</b>
+     */
+    public static Object beginWrite() {
+        return IS_AVAILABLE ? MessageWriteEvent.start() : null;
+    }
+
+    /**
+     * @param event the event returned by {@link #beginWrite()}
+     * @param transport the transport, such as {@link #TRANSPORT_TCP}
+     * @param peer the address of the other end, only turned into a string if the event is recorded
+     * @param messages the number of messages in the batch
+     * @param size the number of bytes written
+     */
+    public static void commitWrite(Object event, String transport, Object peer, int messages, long size) {
+        if (event != null) ((MessageWriteEvent) event).commit(transport, peer, messages, size);
+    }
+
+    /**
+     * Starts timing an HTTP request attempt.
+     *
+     * @return the event to commit once the response is read, or <b>null</b>
+     */
+    public static Object beginHttpRequest() {
+        return IS_AVAILABLE ? HttpRequestEvent.start() : null;
+    }
+
+    /**
+     * @param event the event returned by {@link #beginHttpRequest()}
+     * @param method the request method
+     * @param url the request url
+     * @param status the response status code, <b>-1</b> if the request failed
+     * @param connectTime the time spent connecting in nanoseconds
+     * @param timeToFirstByte the time from the start of the attempt to the response status in nanoseconds
+     * @param responseSize the size of the response body in bytes
+     */
+    public static void commitHttpRequest(Object event, String method, String url, int status, long connectTime,
+                                         long timeToFirstByte, long responseSize) {
+        if (event != null) ((HttpRequestEvent) event).commit(method, url, status, connectTime, timeToFirstByte, responseSize);
+    }
+
+    /**
+     * Starts timing the handling of a datagram just received.
+     *
+     * @return the event to commit once the datagram is handled, or <b>null</b>
+     */
+    public static Object beginDatagramReceive() {
+        return IS_AVAILABLE ? DatagramReceiveEvent.start() : null;
+    }
+
+    /**
+     * @param event the event returned by {@link #beginDatagramReceive()}
+     * @param peer the address of the sender, only turned into a string if the event is recorded
+     * @param port the port the datagram was received on
+     * @param size the size of the datagram in bytes
+     */
+    public static void commitDatagramReceive(Object event, Object peer, int port, long size) {
+        if (event != null) ((DatagramReceiveEvent) event).commit(peer, port, size);
+    }
+
+    private static boolean isFlightRecorderPresent() {
+        try {
+            Class.forName("jdk.jfr.Event", false, Events.class.getClassLoader());
+
+            return true;
+        }
+        catch (Throwable t) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.jfr
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A single attempt at an HTTP request, from its start until the response is read, along with the time spent in
+ * each of its phases. Retried and hedged requests record one event per attempt.
+ */
+@Name("com.linoagli.comprotocols.HttpRequest")
+@Label("HTTP Request")
+@Category({ "Comm Protocols", "HTTP" })
+@Description("An HTTP request attempt and the time spent connecting and waiting for the response")
+@StackTrace(false)
+class HttpRequestEvent extends Event {
+    @Label("Method")
+    String method;
+
+    @Label("URL")
+    String url;
+
+    @Label("Status")
+    int status;
+
+    @Label("Connect Time")
+    @Timespan
+    long connectTime;
+
+    @Label("Time To First Byte")
+    @Timespan
+    long timeToFirstByte;
+
+    @Label("Response Size")
+    @DataAmount
+    long responseSize;
+
+    static HttpRequestEvent start() {
+        HttpRequestEvent event = new HttpRequestEvent();
+        if (!event.isEnabled()) return null;
+
+        event.begin();
+
+        return event;
+    }
+
+    void commit(String method, String url, int status, long connectTime, long timeToFirstByte, long responseSize) {
+        end();
+        if (!shouldCommit()) return;
+
+        this.method = method;
+        this.url = url;
+        this.status = status;
+        this.connectTime = connectTime;
+        this.timeToFirstByte = timeToFirstByte;
+        this.responseSize = responseSize;
+        commit();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.jfr
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Bytes read from a connection, timed from the read returning until the connection's pipeline is done with them,
+ * so that the time spent waiting for the peer doesn't count.
+ */
+@Name("com.linoagli.comprotocols.MessageRead")
+@Label("Message Read")
+@Category({ "Comm Protocols", "Messages" })
+@Description("Bytes read from a connection and handled by its pipeline")
+@StackTrace(false)
+@Threshold("10 ms")
+class MessageReadEvent extends Event {
+    @Label("Transport")
+    String transport;
+
+    @Label("Peer")
+    String peer;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    static MessageReadEvent start() {
+        MessageReadEvent event = new MessageReadEvent();
+        if (!event.isEnabled()) return null;
+
+        event.begin();
+
+        return event;
+    }
+
+    void commit(String transport, Object peer, long size) {
+        end();
+        if (!shouldCommit()) return;
+
+        this.transport = transport;
+        this.peer = String.valueOf(peer);
+        this.size = size;
+        commit();
+    }
+}
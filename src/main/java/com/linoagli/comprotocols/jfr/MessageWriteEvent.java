@@ -0,0 +1,61 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.jfr
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A batch of queued messages written to a connection, timed from the batch being taken off the queue until it
+ * is flushed. A slow write usually means the peer isn't reading fast enough.
+ */
+@Name("com.linoagli.comprotocols.MessageWrite")
+@Label("Message Write")
+@Category({ "Comm Protocols", "Messages" })
+@Description("A batch of messages written and flushed to a connection")
+@StackTrace(false)
+@Threshold("10 ms")
+class MessageWriteEvent extends Event {
+    @Label("Transport")
+    String transport;
+
+    @Label("Peer")
+    String peer;
+
+    @Label("Messages")
+    int messages;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    static MessageWriteEvent start() {
+        MessageWriteEvent event = new MessageWriteEvent();
+        if (!event.isEnabled()) return null;
+
+        event.begin();
+
+        return event;
+    }
+
+    void commit(String transport, Object peer, int messages, long size) {
+        end();
+        if (!shouldCommit()) return;
+
+        this.transport = transport;
+        this.peer = String.valueOf(peer);
+        this.messages = messages;
+        this.size = size;
+        commit();
+    }
+}
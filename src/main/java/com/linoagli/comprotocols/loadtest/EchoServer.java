@@ -0,0 +1,129 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.Log;
+import com.linoagli.comprotocols.http.HttpServer;
+import com.linoagli.comprotocols.tcp.TCPServer;
+import com.linoagli.comprotocols.udp.UDPListener;
+import com.linoagli.comprotocols.udp.UDPSender;
+
+/**
+ * A stand-in system under test for the load generator, built on the library's servers:
+ * <ul>
+ *     <li>a {@link TCPServer} that answers every line with the same line,</li>
+ *     <li>a {@link UDPListener} that sends every packet back to the port found at the start of the packet, see
+ *     {@link UDPLoadTarget},</li>
+ *     <li>an {@link HttpServer} that answers every request with its body.</li>
+ * </ul>
+ * A port of <b>0</b> leaves the matching service out.
+ */
+public class EchoServer {
+    private final int tcpPort;
+    private final int udpPort;
+    private final int httpPort;
+
+    private TCPServer tcpServer;
+    private UDPListener udpListener;
+    private HttpServer httpServer;
+
+    public EchoServer(int tcpPort, int udpPort, int httpPort) {
+        this.tcpPort = tcpPort;
+        this.udpPort = udpPort;
+        this.httpPort = httpPort;
+    }
+
+    /**
+     * Starts the echo services.
+     *
+     * @throws Exception if a service can't be started
+     */
+    public void start() throws Exception {
+        if (tcpPort > 0) {
+            tcpServer = new TCPServer(new TCPServer.Callback() {
+                @Override
+                public void onWaitingForConnection(int port) {}
+
+                @Override
+                public void onConnected(TCPServer.Connection connection) {}
+
+                @Override
+                public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {
+                    connection.respond(dataPacket.data);
+                }
+            });
+            tcpServer.start(tcpPort);
+        }
+
+        if (udpPort > 0) {
+            udpListener = new UDPListener(udpPort, new UDPListener.Callback() {
+                @Override
+                public void onStarted(int port) {}
+
+                @Override
+                public void onStopping() {}
+
+                @Override
+                public void onDataReceived(DataPacket dataPacket) {
+                    int end = dataPacket.data.indexOf(' ');
+
+                    try {
+                        int replyPort = Integer.parseInt((end > 0) ? dataPacket.data.substring(0, end) : dataPacket.data);
+                        UDPSender.send(dataPacket.address, replyPort, dataPacket.bytes);
+                    } catch (NumberFormatException e) {
+                        Log.debug(EchoServer.class, "UDP echo packet does not start with a reply port. Ignoring...");
+                    }
+                }
+            });
+            udpListener.setDataPacketSize(64 * 1024);
+            udpListener.start();
+        }
+
+        if (httpPort > 0) {
+            httpServer = new HttpServer(port -> {});
+            httpServer.route(null, "/*", request -> request.respond(200, null, request.getBody()));
+            httpServer.start(httpPort);
+        }
+    }
+
+    /**
+     * Stops the echo services.
+     */
+    public void stop() {
+        if (tcpServer != null) {
+            tcpServer.stop();
+            tcpServer = null;
+        }
+
+        if (udpListener != null) {
+            udpListener.stop();
+            udpListener = null;
+        }
+
+        if (httpServer != null) {
+            httpServer.stop();
+            httpServer = null;
+        }
+    }
+
+    /**
+     * Runs the echo services until the process is killed.
+     *
+     * @param args <i>[tcp port] [udp port] [http port]</i>, defaulting to 7000, 7001 and 7002
+     * @throws Exception if a service can't be started
+     */
+    public static void main(String[] args) throws Exception {
+        int tcpPort = (args.length > 0) ? Integer.parseInt(args[0]) : 7000;
+        int udpPort = (args.length > 1) ? Integer.parseInt(args[1]) : 7001;
+        int httpPort = (args.length > 2) ? Integer.parseInt(args[2]) : 7002;
+
+        new EchoServer(tcpPort, udpPort, httpPort).start();
+
+        System.out.println("Echo server listening on tcp/" + tcpPort + ", udp/" + udpPort + " and http/" + httpPort);
+    }
+}
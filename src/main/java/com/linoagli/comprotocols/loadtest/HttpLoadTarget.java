@@ -0,0 +1,46 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import com.linoagli.comprotocols.http.HttpRequest;
+
+/**
+ * Sends every request as an asynchronous {@link HttpRequest}. A request succeeds when the server answers with a
+ * 2xx status code.
+ */
+public class HttpLoadTarget implements LoadTarget {
+    private final HttpRequest.Method method;
+    private final String url;
+    private final String params;
+    private final int timeOut;
+
+    /**
+     * @param method the request method
+     * @param url the request url
+     * @param params the request parameters, may be <i>null</i>
+     * @param timeOut the connection and read time out delay of each request in milliseconds
+     */
+    public HttpLoadTarget(HttpRequest.Method method, String url, String params, int timeOut) {
+        this.method = method;
+        this.url = url;
+        this.params = params;
+        this.timeOut = timeOut;
+    }
+
+    @Override
+    public void open() {}
+
+    @Override
+    public void send(final Request request) {
+        HttpRequest httpRequest = new HttpRequest();
+        httpRequest.setTimeOutDelay(timeOut);
+        httpRequest.postAsync(method, url, params, completed -> request.complete(completed.wasSuccessful()));
+    }
+
+    @Override
+    public void close() {}
+}
@@ -0,0 +1,303 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A high dynamic range histogram of latencies, in nanoseconds. Values are counted in buckets whose width grows
+ * with the value, so that any recorded value is reported within a fixed relative precision (<b>3</b> significant
+ * digits by default) across the whole range, from a nanosecond up to the highest trackable value, with a fixed
+ * memory footprint.
+ *
+ * Recording is lock free and may be done from any number of threads. Reading percentiles while values are being
+ * recorded gives approximate results.
+ */
+public class LatencyHistogram {
+    public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 3600L * 1000 * 1000 * 1000; // One hour
+    public static final int DEFAULT_SIGNIFICANT_DIGITS = 3;
+
+    private final long highestTrackableValue;
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final int leadingZeroCountBase;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong minValue = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxValue = new AtomicLong(0);
+    private final AtomicLong totalValue = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * @param highestTrackableValue the highest value that can be recorded, in nanoseconds. Higher values are
+     *                              recorded as this value
+     * @param significantDigits the number of significant decimal digits kept for every value, from <b>1</b> to
+     *                          <b>5</b>
+     */
+    public LatencyHistogram(long highestTrackableValue, int significantDigits) {
+        if (significantDigits < 1 || significantDigits > 5) throw new IllegalArgumentException("Significant digits must be between 1 and 5");
+        if (highestTrackableValue < 2) throw new IllegalArgumentException("Highest trackable value must be at least 2");
+
+        this.highestTrackableValue = highestTrackableValue;
+
+        long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+        int subBucketCount = 1 << subBucketCountMagnitude;
+
+        this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+        this.subBucketHalfCount = subBucketCount / 2;
+        this.subBucketMask = subBucketCount - 1;
+        this.leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+        // Each bucket doubles the range covered by the previous one
+        int bucketCount = 1;
+        long smallestUntrackableValue = subBucketCount;
+
+        while (smallestUntrackableValue <= highestTrackableValue) {
+            if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+                bucketCount++;
+                break;
+            }
+
+            smallestUntrackableValue <<= 1;
+            bucketCount++;
+        }
+
+        this.counts = new AtomicLongArray((bucketCount + 1) * subBucketHalfCount);
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value in nanoseconds. Negative values are recorded as <b>0</b>
+     */
+    public void recordValue(long value) {
+        recordValues(value, 1);
+    }
+
+    /**
+     * Records a value and, when it exceeds the expected interval between two measurements, the values that the
+     * measurements which could not be taken meanwhile would have had. This corrects for coordinated omission: a
+     * stalled system also delays the requests that would have been sent while it stalled, and those requests
+     * would have waited for a decreasing part of the stall.
+     *
+     * @param value the value in nanoseconds
+     * @param expectedInterval the expected interval between two measurements in nanoseconds, <b>0</b> disables the
+     *                         correction
+     */
+    public void recordValueWithExpectedInterval(long value, long expectedInterval) {
+        recordValue(value);
+
+        if (expectedInterval <= 0) return;
+
+        for (long missingValue = value - expectedInterval; missingValue >= expectedInterval; missingValue -= expectedInterval) {
+            recordValue(missingValue);
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram with the same precision to this one.
+     *
+     * @param other the histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < other.counts.length(); i++) {
+            long count = other.counts.get(i);
+
+            if (count > 0) recordValues(other.valueFromIndex(i), count);
+        }
+    }
+
+    /**
+     * Clears every recorded value.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+
+        totalCount.set(0);
+        totalValue.set(0);
+        minValue.set(Long.MAX_VALUE);
+        maxValue.set(0);
+    }
+
+    /**
+     * @return the number of values recorded.
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * @return the smallest value recorded, or <b>0</b> if there is none.
+     */
+    public long getMinValue() {
+        long min = minValue.get();
+
+        return (min == Long.MAX_VALUE) ? 0 : min;
+    }
+
+    /**
+     * @return the largest value recorded.
+     */
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    /**
+     * @return the mean of the recorded values.
+     */
+    public double getMean() {
+        long count = totalCount.get();
+
+        return (count > 0) ? (double) totalValue.get() / count : 0;
+    }
+
+    /**
+     * @param percentile the percentile, between <b>0</b> and <b>100</b>
+     * @return the value below which the given percentage of the recorded values fall, within the histogram's
+     * precision.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) return 0;
+
+        long countAtPercentile = Math.max(1, (long) ((Math.min(percentile, 100) / 100) * total + 0.5));
+        long cumulative = 0;
+
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+
+            if (cumulative >= countAtPercentile) return Math.min(highestEquivalentValue(valueFromIndex(i)), getMaxValue());
+        }
+
+        return getMaxValue();
+    }
+
+    /**
+     * @param value a value in nanoseconds
+     * @return the number of recorded values lower than or equivalent to the given one.
+     */
+    public long getCountAtOrBelow(long value) {
+        int lastIndex = countsIndexFor(Math.min(Math.max(value, 0), highestTrackableValue));
+        long cumulative = 0;
+
+        for (int i = 0; i <= lastIndex; i++) cumulative += counts.get(i);
+
+        return cumulative;
+    }
+
+    /**
+     * Writes the percentile distribution of the recorded values in the <i>hgrm</i> text format understood by the
+     * usual HdrHistogram plotting tools, followed by a summary.
+     *
+     * @param out the stream to write to
+     * @param valueUnitScale the number of nanoseconds per reported unit, <b>1000000</b> reports milliseconds
+     */
+    public void outputPercentileDistribution(PrintStream out, double valueUnitScale) {
+        final int ticksPerHalfDistance = 5;
+
+        out.println(String.format("%12s %14s %10s %14s%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+
+        long total = totalCount.get();
+
+        if (total > 0) {
+            double percentile = 0;
+
+            while (percentile < 100) {
+                long value = getValueAtPercentile(percentile);
+
+                out.println(String.format("%12.3f %2.12f %10d %14.2f", value / valueUnitScale, percentile / 100,
+                        getCountAtOrBelow(value), 1 / (1 - percentile / 100)));
+
+                // Halve the remaining distance to 100% every time, with a fixed number of ticks per half
+                double halfDistance = Math.pow(2, Math.floor(Math.log(100 / (100 - percentile)) / Math.log(2)) + 1);
+                percentile += 100 / (halfDistance * ticksPerHalfDistance);
+
+                if (getCountAtOrBelow(value) == total) break;
+            }
+
+            out.println(String.format("%12.3f %2.12f %10d", getMaxValue() / valueUnitScale, 1.0, total));
+        }
+
+        double mean = getMean() / valueUnitScale;
+
+        out.println(String.format("#[Mean    = %12.3f, StdDeviation   = %12.3f]", mean, getStdDeviation() / valueUnitScale));
+        out.println(String.format("#[Max     = %12.3f, Total count    = %12d]", getMaxValue() / valueUnitScale, total));
+        out.println(String.format("#[Buckets = %12d, SubBuckets     = %12d]", counts.length() / subBucketHalfCount - 1, subBucketHalfCount * 2));
+    }
+
+    private double getStdDeviation() {
+        long total = totalCount.get();
+        if (total == 0) return 0;
+
+        double mean = getMean();
+        double deviationSquaredSum = 0;
+
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+
+            if (count > 0) {
+                double deviation = medianEquivalentValue(valueFromIndex(i)) - mean;
+                deviationSquaredSum += deviation * deviation * count;
+            }
+        }
+
+        return Math.sqrt(deviationSquaredSum / total);
+    }
+
+    private void recordValues(long value, long count) {
+        value = Math.min(Math.max(value, 0), highestTrackableValue);
+
+        counts.addAndGet(countsIndexFor(value), count);
+        totalCount.addAndGet(count);
+        totalValue.addAndGet(value * count);
+
+        long current;
+        while (value < (current = minValue.get()) && !minValue.compareAndSet(current, value));
+        while (value > (current = maxValue.get()) && !maxValue.compareAndSet(current, value));
+    }
+
+    private int countsIndexFor(long value) {
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    private long valueFromIndex(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+
+        return (long) subBucketIndex << bucketIndex;
+    }
+
+    private long sizeOfEquivalentValueRange(long value) {
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+
+        return 1L << ((subBucketIndex >= subBucketHalfCount * 2) ? bucketIndex + 1 : bucketIndex);
+    }
+
+    private long highestEquivalentValue(long value) {
+        return value + sizeOfEquivalentValueRange(value) - 1;
+    }
+
+    private double medianEquivalentValue(long value) {
+        return value + sizeOfEquivalentValueRange(value) / 2.0;
+    }
+}
@@ -0,0 +1,309 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives load against a {@link LoadTarget} and records the latency of every response.
+ *
+ * In the open model, requests are issued at a constant rate whatever the state of the system under test, the way
+ * independent users would issue them. Latencies are measured from the time each request was <i>scheduled</i> to be
+ * sent rather than the time it actually was, so that a stall of the system or of the generator itself shows up in
+ * the results instead of silently delaying the following requests.
+ *
+ * In the closed model, a fixed number of virtual users each send a request, wait for its response, think and
+ * start over. A closed loop is naturally subject to coordinated omission; when an expected interval between
+ * requests is set, latencies longer than that interval are corrected by recording the requests that were not
+ * issued while waiting.
+ *
+ * Both models report the corrected and the uncorrected latencies side by side in a {@link LoadReport}.
+ */
+public class LoadGenerator {
+    public static final long DEFAULT_TIME_OUT = 5000;
+
+    private LoadTarget target;
+
+    private long timeOut = DEFAULT_TIME_OUT;
+    private long warmUpTime = 0;
+    private long expectedInterval = 0;
+
+    public LoadGenerator(LoadTarget target) {
+        this.target = target;
+    }
+
+    /**
+     * Sets how long to wait for a response before counting the request as timed out.
+     * This value defaults to <b>5000</b> milliseconds
+     *
+     * @param timeOut the time out delay in milliseconds
+     */
+    public void setTimeOut(long timeOut) {
+        this.timeOut = timeOut;
+    }
+
+    /**
+     * Sets how long to drive load before recording results, giving connections, caches and the JIT compiler time to
+     * warm up. This value defaults to <b>0</b>
+     *
+     * @param warmUpTime the warm up time in milliseconds
+     */
+    public void setWarmUpTime(long warmUpTime) {
+        this.warmUpTime = warmUpTime;
+    }
+
+    /**
+     * Sets the interval at which each virtual user of the closed model is expected to issue requests, used to
+     * correct its latencies for coordinated omission. Has no effect on the open model, which is corrected by
+     * construction. This value defaults to <b>0</b>, which disables the correction.
+     *
+     * @param expectedInterval the expected interval in milliseconds
+     */
+    public void setExpectedInterval(long expectedInterval) {
+        this.expectedInterval = expectedInterval;
+    }
+
+    /**
+     * Issues requests at a constant rate.
+     *
+     * @param requestsPerSecond the request rate
+     * @param duration the measured duration of the run in milliseconds, not counting the warm up
+     * @return the run's report
+     * @throws Exception if the target can't be opened
+     */
+    public LoadReport runOpenModel(double requestsPerSecond, long duration) throws Exception {
+        if (requestsPerSecond <= 0) throw new IllegalArgumentException("The request rate must be positive");
+
+        Run run = new Run("open model, " + requestsPerSecond + " requests/s", true);
+
+        target.open();
+
+        try {
+            run.start();
+
+            long end = run.startTime + TimeUnit.MILLISECONDS.toNanos(warmUpTime + duration);
+            double interval = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+
+            for (long sequence = 0; ; sequence++) {
+                long intendedStartTime = run.startTime + (long) (sequence * interval);
+                if (intendedStartTime >= end) break;
+
+                long now;
+
+                while ((now = System.nanoTime()) < intendedStartTime) LockSupport.parkNanos(intendedStartTime - now);
+
+                PendingRequest request = run.newRequest(sequence, intendedStartTime, now);
+
+                target.send(request);
+            }
+
+            run.awaitPendingRequests();
+        } finally {
+            target.close();
+        }
+
+        return run.toReport();
+    }
+
+    /**
+     * Runs a number of virtual users, each sending one request at a time.
+     *
+     * @param concurrency the number of virtual users
+     * @param duration the measured duration of the run in milliseconds, not counting the warm up
+     * @param thinkTime how long each user waits after a response before sending its next request, in milliseconds
+     * @return the run's report
+     * @throws Exception if the target can't be opened
+     */
+    public LoadReport runClosedModel(int concurrency, long duration, final long thinkTime) throws Exception {
+        if (concurrency < 1) throw new IllegalArgumentException("At least one virtual user is required");
+
+        final Run run = new Run("closed model, " + concurrency + " users, " + thinkTime + " ms think time", false);
+        final AtomicLong sequences = new AtomicLong();
+
+        target.open();
+
+        try {
+            run.start();
+
+            final long end = run.startTime + TimeUnit.MILLISECONDS.toNanos(warmUpTime + duration);
+            List<Thread> users = new ArrayList<>();
+
+            for (int i = 0; i < concurrency; i++) {
+                Thread user = new Thread() {
+                    @Override
+                    public void run() {
+                        long now;
+
+                        while ((now = System.nanoTime()) < end) {
+                            PendingRequest request = run.newRequest(sequences.getAndIncrement(), now, now);
+
+                            target.send(request);
+
+                            if (!request.await(TimeUnit.MILLISECONDS.toNanos(timeOut))) run.expire(request);
+
+                            if (thinkTime > 0) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(thinkTime));
+                        }
+                    }
+                };
+
+                user.start();
+                users.add(user);
+            }
+
+            for (Thread user : users) user.join();
+
+            run.recordingEndTime = end;
+        } finally {
+            target.close();
+        }
+
+        return run.toReport();
+    }
+
+    /**
+     * The state of a single run.
+     */
+    private class Run {
+        private final String description;
+        private final boolean isOpenModel;
+        private final LatencyHistogram correctedHistogram = new LatencyHistogram();
+        private final LatencyHistogram uncorrectedHistogram = new LatencyHistogram();
+        private final Map<Long, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+        private final AtomicLong sentCount = new AtomicLong();
+        private final AtomicLong failedCount = new AtomicLong();
+        private final AtomicLong timedOutCount = new AtomicLong();
+        private long startTime;
+        private long recordingStartTime;
+        private long recordingEndTime;
+
+        private Run(String description, boolean isOpenModel) {
+            this.description = description;
+            this.isOpenModel = isOpenModel;
+        }
+
+        private void start() {
+            startTime = System.nanoTime();
+            recordingStartTime = startTime + TimeUnit.MILLISECONDS.toNanos(warmUpTime);
+        }
+
+        private PendingRequest newRequest(long sequence, long intendedStartTime, long actualStartTime) {
+            PendingRequest request = new PendingRequest(this, sequence, intendedStartTime, actualStartTime);
+
+            if (request.isRecorded) sentCount.incrementAndGet();
+            pendingRequests.put(sequence, request);
+
+            return request;
+        }
+
+        private void onCompleted(PendingRequest request, long endTime, boolean isSuccessful) {
+            pendingRequests.remove(request.sequence);
+
+            if (!request.isRecorded) return;
+
+            if (!isSuccessful) {
+                failedCount.incrementAndGet();
+                return;
+            }
+
+            long latency = endTime - request.actualStartTime;
+            uncorrectedHistogram.recordValue(latency);
+
+            if (isOpenModel) {
+                correctedHistogram.recordValue(endTime - request.intendedStartTime);
+            } else {
+                correctedHistogram.recordValueWithExpectedInterval(latency, TimeUnit.MILLISECONDS.toNanos(expectedInterval));
+            }
+        }
+
+        private void expire(PendingRequest request) {
+            if (!request.isDone.compareAndSet(false, true)) return;
+
+            pendingRequests.remove(request.sequence);
+
+            if (request.isRecorded) timedOutCount.incrementAndGet();
+        }
+
+        private void awaitPendingRequests() throws InterruptedException {
+            recordingEndTime = System.nanoTime();
+
+            long deadline = recordingEndTime + TimeUnit.MILLISECONDS.toNanos(timeOut);
+
+            while (!pendingRequests.isEmpty() && System.nanoTime() < deadline) Thread.sleep(10);
+
+            for (PendingRequest request : new ArrayList<>(pendingRequests.values())) expire(request);
+        }
+
+        private LoadReport toReport() {
+            if (recordingEndTime == 0) recordingEndTime = System.nanoTime();
+
+            long recordedDuration = Math.max(0, recordingEndTime - recordingStartTime);
+
+            return new LoadReport(description, recordedDuration, sentCount.get(), failedCount.get(),
+                    timedOutCount.get(), correctedHistogram, uncorrectedHistogram);
+        }
+    }
+
+    /**
+     * A request in flight.
+     */
+    private static class PendingRequest implements LoadTarget.Request {
+        private final Run run;
+        private final long sequence;
+        private final long intendedStartTime;
+        private final long actualStartTime;
+        private final boolean isRecorded;
+        private final AtomicBoolean isDone = new AtomicBoolean(false);
+
+        private PendingRequest(Run run, long sequence, long intendedStartTime, long actualStartTime) {
+            this.run = run;
+            this.sequence = sequence;
+            this.intendedStartTime = intendedStartTime;
+            this.actualStartTime = actualStartTime;
+            this.isRecorded = intendedStartTime >= run.recordingStartTime;
+        }
+
+        @Override
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public void complete(boolean isSuccessful) {
+            long endTime = System.nanoTime();
+
+            if (!isDone.compareAndSet(false, true)) return;
+
+            run.onCompleted(this, endTime, isSuccessful);
+
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        private synchronized boolean await(long timeOut) {
+            long deadline = System.nanoTime() + timeOut;
+            long remaining;
+
+            try {
+                while (!isDone.get() && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return isDone.get();
+        }
+    }
+}
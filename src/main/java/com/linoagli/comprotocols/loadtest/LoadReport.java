@@ -0,0 +1,136 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The results of a load generator run: request counts and the latency distributions measured after the warm up.
+ */
+public class LoadReport {
+    private static final double[] SUMMARY_PERCENTILES = { 50, 90, 99, 99.9, 99.99, 100 };
+    private static final double MILLISECONDS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String description;
+    private final long duration;
+    private final long sentCount;
+    private final long failedCount;
+    private final long timedOutCount;
+    private final LatencyHistogram correctedHistogram;
+    private final LatencyHistogram uncorrectedHistogram;
+
+    LoadReport(String description, long duration, long sentCount, long failedCount, long timedOutCount,
+               LatencyHistogram correctedHistogram, LatencyHistogram uncorrectedHistogram) {
+        this.description = description;
+        this.duration = duration;
+        this.sentCount = sentCount;
+        this.failedCount = failedCount;
+        this.timedOutCount = timedOutCount;
+        this.correctedHistogram = correctedHistogram;
+        this.uncorrectedHistogram = uncorrectedHistogram;
+    }
+
+    /**
+     * @return the load model and its parameters.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the measured duration of the run in nanoseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the number of requests sent during the measured part of the run.
+     */
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * @return the number of requests answered successfully.
+     */
+    public long getCompletedCount() {
+        return uncorrectedHistogram.getTotalCount();
+    }
+
+    /**
+     * @return the number of requests answered with an error.
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * @return the number of requests left unanswered.
+     */
+    public long getTimedOutCount() {
+        return timedOutCount;
+    }
+
+    /**
+     * @return the number of successful responses per second.
+     */
+    public double getThroughput() {
+        return (duration > 0) ? getCompletedCount() / (duration / 1e9) : 0;
+    }
+
+    /**
+     * @return the latencies corrected for coordinated omission. These are the ones to size capacity with.
+     */
+    public LatencyHistogram getCorrectedHistogram() {
+        return correctedHistogram;
+    }
+
+    /**
+     * @return the latencies as measured from the time each request was actually sent.
+     */
+    public LatencyHistogram getUncorrectedHistogram() {
+        return uncorrectedHistogram;
+    }
+
+    /**
+     * Writes a summary of the run followed by the full percentile distribution of the corrected latencies, in
+     * milliseconds.
+     *
+     * @param out the stream to write to
+     */
+    public void print(PrintStream out) {
+        out.println("# " + description);
+        out.println(String.format("# Duration: %.1f s, sent: %d, completed: %d, failed: %d, timed out: %d, throughput: %.1f/s",
+                duration / 1e9, sentCount, getCompletedCount(), failedCount, timedOutCount, getThroughput()));
+        out.println(String.format("# %-10s %14s %14s", "Percentile", "Corrected (ms)", "Uncorrected (ms)"));
+
+        for (double percentile : SUMMARY_PERCENTILES) {
+            out.println(String.format("# %-10s %14.3f %14.3f", percentile, correctedHistogram.getValueAtPercentile(percentile) / MILLISECONDS,
+                    uncorrectedHistogram.getValueAtPercentile(percentile) / MILLISECONDS));
+        }
+
+        out.println();
+        correctedHistogram.outputPercentileDistribution(out, MILLISECONDS);
+    }
+
+    /**
+     * Writes the report to a file, see {@link #print(PrintStream)}.
+     *
+     * @param file the file to write, replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public void save(File file) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(file))) {
+            print(out);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+/**
+ * A system under test, reached through one of the library's clients. The load generator calls
+ * {@link #send(Request)} for every request it issues and the target completes the request once the matching
+ * response arrives.
+ */
+public interface LoadTarget {
+    /**
+     * Connects to the system under test. Called once, before the first request.
+     *
+     * @throws Exception if the system under test can't be reached
+     */
+    public void open() throws Exception;
+
+    /**
+     * Sends a request. Must not wait for the response: the target calls {@link Request#complete(boolean)} from
+     * whichever thread receives it.
+     *
+     * @param request the request to send
+     */
+    public void send(Request request);
+
+    /**
+     * Disconnects from the system under test. Called once, after the last request completed or timed out.
+     */
+    public void close();
+
+    /**
+     * A single request issued by the load generator.
+     */
+    public interface Request {
+        /**
+         * @return the request's sequence number, unique within a run.
+         */
+        public long getSequence();
+
+        /**
+         * Marks the request as answered. Only the first call counts.
+         *
+         * @param isSuccessful whether or not the response was the expected one
+         */
+        public void complete(boolean isSuccessful);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import com.linoagli.comprotocols.http.HttpRequest;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line entry point of the load generator.
+ *
+ * <pre>
+ * LoadTest tcp  &lt;host&gt; &lt;port&gt; [options]
+ * LoadTest udp  &lt;host&gt; &lt;port&gt; [options]
+ * LoadTest http &lt;url&gt; [options]
+ *
+ *   --rate &lt;n&gt;         open model at n requests per second (default 1000)
+ *   --users &lt;n&gt;        closed model with n virtual users, instead of the open model
+ *   --think &lt;ms&gt;       closed model think time (default 0)
+ *   --interval &lt;ms&gt;    closed model expected interval, for coordinated omission correction (default 0)
+ *   --duration &lt;s&gt;     measured duration (default 30)
+ *   --warmup &lt;s&gt;       warm up duration (default 5)
+ *   --timeout &lt;ms&gt;     response time out (default 5000)
+ *   --payload &lt;bytes&gt;  request size for tcp and udp (default 64)
+ *   --reply-port &lt;n&gt;   local port receiving udp echoes (default 7101)
+ *   --method &lt;name&gt;    http method (default GET)
+ *   --report &lt;file&gt;    also write the report to a file
+ *   --echo             start a local {@link EchoServer} on the target port first
+ * </pre>
+ */
+public class LoadTest {
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: LoadTest <tcp|udp> <host> <port> [options] | LoadTest http <url> [options]");
+            return;
+        }
+
+        String protocol = args[0];
+        boolean isHttp = protocol.equals("http");
+        int optionsStart = isHttp ? 2 : 3;
+        Map<String, String> options = parseOptions(Arrays.copyOfRange(args, Math.min(optionsStart, args.length), args.length));
+
+        long timeOut = Long.parseLong(options.getOrDefault("timeout", "5000"));
+        int payloadSize = Integer.parseInt(options.getOrDefault("payload", "64"));
+        boolean startEchoServer = options.containsKey("echo");
+
+        LoadTarget target;
+        EchoServer echoServer = null;
+
+        switch (protocol) {
+            case "tcp": {
+                int port = Integer.parseInt(args[2]);
+
+                if (startEchoServer) echoServer = new EchoServer(port, 0, 0);
+                target = new TCPLoadTarget(InetAddress.getByName(args[1]), port, payloadSize);
+                break;
+            }
+            case "udp": {
+                int port = Integer.parseInt(args[2]);
+                int replyPort = Integer.parseInt(options.getOrDefault("reply-port", "7101"));
+
+                if (startEchoServer) echoServer = new EchoServer(0, port, 0);
+                target = new UDPLoadTarget(InetAddress.getByName(args[1]), port, replyPort, payloadSize);
+                break;
+            }
+            case "http": {
+                String url = args[1];
+                HttpRequest.Method method = HttpRequest.Method.valueOf(options.getOrDefault("method", "GET"));
+
+                if (startEchoServer) echoServer = new EchoServer(0, 0, new URL(url).getPort());
+                target = new HttpLoadTarget(method, url, null, (int) timeOut);
+                break;
+            }
+            default:
+                System.out.println("Unknown protocol: " + protocol);
+                return;
+        }
+
+        if (echoServer != null) {
+            echoServer.start();
+            Thread.sleep(500); // Gives the servers' threads time to bind
+        }
+
+        LoadGenerator generator = new LoadGenerator(target);
+        generator.setTimeOut(timeOut);
+        generator.setWarmUpTime(Long.parseLong(options.getOrDefault("warmup", "5")) * 1000);
+        generator.setExpectedInterval(Long.parseLong(options.getOrDefault("interval", "0")));
+
+        long duration = Long.parseLong(options.getOrDefault("duration", "30")) * 1000;
+        LoadReport report;
+
+        if (options.containsKey("users")) {
+            report = generator.runClosedModel(Integer.parseInt(options.get("users")), duration,
+                    Long.parseLong(options.getOrDefault("think", "0")));
+        } else {
+            report = generator.runOpenModel(Double.parseDouble(options.getOrDefault("rate", "1000")), duration);
+        }
+
+        report.print(System.out);
+
+        if (options.containsKey("report")) report.save(new File(options.get("report")));
+
+        if (echoServer != null) echoServer.stop();
+
+        System.exit(0);
+    }
+
+    static String padding(int size) {
+        char[] padding = new char[Math.max(1, size)];
+        Arrays.fill(padding, 'x');
+
+        return new String(padding);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) continue;
+
+            String name = args[i].substring(2);
+            boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+
+            options.put(name, hasValue ? args[++i] : "");
+        }
+
+        return options;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.tcp.TCPClient;
+import com.linoagli.comprotocols.tcp.TCPServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends requests to an echo service over a single {@link TCPClient} connection. The TCP client receives responses
+ * in the order the queries were sent, so requests are completed in that order, and each response is checked
+ * against its query.
+ */
+public class TCPLoadTarget implements LoadTarget {
+    private static final long CONNECT_TIME_OUT = 10000;
+
+    private final InetAddress serverAddress;
+    private final int port;
+    private final String padding;
+
+    private final ArrayDeque<Request> requests = new ArrayDeque<>();
+    private TCPClient client;
+    private CountDownLatch connected;
+
+    /**
+     * @param serverAddress the echo server's address
+     * @param port the echo server's port
+     * @param payloadSize the approximate size of each query in bytes
+     */
+    public TCPLoadTarget(InetAddress serverAddress, int port, int payloadSize) {
+        this.serverAddress = serverAddress;
+        this.port = port;
+        this.padding = LoadTest.padding(payloadSize);
+    }
+
+    @Override
+    public void open() throws Exception {
+        connected = new CountDownLatch(1);
+
+        client = new TCPClient(new TCPClient.Callback() {
+            @Override
+            public void onConnected(InetAddress serverIp, int port) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(InetAddress serverIp, int port) {}
+
+            @Override
+            public void onDisconnected() {
+                failPendingRequests();
+            }
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if (TCPServer.LINE_PING_RESPONSE.equals(dataPacket.data)) return;
+
+                Request request;
+
+                synchronized (requests) {
+                    request = requests.pollFirst();
+                }
+
+                if (request != null) request.complete(query(request).equals(dataPacket.data));
+            }
+        });
+
+        client.connect(serverAddress, port);
+
+        if (!connected.await(CONNECT_TIME_OUT, TimeUnit.MILLISECONDS)) {
+            client.disconnect();
+            throw new IOException("Could not connect to " + serverAddress + ":" + port);
+        }
+    }
+
+    @Override
+    public void send(Request request) {
+        // Queued and queried under the same lock so that responses are matched with the right request
+        synchronized (requests) {
+            requests.addLast(request);
+            client.query(query(request));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (client != null) {
+            client.disconnect();
+            client = null;
+        }
+
+        failPendingRequests();
+    }
+
+    private String query(Request request) {
+        return request.getSequence() + " " + padding;
+    }
+
+    private void failPendingRequests() {
+        synchronized (requests) {
+            for (Request request : requests) request.complete(false);
+
+            requests.clear();
+        }
+    }
+}
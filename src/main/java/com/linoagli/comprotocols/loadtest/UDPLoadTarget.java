@@ -0,0 +1,106 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.Log;
+import com.linoagli.comprotocols.udp.UDPListener;
+import com.linoagli.comprotocols.udp.UDPSender;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends requests to an echo service as single {@link UDPSender} packets and receives the echoes on a
+ * {@link UDPListener}. Each packet reads <i>&lt;reply port&gt; &lt;sequence&gt; &lt;padding&gt;</i>; the echo
+ * service sends it back unchanged to the reply port. Lost packets are reported as timed out requests.
+ */
+public class UDPLoadTarget implements LoadTarget {
+    private static final long START_TIME_OUT = 10000;
+
+    private final InetAddress serverAddress;
+    private final int port;
+    private final int replyPort;
+    private final String padding;
+
+    private final Map<Long, Request> requests = new ConcurrentHashMap<>();
+    private UDPListener listener;
+
+    /**
+     * @param serverAddress the echo server's address
+     * @param port the echo server's port
+     * @param replyPort the local port to receive the echoes on
+     * @param payloadSize the approximate size of each packet in bytes
+     */
+    public UDPLoadTarget(InetAddress serverAddress, int port, int replyPort, int payloadSize) {
+        this.serverAddress = serverAddress;
+        this.port = port;
+        this.replyPort = replyPort;
+        this.padding = LoadTest.padding(payloadSize);
+    }
+
+    @Override
+    public void open() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+
+        listener = new UDPListener(replyPort, new UDPListener.Callback() {
+            @Override
+            public void onStarted(int port) {
+                started.countDown();
+            }
+
+            @Override
+            public void onStopping() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                String[] fields = dataPacket.data.split(" ", 3);
+                if (fields.length < 2) return;
+
+                try {
+                    Request request = requests.remove(Long.parseLong(fields[1]));
+                    if (request != null) request.complete(dataPacket.data.equals(packet(request)));
+                } catch (NumberFormatException e) {
+                    Log.warn(UDPLoadTarget.class, "UDP load target received an unexpected packet: {}", dataPacket.data);
+                }
+            }
+        });
+
+        listener.setDataPacketSize(Math.max(listener.getDataPacketSize(), padding.length() + 64));
+        listener.start();
+
+        if (!started.await(START_TIME_OUT, TimeUnit.MILLISECONDS)) {
+            listener.stop();
+            throw new IOException("Could not listen on port " + replyPort);
+        }
+    }
+
+    @Override
+    public void send(Request request) {
+        requests.put(request.getSequence(), request);
+
+        UDPSender.send(serverAddress, port, packet(request));
+    }
+
+    @Override
+    public void close() {
+        if (listener != null) {
+            listener.stop();
+            listener = null;
+        }
+
+        requests.clear();
+    }
+
+    private String packet(Request request) {
+        return replyPort + " " + request.getSequence() + " " + padding;
+    }
+}
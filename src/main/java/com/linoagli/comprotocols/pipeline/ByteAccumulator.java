@@ -0,0 +1,74 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A growable buffer used by the frame decoders to hold partial frames between reads.
+ */
+class ByteAccumulator {
+    private byte[] bytes = new byte[256];
+    private int start = 0;
+    private int end = 0;
+
+    void append(ByteBuffer data) {
+        int length = data.remaining();
+
+        if (end + length > bytes.length) {
+            int size = end - start;
+
+            if (size + length > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, size + length)];
+                System.arraycopy(bytes, start, grown, 0, size);
+                bytes = grown;
+            } else {
+                System.arraycopy(bytes, start, bytes, 0, size);
+            }
+
+            start = 0;
+            end = size;
+        }
+
+        data.get(bytes, end, length);
+        end += length;
+    }
+
+    int size() {
+        return end - start;
+    }
+
+    byte get(int index) {
+        return bytes[start + index];
+    }
+
+    int indexOf(byte value) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == value) return i - start;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Removes the first <i>length</i> bytes and returns them in a buffer of their own.
+     */
+    ByteBuffer take(int length) {
+        byte[] taken = new byte[length];
+        System.arraycopy(bytes, start, taken, 0, length);
+
+        skip(length);
+
+        return ByteBuffer.wrap(taken);
+    }
+
+    void skip(int length) {
+        start += length;
+
+        if (start == end) start = end = 0;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+/**
+ * A connection whose traffic flows through a {@link Pipeline}. Implemented by the connections of the stream based
+ * transports.
+ */
+public interface Channel {
+    /**
+     * @return the pipeline of this channel.
+     */
+    public Pipeline getPipeline();
+
+    /**
+     * Sends a message through the pipeline's outbound stages, last to first, and then to the connection.
+     *
+     * @param data the message bytes
+     */
+    public void send(byte[] data);
+
+    /**
+     * @return whether or not the connection is still open.
+     */
+    public boolean isOpen();
+
+    /**
+     * Closes the connection.
+     */
+    public void close();
+}
@@ -0,0 +1,42 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A stage of a {@link Pipeline}. A handler receives the data flowing through its position in the pipeline and
+ * decides what to pass on: it may forward it untouched, transform it, split it into several messages, hold it
+ * back until more data arrives or drop it.
+ *
+ * The buffers handed to a handler are only valid for the duration of the call; a handler that needs to keep data
+ * around must copy it. Both methods forward the data untouched by default.
+ */
+public interface Handler {
+    /**
+     * Called with data travelling from the connection towards the application.
+     *
+     * @param context the handler's context, used to pass data on to the next stage
+     * @param data the data
+     * @throws IOException if the data is invalid, which closes the connection
+     */
+    public default void onInbound(HandlerContext context, ByteBuffer data) throws IOException {
+        context.fireInbound(data);
+    }
+
+    /**
+     * Called with data travelling from the application towards the connection.
+     *
+     * @param context the handler's context, used to pass data on to the next stage
+     * @param data the data
+     * @throws IOException if the data can't be processed
+     */
+    public default void onOutbound(HandlerContext context, ByteBuffer data) throws IOException {
+        context.fireOutbound(data);
+    }
+}
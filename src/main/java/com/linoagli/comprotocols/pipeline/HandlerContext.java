@@ -0,0 +1,66 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Ties a {@link Handler} to its position in a {@link Pipeline}.
+ */
+public class HandlerContext {
+    private final Pipeline pipeline;
+    private final String name;
+    private final Handler handler;
+
+    HandlerContext(Pipeline pipeline, String name, Handler handler) {
+        this.pipeline = pipeline;
+        this.name = name;
+        this.handler = handler;
+    }
+
+    /**
+     * @return the pipeline this context belongs to.
+     */
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @return the name the handler was added to the pipeline with.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the handler of this context.
+     */
+    public Handler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Passes data on to the next stage towards the application.
+     *
+     * @param data the data
+     * @throws IOException if a later stage fails
+     */
+    public void fireInbound(ByteBuffer data) throws IOException {
+        pipeline.fireInbound(this, data);
+    }
+
+    /**
+     * Passes data on to the next stage towards the connection.
+     *
+     * @param data the data
+     * @throws IOException if a later stage fails
+     */
+    public void fireOutbound(ByteBuffer data) throws IOException {
+        pipeline.fireOutbound(this, data);
+    }
+}
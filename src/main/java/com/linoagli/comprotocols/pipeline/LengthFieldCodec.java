@@ -0,0 +1,56 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Frames binary messages with a length prefix. Each message is preceded by its length as a 4 byte big-endian
+ * integer. Inbound, complete messages are passed on without their prefix; outbound, the prefix is added.
+ */
+public class LengthFieldCodec implements Handler {
+    public static final int DEFAULT_MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private final ByteAccumulator accumulator = new ByteAccumulator();
+    private final int maxFrameSize;
+
+    public LengthFieldCodec() {
+        this(DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * @param maxFrameSize the largest message accepted, in bytes. Larger messages close the connection
+     */
+    public LengthFieldCodec(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    @Override
+    public void onInbound(HandlerContext context, ByteBuffer data) throws IOException {
+        accumulator.append(data);
+
+        while (accumulator.size() >= 4) {
+            int length = ((accumulator.get(0) & 0xFF) << 24) | ((accumulator.get(1) & 0xFF) << 16)
+                    | ((accumulator.get(2) & 0xFF) << 8) | (accumulator.get(3) & 0xFF);
+
+            if (length < 0 || length > maxFrameSize) throw new IOException("Invalid frame length: " + length);
+            if (accumulator.size() < 4 + length) return;
+
+            accumulator.skip(4);
+            context.fireInbound(accumulator.take(length));
+        }
+    }
+
+    @Override
+    public void onOutbound(HandlerContext context, ByteBuffer data) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(4 + data.remaining());
+        frame.putInt(data.remaining()).put(data).flip();
+
+        context.fireOutbound(frame);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Frames messages as lines of text. Inbound, the byte stream is split on line feeds and each line, without its
+ * line terminator, is passed on as a message. Outbound, a line feed is appended to each message.
+ */
+public class LineCodec implements Handler {
+    public static final int DEFAULT_MAX_LINE_LENGTH = 1024 * 1024;
+
+    private final ByteAccumulator accumulator = new ByteAccumulator();
+    private final int maxLineLength;
+
+    public LineCodec() {
+        this(DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    /**
+     * @param maxLineLength the longest line accepted, in bytes. Longer lines close the connection
+     */
+    public LineCodec(int maxLineLength) {
+        this.maxLineLength = maxLineLength;
+    }
+
+    @Override
+    public void onInbound(HandlerContext context, ByteBuffer data) throws IOException {
+        accumulator.append(data);
+
+        int index;
+
+        while ((index = accumulator.indexOf((byte) '\n')) >= 0) {
+            int length = (index > 0 && accumulator.get(index - 1) == '\r') ? index - 1 : index;
+
+            ByteBuffer line = accumulator.take(length);
+            accumulator.skip(index + 1 - length);
+
+            context.fireInbound(line);
+        }
+
+        if (accumulator.size() > maxLineLength) throw new IOException("Line exceeds " + maxLineLength + " bytes");
+    }
+
+    @Override
+    public void onOutbound(HandlerContext context, ByteBuffer data) throws IOException {
+        ByteBuffer line = ByteBuffer.allocate(data.remaining() + 1);
+        line.put(data).put((byte) '\n').flip();
+
+        context.fireOutbound(line);
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An ordered list of {@link Handler} stages sitting between a connection and the application.
+ *
+ * Stages are ordered from the connection side (first) to the application side (last). Inbound data, as read from
+ * the connection, flows from the first stage to the last and ends up in the transport's inbound sink, which
+ * decodes it and notifies the application. Outbound data flows from the last stage to the first and ends up in
+ * the transport's outbound sink, which writes it to the connection.
+ *
+ * Inbound data is fired from the transport's reading thread. Outbound data may be fired from any thread; the
+ * pipeline lets one outbound message through at a time.
+ */
+public class Pipeline {
+    private final Sink inboundSink;
+    private final Sink outboundSink;
+    private volatile HandlerContext[] contexts = new HandlerContext[0];
+    private final Object outboundLock = new Object();
+
+    public Pipeline(Sink inboundSink, Sink outboundSink) {
+        this.inboundSink = inboundSink;
+        this.outboundSink = outboundSink;
+    }
+
+    /**
+     * Adds a stage on the connection side of every existing stage.
+     *
+     * @param name the stage's name, used to look it up or remove it
+     * @param handler the stage's handler
+     * @return this pipeline
+     */
+    public synchronized Pipeline addFirst(String name, Handler handler) {
+        return add(0, name, handler);
+    }
+
+    /**
+     * Adds a stage on the application side of every existing stage.
+     *
+     * @param name the stage's name, used to look it up or remove it
+     * @param handler the stage's handler
+     * @return this pipeline
+     */
+    public synchronized Pipeline addLast(String name, Handler handler) {
+        return add(contexts.length, name, handler);
+    }
+
+    /**
+     * Removes a stage.
+     *
+     * @param name the stage's name
+     * @return the removed handler, or <i>null</i> if there was no stage with that name
+     */
+    public synchronized Handler remove(String name) {
+        int index = indexOf(name);
+        if (index < 0) return null;
+
+        HandlerContext[] updated = new HandlerContext[contexts.length - 1];
+        System.arraycopy(contexts, 0, updated, 0, index);
+        System.arraycopy(contexts, index + 1, updated, index, contexts.length - index - 1);
+
+        Handler handler = contexts[index].getHandler();
+        contexts = updated;
+
+        return handler;
+    }
+
+    /**
+     * @param name the stage's name
+     * @return the handler of the stage with that name, or <i>null</i> if there is none
+     */
+    public Handler get(String name) {
+        int index = indexOf(name);
+
+        return (index >= 0) ? contexts[index].getHandler() : null;
+    }
+
+    /**
+     * @return the number of stages in this pipeline.
+     */
+    public int size() {
+        return contexts.length;
+    }
+
+    /**
+     * Runs data read from the connection through every stage, first to last. Called by transports.
+     *
+     * @param data the data read from the connection
+     * @throws IOException if a stage rejects the data
+     */
+    public void fireInbound(ByteBuffer data) throws IOException {
+        fireInbound(null, data);
+    }
+
+    /**
+     * Runs data sent by the application through every stage, last to first. Called by transports.
+     *
+     * @param data the data to send
+     * @throws IOException if a stage fails or the data can't be written
+     */
+    public void fireOutbound(ByteBuffer data) throws IOException {
+        synchronized (outboundLock) {
+            fireOutbound(null, data);
+        }
+    }
+
+    void fireInbound(HandlerContext from, ByteBuffer data) throws IOException {
+        HandlerContext[] contexts = this.contexts;
+        int next = (from == null) ? 0 : indexOf(contexts, from) + 1;
+
+        // A context that is no longer part of the pipeline was removed while data travelled through it
+        if ((from == null || next > 0) && next < contexts.length) {
+            contexts[next].getHandler().onInbound(contexts[next], data);
+            return;
+        }
+
+        inboundSink.accept(data);
+    }
+
+    void fireOutbound(HandlerContext from, ByteBuffer data) throws IOException {
+        HandlerContext[] contexts = this.contexts;
+        int next = (from == null) ? contexts.length - 1 : indexOf(contexts, from) - 1;
+
+        if (next >= 0) {
+            contexts[next].getHandler().onOutbound(contexts[next], data);
+            return;
+        }
+
+        outboundSink.accept(data);
+    }
+
+    private Pipeline add(int index, String name, Handler handler) {
+        if (indexOf(name) >= 0) throw new IllegalArgumentException("A stage named " + name + " already exists");
+
+        HandlerContext[] updated = new HandlerContext[contexts.length + 1];
+        System.arraycopy(contexts, 0, updated, 0, index);
+        updated[index] = new HandlerContext(this, name, handler);
+        System.arraycopy(contexts, index, updated, index + 1, contexts.length - index);
+
+        contexts = updated;
+
+        return this;
+    }
+
+    private int indexOf(String name) {
+        HandlerContext[] contexts = this.contexts;
+
+        for (int i = 0; i < contexts.length; i++) {
+            if (contexts[i].getName().equals(name)) return i;
+        }
+
+        return -1;
+    }
+
+    private static int indexOf(HandlerContext[] contexts, HandlerContext context) {
+        for (int i = 0; i < contexts.length; i++) {
+            if (contexts[i] == context) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * The end of a pipeline, provided by the transport.
+     */
+    public interface Sink {
+        /**
+         * Receives the data that made it through every stage.
+         *
+         * @param data the data
+         * @throws IOException if the data can't be handled
+         */
+        public void accept(ByteBuffer data) throws IOException;
+    }
+
+    /**
+     * Sets up the pipeline of each new connection, typically by adding stages around the transport's default ones.
+     */
+    public interface Initializer {
+        /**
+         * Called once for each new connection, before any data flows through its pipeline.
+         *
+         * @param pipeline the connection's pipeline, already holding the transport's default stages
+         */
+        public void initialize(Pipeline pipeline);
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages and bytes flowing through its position in a pipeline, without altering them. A single
+ * counter may be shared by the pipelines of several connections to get totals.
+ */
+public class TrafficCounter implements Handler {
+    private final AtomicLong inboundMessages = new AtomicLong();
+    private final AtomicLong inboundBytes = new AtomicLong();
+    private final AtomicLong outboundMessages = new AtomicLong();
+    private final AtomicLong outboundBytes = new AtomicLong();
+
+    @Override
+    public void onInbound(HandlerContext context, ByteBuffer data) throws IOException {
+        inboundMessages.incrementAndGet();
+        inboundBytes.addAndGet(data.remaining());
+
+        context.fireInbound(data);
+    }
+
+    @Override
+    public void onOutbound(HandlerContext context, ByteBuffer data) throws IOException {
+        outboundMessages.incrementAndGet();
+        outboundBytes.addAndGet(data.remaining());
+
+        context.fireOutbound(data);
+    }
+
+    public long getInboundMessages() {
+        return inboundMessages.get();
+    }
+
+    public long getInboundBytes() {
+        return inboundBytes.get();
+    }
+
+    public long getOutboundMessages() {
+        return outboundMessages.get();
+    }
+
+    public long getOutboundBytes() {
+        return outboundBytes.get();
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.serialization
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.serialization;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes the messages of one type. Codecs are written by hand, or generated, for each message type and
+ * registered with a {@link MessageSerializer}; they must write and read the fields in the same order.
+ *
+ * To keep older peers compatible, new fields should only be appended at the end of a message and decoded when
+ * {@link MessageReader#hasRemaining()} says they are present.
+ *
+ * @param <T> the message type
+ */
+public interface MessageCodec<T> {
+    /**
+     * Writes the fields of a message.
+     *
+     * @param message the message
+     * @param writer the writer to write the fields to
+     */
+    public void encode(T message, MessageWriter writer);
+
+    /**
+     * Reads the fields of a message.
+     *
+     * @param reader the reader positioned at the first field
+     * @return the decoded message
+     * @throws IOException if the data is truncated or invalid
+     */
+    public T decode(MessageReader reader) throws IOException;
+}
@@ -0,0 +1,153 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.serialization
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the fields of a message written by a {@link MessageWriter}, in the order they were written.
+ *
+ * Not thread safe.
+ */
+public class MessageReader {
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    public MessageReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public MessageReader(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * @return whether or not there are fields left to read. Lets codecs decode fields that older peers don't send.
+     */
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    /**
+     * @return the number of bytes left to read.
+     */
+    public int remaining() {
+        return limit - position;
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public byte readByte() throws IOException {
+        require(1);
+
+        return buffer[position++];
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = readByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) return value;
+        }
+
+        throw new IOException("Malformed variable length integer");
+    }
+
+    public int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) return value;
+        }
+
+        throw new IOException("Malformed variable length integer");
+    }
+
+    public long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public int readInt() throws IOException {
+        require(4);
+
+        return ((buffer[position++] & 0xFF) << 24) | ((buffer[position++] & 0xFF) << 16)
+                | ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
+    }
+
+    public long readLong() throws IOException {
+        require(8);
+
+        long value = 0;
+
+        for (int i = 0; i < 8; i++) value = (value << 8) | (buffer[position++] & 0xFF);
+
+        return value;
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public String readString() throws IOException {
+        int length = readLength();
+        if (length < 0) return null;
+
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+
+        return value;
+    }
+
+    public byte[] readBytes() throws IOException {
+        int length = readLength();
+        if (length < 0) return null;
+
+        byte[] value = new byte[length];
+        System.arraycopy(buffer, position, value, 0, length);
+        position += length;
+
+        return value;
+    }
+
+    private int readLength() throws IOException {
+        int length = readVarInt() - 1;
+
+        if (length < -1) throw new IOException("Malformed length: " + length);
+        if (length >= 0) require(length);
+
+        return length;
+    }
+
+    private void require(int length) throws IOException {
+        if (length > limit - position) throw new EOFException("Message truncated");
+    }
+}
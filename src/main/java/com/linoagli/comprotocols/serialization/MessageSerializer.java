@@ -0,0 +1,199 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.serialization
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes typed messages with a compact binary format, without reflection. Every message type is registered
+ * with a numeric type id and a {@link MessageCodec}; a serialized message is its type id, as a variable length
+ * integer, followed by the fields written by its codec.
+ *
+ * Messages are encoded into per-thread pooled {@link MessageWriter} buffers, so serializing only allocates the
+ * resulting array. The serialized bytes can be sent as is over any of the library's transports, for instance
+ * through a TCP connection whose pipeline uses a {@link com.linoagli.comprotocols.pipeline.LengthFieldCodec}, or
+ * as a single UDP packet.
+ *
+ * Codecs that embed other registered messages should write them with {@link #serialize(Object, MessageWriter)},
+ * into the writer they were given, and read them back with {@link #deserialize(MessageReader)}.
+ *
+ * Both peers must register the same types with the same ids. Registration is thread safe, but is meant to be done
+ * once at start up.
+ */
+public class MessageSerializer {
+    public static final int MAX_TYPE_ID = 0xFFFF;
+
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final MessageSerializer DEFAULT = new MessageSerializer();
+
+    private final ConcurrentHashMap<Class<?>, Registration<?>> registrationsByType = new ConcurrentHashMap<>();
+    private volatile Registration<?>[] registrationsById = new Registration<?>[16];
+    private final ThreadLocal<MessageWriter> writers = ThreadLocal.withInitial(MessageWriter::new);
+
+    /**
+     * @return the serializer shared by the whole application. {@link com.linoagli.comprotocols.Utils#encodeBase64(Object)}
+     * uses it for the types registered with it.
+     */
+    public static MessageSerializer getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registers a message type. Only instances of this exact class are serialized with the codec.
+     *
+     * @param typeId the type's id, between <b>0</b> and {@link #MAX_TYPE_ID}, written in front of every message
+     * @param type the message class
+     * @param codec the codec of the message type
+     * @param <T> the message type
+     * @return this serializer
+     */
+    public synchronized <T> MessageSerializer register(int typeId, Class<T> type, MessageCodec<T> codec) {
+        if (typeId < 0 || typeId > MAX_TYPE_ID) throw new IllegalArgumentException("Invalid type id: " + typeId);
+        if (registrationsByType.containsKey(type)) throw new IllegalArgumentException(type.getName() + " is already registered");
+
+        Registration<?>[] registrations = registrationsById;
+
+        if (typeId < registrations.length && registrations[typeId] != null) {
+            throw new IllegalArgumentException("Type id " + typeId + " is already used by " + registrations[typeId].type.getName());
+        }
+
+        Registration<T> registration = new Registration<>(typeId, type, codec);
+
+        registrations = Arrays.copyOf(registrations, Math.max(registrations.length, typeId + 1));
+        registrations[typeId] = registration;
+
+        registrationsById = registrations;
+        registrationsByType.put(type, registration);
+
+        return this;
+    }
+
+    /**
+     * @param type the message class
+     * @return whether or not the class was registered with this serializer.
+     */
+    public boolean isRegistered(Class<?> type) {
+        return registrationsByType.containsKey(type);
+    }
+
+    /**
+     * Serializes a message using a pooled buffer.
+     *
+     * @param message the message, an instance of a registered type
+     * @return the serialized message
+     */
+    public byte[] serialize(Object message) {
+        MessageWriter writer = writers.get();
+
+        try {
+            serialize(message, writer.reset());
+
+            return writer.toByteArray();
+        } finally {
+            // Don't let a single large message pin a large buffer to the thread
+            if (writer.capacity() > MAX_POOLED_CAPACITY) writers.remove();
+        }
+    }
+
+    /**
+     * Serializes a message at the end of the given writer, letting the caller manage the buffer.
+     *
+     * @param message the message, an instance of a registered type
+     * @param writer the writer to serialize the message to
+     */
+    public void serialize(Object message, MessageWriter writer) {
+        if (message == null) throw new IllegalArgumentException("Can't serialize a null message");
+
+        Registration<?> registration = registrationsByType.get(message.getClass());
+        if (registration == null) throw new IllegalArgumentException(message.getClass().getName() + " is not registered");
+
+        writer.writeVarInt(registration.typeId);
+        registration.encode(message, writer);
+    }
+
+    /**
+     * @param bytes the serialized message
+     * @return the deserialized message
+     * @throws IOException if the message is truncated, invalid or of an unknown type
+     */
+    public Object deserialize(byte[] bytes) throws IOException {
+        return deserialize(new MessageReader(bytes));
+    }
+
+    /**
+     * @param buffer a heap buffer holding the serialized message between its position and its limit
+     * @return the deserialized message
+     * @throws IOException if the message is truncated, invalid or of an unknown type
+     */
+    public Object deserialize(ByteBuffer buffer) throws IOException {
+        if (!buffer.hasArray()) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+
+            return deserialize(bytes);
+        }
+
+        return deserialize(new MessageReader(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+    }
+
+    /**
+     * @param bytes the serialized message
+     * @param type the expected message class
+     * @param <T> the message type
+     * @return the deserialized message
+     * @throws IOException if the message is truncated, invalid or not of the expected type
+     */
+    public <T> T deserialize(byte[] bytes, Class<T> type) throws IOException {
+        Object message = deserialize(bytes);
+
+        if (!type.isInstance(message)) {
+            throw new IOException("Expected a " + type.getName() + " message, got a " + message.getClass().getName());
+        }
+
+        return type.cast(message);
+    }
+
+    /**
+     * Deserializes the next message from a reader, for readers holding several messages back to back.
+     *
+     * @param reader the reader positioned at the start of a message
+     * @return the deserialized message
+     * @throws IOException if the message is truncated, invalid or of an unknown type
+     */
+    public Object deserialize(MessageReader reader) throws IOException {
+        int typeId = reader.readVarInt();
+        Registration<?>[] registrations = registrationsById;
+
+        if (typeId < 0 || typeId >= registrations.length || registrations[typeId] == null) {
+            throw new IOException("Unknown message type id: " + typeId);
+        }
+
+        Object message = registrations[typeId].codec.decode(reader);
+        if (message == null) throw new IOException("Codec of type id " + typeId + " decoded a null message");
+
+        return message;
+    }
+
+    private static class Registration<T> {
+        private final int typeId;
+        private final Class<T> type;
+        private final MessageCodec<T> codec;
+
+        private Registration(int typeId, Class<T> type, MessageCodec<T> codec) {
+            this.typeId = typeId;
+            this.type = type;
+            this.codec = codec;
+        }
+
+        private void encode(Object message, MessageWriter writer) {
+            codec.encode(type.cast(message), writer);
+        }
+    }
+}
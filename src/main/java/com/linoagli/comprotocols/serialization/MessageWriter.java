@@ -0,0 +1,232 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.serialization
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.serialization;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the fields of a message into a growable buffer. Integers are written as variable length integers, so small
+ * values take a single byte; strings and byte arrays are prefixed with their length. A writer can be reset and
+ * reused for any number of messages, which is how {@link MessageSerializer} pools them.
+ *
+ * Not thread safe.
+ */
+public class MessageWriter {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private byte[] buffer;
+    private int position = 0;
+
+    public MessageWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MessageWriter(int capacity) {
+        this.buffer = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * @return the number of bytes written since the last reset.
+     */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * @return the current size of this writer's buffer in bytes.
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Discards everything written so far, keeping the buffer for the next message.
+     *
+     * @return this writer
+     */
+    public MessageWriter reset() {
+        position = 0;
+
+        return this;
+    }
+
+    /**
+     * @return a copy of the bytes written since the last reset.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * Returns the bytes written since the last reset without copying them. The buffer is only valid until this
+     * writer is written to or reset again.
+     *
+     * @return a buffer over this writer's content
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(buffer, 0, position);
+    }
+
+    public MessageWriter writeBoolean(boolean value) {
+        return writeByte(value ? 1 : 0);
+    }
+
+    public MessageWriter writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+
+        return this;
+    }
+
+    /**
+     * Writes an integer as a variable length integer of 1 to 5 bytes. Negative values always take 5 bytes; use
+     * {@link #writeSignedVarInt(int)} for values that are often negative.
+     *
+     * @param value the value
+     * @return this writer
+     */
+    public MessageWriter writeVarInt(int value) {
+        ensureCapacity(5);
+
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[position++] = (byte) value;
+
+        return this;
+    }
+
+    /**
+     * Writes an integer as a zigzag encoded variable length integer, so small negative values stay small.
+     *
+     * @param value the value
+     * @return this writer
+     */
+    public MessageWriter writeSignedVarInt(int value) {
+        return writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes a long as a variable length integer of 1 to 10 bytes.
+     *
+     * @param value the value
+     * @return this writer
+     */
+    public MessageWriter writeVarLong(long value) {
+        ensureCapacity(10);
+
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[position++] = (byte) value;
+
+        return this;
+    }
+
+    /**
+     * Writes a long as a zigzag encoded variable length integer, so small negative values stay small.
+     *
+     * @param value the value
+     * @return this writer
+     */
+    public MessageWriter writeSignedVarLong(long value) {
+        return writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes an integer as 4 big-endian bytes.
+     *
+     * @param value the value
+     * @return this writer
+     */
+    public MessageWriter writeInt(int value) {
+        ensureCapacity(4);
+
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+
+        return this;
+    }
+
+    /**
+     * Writes a long as 8 big-endian bytes.
+     *
+     * @param value the value
+     * @return this writer
+     */
+    public MessageWriter writeLong(long value) {
+        ensureCapacity(8);
+
+        for (int shift = 56; shift >= 0; shift -= 8) buffer[position++] = (byte) (value >>> shift);
+
+        return this;
+    }
+
+    public MessageWriter writeFloat(float value) {
+        return writeInt(Float.floatToIntBits(value));
+    }
+
+    public MessageWriter writeDouble(double value) {
+        return writeLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Writes a string as UTF-8, prefixed with its length. <i>null</i> is preserved.
+     *
+     * @param value the string, may be <i>null</i>
+     * @return this writer
+     */
+    public MessageWriter writeString(String value) {
+        if (value == null) return writeVarInt(0);
+
+        int length = value.length();
+        boolean isAscii = true;
+
+        for (int i = 0; i < length && isAscii; i++) isAscii = value.charAt(i) < 0x80;
+
+        if (!isAscii) return writeBytes(value.getBytes(StandardCharsets.UTF_8));
+
+        writeVarInt(length + 1);
+        ensureCapacity(length);
+
+        for (int i = 0; i < length; i++) buffer[position++] = (byte) value.charAt(i);
+
+        return this;
+    }
+
+    /**
+     * Writes a byte array, prefixed with its length. <i>null</i> is preserved.
+     *
+     * @param value the bytes, may be <i>null</i>
+     * @return this writer
+     */
+    public MessageWriter writeBytes(byte[] value) {
+        if (value == null) return writeVarInt(0);
+
+        writeVarInt(value.length + 1);
+        ensureCapacity(value.length);
+
+        System.arraycopy(value, 0, buffer, position, value.length);
+        position += value.length;
+
+        return this;
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length <= buffer.length) return;
+
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+    }
+}
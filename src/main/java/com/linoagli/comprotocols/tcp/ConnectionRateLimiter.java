@@ -0,0 +1,80 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.java.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A per address token bucket used by {@link TCPServer} to throttle how fast a single remote host can open
+ * new connections.
+ */
+class ConnectionRateLimiter {
+    private final double tokensPerNano;
+    private final double burst;
+    private final Map<InetAddress, Bucket> buckets = new HashMap<>();
+
+    ConnectionRateLimiter(double connectionsPerSecond, int burst) {
+        this.tokensPerNano = connectionsPerSecond / 1_000_000_000d;
+        this.burst = Math.max(1, burst);
+    }
+
+    /**
+     * Takes a token from the bucket of the given address.
+     *
+     * @param address the remote address of the incoming connection
+     * @return whether or not the connection should be admitted
+     */
+    synchronized boolean tryAcquire(InetAddress address) {
+        long now = System.nanoTime();
+        Bucket bucket = buckets.get(address);
+
+        if (bucket == null) {
+            bucket = new Bucket(burst, now);
+            buckets.put(address, bucket);
+        }
+
+        bucket.refill(now);
+
+        if (bucket.tokens < 1) return false;
+
+        bucket.tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Drops the buckets that have refilled completely, they hold no state worth keeping.
+     */
+    synchronized void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<Bucket> iterator = buckets.values().iterator();
+
+        while (iterator.hasNext()) {
+            Bucket bucket = iterator.next();
+            bucket.refill(now);
+
+            if (bucket.tokens >= burst) iterator.remove();
+        }
+    }
+
+    private class Bucket {
+        private double tokens;
+        private long lastRefill;
+
+        private Bucket(double tokens, long lastRefill) {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+}
@@ -7,18 +7,42 @@
 package com.linoagli.comprotocols.tcp;
 
 import com.linoagli.comprotocols.DataPacket;
-
-import java.io.BufferedReader;
+import com.linoagli.comprotocols.Log;
+import com.linoagli.comprotocols.SocketConfig;
+import com.linoagli.comprotocols.Utils;
+import com.linoagli.comprotocols.WriteQueue;
+import com.linoagli.comprotocols.capture.CaptureHandler;
+import com.linoagli.comprotocols.capture.CaptureJournal;
+import com.linoagli.comprotocols.jfr.Events;
+import com.linoagli.comprotocols.pipeline.LengthFieldCodec;
+import com.linoagli.comprotocols.pipeline.LineCodec;
+import com.linoagli.comprotocols.pipeline.Pipeline;
+
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides a simplified client side implementation of a TCP connection.
+ *
+ * Queries and responses flow through a {@link Pipeline} that frames them as lines of text by default. Additional
+ * stages can be installed with {@link #setPipelineInitializer(Pipeline.Initializer)}.
+ *
+ * In the multiplexed mode, see {@link #setMultiplexed(boolean)}, each query is sent on a stream of its own with
+ * {@link #request(String)} and its response completes the returned future as soon as it arrives, whatever the order
+ * the server answers in.
+ *
+ * A client on the same host as its server can connect through a Unix domain socket, see {@link #connect(File)}.
  */
 public class TCPClient {
     public static final String LINE_PING_QUERY = "comprotocols-query-mRPrLr5t2hURfDULcReMQf7BWsazASUJ";
@@ -28,17 +52,25 @@ public class TCPClient {
 
     private InetAddress serverAddress;
     private int port;
+    private File socketPath;
+    private String transport;
+    private String peer;
     private int socketTimeOut = 0;
-    private boolean isRunning = false;
+    private int writeHighWaterMark = WriteQueue.DEFAULT_HIGH_WATER_MARK;
+    private SocketConfig socketConfig = new SocketConfig().setTcpNoDelay(true);
     private boolean isNullResponseBad = true;
+    private boolean isMultiplexed = false;
+    private volatile boolean isMultiplexing = false;
+
+    private Pipeline.Initializer pipelineInitializer;
+    private CaptureJournal captureJournal;
 
-    private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
-    private List<String> queries = new ArrayList<>();
+    private volatile WriteQueue queries;
+    private volatile Pipeline pipeline;
+    private volatile Map<Integer, CompletableFuture<DataPacket>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger nextStreamId = new AtomicInteger(1);
 
-    private WorkerThread workerThread;
-    private LinePingThread linePingThread;
+    private volatile WorkerThread workerThread;
 
     public TCPClient(Callback callback) {
         this.callback = callback;
@@ -48,7 +80,8 @@ public class TCPClient {
      * Sets the socket time out delay in milliseconds. When set and response is received from the server
      * after a query, a socket exception is raised and the client disconnects itself from the server.
      *
-     * The default value is <b>0</b> which is interpreted as an <i>infinite</i> delay.
+     * The default value is <b>0</b> which is interpreted as an <i>infinite</i> delay. It does not apply to Unix
+     * domain socket connections.
      *
      * @param socketTimeOut the time out delay in milliseconds
      */
@@ -70,6 +103,83 @@ public class TCPClient {
         this.isNullResponseBad = isNullResponseBad;
     }
 
+    /**
+     * Sets the number of query bytes that may be queued for sending before this client reports write
+     * backpressure through {@link Callback#onWriteBackpressure(boolean)}. Applies from the next call to
+     * {@link #connect(InetAddress, int)}.
+     *
+     * This value defaults to <b>1 MiB</b>
+     *
+     * @param writeHighWaterMark the high-water mark in bytes
+     */
+    public void setWriteHighWaterMark(int writeHighWaterMark) {
+        this.writeHighWaterMark = writeHighWaterMark;
+    }
+
+    /**
+     * Sets the options of the socket connecting to the server, such as {@link SocketConfig#lowLatency()}. They
+     * are applied before connecting, and don't apply to Unix domain sockets. Applies from the next call to
+     * {@link #connect(InetAddress, int)}.
+     *
+     * This value defaults to options that only disable Nagle's algorithm, which would otherwise hold each query
+     * back until the previous response is acknowledged
+     *
+     * @param socketConfig the options
+     */
+    public void setSocketConfig(SocketConfig socketConfig) {
+        this.socketConfig = (socketConfig != null) ? socketConfig : new SocketConfig();
+    }
+
+    /**
+     * Sets whether or not this client speaks the multiplexed protocol, see {@link TCPServer#setMultiplexed(boolean)}.
+     * Applies from the next call to {@link #connect(InetAddress, int)}.
+     *
+     * This flag is cleared by default
+     *
+     * @param isMultiplexed the flag
+     */
+    public void setMultiplexed(boolean isMultiplexed) {
+        this.isMultiplexed = isMultiplexed;
+    }
+
+    /**
+     * @return the number of requests sent in the multiplexed mode and still waiting for their response.
+     */
+    public int getPendingRequestCount() {
+        return pendingRequests.size();
+    }
+
+    /**
+     * Sets the initializer called with the pipeline of every new connection. The pipeline already holds the
+     * client's framing stage, named <i>line-codec</i>, or <i>frame-codec</i> in the multiplexed mode, which the
+     * initializer may keep, surround or replace.
+     * Applies from the next call to {@link #connect(InetAddress, int)}.
+     *
+     * @param pipelineInitializer the initializer
+     */
+    public void setPipelineInitializer(Pipeline.Initializer pipelineInitializer) {
+        this.pipelineInitializer = pipelineInitializer;
+    }
+
+    /**
+     * Sets the journal recording the traffic of the connection, as the bytes read from and written to the socket,
+     * see {@link CaptureJournal}. Applies from the next call to {@link #connect(InetAddress, int)}.
+     *
+     * This value defaults to <b>null</b>, which records nothing
+     *
+     * @param captureJournal the journal
+     */
+    public void setCaptureJournal(CaptureJournal captureJournal) {
+        this.captureJournal = captureJournal;
+    }
+
+    /**
+     * @return the pipeline of the current connection, or <i>null</i> if this client never connected.
+     */
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
     /**
      * @return the port number this client is expecting the server to be listening to.
      */
@@ -81,7 +191,9 @@ public class TCPClient {
      * @return the size of the query queue.
      */
     public int getQueryQueueSize() {
-        return queries.size();
+        WriteQueue queries = this.queries;
+
+        return (queries != null) ? queries.size() : 0;
     }
 
     /**
@@ -95,7 +207,9 @@ public class TCPClient {
      * @return whether or not this client is currently connected to a server and set to send and receive data.
      */
     public boolean isRunning() {
-        return isRunning;
+        WorkerThread workerThread = this.workerThread;
+
+        return workerThread != null && workerThread.isRunning;
     }
 
     /**
@@ -107,132 +221,327 @@ public class TCPClient {
     public void connect(InetAddress serverIp, int port) {
         this.serverAddress = serverIp;
         this.port = port;
+        this.socketPath = null;
+
+        start();
+    }
+
+    /**
+     * Attempt to connect to a server on the same host listening to the given Unix domain socket, see
+     * {@link TCPServer#start(File)}. Everything else works as over TCP; the callbacks report the loopback address
+     * and port <b>0</b>. Requires Java 16 or later at runtime.
+     *
+     * @param socketPath the path of the server's socket file
+     */
+    public void connect(File socketPath) {
+        this.serverAddress = InetAddress.getLoopbackAddress();
+        this.port = 0;
+        this.socketPath = socketPath;
+
+        start();
+    }
+
+    /**
+     * @return the path of the Unix domain socket this client connects to, or <i>null</i> if it connects over TCP.
+     */
+    public File getSocketPath() {
+        return socketPath;
+    }
 
+    private synchronized void start() {
         disconnect(); // Just to make sure all is neat and clean before getting it dirty again... XD
 
-        workerThread = new WorkerThread();
+        String transport = (socketPath != null) ? Events.TRANSPORT_UNIX : Events.TRANSPORT_TCP;
+        String peer = (socketPath != null) ? "unix:" + socketPath : serverAddress.getHostAddress() + ":" + port;
+
+        WriteQueue queries = new WriteQueue(isBackpressured -> {
+            if (callback != null) callback.onWriteBackpressure(isBackpressured);
+        });
+        queries.setHighWaterMark(writeHighWaterMark);
+        queries.setPeer(transport, peer);
+
+        Map<Integer, CompletableFuture<DataPacket>> pendingRequests = new ConcurrentHashMap<>();
+        WorkerThread workerThread = new WorkerThread(queries, pendingRequests, transport, peer);
+
+        isMultiplexing = isMultiplexed;
+
+        Pipeline pipeline = new Pipeline(isMultiplexing ? this::onFrame : workerThread::onResponse, data -> {
+            if (!queries.offer(Utils.toByteArray(data))) throw new IOException("TCP client is not connected. Query discarded.");
+        });
+
+        if (isMultiplexing) {
+            pipeline.addLast("frame-codec", new LengthFieldCodec());
+        } else {
+            pipeline.addLast("line-codec", new LineCodec());
+        }
+
+        if (pipelineInitializer != null) pipelineInitializer.initialize(pipeline);
+
+        if (captureJournal != null) {
+            pipeline.addFirst("capture", new CaptureHandler(captureJournal, peer));
+        }
+
+        // Each connection gets its own queue, pipeline and pending requests, so a worker that is still winding
+        // down after a disconnect can't touch the next connection's
+        this.queries = queries;
+        this.pipeline = pipeline;
+        this.pendingRequests = pendingRequests;
+
+        workerThread.pipeline = pipeline;
         workerThread.start();
+
+        this.workerThread = workerThread;
     }
 
     /**
      * Close this client's connection to the server.
      */
-    public void disconnect() {
+    public synchronized void disconnect() {
         if (workerThread != null) {
             workerThread.cancel();
             workerThread = null;
         }
-
-        cleanUp();
     }
 
     /**
-     * Send a request to the server this client is connected to.
+     * Send a request to the server this client is connected to. Queries are queued and sent out in batches;
+     * responses are delivered in the order the queries were made, or in the order they arrive in the multiplexed
+     * mode.
      *
      * @param query the query string. <i>null</i> and <i>empty</i> strings will be ignored.
      */
     public void query(String query) {
         if (query == null || query.trim().isEmpty()) {
-            System.out.println("Null or empty query string not allowed. Moving on...");
+            Log.warn(TCPClient.class, "Null or empty query string not allowed. Moving on...");
+            return;
+        }
+
+        if (isMultiplexing) {
+            request(query).thenAccept(dataPacket -> {
+                if (callback != null) callback.onDataReceived(dataPacket);
+            });
             return;
         }
 
-        queries.add(query);
+        Pipeline pipeline = this.pipeline;
+
+        if (pipeline == null) {
+            Log.warn(TCPClient.class, "TCP client is not connected. Query discarded.");
+            return;
+        }
+
+        try {
+            pipeline.fireOutbound(ByteBuffer.wrap(query.getBytes()));
+        } catch (IOException e) {
+            Log.warn(TCPClient.class, "{}", e.getMessage());
+        }
     }
 
-    private void startLinePing() {
-        linePingThread = new LinePingThread();
-        linePingThread.start();
+    /**
+     * Sends a query on a stream of its own. Only valid in the multiplexed mode.
+     *
+     * @param query the query string
+     * @return a future completed with the response, or completed exceptionally if the client is not connected or
+     * disconnects before the response arrives.
+     */
+    public CompletableFuture<DataPacket> request(String query) {
+        return request(query.getBytes());
     }
 
-    private void stopLinePing() {
-        if (linePingThread != null) {
-            linePingThread.cancel();
-            linePingThread = null;
+    /**
+     * Sends a query on a stream of its own. Only valid in the multiplexed mode.
+     *
+     * @param query the query bytes
+     * @return a future completed with the response, or completed exceptionally if the client is not connected or
+     * disconnects before the response arrives.
+     */
+    public CompletableFuture<DataPacket> request(byte[] query) {
+        CompletableFuture<DataPacket> future = new CompletableFuture<>();
+        Pipeline pipeline = this.pipeline;
+
+        if (!isMultiplexing || pipeline == null) {
+            future.completeExceptionally(new IllegalStateException("TCP client is not connected in the multiplexed mode"));
+            return future;
         }
-    }
 
-    private void cleanUp() {
-        queries.clear();
+        int streamId;
 
-        if (in != null) {
-            try {
-                in.close();
-            }
-            catch (Exception e) {
-                e.printStackTrace();
-            }
+        // Stream 0 is reserved for the server's own messages
+        while ((streamId = nextStreamId.getAndIncrement()) == 0 || pendingRequests.putIfAbsent(streamId, future) != null);
 
-            in = null;
+        ByteBuffer frame = ByteBuffer.allocate(4 + query.length);
+        frame.putInt(streamId).put(query).flip();
+
+        try {
+            pipeline.fireOutbound(frame);
+        } catch (IOException e) {
+            pendingRequests.remove(streamId);
+            future.completeExceptionally(e);
         }
 
-        if (out != null) {
-            out.close();
-            out = null;
+        return future;
+    }
+
+    private void onFrame(ByteBuffer data) throws IOException {
+        if (data.remaining() < 4) throw new IOException("Multiplexed frame too short: " + data.remaining() + " bytes");
+
+        int streamId = data.getInt();
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+
+        DataPacket dataPacket = new DataPacket(serverAddress, port, bytes);
+        CompletableFuture<DataPacket> future = (streamId != 0) ? pendingRequests.remove(streamId) : null;
+
+        if (future != null) {
+            future.complete(dataPacket);
+        } else if (callback != null) {
+            callback.onDataReceived(dataPacket);
         }
+    }
 
-        if (socket != null) {
-            try {
-                socket.close();
-            }
-            catch (Exception e) {
-                e.printStackTrace();
-            }
+    private static void failPendingRequests(Map<Integer, CompletableFuture<DataPacket>> pendingRequests) {
+        IOException exception = new IOException("TCP client disconnected");
+
+        for (Integer streamId : pendingRequests.keySet()) {
+            CompletableFuture<DataPacket> future = pendingRequests.remove(streamId);
 
-            socket = null;
+            if (future != null) future.completeExceptionally(exception);
         }
     }
 
     /**
      * This thread does all the heavy lifting: connecting to the server, sending queries, waiting for responses, etc...
+     *
+     * Every query pending at the time of a write is sent in a single batch, after which the responses to that
+     * batch are read back in order.
+     *
+     * The thread owns its connection's socket and streams. {@link #cancel()} closes them, which releases the thread
+     * if it is blocked reading.
      */
     private class WorkerThread extends Thread {
         private final long SLEEP_TIME = 100;
-        private boolean runLoop = true;
+        private final byte[] buffer = new byte[TCPServer.READ_BUFFER_SIZE];
+        private final WriteQueue queries;
+        private final Map<Integer, CompletableFuture<DataPacket>> pendingRequests;
+        private final InetAddress serverAddress;
+        private final int port;
+        private final File socketPath;
+        private final SocketConfig socketConfig;
+        private final String transport;
+        private final String peer;
+        private final Object lock = new Object();
+        private Pipeline pipeline;
+        private Socket socket;
+        private SocketChannel channel;
+        private InputStream in;
+        private OutputStream out;
+        private int pendingResponses;
+        private volatile boolean runLoop = true;
+        private volatile boolean isRunning = false;
+
+        private WorkerThread(WriteQueue queries, Map<Integer, CompletableFuture<DataPacket>> pendingRequests, String transport, String peer) {
+            this.queries = queries;
+            this.pendingRequests = pendingRequests;
+            this.serverAddress = TCPClient.this.serverAddress;
+            this.port = TCPClient.this.port;
+            this.socketPath = TCPClient.this.socketPath;
+            this.socketConfig = TCPClient.this.socketConfig;
+            this.transport = transport;
+            this.peer = peer;
+        }
 
         @Override
         public void run() {
             if (init()) {
                 isRunning = true;
 
-                startLinePing();
+                LinePingThread linePingThread = new LinePingThread();
+                linePingThread.start();
 
                 try {
-                    while (runLoop) {
-                        doLoop();
-                        Thread.sleep(SLEEP_TIME);
+                    if (isMultiplexing) {
+                        readFrames();
+                    } else {
+                        while (runLoop) doLoop();
                     }
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    if (runLoop) Log.error(TCPClient.class, e);
                 }
 
-                stopLinePing();
+                linePingThread.cancel();
 
                 isRunning = false;
+
+                Events.connection(transport, Events.ACTION_DISCONNECT, peer);
             }
 
             cleanUp();
+            failPendingRequests(pendingRequests);
 
             if (callback != null) callback.onDisconnected();
         }
 
         public void cancel() {
             runLoop = false;
+
+            cleanUp();
         }
 
         private boolean init() {
+            Object event = Events.beginConnect();
+
             try {
-                socket = new Socket(serverAddress, port);
-                socket.setSoTimeout(socketTimeOut);
+                Socket socket = null;
+                SocketChannel channel = null;
+                InputStream in;
+                OutputStream out;
+
+                if (socketPath != null) {
+                    channel = UnixDomainSockets.connect(socketPath);
+
+                    in = UnixDomainSockets.newInputStream(channel);
+                    out = UnixDomainSockets.newOutputStream(channel);
+                } else {
+                    socket = new Socket();
+
+                    try {
+                        socketConfig.apply(socket);
+                        socket.connect(new InetSocketAddress(serverAddress, port));
+                    }
+                    catch (IOException e) {
+                        socket.close();
+                        throw e;
+                    }
 
-                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                out = new PrintWriter(socket.getOutputStream(), true);
+                    socket.setSoTimeout(socketTimeOut);
+
+                    in = socket.getInputStream();
+                    out = socket.getOutputStream();
+                }
+
+                // The client may have been disconnected while this thread was connecting
+                synchronized (lock) {
+                    if (!runLoop) {
+                        if (socket != null) socket.close();
+                        if (channel != null) channel.close();
+
+                        return false;
+                    }
+
+                    this.socket = socket;
+                    this.channel = channel;
+                    this.in = in;
+                    this.out = out;
+                }
+
+                Events.commitConnect(event, transport, peer, true);
 
                 if (callback != null) callback.onConnected(serverAddress, port);
 
                 return true;
             } catch (Exception e) {
-                e.printStackTrace();
+                Events.commitConnect(event, transport, peer, false);
+                Log.error(TCPClient.class, e);
 
                 if (callback != null) callback.onConnectionFailed(serverAddress, port);
 
@@ -240,25 +549,155 @@ public class TCPClient {
             }
         }
 
-        private void doLoop() throws IOException {
-            if (queries.isEmpty()) return;
+        private void cleanUp() {
+            queries.close();
+
+            synchronized (lock) {
+                closeStreams();
+            }
+        }
+
+        private void closeStreams() {
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (Exception e) {
+                    Log.error(TCPClient.class, e);
+                }
+
+                in = null;
+            }
+
+            if (out != null) {
+                try {
+                    out.close();
+                }
+                catch (Exception e) {
+                    Log.error(TCPClient.class, e);
+                }
+
+                out = null;
+            }
+
+            if (socket != null) {
+                try {
+                    socket.close();
+                }
+                catch (Exception e) {
+                    Log.error(TCPClient.class, e);
+                }
+
+                socket = null;
+            }
+
+            if (channel != null) {
+                try {
+                    channel.close();
+                }
+                catch (Exception e) {
+                    Log.error(TCPClient.class, e);
+                }
+
+                channel = null;
+            }
+        }
+
+        /**
+         * In the multiplexed mode, queries are written by a thread of their own while this one reads responses as
+         * they arrive.
+         */
+        private void readFrames() throws IOException {
+            final InputStream in;
+            final OutputStream out;
 
-            if (queries.size() >= HIGH_QUERY_QUEUE_SIZE_THRESHOLD) {
-                System.out.println(TCPClient.class.getName() + ": The query queue size is high! Queue size: " + String.valueOf(queries.size()));
+            synchronized (lock) {
+                in = this.in;
+                out = this.out;
             }
 
-            String query = queries.remove(0); // Retrieving the 1st query in the list. You know, 1st in, 1st out queue?
-            out.println(query);
-            String data = in.readLine();
+            if (in == null) return;
 
-            if (data == null && isNullResponseBad) {
-                System.out.println("Got a null response from TCP server and this response is considered \"bad\". Disconnecting...");
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (queries.writeBatch(out, 0) >= 0);
+                    } catch (Exception e) {
+                        if (runLoop) Log.error(TCPClient.class, e);
+
+                        cancel();
+                    }
+                }
+            }.start();
+
+            int read;
+
+            while (runLoop && (read = in.read(buffer)) >= 0) {
+                Object event = Events.beginRead();
+                pipeline.fireInbound(ByteBuffer.wrap(buffer, 0, read));
+                Events.commitRead(event, transport, peer, read);
+            }
+
+            if (runLoop) Log.info(TCPClient.class, "TCP server closed the multiplexed connection. Disconnecting...");
+        }
+
+        private void doLoop() throws IOException, InterruptedException {
+            final InputStream in;
+            final OutputStream out;
+
+            synchronized (lock) {
+                in = this.in;
+                out = this.out;
+            }
+
+            if (in == null) {
+                cancel();
+                return;
+            }
+
+            int count = queries.writeBatch(out, SLEEP_TIME);
+
+            if (count < 0) {
                 cancel();
+                return;
+            }
+
+            if (count >= HIGH_QUERY_QUEUE_SIZE_THRESHOLD) {
+                Log.warn(TCPClient.class, "The query queue size is high! Queue size: {}", count);
+            }
+
+            pendingResponses += count;
+
+            while (pendingResponses > 0) {
+                int read = in.read(buffer);
+
+                if (read < 0) {
+                    if (isNullResponseBad) {
+                        Log.warn(TCPClient.class, "Got a null response from TCP server and this response is considered \"bad\". Disconnecting...");
+                        cancel();
 
-                return; // We might as well call it quits here...
+                        return; // We might as well call it quits here...
+                    }
+
+                    if (callback != null) callback.onDataReceived(new DataPacket(serverAddress, port, (String) null));
+                    pendingResponses--;
+                    continue;
+                }
+
+                Object event = Events.beginRead();
+                pipeline.fireInbound(ByteBuffer.wrap(buffer, 0, read));
+                Events.commitRead(event, transport, peer, read);
             }
+        }
+
+        private void onResponse(ByteBuffer data) {
+            pendingResponses--;
 
-            if (callback != null) callback.onDataReceived(new DataPacket(serverAddress, port, data));
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+
+            if (callback != null) callback.onDataReceived(new DataPacket(serverAddress, port, bytes));
         }
     }
 
@@ -268,23 +707,24 @@ public class TCPClient {
      */
     private class LinePingThread extends Thread {
         private final long SLEEP_TIME = 3000;
-        private boolean runLoop = true;
+        private volatile boolean runLoop = true;
 
         @Override
         public void run() {
             while (runLoop) {
-                if (getQueryQueueSize() < 1) query(LINE_PING_QUERY);
+                if (getQueryQueueSize() < 1 && getPendingRequestCount() < 1) query(LINE_PING_QUERY);
 
                 try {
                     Thread.sleep(SLEEP_TIME);
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    return; // Cancelled
                 }
             }
         }
 
         public void cancel() {
             runLoop = false;
+            interrupt();
         }
     }
 
@@ -319,5 +759,13 @@ public class TCPClient {
          * @param dataPacket the data packet
          */
         public void onDataReceived(DataPacket dataPacket);
+
+        /**
+         * Notifies the object implementing this interface that the queued queries crossed the client's write
+         * high-water mark, or drained back below half of it.
+         *
+         * @param isBackpressured whether or not the client is now above its high-water mark
+         */
+        public default void onWriteBackpressure(boolean isBackpressured) {}
     }
 }
@@ -7,34 +7,102 @@
 package com.linoagli.comprotocols.tcp;
 
 import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.Log;
+import com.linoagli.comprotocols.SocketConfig;
+import com.linoagli.comprotocols.Utils;
+import com.linoagli.comprotocols.WriteQueue;
+import com.linoagli.comprotocols.capture.CaptureHandler;
+import com.linoagli.comprotocols.capture.CaptureJournal;
+import com.linoagli.comprotocols.jfr.Events;
+import com.linoagli.comprotocols.pipeline.Channel;
+import com.linoagli.comprotocols.pipeline.LengthFieldCodec;
+import com.linoagli.comprotocols.pipeline.LineCodec;
+import com.linoagli.comprotocols.pipeline.Pipeline;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Provides a simplified server side implementation of a TCP connection.
+ *
+ * The traffic of each connection flows through a {@link Pipeline} that frames messages as lines of text by default.
+ * Additional stages can be installed with {@link #setPipelineInitializer(Pipeline.Initializer)}.
+ *
+ * In the multiplexed mode, see {@link #setMultiplexed(boolean)}, messages are length prefixed frames tagged with a
+ * stream id instead of lines of text. Each query is handed to {@link Callback#onRequestReceived(Connection, Request)}
+ * as a {@link Request} that can be answered later, from any thread and in any order, so a slow query no longer
+ * holds back the responses queued behind it on the same connection.
+ *
+ * Queries can also be handled asynchronously by an {@link AsyncHandler}, see {@link #setAsyncHandler(AsyncHandler)}.
+ *
+ * Clients running on the same host can connect through a Unix domain socket instead, see {@link #start(File)}.
  */
 public class TCPServer {
+    /**
+     * The ways a topic subscriber whose write queue is above the high-water mark can be handled on publish
+     */
+    public enum SlowConsumerPolicy {
+        /** The published message is not queued for the lagging subscriber */
+        DROP,
+        /** The published message replaces the subscriber's pending message for the same topic, if any */
+        CONFLATE,
+        /** The lagging subscriber is disconnected */
+        DISCONNECT
+    }
+
     public static final String LINE_PING_RESPONSE = "comprotocols-response-mRPrLr5t2hURfDULcReMQf7BWsazASUJ";
+    public static final int DEFAULT_BACKLOG = 50;
+    public static final int READ_BUFFER_SIZE = 8192;
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 16;
+    public static final long STOP_TIME_OUT = 1000;
 
     private Callback callback;
 
     private int port;
+    private int backlog = DEFAULT_BACKLOG;
+    private int maxConnections = 0;
+    private int writeHighWaterMark = WriteQueue.DEFAULT_HIGH_WATER_MARK;
+    private SocketConfig socketConfig = new SocketConfig().setTcpNoDelay(true);
     private boolean allowMultipleConnectionsFromSameAddress = false;
+    private boolean isMultiplexed = false;
+    private AsyncHandler asyncHandler;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private ConnectionRateLimiter connectionRateLimiter;
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP;
+    private Pipeline.Initializer pipelineInitializer;
+    private CaptureJournal captureJournal;
+    private volatile Pipeline publishPipeline;
+    private byte[] publishEncoded;
 
+    private File socketPath;
     private ServerSocket serverSocket;
-    private List<Connection> connections = new ArrayList<Connection>();
-    private ActiveConnectionsThread activeConnectionsThread;
-    private IncomingConnectionsThread incomingConnectionsThread;
+    private ServerSocketChannel serverChannel;
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private final Map<String, Set<Connection>> subscriptions = new ConcurrentHashMap<>();
+    private volatile ActiveConnectionsThread activeConnectionsThread;
+    private volatile IncomingConnectionsThread incomingConnectionsThread;
 
     public TCPServer(Callback callback) {
         this.callback = callback;
@@ -47,6 +115,14 @@ public class TCPServer {
         return port;
     }
 
+    /**
+     * @return the path of the Unix domain socket this server is listening to, or <i>null</i> if it is listening to
+     * a TCP port.
+     */
+    public File getSocketPath() {
+        return socketPath;
+    }
+
     /**
      * Sets a flag that specifies how this server treats multiple incoming connections from the
      * same IP address:
@@ -61,6 +137,170 @@ public class TCPServer {
         this.allowMultipleConnectionsFromSameAddress = allow;
     }
 
+    /**
+     * Sets the maximum length of the queue of pending incoming connections handed to the underlying server socket.
+     * Must be set before calling {@link #start(int)}.
+     *
+     * This value defaults to <b>50</b>
+     *
+     * @param backlog the listen backlog
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * Sets the maximum number of simultaneous client connections this server will host. Incoming connections
+     * exceeding this limit are closed as soon as they are accepted.
+     *
+     * The default value is <b>0</b> which is interpreted as <i>unlimited</i>.
+     *
+     * @param maxConnections the maximum number of connections
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Limits the rate at which a single IP address may open new connections to this server. Each address
+     * gets a bucket of <i>burst</i> connections which refills at <i>connectionsPerSecond</i>. Connections
+     * exceeding the rate are closed as soon as they are accepted.
+     *
+     * Passing a rate of <b>0</b> or less disables the limiter, which is the default.
+     *
+     * @param connectionsPerSecond the sustained number of connections allowed per address per second
+     * @param burst the number of connections an address may open back to back
+     */
+    public void setConnectionRateLimit(double connectionsPerSecond, int burst) {
+        connectionRateLimiter = (connectionsPerSecond > 0) ? new ConnectionRateLimiter(connectionsPerSecond, burst) : null;
+    }
+
+    /**
+     * Sets the options of the server socket and of the sockets it accepts, such as {@link SocketConfig#lowLatency()}.
+     * They don't apply to Unix domain sockets. Applies from the next call to {@link #start(int)}.
+     *
+     * This value defaults to options that only disable Nagle's algorithm, so that responses go out as soon as
+     * they are written
+     *
+     * @param socketConfig the options
+     */
+    public void setSocketConfig(SocketConfig socketConfig) {
+        this.socketConfig = (socketConfig != null) ? socketConfig : new SocketConfig();
+    }
+
+    /**
+     * Sets the number of bytes a connection may have queued for writing before it reports write backpressure
+     * through {@link Callback#onWriteBackpressure(Connection, boolean)}. Applies to connections accepted after
+     * this call.
+     *
+     * This value defaults to <b>1 MiB</b>
+     *
+     * @param writeHighWaterMark the high-water mark in bytes
+     */
+    public void setWriteHighWaterMark(int writeHighWaterMark) {
+        this.writeHighWaterMark = writeHighWaterMark;
+    }
+
+    /**
+     * Sets how {@link #publish(String, String)} treats subscribers whose write queue is above the write
+     * high-water mark.
+     *
+     * This value defaults to {@link SlowConsumerPolicy#DROP}
+     *
+     * @param slowConsumerPolicy the policy
+     */
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        if (slowConsumerPolicy == null) return;
+
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    /**
+     * Sets whether or not this server speaks the multiplexed protocol. Every message is then sent as a frame made of
+     * its length and a stream id, both 4 byte big-endian integers, followed by the message bytes. A response
+     * carries the stream id of its query; stream id <b>0</b> is reserved for messages the server sends on its own,
+     * such as responses sent with {@link Connection#respond(String)} and published messages. Clients must be set to
+     * the same mode, see {@link TCPClient#setMultiplexed(boolean)}. Must be set before calling {@link #start(int)}.
+     *
+     * This flag is cleared by default
+     *
+     * @param isMultiplexed the flag
+     */
+    public void setMultiplexed(boolean isMultiplexed) {
+        this.isMultiplexed = isMultiplexed;
+    }
+
+    /**
+     * Sets the handler that answers queries asynchronously. When set, queries are handed to the handler instead of
+     * {@link Callback#onDataReceived(Connection, DataPacket)} and each response is written as soon as the stage
+     * returned by the handler completes; the connection's read thread moves on to the next query right away.
+     *
+     * In the line mode, responses are written in the order of the queries, as clients expect, and every query gets
+     * exactly one response: a stage completing with <i>null</i> or failing is answered with an empty line. In the
+     * multiplexed mode, responses are written in the order they complete, on the stream of their query, and a
+     * <i>null</i> response leaves the query unanswered.
+     *
+     * @param asyncHandler the handler, or <i>null</i> to go back to the callback
+     */
+    public void setAsyncHandler(AsyncHandler asyncHandler) {
+        this.asyncHandler = asyncHandler;
+    }
+
+    /**
+     * Sets the maximum number of queries of a single connection that the {@link AsyncHandler} may be working on at
+     * the same time. Once the limit is reached, the connection stops reading until a response is written, which
+     * pushes back on the client through TCP flow control. Applies to connections accepted after this call.
+     *
+     * This value defaults to <b>16</b>
+     *
+     * @param maxInFlightRequests the maximum number of concurrent queries per connection
+     */
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = Math.max(1, maxInFlightRequests);
+    }
+
+    /**
+     * Sets the initializer called with the pipeline of every new connection. The pipeline already holds the
+     * server's framing stage, named <i>line-codec</i>, or <i>frame-codec</i> in the multiplexed mode, which the
+     * initializer may keep, surround or replace.
+     *
+     * The initializer is also used to set up the pipeline that encodes published messages once for all
+     * subscribers, so the outbound stages it installs should not depend on a particular connection. Must be set
+     * before calling {@link #start(int)}.
+     *
+     * @param pipelineInitializer the initializer
+     */
+    public void setPipelineInitializer(Pipeline.Initializer pipelineInitializer) {
+        this.pipelineInitializer = pipelineInitializer;
+    }
+
+    /**
+     * Sets the journal recording the traffic of every new connection, as the bytes read from and written to the
+     * socket, see {@link CaptureJournal}. Published messages skip the connections' pipelines and are not recorded.
+     *
+     * This value defaults to <b>null</b>, which records nothing
+     *
+     * @param captureJournal the journal
+     */
+    public void setCaptureJournal(CaptureJournal captureJournal) {
+        this.captureJournal = captureJournal;
+    }
+
+    /**
+     * @return the number of client connections currently hosted by this server.
+     */
+    public int getConnectionCount() {
+        int count = 0;
+
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                if (connection.isListening) count++;
+            }
+        }
+
+        return count;
+    }
+
     /**
      * @return whether or not this server instance is up and running (listening for incoming connections and data)
      */
@@ -78,29 +318,141 @@ public class TCPServer {
      */
     public void start(int port) {
         this.port = port;
+        this.socketPath = null;
 
         try {
-            serverSocket = new ServerSocket(port);
+            serverSocket = new ServerSocket();
+            socketConfig.apply(serverSocket);
+            serverSocket.bind(new InetSocketAddress(port), backlog);
+            startThreads();
+        }
+        catch (Exception e) {
+            Log.error(TCPServer.class, e);
+            stop();
+        }
+    }
 
-            activeConnectionsThread = new ActiveConnectionsThread();
-            activeConnectionsThread.start();
+    /**
+     * Boots up this server instance and starts listening for incoming client connections on a Unix domain socket.
+     * Clients on the same host connect with {@link TCPClient#connect(File)}; their connections work exactly like
+     * TCP ones, with the same callbacks and framing, but skip the TCP processing altogether. A socket file left at
+     * the given path by a previous server is replaced. Requires Java 16 or later at runtime.
+     *
+     * All these connections share the loopback address, so {@link #setAllowMultipleConnectionsFromSameAddress(boolean)}
+     * does not apply to them, and the port of their DataPackets is <b>0</b>.
+     *
+     * @param socketPath the path of the socket file
+     */
+    public void start(File socketPath) {
+        this.port = 0;
+        this.socketPath = socketPath;
 
-            incomingConnectionsThread = new IncomingConnectionsThread();
-            incomingConnectionsThread.start();
+        try {
+            serverChannel = UnixDomainSockets.bind(socketPath, backlog);
+            startThreads();
         }
         catch (Exception e) {
-            e.printStackTrace();
+            Log.error(TCPServer.class, e);
             stop();
         }
     }
 
+    private void startThreads() {
+        publishPipeline = createPipeline(data -> {}, data -> publishEncoded = Utils.toByteArray(data));
+
+        activeConnectionsThread = new ActiveConnectionsThread();
+        activeConnectionsThread.start();
+
+        incomingConnectionsThread = new IncomingConnectionsThread();
+        incomingConnectionsThread.start();
+    }
+
+    /**
+     * Sends a message to every connection subscribed to the given topic. The message is encoded once, through the
+     * outbound stages of the server's pipeline, and the same bytes are queued on each subscriber's write queue;
+     * this method never blocks on the network.
+     * Subscribers that are lagging behind are handled according to the {@link SlowConsumerPolicy}.
+     *
+     * Topics are only available in the multiplexed mode, see {@link #setMultiplexed(boolean)}, where published
+     * messages travel on stream <b>0</b>. A line client can't tell a published line from the response to its
+     * query, so nothing is published in the line mode.
+     *
+     * @param topic the topic name
+     * @param payload the message data
+     * @return the number of subscribers the message was queued for
+     */
+    public int publish(String topic, String payload) {
+        if (!isMultiplexed) {
+            Log.warn(TCPServer.class, "TCPServer topics require the multiplexed mode. Message to topic {} discarded.", topic);
+            return 0;
+        }
+
+        Set<Connection> subscribers = subscriptions.get(topic);
+
+        if (subscribers == null || subscribers.isEmpty()) return 0;
+
+        Pipeline publishPipeline = this.publishPipeline;
+        if (publishPipeline == null) return 0;
+
+        byte[] bytes;
+
+        synchronized (publishPipeline) {
+            try {
+                publishEncoded = null;
+                publishPipeline.fireOutbound(encodeMessage(0, payload.getBytes()));
+                bytes = publishEncoded;
+            } catch (IOException e) {
+                Log.error(TCPServer.class, e);
+                return 0;
+            }
+        }
+
+        if (bytes == null) return 0;
+
+        int count = 0;
+
+        for (Connection connection : subscribers) {
+            if (!connection.isListening) continue;
+
+            boolean isQueued;
+
+            if (!connection.isWriteBackpressured()) {
+                isQueued = connection.writeQueue.offer(bytes);
+            } else if (slowConsumerPolicy == SlowConsumerPolicy.CONFLATE) {
+                isQueued = connection.writeQueue.offer(bytes, topic);
+            } else if (slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+                Log.warn(TCPServer.class, "TCPServer disconnecting slow topic subscriber at address {}", connection.getRemoteHostAddress());
+                connection.close();
+                isQueued = false;
+            } else {
+                isQueued = false;
+            }
+
+            if (isQueued) count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * @param topic the topic name
+     * @return the number of connections currently subscribed to the given topic.
+     */
+    public int getSubscriberCount(String topic) {
+        Set<Connection> subscribers = subscriptions.get(topic);
+
+        return (subscribers != null) ? subscribers.size() : 0;
+    }
+
     /**
      * This will close all active TCP connections, power down the server instance and clean up all resources.
      */
     public void stop() {
+        IncomingConnectionsThread incomingConnectionsThread = this.incomingConnectionsThread;
+
         if (incomingConnectionsThread != null) {
             incomingConnectionsThread.cancel();
-            incomingConnectionsThread = null;
+            this.incomingConnectionsThread = null;
         }
 
         if (activeConnectionsThread != null) {
@@ -109,6 +461,16 @@ public class TCPServer {
         }
 
         cleanUp();
+
+        // The server socket is only released once the thread blocked accepting on it is done, so the port can be
+        // bound again as soon as this returns
+        if (incomingConnectionsThread != null && incomingConnectionsThread != Thread.currentThread()) {
+            try {
+                incomingConnectionsThread.join(STOP_TIME_OUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     private void cleanUp() {
@@ -116,119 +478,510 @@ public class TCPServer {
             try {
                 serverSocket.close();
             } catch (IOException e) {
-                e.printStackTrace();
+                Log.error(TCPServer.class, e);
             }
 
             serverSocket = null;
         }
 
-        if (connections != null) {
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                Log.error(TCPServer.class, e);
+            }
+
+            serverChannel = null;
+            socketPath.delete();
+        }
+
+        synchronized (connections) {
             for (Connection connection : connections) connection.close();
 
             connections.clear();
-            connections = null;
         }
+
+        subscriptions.clear();
+    }
+
+    private Pipeline createPipeline(Pipeline.Sink inboundSink, Pipeline.Sink outboundSink) {
+        Pipeline pipeline = new Pipeline(inboundSink, outboundSink);
+
+        if (isMultiplexed) {
+            pipeline.addLast("frame-codec", new LengthFieldCodec());
+        } else {
+            pipeline.addLast("line-codec", new LineCodec());
+        }
+
+        if (pipelineInitializer != null) pipelineInitializer.initialize(pipeline);
+
+        return pipeline;
+    }
+
+    private ByteBuffer encodeMessage(int streamId, byte[] data) {
+        if (!isMultiplexed) return ByteBuffer.wrap(data);
+
+        ByteBuffer message = ByteBuffer.allocate(4 + data.length);
+        message.putInt(streamId).put(data).flip();
+
+        return message;
     }
 
     /**
      * This class represents an active connection to a TCP client. This connection will remain active
      * and listening while the client is connected and actively sending queries.
+     *
+     * Responses are queued and written out in batches by a dedicated writer thread, so {@link #respond(String)}
+     * never blocks on the network and can safely be called from several threads.
      */
-    public class Connection {
+    public class Connection implements Channel {
         private Socket socket;
-        private PrintWriter out;
-        private BufferedReader in;
-        private boolean isListening = false;
+        private SocketChannel channel;
+        private InetAddress remoteHostAddress;
+        private String transport;
+        private Object peer;
+        private Pipeline pipeline;
+        private WriteQueue writeQueue;
+        private final Set<String> topics = new CopyOnWriteArraySet<>();
+        private final int maxInFlightRequests = TCPServer.this.maxInFlightRequests;
+        private final Semaphore inFlightRequests = new Semaphore(maxInFlightRequests);
+        private final ArrayDeque<AsyncResponse> orderedResponses = new ArrayDeque<>();
+        private volatile boolean isListening = false;
+        private volatile boolean isClosed = false;
 
         public Connection(Socket socket) {
+            this(socket, null, socket.getInetAddress());
+        }
+
+        private Connection(SocketChannel channel) {
+            this(null, channel, InetAddress.getLoopbackAddress());
+        }
+
+        private Connection(Socket socket, SocketChannel channel, InetAddress remoteHostAddress) {
             this.socket = socket;
+            this.channel = channel;
+            this.remoteHostAddress = remoteHostAddress;
+            this.transport = (socket != null) ? Events.TRANSPORT_TCP : Events.TRANSPORT_UNIX;
+            this.peer = (socket != null) ? remoteHostAddress : "unix:" + socketPath;
+            this.writeQueue = new WriteQueue(isBackpressured -> {
+                if (callback != null) callback.onWriteBackpressure(Connection.this, isBackpressured);
+            });
+            this.writeQueue.setHighWaterMark(writeHighWaterMark);
+            this.writeQueue.setPeer(transport, peer);
+            this.pipeline = createPipeline(this::onMessage, data -> {
+                if (!writeQueue.offer(Utils.toByteArray(data))) {
+                    Log.warn(TCPServer.class, "Connection to {} is closed. Response discarded.", getRemoteHostAddress());
+                }
+            });
+
+            if (captureJournal != null) {
+                String peer = (socket != null) ? socket.getRemoteSocketAddress().toString() : "unix:" + socketPath;
+
+                this.pipeline.addFirst("capture", new CaptureHandler(captureJournal, peer));
+            }
         }
 
         public boolean isListening() {
             return isListening;
         }
 
+        @Override
+        public boolean isOpen() {
+            return isListening;
+        }
+
+        @Override
+        public Pipeline getPipeline() {
+            return pipeline;
+        }
+
         public InetAddress getRemoteHostAddress() {
-            return socket.getInetAddress();
+            return remoteHostAddress;
         }
 
         public InetAddress getLocalHostAddress() {
-            return socket.getLocalAddress();
+            return (socket != null) ? socket.getLocalAddress() : InetAddress.getLoopbackAddress();
+        }
+
+        /**
+         * @return the number of response bytes queued and not yet written to the client.
+         */
+        public long getPendingWriteBytes() {
+            return writeQueue.getPendingBytes();
+        }
+
+        /**
+         * @return the number of queries the {@link AsyncHandler} is currently working on for this connection.
+         */
+        public int getInFlightRequestCount() {
+            return maxInFlightRequests - inFlightRequests.availablePermits();
+        }
+
+        /**
+         * @return whether or not the queued response bytes are above the server's write high-water mark.
+         */
+        public boolean isWriteBackpressured() {
+            return writeQueue.isBackpressured();
         }
 
         private void listen() {
+            isListening = true; // Set ahead of the thread start so the connection isn't discarded before it runs
+
             new Thread() {
                 @Override
                 public void run() {
-                    isListening = true;
-
                     try {
-                        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                        out = new PrintWriter(socket.getOutputStream(), true);
+                        InputStream in;
+
+                        synchronized (Connection.this) {
+                            // close() clears the socket and channel, possibly before this thread got to run
+                            if (isClosed) throw new SocketException("Socket closed");
+
+                            if (socket != null) {
+                                in = socket.getInputStream();
+                                startWriting(socket.getOutputStream());
+                            } else {
+                                in = UnixDomainSockets.newInputStream(channel);
+                                startWriting(UnixDomainSockets.newOutputStream(channel));
+                            }
+                        }
 
                         if (callback != null) callback.onConnected(Connection.this);
 
-                        String input;
+                        byte[] buffer = new byte[READ_BUFFER_SIZE];
+                        int read;
 
-                        while ((input = in.readLine()) != null) {
-                            if (input.equals(TCPClient.LINE_PING_QUERY)) {
-                                System.out.println("TCP client line ping received, we shall now cordially respond...");
-                                respond(LINE_PING_RESPONSE);
-                            }
-                            else {
-                                if (callback != null) callback.onDataReceived(Connection.this, new DataPacket(socket.getInetAddress(), port, input));
-                            }
+                        while ((read = in.read(buffer)) >= 0) {
+                            Object event = Events.beginRead();
+                            pipeline.fireInbound(ByteBuffer.wrap(buffer, 0, read));
+                            Events.commitRead(event, transport, peer, read);
                         }
                     } catch (Exception e) {
                         if (e instanceof SocketException) {
-                            System.out.println(e.getMessage());
+                            Log.info(TCPServer.class, "{}", e.getMessage());
                         } else {
-                            e.printStackTrace();
+                            Log.error(TCPServer.class, e);
                         }
                     }
 
+                    writeQueue.close();
+
+                    for (String topic : topics) unsubscribe(topic);
+
                     isListening = false;
+
+                    Events.connection(transport, Events.ACTION_DISCONNECT, peer);
+                }
+            }.start();
+        }
+
+        private void startWriting(final OutputStream out) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (writeQueue.writeBatch(out, 0) >= 0);
+                    } catch (Exception e) {
+                        if (e instanceof SocketException) {
+                            Log.info(TCPServer.class, "{}", e.getMessage());
+                        } else {
+                            Log.error(TCPServer.class, e);
+                        }
+
+                        close();
+                    }
                 }
             }.start();
         }
 
+        private void onMessage(ByteBuffer data) throws IOException {
+            int streamId = 0;
+
+            if (isMultiplexed) {
+                if (data.remaining() < 4) throw new IOException("Multiplexed frame too short: " + data.remaining() + " bytes");
+
+                streamId = data.getInt();
+            }
+
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+
+            DataPacket dataPacket = new DataPacket(remoteHostAddress, port, bytes);
+
+            if (dataPacket.data.equals(TCPClient.LINE_PING_QUERY)) {
+                Log.debug(TCPServer.class, "TCP client line ping received, we shall now cordially respond...");
+
+                if (asyncHandler != null && !isMultiplexed) {
+                    // Queued behind the responses still being worked on, to keep them in order
+                    writeInOrder(queueInOrder(streamId), LINE_PING_RESPONSE);
+                } else {
+                    send(streamId, LINE_PING_RESPONSE.getBytes());
+                }
+            }
+            else if (asyncHandler != null) {
+                handleAsync(asyncHandler, streamId, dataPacket);
+            }
+            else if (callback != null) {
+                if (isMultiplexed) {
+                    callback.onRequestReceived(Connection.this, new Request(Connection.this, streamId, dataPacket));
+                } else {
+                    callback.onDataReceived(Connection.this, dataPacket);
+                }
+            }
+        }
+
+        private void handleAsync(AsyncHandler handler, int streamId, DataPacket dataPacket) throws IOException {
+            try {
+                while (!inFlightRequests.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    if (isClosed) throw new IOException("Connection closed while waiting for in-flight requests");
+                }
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while waiting for in-flight requests");
+            }
+
+            final AsyncResponse response = isMultiplexed ? new AsyncResponse(streamId) : queueInOrder(streamId);
+
+            CompletionStage<String> stage;
+
+            try {
+                stage = handler.handle(this, dataPacket);
+            } catch (Exception e) {
+                Log.error(TCPServer.class, e);
+                stage = null;
+            }
+
+            if (stage == null) {
+                completeAsync(response, null);
+                return;
+            }
+
+            stage.whenComplete((result, throwable) -> {
+                if (throwable != null) Log.error(TCPServer.class, throwable);
+
+                completeAsync(response, (throwable == null) ? result : null);
+            });
+        }
+
+        private void completeAsync(AsyncResponse response, String result) {
+            inFlightRequests.release();
+
+            if (isMultiplexed) {
+                if (result != null) send(response.streamId, result.getBytes());
+            } else {
+                writeInOrder(response, result);
+            }
+        }
+
+        private AsyncResponse queueInOrder(int streamId) {
+            AsyncResponse response = new AsyncResponse(streamId);
+
+            synchronized (orderedResponses) {
+                orderedResponses.addLast(response);
+            }
+
+            return response;
+        }
+
+        private void writeInOrder(AsyncResponse response, String result) {
+            synchronized (orderedResponses) {
+                response.bytes = (result != null) ? result.getBytes() : new byte[0];
+
+                // Responses are written in the order of their queries, as soon as every earlier one is ready
+                while (!orderedResponses.isEmpty() && orderedResponses.peekFirst().bytes != null) {
+                    send(0, orderedResponses.pollFirst().bytes);
+                }
+            }
+        }
+
         /**
-         * Send data as a response to the client that linked to this connection.
+         * Send data as a response to the client that linked to this connection. The response is queued and
+         * written asynchronously along with any other pending responses. In the multiplexed mode, the data is sent
+         * on stream <b>0</b>; use {@link Request#respond(String)} to answer a specific query.
          *
          * @param response the response data
          */
         public void respond(String response) {
+            send(response.getBytes());
+        }
+
+        @Override
+        public void send(byte[] data) {
+            send(0, data);
+        }
+
+        private void send(int streamId, byte[] data) {
             try {
-                out.println(response);
-            } catch (Exception e) {
-                e.printStackTrace();
+                pipeline.fireOutbound(encodeMessage(streamId, data));
+            } catch (IOException e) {
+                Log.error(TCPServer.class, e);
+            }
+        }
+
+        /**
+         * Subscribes this connection to a topic. Messages published to that topic through
+         * {@link TCPServer#publish(String, String)} will be sent to the client on stream <b>0</b>. Only available in
+         * the multiplexed mode; the subscription is refused in the line mode.
+         *
+         * @param topic the topic name
+         */
+        public void subscribe(String topic) {
+            if (!isMultiplexed) {
+                Log.warn(TCPServer.class, "TCPServer topics require the multiplexed mode. Subscription to topic {} refused.", topic);
+                return;
             }
+
+            if (!isListening) return;
+
+            subscriptions.computeIfAbsent(topic, key -> new CopyOnWriteArraySet<>()).add(this);
+            topics.add(topic);
         }
 
-        private void close() {
+        /**
+         * Unsubscribes this connection from a topic.
+         *
+         * @param topic the topic name
+         */
+        public void unsubscribe(String topic) {
+            Set<Connection> subscribers = subscriptions.get(topic);
+
+            if (subscribers != null) subscribers.remove(this);
+            topics.remove(topic);
+        }
+
+        /**
+         * @return the topics this connection is currently subscribed to.
+         */
+        public Set<String> getTopics() {
+            return topics;
+        }
+
+        @Override
+        public synchronized void close() {
+            isClosed = true;
+            writeQueue.close();
+
+            for (String topic : topics) unsubscribe(topic);
+
             if (socket != null) {
-                System.out.println("Closing connection to remote device at address: " + getRemoteHostAddress().toString());
+                Log.info(TCPServer.class, "Closing connection to remote device at address: {}", getRemoteHostAddress());
 
                 try {
                     socket.close();
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    Log.error(TCPServer.class, e);
                 }
 
                 socket = null;
             }
+
+            if (channel != null) {
+                Log.info(TCPServer.class, "Closing connection to local client on socket: {}", socketPath);
+
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    Log.error(TCPServer.class, e);
+                }
+
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * A response of the {@link AsyncHandler} waiting for its turn to be written.
+     */
+    private static class AsyncResponse {
+        private final int streamId;
+        private byte[] bytes;
+
+        private AsyncResponse(int streamId) {
+            this.streamId = streamId;
+        }
+    }
+
+    /**
+     * A query received in the multiplexed mode. The query can be answered once, at any time and from any thread;
+     * responses to the queries of a connection may be sent in any order.
+     */
+    public static class Request {
+        private final Connection connection;
+        private final int streamId;
+        private final DataPacket dataPacket;
+        private final AtomicBoolean isAnswered = new AtomicBoolean(false);
+
+        private Request(Connection connection, int streamId, DataPacket dataPacket) {
+            this.connection = connection;
+            this.streamId = streamId;
+            this.dataPacket = dataPacket;
+        }
+
+        /**
+         * @return the connection the query was received on.
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * @return the id of the stream the query was sent on, which its response is sent on too.
+         */
+        public int getStreamId() {
+            return streamId;
+        }
+
+        /**
+         * @return the query.
+         */
+        public DataPacket getDataPacket() {
+            return dataPacket;
+        }
+
+        /**
+         * @return whether or not the query was answered.
+         */
+        public boolean isAnswered() {
+            return isAnswered.get();
+        }
+
+        /**
+         * Answers the query.
+         *
+         * @param response the response data
+         */
+        public void respond(String response) {
+            respond(response.getBytes());
+        }
+
+        /**
+         * Answers the query.
+         *
+         * @param response the response bytes
+         */
+        public void respond(byte[] response) {
+            if (!isAnswered.compareAndSet(false, true)) {
+                Log.warn(TCPServer.class, "TCP request on stream {} was already answered. Response discarded.", streamId);
+                return;
+            }
+
+            connection.send(streamId, response);
         }
     }
 
     /**
      * This thread is in change of waiting for new incoming socket connections,
      * creating a new Connection instance and letting it loose to do its thing,
-     * and add that new Connection instance to the list of connections
+     * and add that new Connection instance to the list of connections.
+     *
+     * Pending connections are accepted back to back so that the listen backlog is drained as fast as
+     * the admission checks allow.
      */
     private class IncomingConnectionsThread extends Thread {
-        private final long SLEEP_TIME = 1000;
-        private boolean runLoop = true;
-        private boolean isRunning = false;
+        private final ServerSocket serverSocket = TCPServer.this.serverSocket;
+        private final ServerSocketChannel serverChannel = TCPServer.this.serverChannel;
+        private final SocketConfig socketConfig = TCPServer.this.socketConfig;
+        private volatile boolean runLoop = true;
+        private volatile boolean isRunning = false;
 
         @Override
         public void run() {
@@ -238,43 +991,68 @@ public class TCPServer {
                 try {
                     if (callback != null) callback.onWaitingForConnection(port);
 
-                    Socket socket = serverSocket.accept();
+                    Socket socket = null;
+                    SocketChannel channel = null;
+                    InetAddress address;
+
+                    if (serverChannel != null) {
+                        channel = UnixDomainSockets.accept(serverChannel);
+                        address = InetAddress.getLoopbackAddress();
+                    } else {
+                        socket = serverSocket.accept();
+                        address = socket.getInetAddress();
+                    }
+
+                    if (!admit(address)) {
+                        if (socket != null) socket.close();
+                        if (channel != null) channel.close();
+                        continue;
+                    }
+
+                    if (socket != null) socketConfig.apply(socket);
 
                     // If we don't allow multiple connections from the same ip address,
                     // we check the current connections list and stop connection that has the same ip
                     // address as the current new socket connection
-                    if (!allowMultipleConnectionsFromSameAddress) {
-                        ListIterator<Connection> iterator = connections.listIterator();
+                    synchronized (connections) {
+                        // The server may have been stopped while this connection was being accepted, in which case
+                        // its connections were already closed and this one would never be
+                        if (!runLoop) {
+                            if (socket != null) socket.close();
+                            if (channel != null) channel.close();
+                            break;
+                        }
+
+                        if (!allowMultipleConnectionsFromSameAddress && socket != null) {
+                            ListIterator<Connection> iterator = connections.listIterator();
 
-                        while (iterator.hasNext()) {
-                            Connection connection = iterator.next();
+                            while (iterator.hasNext()) {
+                                Connection connection = iterator.next();
 
-                            if (connection.socket.getInetAddress().equals(socket.getInetAddress())) {
-                                System.out.println("TCPServer not allowing multiple connections from the same IP address. Disabling previous connection from address " + socket.getInetAddress().toString());
-                                connection.close();
+                                if (connection.getRemoteHostAddress().equals(address)) {
+                                    Log.info(TCPServer.class, "TCPServer not allowing multiple connections from the same IP address. Disabling previous connection from address {}", address);
+                                    connection.close();
+                                    iterator.remove();
+                                }
                             }
                         }
-                    }
-
-                    // Creating a new connection object with the new socket, starting its listening
-                    // thread and adding to the list of connections
-                    Connection connection = new Connection(socket);
-                    connection.listen();
 
-                    connections.add(connection);
+                        // Creating a new connection object with the new socket, starting its listening
+                        // thread and adding to the list of connections
+                        Connection connection = (channel != null) ? new Connection(channel) : new Connection(socket);
+                        connections.add(connection);
+                        Events.connection(connection.transport, Events.ACTION_ACCEPT, connection.peer);
+                        connection.listen();
+                    }
                 } catch (Exception e) {
+                    if (!runLoop) break;
+
                     if (e instanceof SocketException) {
-                        System.out.println(e.getMessage());
+                        Log.info(TCPServer.class, "{}", e.getMessage());
                     } else {
-                        e.printStackTrace();
+                        Log.error(TCPServer.class, e);
                     }
                 }
-
-                try {
-                    Thread.sleep(SLEEP_TIME);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
             }
 
             isRunning = false;
@@ -283,6 +1061,20 @@ public class TCPServer {
         private void cancel() {
             runLoop = false;
         }
+
+        private boolean admit(InetAddress address) {
+            if (connectionRateLimiter != null && !connectionRateLimiter.tryAcquire(address)) {
+                Log.warn(TCPServer.class, "TCPServer connection rate limit exceeded. Rejecting connection from address {}", address);
+                return false;
+            }
+
+            if (maxConnections > 0 && getConnectionCount() >= maxConnections) {
+                Log.warn(TCPServer.class, "TCPServer maximum number of connections reached. Rejecting connection from address {}", address);
+                return false;
+            }
+
+            return true;
+        }
     }
 
     /**
@@ -290,29 +1082,33 @@ public class TCPServer {
      */
     private class ActiveConnectionsThread extends Thread {
         private final long SLEEP_TIME = 1000;
-        private boolean runLoop = true;
-        private boolean isRunning = false;
+        private volatile boolean runLoop = true;
+        private volatile boolean isRunning = false;
 
         @Override
         public void run() {
             isRunning = true;
 
             while (runLoop) {
-                ListIterator<Connection> iterator = connections.listIterator();
+                synchronized (connections) {
+                    ListIterator<Connection> iterator = connections.listIterator();
 
-                while (iterator.hasNext()) {
-                    Connection connection = iterator.next();
+                    while (iterator.hasNext()) {
+                        Connection connection = iterator.next();
 
-                    if (!connection.isListening) {
-                        System.out.println("Discarding inactive connection to: " + connection.getRemoteHostAddress().toString());
-                        iterator.remove();
+                        if (!connection.isListening) {
+                            Log.info(TCPServer.class, "Discarding inactive connection to: {}", connection.getRemoteHostAddress());
+                            iterator.remove();
+                        }
                     }
                 }
 
+                if (connectionRateLimiter != null) connectionRateLimiter.evictIdle();
+
                 try {
                     Thread.sleep(SLEEP_TIME);
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    break; // Cancelled
                 }
             }
 
@@ -321,9 +1117,26 @@ public class TCPServer {
 
         private void cancel() {
             runLoop = false;
+            interrupt();
         }
     }
 
+    /**
+     * Answers queries asynchronously, see {@link TCPServer#setAsyncHandler(AsyncHandler)}.
+     */
+    public interface AsyncHandler {
+        /**
+         * Starts working on a query. Called on the connection's read thread, so the work itself should be handed
+         * to something asynchronous, such as a non-blocking client or an executor, instead of being done here.
+         *
+         * @param connection the Connection instance that received the query
+         * @param dataPacket the query
+         * @return a stage completed with the response to write, or <i>null</i> if there is nothing to answer with,
+         * see {@link TCPServer#setAsyncHandler(AsyncHandler)}
+         */
+        public CompletionStage<String> handle(Connection connection, DataPacket dataPacket);
+    }
+
     /**
      * The TCP server events callback interface.
      */
@@ -332,7 +1145,7 @@ public class TCPServer {
          * Notifies the object implementing this interface that the TCPServer is currently waiting for an incoming
          * TCP client connection.
          *
-         * @param port the port number that the server is listening to
+         * @param port the port number that the server is listening to, <b>0</b> on a Unix domain socket
          */
         public void onWaitingForConnection(int port);
 
@@ -352,5 +1165,28 @@ public class TCPServer {
          * @param dataPacket the received DataPacket
          */
         public void onDataReceived(Connection connection, DataPacket dataPacket);
+
+        /**
+         * Notifies the object implementing this interface that a connection's queued responses crossed the
+         * server's write high-water mark, or drained back below half of it.
+         *
+         * @param connection the Connection instance whose write queue changed state
+         * @param isBackpressured whether or not the connection is now above its high-water mark
+         */
+        public default void onWriteBackpressure(Connection connection, boolean isBackpressured) {}
+
+        /**
+         * Notifies the object implementing this interface that the server received a query in the multiplexed mode.
+         * The query may be answered right away or later, from any thread, with {@link Request#respond(String)}.
+         *
+         * By default, the query is passed on to {@link #onDataReceived(Connection, DataPacket)} and left
+         * unanswered.
+         *
+         * @param connection the Connection instance that received the query
+         * @param request the query
+         */
+        public default void onRequestReceived(Connection connection, Request request) {
+            onDataReceived(connection, request.getDataPacket());
+        }
     }
 }
@@ -0,0 +1,193 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Opens Unix domain socket channels, which the JVM supports from Java 16 on. The library targets Java 8, so the
+ * few entry points involved are looked up reflectively; on older runtimes, opening a channel throws an
+ * {@link UnsupportedOperationException}.
+ */
+final class UnixDomainSockets {
+    private static final ProtocolFamily UNIX;
+    private static final Method OPEN_SERVER_CHANNEL;
+    private static final Method OPEN_CHANNEL;
+    private static final Method ADDRESS_OF;
+
+    static {
+        ProtocolFamily unix = null;
+        Method openServerChannel = null;
+        Method openChannel = null;
+        Method addressOf = null;
+
+        try {
+            unix = StandardProtocolFamily.valueOf("UNIX");
+            openServerChannel = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+            openChannel = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+        } catch (Exception e) {
+            unix = null;
+        }
+
+        UNIX = unix;
+        OPEN_SERVER_CHANNEL = openServerChannel;
+        OPEN_CHANNEL = openChannel;
+        ADDRESS_OF = addressOf;
+    }
+
+    private UnixDomainSockets() {}
+
+    /**
+     * @return whether or not the running JVM supports Unix domain sockets.
+     */
+    static boolean isSupported() {
+        return UNIX != null;
+    }
+
+    /**
+     * Binds a server channel to the given path. A file left at that path by a previous server is removed first.
+     */
+    static ServerSocketChannel bind(File path, int backlog) throws IOException {
+        ensureSupported();
+
+        if (path.exists() && !path.delete()) throw new IOException("Could not remove existing socket file " + path);
+
+        ServerSocketChannel channel = (ServerSocketChannel) invoke(OPEN_SERVER_CHANNEL, null, UNIX);
+        channel.bind(address(path), backlog);
+
+        return channel;
+    }
+
+    /**
+     * Accepts the next connection, reporting a closed server channel the way a closed server socket is reported.
+     */
+    static SocketChannel accept(ServerSocketChannel serverChannel) throws IOException {
+        try {
+            return serverChannel.accept();
+        } catch (ClosedChannelException e) {
+            throw closed();
+        }
+    }
+
+    /**
+     * Connects a channel to the server bound to the given path.
+     */
+    static SocketChannel connect(File path) throws IOException {
+        ensureSupported();
+
+        SocketChannel channel = (SocketChannel) invoke(OPEN_CHANNEL, null, UNIX);
+
+        try {
+            channel.connect(address(path));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        return channel;
+    }
+
+    /**
+     * The streams of {@link java.nio.channels.Channels} hold the channel's blocking lock while reading, which
+     * would stall every write until the next read returns. These streams call the channel directly instead, so one
+     * thread can read while another writes. Closing either stream closes the channel, and using a closed channel
+     * throws the same {@link SocketException} a closed socket would.
+     */
+    static InputStream newInputStream(final SocketChannel channel) {
+        return new InputStream() {
+            private final byte[] single = new byte[1];
+
+            @Override
+            public int read() throws IOException {
+                return (read(single, 0, 1) < 0) ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+
+                try {
+                    int read;
+                    while ((read = channel.read(ByteBuffer.wrap(b, off, len))) == 0);
+
+                    return read;
+                } catch (ClosedChannelException e) {
+                    throw closed();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    static OutputStream newOutputStream(final SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+
+                try {
+                    while (buffer.hasRemaining()) channel.write(buffer);
+                } catch (ClosedChannelException e) {
+                    throw closed();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    private static SocketAddress address(File path) throws IOException {
+        return (SocketAddress) invoke(ADDRESS_OF, null, path.toPath());
+    }
+
+    private static SocketException closed() {
+        return new SocketException("Socket closed");
+    }
+
+    private static void ensureSupported() {
+        if (!isSupported()) throw new UnsupportedOperationException("Unix domain sockets require Java 16 or later");
+    }
+
+    private static Object invoke(Method method, Object target, Object argument) throws IOException {
+        try {
+            return method.invoke(target, argument);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+
+            throw new IOException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+}
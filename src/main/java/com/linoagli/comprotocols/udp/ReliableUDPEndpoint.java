@@ -0,0 +1,869 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.java.comprotocols.udp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.udp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.Log;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An opt-in reliability layer on top of UDP. A single endpoint both sends and receives, and talks to other
+ * endpoints of the same kind.
+ *
+ * Messages are sent on numbered streams. Each stream is delivered reliably and in order, while streams are
+ * independent of one another so a lost packet only holds back the stream it belongs to. Messages larger than
+ * the configured segment size are fragmented and reassembled on the other end.
+ *
+ * Every data packet carries a sequence number. Receivers answer with a cumulative acknowledgement plus a bitmap
+ * of the packets received past it (selective ACK); the holes in that bitmap act as negative acknowledgements and
+ * trigger an early retransmission of the missing packets. Packets that are not acknowledged at all are
+ * retransmitted once the peer's retransmission time out, derived from the measured round trip time, expires.
+ *
+ * The number of packets in flight towards a peer, across all streams, is bounded by a congestion window that
+ * grows as packets get acknowledged and is halved whenever a loss is detected.
+ *
+ * The state kept for a remote endpoint is dropped once nothing was exchanged with it for a while and nothing sent
+ * to it is left unacknowledged, and the number of endpoints allowed to send to this one is capped, so stray
+ * senders can't make it grow without bounds.
+ */
+public class ReliableUDPEndpoint {
+    public static final int DEFAULT_SEGMENT_SIZE = 1200;
+    public static final int DEFAULT_SEND_WINDOW = 256;
+    public static final int DEFAULT_RECEIVE_WINDOW = 1024;
+    public static final int DEFAULT_MAX_TRANSMISSIONS = 10;
+    public static final int DEFAULT_MAX_PEERS = 1024;
+    public static final long DEFAULT_PEER_IDLE_TIME_OUT = 60000;
+    public static final int MAX_MESSAGE_FRAGMENTS = 0xFFFF;
+
+    private static final byte MAGIC = 0x52;
+    private static final byte TYPE_DATA = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final int DATA_HEADER_SIZE = 16;
+    private static final int ACK_PACKET_SIZE = 20;
+    private static final int SACK_BITS = 64;
+    private static final int MAX_DATAGRAM_SIZE = 65507;
+
+    private static final long TICK_TIME = 10;
+    private static final long INITIAL_RTO = 200;
+    private static final long MIN_RTO = 20;
+    private static final long MAX_RTO = 5000;
+    private static final double INITIAL_CONGESTION_WINDOW = 16;
+    private static final double MIN_CONGESTION_WINDOW = 2;
+    private static final double MAX_CONGESTION_WINDOW = 8192;
+
+    private Callback callback;
+
+    private int port;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private int sendWindow = DEFAULT_SEND_WINDOW;
+    private int receiveWindow = DEFAULT_RECEIVE_WINDOW;
+    private int maxTransmissions = DEFAULT_MAX_TRANSMISSIONS;
+    private int maxPeers = DEFAULT_MAX_PEERS;
+    private long peerIdleTimeOut = DEFAULT_PEER_IDLE_TIME_OUT;
+    private volatile boolean isRunning = false;
+
+    private final Random random = new Random();
+    private final ConcurrentHashMap<SocketAddress, Peer> peers = new ConcurrentHashMap<>();
+
+    private DatagramSocket socket;
+    private ReceiverThread receiverThread;
+    private TimerThread timerThread;
+
+    /**
+     * @param port the local port to send from and receive on, <b>0</b> picks any free port
+     * @param callback the events callback
+     */
+    public ReliableUDPEndpoint(int port, Callback callback) {
+        this.port = port;
+        this.callback = callback;
+    }
+
+    /**
+     * @return the local port this endpoint is bound to.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return whether or not this endpoint is up and running.
+     */
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    /**
+     * Sets the maximum number of payload bytes carried by a single datagram. Larger messages are fragmented.
+     * The default keeps datagrams below common path MTUs.
+     *
+     * This value defaults to <b>1200</b>
+     *
+     * @param segmentSize the payload size in bytes
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = Math.max(1, Math.min(segmentSize, MAX_DATAGRAM_SIZE - DATA_HEADER_SIZE));
+    }
+
+    /**
+     * Sets the maximum number of unacknowledged packets in flight per stream. Packets beyond that are held back
+     * until earlier ones get acknowledged.
+     *
+     * This value defaults to <b>256</b>
+     *
+     * @param sendWindow the window in packets
+     */
+    public void setSendWindow(int sendWindow) {
+        this.sendWindow = Math.max(1, sendWindow);
+    }
+
+    /**
+     * @return the number of remote endpoints this endpoint currently keeps state for.
+     */
+    public int getPeerCount() {
+        return peers.size();
+    }
+
+    /**
+     * Sets how far ahead of the first missing packet the receiving side buffers out of order packets.
+     * Packets beyond that are dropped and retransmitted later. The window slides with every packet received in
+     * order, including the fragments of a message that is not complete yet, so it doesn't limit message sizes.
+     *
+     * This value defaults to <b>1024</b>
+     *
+     * @param receiveWindow the window in packets
+     */
+    public void setReceiveWindow(int receiveWindow) {
+        this.receiveWindow = Math.max(SACK_BITS, receiveWindow);
+    }
+
+    /**
+     * Sets the number of times a packet is sent before its message is considered undeliverable and reported
+     * through {@link Callback#onDeliveryFailed(InetAddress, int, int)}.
+     *
+     * This value defaults to <b>10</b>
+     *
+     * @param maxTransmissions the number of transmissions
+     */
+    public void setMaxTransmissions(int maxTransmissions) {
+        this.maxTransmissions = Math.max(1, maxTransmissions);
+    }
+
+    /**
+     * Sets the maximum number of remote endpoints this endpoint keeps state for. Data from new endpoints is
+     * ignored while the limit is reached. Endpoints this one sends to are always admitted.
+     *
+     * This value defaults to <b>1024</b>
+     *
+     * @param maxPeers the maximum number of remote endpoints
+     */
+    public void setMaxPeers(int maxPeers) {
+        this.maxPeers = Math.max(1, maxPeers);
+    }
+
+    /**
+     * Sets how long the state of a remote endpoint is kept once nothing was sent to or received from it, in
+     * milliseconds. State holding unacknowledged packets is kept regardless.
+     *
+     * This value defaults to <b>60000</b>
+     *
+     * @param peerIdleTimeOut the time out in milliseconds
+     */
+    public void setPeerIdleTimeOut(long peerIdleTimeOut) {
+        this.peerIdleTimeOut = Math.max(0, peerIdleTimeOut);
+    }
+
+    /**
+     * Binds the endpoint and starts receiving.
+     */
+    public void start() {
+        try {
+            socket = new DatagramSocket(port);
+            port = socket.getLocalPort();
+
+            isRunning = true;
+
+            receiverThread = new ReceiverThread();
+            receiverThread.start();
+
+            timerThread = new TimerThread();
+            timerThread.start();
+
+            if (callback != null) callback.onStarted(port);
+        } catch (Exception e) {
+            Log.error(ReliableUDPEndpoint.class, e);
+            stop();
+        }
+    }
+
+    /**
+     * Retires the endpoint. Unacknowledged messages are discarded.
+     */
+    public void stop() {
+        boolean wasRunning = isRunning;
+        isRunning = false;
+
+        if (timerThread != null) {
+            timerThread.cancel();
+            timerThread = null;
+        }
+
+        if (receiverThread != null) {
+            receiverThread.cancel();
+            receiverThread = null;
+        }
+
+        if (socket != null) {
+            socket.close();
+            socket = null;
+        }
+
+        peers.clear();
+
+        if (wasRunning && callback != null) callback.onStopping();
+    }
+
+    /**
+     * Reliably sends a string on stream <b>0</b>.
+     *
+     * @param address the recipient's IP address
+     * @param port the recipient's port number
+     * @param data the data to be sent
+     */
+    public void send(InetAddress address, int port, String data) {
+        send(address, port, 0, data.getBytes());
+    }
+
+    /**
+     * Reliably sends a message on the given stream. Messages sent on the same stream are delivered in the order
+     * they were sent; messages on different streams are delivered independently.
+     *
+     * @param address the recipient's IP address
+     * @param port the recipient's port number
+     * @param streamId the stream number, from <b>0</b> to <b>65535</b>
+     * @param bytes the message bytes, in at most <b>65535</b> segments
+     * @return <b>false</b> if the message could not be queued
+     */
+    public boolean send(InetAddress address, int port, int streamId, byte[] bytes) {
+        if (!isRunning) {
+            Log.warn(ReliableUDPEndpoint.class, "Reliable UDP endpoint is not running. Message discarded.");
+            return false;
+        }
+
+        int fragmentCount = Math.max(1, (bytes.length + segmentSize - 1) / segmentSize);
+
+        if (fragmentCount > MAX_MESSAGE_FRAGMENTS) {
+            Log.warn(ReliableUDPEndpoint.class, "Message too large for reliable UDP endpoint: {} bytes. Message discarded.", bytes.length);
+            return false;
+        }
+
+        Peer peer = touchPeer(new InetSocketAddress(address, port), false);
+        SendStream stream = peer.getSendStream(streamId & 0xFFFF);
+
+        synchronized (stream) {
+            for (int i = 0; i < fragmentCount; i++) {
+                int offset = i * segmentSize;
+                int length = Math.min(segmentSize, bytes.length - offset);
+
+                ByteBuffer datagram = ByteBuffer.allocate(DATA_HEADER_SIZE + length);
+                datagram.put(MAGIC).put(TYPE_DATA).putShort((short) stream.streamId).putInt(stream.sessionId);
+                datagram.putInt(stream.nextSeq).putShort((short) i).putShort((short) fragmentCount);
+                datagram.put(bytes, offset, length);
+
+                stream.pending.addLast(new Segment(stream.nextSeq++, datagram.array()));
+            }
+
+            stream.fillWindow(peer);
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the state of a remote endpoint, creating it if needed, and marks it as active so it isn't evicted.
+     *
+     * @param address the address of the remote endpoint
+     * @param isInbound whether or not the endpoint is the sender of a datagram, which is subject to the peer limit
+     * @return the peer, or <b>null</b> if it is a new sender and the peer limit is reached
+     */
+    private Peer touchPeer(SocketAddress address, boolean isInbound) {
+        while (true) {
+            Peer peer = peers.get(address);
+
+            if (peer == null) {
+                if (isInbound && peers.size() >= maxPeers) return null;
+
+                peer = peers.computeIfAbsent(address, key -> new Peer(key));
+            }
+
+            synchronized (peer) {
+                // An evicted peer is out of the map already; the next pass creates a new one
+                if (!peer.isEvicted) {
+                    peer.lastActivity = System.currentTimeMillis();
+                    return peer;
+                }
+            }
+        }
+    }
+
+    private void transmit(SocketAddress address, byte[] datagram) {
+        DatagramSocket socket = this.socket;
+
+        if (socket == null) return;
+
+        try {
+            socket.send(new DatagramPacket(datagram, datagram.length, address));
+        } catch (IOException e) {
+            if (e instanceof SocketException) {
+                Log.info(ReliableUDPEndpoint.class, "{}", e.getMessage());
+            } else {
+                Log.error(ReliableUDPEndpoint.class, e);
+            }
+        }
+    }
+
+    private void onDatagram(DatagramPacket packet) {
+        if (packet.getLength() < 8) return;
+
+        ByteBuffer buffer = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
+
+        if (buffer.get() != MAGIC) return;
+
+        byte type = buffer.get();
+        int streamId = buffer.getShort() & 0xFFFF;
+        int sessionId = buffer.getInt();
+
+        // Acknowledgements are only of interest to peers this endpoint sent something to
+        Peer peer = (type == TYPE_DATA) ? touchPeer(packet.getSocketAddress(), true) : peers.get(packet.getSocketAddress());
+
+        if (peer == null) {
+            Log.debug(ReliableUDPEndpoint.class, "Reliable UDP endpoint ignoring datagram from {}", packet.getSocketAddress());
+            return;
+        }
+
+        if (type == TYPE_DATA && packet.getLength() >= DATA_HEADER_SIZE) {
+            int seq = buffer.getInt();
+            int fragmentIndex = buffer.getShort() & 0xFFFF;
+            int fragmentCount = buffer.getShort() & 0xFFFF;
+            byte[] payload = new byte[buffer.remaining()];
+            buffer.get(payload);
+
+            peer.getReceiveStream(streamId).onData(peer, sessionId, seq, fragmentIndex, fragmentCount, payload);
+        }
+        else if (type == TYPE_ACK && packet.getLength() >= ACK_PACKET_SIZE) {
+            int cumulativeAck = buffer.getInt();
+            long sackBits = buffer.getLong();
+
+            SendStream stream = peer.sendStreams.get(streamId);
+            if (stream != null) stream.onAck(peer, sessionId, cumulativeAck, sackBits);
+        }
+    }
+
+    private static boolean isBefore(int seq, int other) {
+        return seq - other < 0;
+    }
+
+    /**
+     * A remote endpoint and the round trip time estimate used for all streams exchanged with it (RFC 6298).
+     */
+    private class Peer {
+        private final SocketAddress address;
+        private final Map<Integer, SendStream> sendStreams = new ConcurrentHashMap<>();
+        private final Map<Integer, ReceiveStream> receiveStreams = new ConcurrentHashMap<>();
+
+        private double smoothedRtt = -1;
+        private double rttVariance = 0;
+        private long rto = INITIAL_RTO;
+
+        private double congestionWindow = INITIAL_CONGESTION_WINDOW;
+        private double slowStartThreshold = MAX_CONGESTION_WINDOW;
+        private long lastWindowReduction = 0;
+        private int inFlightCount = 0;
+
+        private long lastActivity;
+        private boolean isEvicted = false;
+
+        private Peer(SocketAddress address) {
+            this.address = address;
+        }
+
+        private SendStream getSendStream(int streamId) {
+            return sendStreams.computeIfAbsent(streamId, id -> new SendStream(id));
+        }
+
+        private ReceiveStream getReceiveStream(int streamId) {
+            return receiveStreams.computeIfAbsent(streamId, id -> new ReceiveStream(id));
+        }
+
+        private synchronized void onRttSample(long rtt) {
+            if (smoothedRtt < 0) {
+                smoothedRtt = rtt;
+                rttVariance = rtt / 2d;
+            } else {
+                rttVariance = 0.75 * rttVariance + 0.25 * Math.abs(smoothedRtt - rtt);
+                smoothedRtt = 0.875 * smoothedRtt + 0.125 * rtt;
+            }
+
+            rto = Math.max(MIN_RTO, Math.min(MAX_RTO, (long) (smoothedRtt + Math.max(TICK_TIME, 4 * rttVariance))));
+        }
+
+        private synchronized boolean tryAcquireSendSlot() {
+            if (inFlightCount >= (int) congestionWindow) return false;
+
+            inFlightCount++;
+            return true;
+        }
+
+        private synchronized void onPacketsLeftFlight(int count, boolean isAcknowledged) {
+            inFlightCount = Math.max(0, inFlightCount - count);
+
+            if (!isAcknowledged) return;
+
+            for (int i = 0; i < count; i++) {
+                congestionWindow += (congestionWindow < slowStartThreshold) ? 1 : 1 / congestionWindow;
+            }
+
+            congestionWindow = Math.min(MAX_CONGESTION_WINDOW, congestionWindow);
+        }
+
+        private synchronized void onLoss(long now, boolean isTimeOut) {
+            // Losses detected within the same round trip belong to the same congestion event
+            if (now - lastWindowReduction < getSmoothedRtt()) return;
+
+            lastWindowReduction = now;
+            slowStartThreshold = Math.max(MIN_CONGESTION_WINDOW, congestionWindow / 2);
+            congestionWindow = isTimeOut ? MIN_CONGESTION_WINDOW : slowStartThreshold;
+        }
+
+        private void fillWindows() {
+            for (SendStream stream : sendStreams.values()) {
+                synchronized (stream) {
+                    stream.fillWindow(this);
+                }
+            }
+        }
+
+        /**
+         * Marks this peer as evicted if it was idle for the peer idle time out and holds no unacknowledged packets.
+         *
+         * @return whether or not the peer was evicted.
+         */
+        private boolean evictIfIdle() {
+            // The streams are checked first, as their locks are taken before the peer's elsewhere. Anything queued
+            // afterwards touched the peer first, which keeps it from being evicted below
+            for (SendStream stream : sendStreams.values()) {
+                synchronized (stream) {
+                    if (!stream.inFlight.isEmpty() || !stream.pending.isEmpty()) return false;
+                }
+            }
+
+            synchronized (this) {
+                if (System.currentTimeMillis() - lastActivity < peerIdleTimeOut) return false;
+
+                isEvicted = true;
+                return true;
+            }
+        }
+
+        private synchronized long getRto() {
+            return rto;
+        }
+
+        private synchronized long getSmoothedRtt() {
+            return (smoothedRtt < 0) ? rto : (long) smoothedRtt;
+        }
+    }
+
+    /**
+     * A sent packet awaiting acknowledgement.
+     */
+    private static class Segment {
+        private final int seq;
+        private final byte[] datagram;
+        private long sentAt;
+        private int transmissions = 0;
+        private boolean isSacked = false;
+
+        private Segment(int seq, byte[] datagram) {
+            this.seq = seq;
+            this.datagram = datagram;
+        }
+    }
+
+    /**
+     * The sending half of a stream: packets in flight, packets held back by the send window and retransmissions.
+     */
+    private class SendStream {
+        private final int streamId;
+        private int sessionId = random.nextInt();
+        private int nextSeq = 0;
+        private final ArrayDeque<Segment> inFlight = new ArrayDeque<>();
+        private final ArrayDeque<Segment> pending = new ArrayDeque<>();
+
+        private SendStream(int streamId) {
+            this.streamId = streamId;
+        }
+
+        private void fillWindow(Peer peer) {
+            long now = System.currentTimeMillis();
+
+            while (!pending.isEmpty() && inFlight.size() < sendWindow && peer.tryAcquireSendSlot()) {
+                Segment segment = pending.pollFirst();
+                inFlight.addLast(segment);
+                send(peer, segment, now);
+            }
+        }
+
+        private void send(Peer peer, Segment segment, long now) {
+            segment.sentAt = now;
+            segment.transmissions++;
+            transmit(peer.address, segment.datagram);
+        }
+
+        private void onAck(Peer peer, int sessionId, int cumulativeAck, long sackBits) {
+            synchronized (this) {
+                if (sessionId != this.sessionId) return;
+
+                processAck(peer, cumulativeAck, sackBits);
+            }
+
+            // Acknowledged packets free up room in the congestion window shared by every stream of the peer
+            peer.fillWindows();
+        }
+
+        private void processAck(Peer peer, int cumulativeAck, long sackBits) {
+            long now = System.currentTimeMillis();
+            int highestSacked = cumulativeAck;
+            int leftFlight = 0;
+            Iterator<Segment> iterator = inFlight.iterator();
+
+            while (iterator.hasNext()) {
+                Segment segment = iterator.next();
+                int offset = segment.seq - cumulativeAck - 1;
+                boolean isAcked = isBefore(segment.seq, cumulativeAck);
+                boolean isSacked = !isAcked && offset >= 0 && offset < SACK_BITS && (sackBits & (1L << offset)) != 0;
+
+                // Karn's algorithm: only packets sent once give an unambiguous round trip time sample
+                if ((isAcked || (isSacked && !segment.isSacked)) && segment.transmissions == 1) {
+                    peer.onRttSample(now - segment.sentAt);
+                }
+
+                if (isAcked) {
+                    if (!segment.isSacked) leftFlight++;
+                    iterator.remove();
+                } else if (isSacked) {
+                    if (!segment.isSacked) leftFlight++;
+                    segment.isSacked = true;
+                    highestSacked = segment.seq;
+                }
+            }
+
+            peer.onPacketsLeftFlight(leftFlight, true);
+
+            // Holes below the highest selectively acknowledged packet are treated as lost
+            long smoothedRtt = peer.getSmoothedRtt();
+
+            for (Segment segment : inFlight) {
+                if (!isBefore(segment.seq, highestSacked)) break;
+
+                if (!segment.isSacked && now - segment.sentAt >= smoothedRtt) {
+                    peer.onLoss(now, false);
+                    send(peer, segment, now);
+                }
+            }
+        }
+
+        private synchronized void onTick(Peer peer, long now) {
+            if (inFlight.isEmpty()) return;
+
+            long rto = peer.getRto();
+
+            for (Segment segment : inFlight) {
+                if (segment.isSacked) continue;
+
+                // Exponential back off for packets retransmitted on time out
+                long timeOut = Math.min(MAX_RTO, rto << Math.min(segment.transmissions - 1, 5));
+                if (now - segment.sentAt < timeOut) continue;
+
+                if (segment.transmissions >= maxTransmissions) {
+                    fail(peer);
+                    return;
+                }
+
+                peer.onLoss(now, true);
+                send(peer, segment, now);
+            }
+        }
+
+        /**
+         * Gives up on everything queued on this stream and starts a new session, which tells the receiving side
+         * to stop waiting for the missing packets.
+         */
+        private void fail(Peer peer) {
+            int leftFlight = 0;
+
+            for (Segment segment : inFlight) {
+                if (!segment.isSacked) leftFlight++;
+            }
+
+            peer.onPacketsLeftFlight(leftFlight, false);
+
+            inFlight.clear();
+            pending.clear();
+            sessionId = random.nextInt();
+            nextSeq = 0;
+
+            InetSocketAddress address = (InetSocketAddress) peer.address;
+            if (callback != null) callback.onDeliveryFailed(address.getAddress(), address.getPort(), streamId);
+        }
+    }
+
+    /**
+     * The receiving half of a stream: the reorder window, reassembly and acknowledgements.
+     */
+    private class ReceiveStream {
+        private final int streamId;
+        private int sessionId;
+        private int retiredSessionId;
+        private boolean hasSession = false;
+        private int nextExpected = 0;
+        private int contiguousEnd = 0;
+        private int unackedCount = 0;
+        private final TreeMap<Integer, Fragment> buffered = new TreeMap<>((a, b) -> Integer.compare(a - b, 0));
+
+        private ReceiveStream(int streamId) {
+            this.streamId = streamId;
+        }
+
+        private void onData(Peer peer, int sessionId, int seq, int fragmentIndex, int fragmentCount, byte[] payload) {
+            List<byte[]> messages = new ArrayList<>();
+
+            synchronized (this) {
+                if (!hasSession || sessionId != this.sessionId) {
+                    if (hasSession && sessionId == retiredSessionId) return; // A late packet from an abandoned session
+
+                    retiredSessionId = this.sessionId;
+                    this.sessionId = sessionId;
+                    hasSession = true;
+                    nextExpected = 0;
+                    contiguousEnd = 0;
+                    buffered.clear();
+                }
+
+                boolean isInOrder = seq == contiguousEnd;
+                boolean isDuplicate = isBefore(seq, nextExpected) || buffered.containsKey(seq);
+
+                // The window starts at the first missing packet rather than at the first packet of the message being
+                // reassembled, so messages with more fragments than the window can complete
+                if (!isDuplicate && seq - contiguousEnd < receiveWindow && fragmentCount > 0 && fragmentIndex < fragmentCount) {
+                    buffered.put(seq, new Fragment(fragmentIndex, fragmentCount, payload));
+
+                    while (buffered.containsKey(contiguousEnd)) contiguousEnd++;
+
+                    reassemble(messages);
+                }
+
+                // In order packets are acknowledged every other packet or on the next tick, anything else right away
+                if (!isInOrder || isDuplicate || ++unackedCount >= 2) sendAck(peer);
+            }
+
+            if (callback != null) {
+                InetSocketAddress address = (InetSocketAddress) peer.address;
+
+                for (byte[] message : messages) {
+                    callback.onDataReceived(streamId, new DataPacket(address.getAddress(), address.getPort(), message));
+                }
+            }
+        }
+
+        private void reassemble(List<byte[]> messages) {
+            while (true) {
+                Fragment first = buffered.get(nextExpected);
+
+                if (first == null || first.index != 0) return;
+
+                int size = 0;
+
+                for (int i = 0; i < first.count; i++) {
+                    Fragment fragment = buffered.get(nextExpected + i);
+                    if (fragment == null) return;
+
+                    size += fragment.payload.length;
+                }
+
+                byte[] message = new byte[size];
+                int position = 0;
+
+                for (int i = 0; i < first.count; i++) {
+                    Fragment fragment = buffered.remove(nextExpected + i);
+                    System.arraycopy(fragment.payload, 0, message, position, fragment.payload.length);
+                    position += fragment.payload.length;
+                }
+
+                nextExpected += first.count;
+                messages.add(message);
+            }
+        }
+
+        private synchronized void onTick(Peer peer) {
+            if (unackedCount > 0) sendAck(peer);
+        }
+
+        private void sendAck(Peer peer) {
+            // The cumulative acknowledgement covers every contiguous packet received, including fragments of
+            // messages that are not complete yet
+            int cumulativeAck = contiguousEnd;
+
+            long sackBits = 0;
+
+            for (Integer seq : buffered.tailMap(cumulativeAck, false).keySet()) {
+                int offset = seq - cumulativeAck - 1;
+                if (offset >= SACK_BITS) break;
+
+                sackBits |= 1L << offset;
+            }
+
+            ByteBuffer datagram = ByteBuffer.allocate(ACK_PACKET_SIZE);
+            datagram.put(MAGIC).put(TYPE_ACK).putShort((short) streamId).putInt(sessionId);
+            datagram.putInt(cumulativeAck).putLong(sackBits);
+
+            unackedCount = 0;
+            transmit(peer.address, datagram.array());
+        }
+    }
+
+    private static class Fragment {
+        private final int index;
+        private final int count;
+        private final byte[] payload;
+
+        private Fragment(int index, int count, byte[] payload) {
+            this.index = index;
+            this.count = count;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * This thread receives every datagram sent to this endpoint.
+     */
+    private class ReceiverThread extends Thread {
+        private volatile boolean runLoop = true;
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+            while (runLoop) {
+                try {
+                    packet.setLength(buffer.length);
+                    socket.receive(packet);
+
+                    onDatagram(packet);
+                } catch (Exception e) {
+                    if (!runLoop) break;
+
+                    if (e instanceof SocketException) {
+                        Log.info(ReliableUDPEndpoint.class, "{}", e.getMessage());
+                    } else {
+                        Log.error(ReliableUDPEndpoint.class, e);
+                    }
+                }
+            }
+        }
+
+        private void cancel() {
+            runLoop = false;
+        }
+    }
+
+    /**
+     * This thread drives retransmission time outs and delayed acknowledgements.
+     */
+    private class TimerThread extends Thread {
+        private volatile boolean runLoop = true;
+
+        @Override
+        public void run() {
+            while (runLoop) {
+                long now = System.currentTimeMillis();
+
+                for (Peer peer : peers.values()) {
+                    for (SendStream stream : peer.sendStreams.values()) stream.onTick(peer, now);
+                    for (ReceiveStream stream : peer.receiveStreams.values()) stream.onTick(peer);
+
+                    peer.fillWindows();
+
+                    if (peer.evictIfIdle()) peers.remove(peer.address, peer);
+                }
+
+                try {
+                    Thread.sleep(TICK_TIME);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void cancel() {
+            runLoop = false;
+            interrupt();
+        }
+    }
+
+    /**
+     * The reliable UDP endpoint events callback interface
+     */
+    public interface Callback {
+        /**
+         * Notifies the object implementing this interface that the endpoint has started.
+         *
+         * @param port the local port number the endpoint is bound to
+         */
+        public void onStarted(int port);
+
+        /**
+         * Notifies the object implementing this interface that the endpoint has stopped its processes.
+         */
+        public void onStopping();
+
+        /**
+         * Notifies the object implementing this interface that a complete message was received. Messages of a
+         * given stream are delivered in order.
+         *
+         * @param streamId the stream the message was sent on
+         * @param dataPacket the received message. Its address and port are the sender's
+         */
+        public void onDataReceived(int streamId, DataPacket dataPacket);
+
+        /**
+         * Notifies the object implementing this interface that messages sent on a stream could not be delivered
+         * after the maximum number of transmissions. Everything that was queued on that stream is discarded.
+         *
+         * @param address the recipient's IP address
+         * @param port the recipient's port number
+         * @param streamId the stream the messages were sent on
+         */
+        public void onDeliveryFailed(InetAddress address, int port, int streamId);
+    }
+}
@@ -7,26 +7,58 @@
 package com.linoagli.comprotocols.udp;
 
 import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.Log;
+import com.linoagli.comprotocols.SocketConfig;
+import com.linoagli.comprotocols.capture.CaptureJournal;
+import com.linoagli.comprotocols.jfr.Events;
+import com.linoagli.comprotocols.pipeline.Pipeline;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
- * A simple way of receiving and processing UDP packets
+ * A simple way of receiving and processing UDP packets.
+ *
+ * Besides unicast packets sent to its port, the listener can receive multicast packets by joining one or more
+ * multicast groups, optionally restricted to specific sources.
+ *
+ * Every packet received flows through a {@link Pipeline}, one datagram per inbound message. The pipeline is empty
+ * by default; stages can be installed with {@link #setPipelineInitializer(Pipeline.Initializer)}.
  */
 public class UDPListener {
     public final int DEFAULT_DATA_PACKET_SIZE = 1024;
+    public static final long STOP_TIME_OUT = 1000;
 
     private Callback callback;
 
     private int port;
     private int dataPacketSize = DEFAULT_DATA_PACKET_SIZE;
-    private boolean isRunning = false;
+    private SocketConfig socketConfig = new SocketConfig();
+    private volatile boolean isRunning = false;
 
+    private DatagramChannel channel;
     private DatagramSocket serverSocket;
     private DataPacket data;
+    private Pipeline pipeline;
+    private Pipeline.Initializer pipelineInitializer;
+    private CaptureJournal captureJournal;
+    private InetAddress packetAddress;
+    private final List<Membership> memberships = new ArrayList<>();
     private WorkerThread thread;
 
     public UDPListener(int port, Callback callback) {
@@ -65,6 +97,136 @@ public class UDPListener {
         this.dataPacketSize = dataPacketSize;
     }
 
+    /**
+     * Sets the initializer called with the listener's pipeline every time it is started.
+     * Must be set before calling {@link #start()}.
+     *
+     * @param pipelineInitializer the initializer
+     */
+    public void setPipelineInitializer(Pipeline.Initializer pipelineInitializer) {
+        this.pipelineInitializer = pipelineInitializer;
+    }
+
+    /**
+     * Sets the options of the listening socket, such as {@link SocketConfig#bulkThroughput()} to raise its
+     * receive buffer so bursts of datagrams aren't dropped. Applies from the next call to {@link #start()}.
+     *
+     * This value defaults to the system's defaults
+     *
+     * @param socketConfig the options
+     */
+    public void setSocketConfig(SocketConfig socketConfig) {
+        this.socketConfig = (socketConfig != null) ? socketConfig : new SocketConfig();
+    }
+
+    /**
+     * Sets the journal recording every packet received, see {@link CaptureJournal}. Packets are recorded as
+     * connectionless traffic, under connection id <b>0</b>.
+     *
+     * This value defaults to <b>null</b>, which records nothing
+     *
+     * @param captureJournal the journal
+     */
+    public void setCaptureJournal(CaptureJournal captureJournal) {
+        this.captureJournal = captureJournal;
+    }
+
+    /**
+     * @return the pipeline of the current run, or <i>null</i> if this listener was never started.
+     */
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Joins a multicast group on the default multicast capable network interface.
+     * May be called before or after {@link #start()}.
+     *
+     * @param group the multicast group address
+     */
+    public void joinGroup(InetAddress group) {
+        joinGroup(group, null, null);
+    }
+
+    /**
+     * Joins a multicast group on the given network interface.
+     * May be called before or after {@link #start()}.
+     *
+     * @param group the multicast group address
+     * @param networkInterface the interface to receive the group's packets on, or <i>null</i> for the default one
+     */
+    public void joinGroup(InetAddress group, NetworkInterface networkInterface) {
+        joinGroup(group, networkInterface, null);
+    }
+
+    /**
+     * Joins a multicast group on the given network interface, only receiving packets sent by the given source
+     * (source-specific multicast). Calling this several times with different sources accepts all of them.
+     * May be called before or after {@link #start()}.
+     *
+     * @param group the multicast group address
+     * @param networkInterface the interface to receive the group's packets on, or <i>null</i> for the default one
+     * @param source the only source address accepted, or <i>null</i> to accept any source
+     */
+    public void joinGroup(InetAddress group, NetworkInterface networkInterface, InetAddress source) {
+        if (group == null || !group.isMulticastAddress()) {
+            Log.warn(UDPListener.class, "Not a multicast group address: {}. Ignoring...", group);
+            return;
+        }
+
+        synchronized (memberships) {
+            Membership membership = new Membership(group, networkInterface, source);
+            memberships.add(membership);
+
+            if (channel != null) membership.join(channel);
+        }
+    }
+
+    /**
+     * Leaves a multicast group on every interface it was joined on, dropping all source filters for it.
+     *
+     * @param group the multicast group address
+     */
+    public void leaveGroup(InetAddress group) {
+        synchronized (memberships) {
+            Iterator<Membership> iterator = memberships.iterator();
+
+            while (iterator.hasNext()) {
+                Membership membership = iterator.next();
+
+                if (membership.group.equals(group)) {
+                    membership.drop();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks the packets sent to a multicast group by the given source. Only applies to groups joined without a
+     * source filter. May be called before or after {@link #start()}; the block is kept until the group is left and
+     * applied again every time the listener starts.
+     *
+     * @param group the multicast group address
+     * @param source the source address to block
+     */
+    public void blockSource(InetAddress group, InetAddress source) {
+        boolean isBlocked = false;
+
+        synchronized (memberships) {
+            for (Membership membership : memberships) {
+                if (membership.group.equals(group) && membership.source == null) {
+                    membership.block(source);
+                    isBlocked = true;
+                }
+            }
+        }
+
+        if (!isBlocked) {
+            Log.warn(UDPListener.class, "Group {} was not joined without a source filter. Not blocking source {}...", group, source);
+        }
+    }
+
     /**
      * Initializes the UDP listener and starts the listening process.
      */
@@ -77,9 +239,21 @@ public class UDPListener {
      * Retires the UDP listener and cleans up resources.
      */
     public void stop() {
+        WorkerThread thread = this.thread;
+
         if (thread != null) {
             thread.cancel();
-            thread = null;
+            this.thread = null;
+
+            // The socket is only released once the thread blocked receiving on it is done, so the port can be
+            // bound again as soon as this returns
+            if (thread != Thread.currentThread()) {
+                try {
+                    thread.join(STOP_TIME_OUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
     }
 
@@ -87,12 +261,19 @@ public class UDPListener {
      * The thread in charge of all the heavy lifting.
      */
     private class WorkerThread extends Thread {
-        private boolean runLoop = true;
+        private volatile boolean runLoop = true;
 
         @Override
         public void run() {
             try {
-                serverSocket = new DatagramSocket(port);
+                DatagramSocket socket = openSocket();
+                if (socket == null) return; // Stopped before it got going
+
+                pipeline = new Pipeline(this::onMessage, data -> {
+                    throw new IOException("UDP listener does not send data");
+                });
+
+                if (pipelineInitializer != null) pipelineInitializer.initialize(pipeline);
 
                 isRunning = true; // Starting the thread loop. The service is open for business
 
@@ -103,19 +284,26 @@ public class UDPListener {
                     DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
 
                     try {
-                        serverSocket.receive(packet);
+                        socket.receive(packet);
+
+                        Object event = Events.beginDatagramReceive();
+                        packetAddress = packet.getAddress();
+                        ByteBuffer data = ByteBuffer.wrap(buffer, 0, packet.getLength());
+
+                        CaptureJournal journal = captureJournal;
+                        if (journal != null) journal.record(0, CaptureJournal.Direction.INBOUND, packet.getSocketAddress().toString(), data);
 
-                        byte[] bytes = new byte[packet.getLength()];
-                        System.arraycopy(packet.getData(), 0, bytes, 0, packet.getLength());
+                        pipeline.fireInbound(data);
 
-                        data = new DataPacket(packet.getAddress(), port, bytes);
-                        if (callback != null) callback.onDataReceived(data);
+                        Events.commitDatagramReceive(event, packet.getSocketAddress(), port, packet.getLength());
                     }
                     catch (IOException e) {
+                        if (!runLoop) break;
+
                         if (e instanceof SocketException) {
-                            System.out.println(e.getMessage());
+                            Log.info(UDPListener.class, "{}", e.getMessage());
                         } else {
-                            e.printStackTrace();
+                            Log.error(UDPListener.class, e);
                         }
                     }
                 }
@@ -124,7 +312,39 @@ public class UDPListener {
 
                 isRunning = false; // Ending the thread loop. The service has reached the end of its business hours
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error(UDPListener.class, e);
+            }
+        }
+
+        private void onMessage(ByteBuffer message) {
+            byte[] bytes = new byte[message.remaining()];
+            message.get(bytes);
+
+            data = new DataPacket(packetAddress, port, bytes);
+            if (callback != null) callback.onDataReceived(data);
+        }
+
+        /**
+         * @return the bound socket, or <b>null</b> if the listener was stopped in the meantime.
+         */
+        private DatagramSocket openSocket() throws IOException {
+            // Opened under the same lock cancel() closes it under, so that a listener stopped right after it was
+            // started doesn't keep its port bound
+            synchronized (memberships) {
+                if (!runLoop) return null;
+
+                channel = DatagramChannel.open();
+
+                if (!memberships.isEmpty()) channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+
+                socketConfig.apply(channel);
+                channel.bind(new InetSocketAddress(port));
+
+                for (Membership membership : memberships) membership.join(channel);
+
+                serverSocket = channel.socket();
+
+                return serverSocket;
             }
         }
 
@@ -133,11 +353,79 @@ public class UDPListener {
 
             if (data != null) data = null;
 
-            if (serverSocket != null) {
-                serverSocket.close();
-                serverSocket = null;
+            synchronized (memberships) {
+                for (Membership membership : memberships) membership.drop();
+
+                if (serverSocket != null) {
+                    serverSocket.close();
+                    serverSocket = null;
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * A multicast group membership, as requested by the user and as held by the currently open channel.
+     */
+    private static class Membership {
+        private final InetAddress group;
+        private final NetworkInterface networkInterface;
+        private final InetAddress source;
+        private final Set<InetAddress> blockedSources = new LinkedHashSet<>();
+        private MembershipKey key;
+
+        private Membership(InetAddress group, NetworkInterface networkInterface, InetAddress source) {
+            this.group = group;
+            this.networkInterface = networkInterface;
+            this.source = source;
+        }
+
+        private void join(DatagramChannel channel) {
+            try {
+                NetworkInterface ni = (networkInterface != null) ? networkInterface : getDefaultMulticastInterface();
+
+                key = (source != null) ? channel.join(group, ni, source) : channel.join(group, ni);
+
+                for (InetAddress blockedSource : blockedSources) key.block(blockedSource);
+            } catch (Exception e) {
+                Log.error(UDPListener.class, e);
             }
         }
+
+        private void block(InetAddress blockedSource) {
+            if (!blockedSources.add(blockedSource) || key == null) return;
+
+            try {
+                key.block(blockedSource);
+            } catch (Exception e) {
+                Log.error(UDPListener.class, e);
+            }
+        }
+
+        private void drop() {
+            if (key != null) {
+                key.drop();
+                key = null;
+            }
+        }
+
+        private static NetworkInterface getDefaultMulticastInterface() throws SocketException {
+            NetworkInterface loopback = null;
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+
+            while (interfaces.hasMoreElements()) {
+                NetworkInterface ni = interfaces.nextElement();
+
+                if (!ni.isUp() || !ni.supportsMulticast()) continue;
+                if (!ni.isLoopback()) return ni;
+                if (loopback == null) loopback = ni;
+            }
+
+            if (loopback == null) throw new SocketException("No multicast capable network interface found");
+
+            return loopback;
+        }
     }
 
     /**
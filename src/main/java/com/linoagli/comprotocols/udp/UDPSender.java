@@ -6,10 +6,22 @@
  */
 package com.linoagli.comprotocols.udp;
 
+import com.linoagli.comprotocols.DnsResolver;
+import com.linoagli.comprotocols.Log;
+import com.linoagli.comprotocols.SocketConfig;
+
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ProtocolFamily;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,27 +38,55 @@ public class UDPSender {
 //
 //    private WorkerThread workerThread;
 
+    private static volatile SocketConfig defaultSocketConfig = new SocketConfig();
+
     private UDPSender() {}
 
+    /**
+     * Sets the options of the sockets the packets are sent from, such as {@link SocketConfig#lowLatency()} to
+     * mark them for low delay.
+     * This value defaults to the system's defaults
+     *
+     * @param socketConfig the options
+     */
+    public static void setDefaultSocketConfig(SocketConfig socketConfig) {
+        defaultSocketConfig = (socketConfig != null) ? socketConfig : new SocketConfig();
+    }
+
 //    public UDPSender(InetAddress address, int port) {
 //        this.address = address;
 //        this.port = port;
 //    }
 
     /**
-     * Sends UDP data packet asynchronously to the specified address and port number.
+     * Sends UDP data packet asynchronously to the specified address and port number. The address name is resolved
+     * by the default {@link DnsResolver}, without blocking the caller.
      *
      * @param addressName the recipient's IP address or known address name
      * @param port the recipient's port number
      * @param data the data to be sent
      */
     public static void send(final String addressName, final int port, final String data) {
-        try {
-            InetAddress address = InetAddress.getByName(addressName);
-            send(address, port, data);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        send(addressName, port, data.getBytes());
+    }
+
+    /**
+     * Sends UDP data packet asynchronously to the specified address and port number. The address name is resolved
+     * by the default {@link DnsResolver}, without blocking the caller.
+     *
+     * @param addressName the recipient's IP address or known address name
+     * @param port the recipient's port number
+     * @param bytes the data bytes to be sent
+     */
+    public static void send(final String addressName, final int port, final byte[] bytes) {
+        DnsResolver.getDefault().resolveAsync(addressName).whenComplete((address, e) -> {
+            if (e != null) {
+                Log.warn(UDPSender.class, "UDPSender could not resolve {}. Packet discarded: {}", addressName, e.getMessage());
+                return;
+            }
+
+            send(address, port, bytes);
+        });
     }
 
     /**
@@ -57,17 +97,79 @@ public class UDPSender {
      * @param data the data to be sent
      */
     public static void send(final InetAddress address, final int port, final String data) {
+        send(address, port, data.getBytes());
+    }
+
+    /**
+     * Sends UDP data packet asynchronously to the specified address and port number.
+     *
+     * @param address the recipient's IP address
+     * @param port the recipient's port number
+     * @param bytes the data bytes to be sent, such as a message encoded by a
+     *              {@link com.linoagli.comprotocols.serialization.MessageSerializer}
+     */
+    public static void send(final InetAddress address, final int port, final byte[] bytes) {
         new Thread() {
             @Override
             public void run() {
                 try {
-                    DatagramSocket socket = new DatagramSocket();
-                    DatagramPacket packet = new DatagramPacket(data.getBytes(), data.getBytes().length, address, port);
+                    DatagramSocket socket = new DatagramSocket(null);
+                    defaultSocketConfig.apply(socket);
+                    socket.bind(null);
+
+                    DatagramPacket packet = new DatagramPacket(bytes, bytes.length, address, port);
                     socket.send(packet);
                     socket.close();
                 }
                 catch (Exception e) {
-                    e.printStackTrace();
+                    Log.error(UDPSender.class, e);
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Sends UDP data packet asynchronously to the specified multicast group, using the system's default
+     * multicast interface and not looping the packet back to the local host.
+     *
+     * @param group the multicast group address
+     * @param port the recipients' port number
+     * @param data the data to be sent
+     * @param timeToLive the number of hops the packet may travel. <b>1</b> keeps it on the local network
+     */
+    public static void sendMulticast(final InetAddress group, final int port, final String data, final int timeToLive) {
+        sendMulticast(group, port, data, timeToLive, false, null);
+    }
+
+    /**
+     * Sends UDP data packet asynchronously to the specified multicast group. Every listener that joined the
+     * group receives the packet from this single send.
+     *
+     * @param group the multicast group address
+     * @param port the recipients' port number
+     * @param data the data to be sent
+     * @param timeToLive the number of hops the packet may travel. <b>1</b> keeps it on the local network
+     * @param loopback whether or not listeners on the local host should receive the packet too
+     * @param networkInterface the interface to send the packet through, or <i>null</i> for the system's default
+     */
+    public static void sendMulticast(final InetAddress group, final int port, final String data, final int timeToLive,
+                                     final boolean loopback, final NetworkInterface networkInterface) {
+        new Thread() {
+            @Override
+            public void run() {
+                // A channel, as datagram sockets only gained setOption in Java 9
+                ProtocolFamily family = (group instanceof Inet6Address) ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET;
+
+                try (DatagramChannel channel = DatagramChannel.open(family)) {
+                    defaultSocketConfig.apply(channel);
+                    channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, timeToLive);
+                    channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, loopback);
+                    if (networkInterface != null) channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+
+                    channel.send(ByteBuffer.wrap(data.getBytes()), new InetSocketAddress(group, port));
+                }
+                catch (Exception e) {
+                    Log.error(UDPSender.class, e);
                 }
             }
         }.start();
@@ -0,0 +1,101 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.websocket
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.websocket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The HTTP upgrade exchange that opens a WebSocket connection, see RFC 6455 section 4.
+ */
+final class Handshake {
+    static final int MAX_HEAD_SIZE = 8192;
+
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private Handshake() {}
+
+    /**
+     * Reads an HTTP request or response head, up to and including the empty line that ends it. Nothing past it is
+     * read, so the stream should be buffered.
+     *
+     * @return the lines of the head.
+     */
+    static String[] readHead(InputStream in) throws IOException {
+        byte[] head = new byte[MAX_HEAD_SIZE];
+        int size = 0;
+
+        while (true) {
+            int b = in.read();
+
+            if (b < 0) throw new EOFException("Connection closed during the WebSocket handshake");
+            if (size == head.length) throw new IOException("WebSocket handshake head too large");
+
+            head[size++] = (byte) b;
+
+            if (size >= 4 && head[size - 1] == '\n' && head[size - 2] == '\r' && head[size - 3] == '\n' && head[size - 4] == '\r') {
+                return new String(head, 0, size - 4, StandardCharsets.ISO_8859_1).split("\r\n");
+            }
+        }
+    }
+
+    /**
+     * @return the header fields of a head, with lower case names.
+     */
+    static Map<String, String> parseHeaders(String[] lines) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+
+            if (colon <= 0) throw new IOException("Malformed WebSocket handshake header: " + lines[i]);
+
+            String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = lines[i].substring(colon + 1).trim();
+
+            headers.merge(name, value, (previous, next) -> previous + ", " + next);
+        }
+
+        return headers;
+    }
+
+    /**
+     * @return whether or not a comma separated header value holds the given token, in any case.
+     */
+    static boolean hasToken(String value, String token) {
+        if (value == null) return false;
+
+        for (String item : value.split(",")) {
+            if (item.trim().equalsIgnoreCase(token)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the <i>Sec-WebSocket-Accept</i> value matching a <i>Sec-WebSocket-Key</i>.
+     */
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+
+            return Base64.getEncoder().encodeToString(sha1.digest((key + GUID).getBytes(StandardCharsets.ISO_8859_1)));
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+}
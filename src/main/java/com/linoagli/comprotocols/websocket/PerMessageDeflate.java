@@ -0,0 +1,216 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.websocket
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.websocket;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The <i>permessage-deflate</i> extension, see RFC 7692. Messages are compressed as raw deflate streams, flushed at
+ * the end of each message and stripped of the empty block that ends the flush.
+ *
+ * The JDK's deflater always uses a 32 KiB window, so offers that ask for a smaller window on our side are declined.
+ * Messages shorter than {@link #MIN_COMPRESSED_SIZE} are sent as they are, since they would mostly grow.
+ */
+class PerMessageDeflate {
+    static final String NAME = "permessage-deflate";
+    static final int MIN_COMPRESSED_SIZE = 64;
+
+    private static final byte[] TAIL = { 0x00, 0x00, (byte) 0xFF, (byte) 0xFF };
+    private static final int MAX_WINDOW_BITS = 15;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] buffer = new byte[8192];
+    private final boolean isDeflaterReset;
+    private final boolean isInflaterReset;
+    private final String responseHeader;
+
+    private PerMessageDeflate(boolean isDeflaterReset, boolean isInflaterReset, String responseHeader) {
+        this.isDeflaterReset = isDeflaterReset;
+        this.isInflaterReset = isInflaterReset;
+        this.responseHeader = responseHeader;
+    }
+
+    /**
+     * @return the extension offer of a client.
+     */
+    static String offer() {
+        return NAME + "; client_max_window_bits";
+    }
+
+    /**
+     * Picks the first acceptable offer of a client.
+     *
+     * @param header the client's <i>Sec-WebSocket-Extensions</i> header
+     * @return the extension, or <b>null</b> if no offer is acceptable.
+     */
+    static PerMessageDeflate acceptOffer(String header) {
+        if (header == null) return null;
+
+        for (String offer : header.split(",")) {
+            String[] params = offer.split(";");
+
+            if (!params[0].trim().equalsIgnoreCase(NAME)) continue;
+
+            boolean isServerNoContextTakeover = false;
+            boolean isClientNoContextTakeover = false;
+            boolean isAcceptable = true;
+
+            for (int i = 1; i < params.length && isAcceptable; i++) {
+                String[] param = params[i].trim().split("=", 2);
+                String name = param[0].trim().toLowerCase(Locale.ROOT);
+
+                if (name.equals("server_no_context_takeover")) {
+                    isServerNoContextTakeover = true;
+                } else if (name.equals("client_no_context_takeover")) {
+                    isClientNoContextTakeover = true;
+                } else if (name.equals("server_max_window_bits")) {
+                    isAcceptable = param.length == 2 && parseWindowBits(param[1]) == MAX_WINDOW_BITS;
+                } else if (!name.equals("client_max_window_bits")) {
+                    isAcceptable = false;
+                }
+            }
+
+            if (!isAcceptable) continue;
+
+            String response = NAME;
+            if (isServerNoContextTakeover) response += "; server_no_context_takeover";
+            if (isClientNoContextTakeover) response += "; client_no_context_takeover";
+
+            return new PerMessageDeflate(isServerNoContextTakeover, isClientNoContextTakeover, response);
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks the server's answer to our offer.
+     *
+     * @param header the server's <i>Sec-WebSocket-Extensions</i> header
+     * @return the extension, or <b>null</b> if the server declined it.
+     * @throws IllegalArgumentException if the server answered with parameters we can't honor
+     */
+    static PerMessageDeflate acceptResponse(String header) {
+        if (header == null) return null;
+
+        String[] params = header.split(";");
+
+        if (!params[0].trim().equalsIgnoreCase(NAME)) throw new IllegalArgumentException("Unexpected extension: " + header);
+
+        boolean isServerNoContextTakeover = false;
+        boolean isClientNoContextTakeover = false;
+
+        for (int i = 1; i < params.length; i++) {
+            String[] param = params[i].trim().split("=", 2);
+            String name = param[0].trim().toLowerCase(Locale.ROOT);
+
+            if (name.equals("server_no_context_takeover")) {
+                isServerNoContextTakeover = true;
+            } else if (name.equals("client_no_context_takeover")) {
+                isClientNoContextTakeover = true;
+            } else if (name.equals("client_max_window_bits")) {
+                if (param.length == 2 && parseWindowBits(param[1]) != MAX_WINDOW_BITS) {
+                    throw new IllegalArgumentException("Unsupported client window size: " + header);
+                }
+            } else if (!name.equals("server_max_window_bits")) {
+                throw new IllegalArgumentException("Unsupported extension parameter: " + header);
+            }
+        }
+
+        return new PerMessageDeflate(isClientNoContextTakeover, isServerNoContextTakeover, null);
+    }
+
+    private static int parseWindowBits(String value) {
+        try {
+            return Integer.parseInt(value.trim().replace("\"", ""));
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the <i>Sec-WebSocket-Extensions</i> header of the server's handshake response.
+     */
+    String getResponseHeader() {
+        return responseHeader;
+    }
+
+    /**
+     * Compresses a message. Only called by one thread at a time.
+     */
+    byte[] compress(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+
+        deflater.setInput(data);
+
+        int count;
+        do {
+            count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            out.write(buffer, 0, count);
+        } while (count == buffer.length);
+
+        if (isDeflaterReset) deflater.reset();
+
+        byte[] compressed = out.toByteArray();
+
+        return endsWithTail(compressed) ? Arrays.copyOf(compressed, compressed.length - TAIL.length) : compressed;
+    }
+
+    /**
+     * Decompresses a message. Only called by the reading thread.
+     *
+     * @throws DataFormatException if the data is not valid or inflates past the maximum size
+     */
+    byte[] decompress(byte[] data, int offset, int length, int maxSize) throws DataFormatException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxSize, length * 4 + 16));
+
+        inflate(data, offset, length, out, maxSize);
+        inflate(TAIL, 0, TAIL.length, out, maxSize);
+
+        if (isInflaterReset) inflater.reset();
+
+        return out.toByteArray();
+    }
+
+    private void inflate(byte[] data, int offset, int length, ByteArrayOutputStream out, int maxSize) throws DataFormatException {
+        inflater.setInput(data, offset, length);
+
+        while (true) {
+            int count = inflater.inflate(buffer);
+
+            if (count == 0) {
+                if (inflater.needsInput() || inflater.finished() || inflater.needsDictionary()) break;
+                continue;
+            }
+
+            out.write(buffer, 0, count);
+
+            if (out.size() > maxSize) throw new DataFormatException("Message too big");
+        }
+    }
+
+    private static boolean endsWithTail(byte[] data) {
+        if (data.length < TAIL.length) return false;
+
+        for (int i = 0; i < TAIL.length; i++) {
+            if (data[data.length - TAIL.length + i] != TAIL[i]) return false;
+        }
+
+        return true;
+    }
+
+    void end() {
+        deflater.end();
+        inflater.end();
+    }
+}
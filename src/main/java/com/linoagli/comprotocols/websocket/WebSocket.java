@@ -0,0 +1,611 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.websocket
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.websocket;
+
+import com.linoagli.comprotocols.BufferPool;
+import com.linoagli.comprotocols.Log;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.DataFormatException;
+
+/**
+ * An open WebSocket connection, on either side: the messages of a {@link WebSocketServer} connection or of a
+ * {@link WebSocketClient} go through one of these.
+ *
+ * Messages can be sent from any thread. Messages longer than the maximum frame size are split into fragments, and
+ * control frames, such as pings, may go out between the fragments of a long message. Frames are built in pooled
+ * buffers and masked in place, a word at a time; received frames are unmasked the same way.
+ */
+public class WebSocket {
+    public static final int CLOSE_NORMAL = 1000;
+    public static final int CLOSE_GOING_AWAY = 1001;
+    public static final int CLOSE_PROTOCOL_ERROR = 1002;
+    public static final int CLOSE_UNSUPPORTED_DATA = 1003;
+    public static final int CLOSE_NO_STATUS = 1005;
+    public static final int CLOSE_ABNORMAL = 1006;
+    public static final int CLOSE_INVALID_DATA = 1007;
+    public static final int CLOSE_POLICY_VIOLATION = 1008;
+    public static final int CLOSE_MESSAGE_TOO_BIG = 1009;
+    public static final int CLOSE_EXTENSION_REQUIRED = 1010;
+    public static final int CLOSE_INTERNAL_ERROR = 1011;
+
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+    public static final int MAX_HEADER_SIZE = 14;
+    public static final int DEFAULT_MAX_FRAME_SIZE = BufferPool.CHUNK_SIZE - MAX_HEADER_SIZE;
+    public static final int CLOSE_TIME_OUT = 2000;
+
+    static final int OPCODE_CONTINUATION = 0x0;
+    static final int OPCODE_TEXT = 0x1;
+    static final int OPCODE_BINARY = 0x2;
+    static final int OPCODE_CLOSE = 0x8;
+    static final int OPCODE_PING = 0x9;
+    static final int OPCODE_PONG = 0xA;
+
+    private static final BufferPool POOL = new BufferPool(256);
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final boolean isClient;
+    private final String path;
+    private final Map<String, String> headers;
+    private final PerMessageDeflate deflate;
+    private final Listener listener;
+    private final int maxMessageSize;
+    private final int maxFrameSize;
+
+    private final Object messageLock = new Object();
+    private final Object frameLock = new Object();
+    private final byte[] header = new byte[MAX_HEADER_SIZE];
+    private volatile boolean isOpen = true;
+    private volatile boolean isCloseSent = false;
+    private volatile long lastReceivedTime = System.currentTimeMillis();
+    private volatile long lastPingTime = 0;
+    private volatile String abortReason = null;
+
+    private volatile int closeCode = CLOSE_NO_STATUS;
+    private volatile String closeReason = "";
+    private byte[] message = new byte[0];
+    private int messageSize = 0;
+    private int messageOpcode = -1;
+    private boolean isMessageCompressed = false;
+
+    WebSocket(Socket socket, InputStream in, OutputStream out, boolean isClient, String path, Map<String, String> headers,
+              PerMessageDeflate deflate, int maxMessageSize, int maxFrameSize, Listener listener) {
+        this.socket = socket;
+        this.in = in;
+        this.out = out;
+        this.isClient = isClient;
+        this.path = path;
+        this.headers = headers;
+        this.deflate = deflate;
+        this.maxMessageSize = maxMessageSize;
+        this.maxFrameSize = maxFrameSize;
+        this.listener = listener;
+    }
+
+    /**
+     * @return the path the connection was opened on, such as <i>/chat?room=1</i>.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @param name the header name, in any case
+     * @return the value of a header of the opening handshake, the client's request on the server side and the
+     * server's response on the client side, or <b>null</b> if it is absent.
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the headers of the opening handshake, with lower case names.
+     */
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * @return the address of the other end of the connection.
+     */
+    public InetAddress getRemoteHostAddress() {
+        return socket.getInetAddress();
+    }
+
+    /**
+     * @return whether or not messages are compressed with the <i>permessage-deflate</i> extension.
+     */
+    public boolean isCompressed() {
+        return deflate != null;
+    }
+
+    /**
+     * @return whether or not the connection is open, until a close frame is sent or the connection is lost.
+     */
+    public boolean isOpen() {
+        return isOpen && !isCloseSent;
+    }
+
+    /**
+     * Sends a text message.
+     *
+     * @param message the message
+     */
+    public void send(String message) {
+        sendMessage(OPCODE_TEXT, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a binary message.
+     *
+     * @param message the message
+     */
+    public void send(byte[] message) {
+        sendMessage(OPCODE_BINARY, message);
+    }
+
+    /**
+     * Sends a ping. The other end answers with a pong, which counts as activity for the keep alive.
+     */
+    public void ping() {
+        lastPingTime = System.currentTimeMillis();
+
+        sendControl(OPCODE_PING, new byte[0]);
+    }
+
+    /**
+     * Starts the closing handshake with a normal closure status.
+     */
+    public void close() {
+        close(CLOSE_NORMAL, "");
+    }
+
+    /**
+     * Starts the closing handshake. The connection is closed once the other end answers, or after
+     * {@link #CLOSE_TIME_OUT} milliseconds.
+     *
+     * @param code the status code, <b>1000</b> or one of <b>3000</b> to <b>4999</b> for applications
+     * @param reason the reason, which must fit 123 bytes once encoded
+     */
+    public void close(int code, String reason) {
+        if (!isOpen()) return;
+
+        byte[] reasonBytes = (reason != null) ? reason.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] payload = new byte[2 + Math.min(reasonBytes.length, 123)];
+
+        payload[0] = (byte) (code >>> 8);
+        payload[1] = (byte) code;
+        System.arraycopy(reasonBytes, 0, payload, 2, payload.length - 2);
+
+        closeCode = code;
+        closeReason = (reason != null) ? reason : "";
+
+        sendClose(payload);
+    }
+
+    /**
+     * Pings the connection if nothing was received for a ping interval, and drops it if the ping isn't answered
+     * within another one.
+     */
+    void checkAlive(long now, long pingInterval) {
+        if (!isOpen || pingInterval <= 0) return;
+
+        if (lastPingTime > lastReceivedTime) {
+            if (now - lastPingTime >= pingInterval) abort("Keep alive time out");
+        } else if (now - lastReceivedTime >= pingInterval) {
+            ping();
+        }
+    }
+
+    /**
+     * Closes the socket right away, without a closing handshake.
+     */
+    void abort(String reason) {
+        if (abortReason == null) abortReason = reason;
+
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.error(WebSocket.class, e);
+        }
+    }
+
+    /**
+     * Reads frames until the connection is closed, then notifies the listener. Runs on the connection's thread.
+     */
+    void run() {
+        int code = CLOSE_ABNORMAL;
+        String reason = "";
+
+        try {
+            while (!readFrame());
+
+            code = closeCode;
+            reason = closeReason;
+        }
+        catch (ProtocolException e) {
+            code = e.code;
+            reason = e.getMessage();
+
+            close(e.code, e.getMessage());
+        }
+        catch (SocketTimeoutException e) {
+            reason = "Closing handshake timed out";
+        }
+        catch (IOException e) {
+            reason = (abortReason != null) ? abortReason : String.valueOf(e.getMessage());
+        }
+
+        isOpen = false;
+
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.error(WebSocket.class, e);
+        }
+
+        if (deflate != null) {
+            synchronized (messageLock) {
+                deflate.end();
+            }
+        }
+
+        if (listener != null) listener.onClosed(this, code, reason);
+    }
+
+    /**
+     * @return whether or not the frame read was a close frame.
+     */
+    private boolean readFrame() throws IOException {
+        readFully(header, 0, 2);
+
+        boolean isFinal = (header[0] & 0x80) != 0;
+        boolean isCompressed = (header[0] & 0x40) != 0;
+        int opcode = header[0] & 0x0F;
+        boolean isMasked = (header[1] & 0x80) != 0;
+        long length = header[1] & 0x7F;
+
+        if ((header[0] & 0x30) != 0) throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Reserved bits set");
+        if (isMasked == isClient) throw new ProtocolException(CLOSE_PROTOCOL_ERROR, isClient ? "Masked frame from server" : "Unmasked frame from client");
+
+        if (length == 126) {
+            readFully(header, 2, 2);
+            length = ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+        } else if (length == 127) {
+            readFully(header, 2, 8);
+            length = ByteBuffer.wrap(header, 2, 8).getLong(2);
+
+            if (length < 0) throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid frame length");
+        }
+
+        int maskKey = 0;
+
+        if (isMasked) {
+            readFully(header, 10, 4);
+            maskKey = ByteBuffer.wrap(header).getInt(10);
+        }
+
+        boolean isControl = (opcode & 0x08) != 0;
+
+        if (isControl && (!isFinal || length > 125)) throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid control frame");
+        if (isCompressed && (deflate == null || opcode == OPCODE_CONTINUATION || isControl)) {
+            throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Unexpected compressed frame");
+        }
+        if (!isControl && messageSize + length > maxMessageSize) throw new ProtocolException(CLOSE_MESSAGE_TOO_BIG, "Message too big");
+
+        int size = (int) length;
+        ByteBuffer buffer = POOL.acquire(size);
+        byte[] payload = buffer.array();
+
+        try {
+            readFully(payload, 0, size);
+            if (isMasked) mask(payload, 0, size, maskKey);
+
+            lastReceivedTime = System.currentTimeMillis();
+
+            switch (opcode) {
+                case OPCODE_TEXT:
+                case OPCODE_BINARY:
+                    if (messageOpcode >= 0) throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Expected a continuation frame");
+
+                    if (isFinal) {
+                        // Unfragmented messages are delivered straight from the frame buffer
+                        deliver(opcode, isCompressed, payload, size);
+                    } else {
+                        messageOpcode = opcode;
+                        isMessageCompressed = isCompressed;
+                        append(payload, size);
+                    }
+                    break;
+
+                case OPCODE_CONTINUATION:
+                    if (messageOpcode < 0) throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Unexpected continuation frame");
+
+                    append(payload, size);
+
+                    if (isFinal) {
+                        int messageOpcode = this.messageOpcode;
+                        this.messageOpcode = -1;
+
+                        deliver(messageOpcode, isMessageCompressed, message, messageSize);
+
+                        messageSize = 0;
+                        if (message.length > BufferPool.CHUNK_SIZE) message = new byte[0];
+                    }
+                    break;
+
+                case OPCODE_PING:
+                    sendControl(OPCODE_PONG, Arrays.copyOf(payload, size));
+                    break;
+
+                case OPCODE_PONG:
+                    break;
+
+                case OPCODE_CLOSE:
+                    onClose(payload, size);
+                    return true;
+
+                default:
+                    throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Unknown opcode " + opcode);
+            }
+        }
+        finally {
+            POOL.release(buffer);
+        }
+
+        return false;
+    }
+
+    private void onClose(byte[] payload, int size) throws ProtocolException {
+        // The connection is reported closed with the status we sent, when we started the closing handshake
+        if (isCloseSent) return;
+
+        int code = CLOSE_NO_STATUS;
+
+        if (size == 1) throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid close frame");
+
+        if (size >= 2) {
+            code = ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF);
+
+            boolean isValid = (code >= 1000 && code <= 1003) || (code >= 1007 && code <= 1011) || (code >= 3000 && code <= 4999);
+            if (!isValid) throw new ProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid close code " + code);
+
+            closeReason = decodeText(payload, 2, size - 2);
+        }
+
+        closeCode = code;
+
+        // Echoing the close frame's status
+        sendClose(Arrays.copyOf(payload, Math.min(size, 2)));
+    }
+
+    private void append(byte[] payload, int size) {
+        if (messageSize + size > message.length) {
+            message = Arrays.copyOf(message, Math.max(messageSize + size, Math.min(maxMessageSize, message.length * 2)));
+        }
+
+        System.arraycopy(payload, 0, message, messageSize, size);
+        messageSize += size;
+    }
+
+    private void deliver(int opcode, boolean isCompressed, byte[] data, int size) throws ProtocolException {
+        if (isCompressed) {
+            try {
+                data = deflate.decompress(data, 0, size, maxMessageSize);
+                size = data.length;
+            }
+            catch (DataFormatException e) {
+                boolean isTooBig = "Message too big".equals(e.getMessage());
+
+                throw new ProtocolException(isTooBig ? CLOSE_MESSAGE_TOO_BIG : CLOSE_INVALID_DATA, String.valueOf(e.getMessage()));
+            }
+        }
+
+        if (listener == null) return;
+
+        if (opcode == OPCODE_TEXT) {
+            listener.onMessage(this, decodeText(data, 0, size));
+        } else {
+            listener.onBinaryMessage(this, Arrays.copyOf(data, size));
+        }
+    }
+
+    private static String decodeText(byte[] data, int offset, int size) throws ProtocolException {
+        try {
+            CharBuffer text = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(data, offset, size));
+
+            return text.toString();
+        }
+        catch (CharacterCodingException e) {
+            throw new ProtocolException(CLOSE_INVALID_DATA, "Invalid UTF-8 text");
+        }
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = in.read(buffer, offset, length);
+
+            if (read < 0) throw new EOFException("Connection closed");
+
+            offset += read;
+            length -= read;
+        }
+    }
+
+    private void sendMessage(int opcode, byte[] data) {
+        if (!isOpen()) {
+            Log.warn(WebSocket.class, "WebSocket is not open. Message discarded.");
+            return;
+        }
+
+        try {
+            synchronized (messageLock) {
+                boolean isCompressed = deflate != null && data.length >= PerMessageDeflate.MIN_COMPRESSED_SIZE;
+                byte[] payload = isCompressed ? deflate.compress(data) : data;
+                int offset = 0;
+
+                do {
+                    int length = Math.min(maxFrameSize, payload.length - offset);
+                    boolean isFinal = offset + length == payload.length;
+
+                    writeFrame((offset == 0) ? opcode : OPCODE_CONTINUATION, isFinal, isCompressed && offset == 0, payload, offset, length);
+                    offset += length;
+                } while (offset < payload.length);
+            }
+        }
+        catch (IOException e) {
+            Log.warn(WebSocket.class, "WebSocket failed to send a message: {}", e.getMessage());
+            abort(e.getMessage());
+        }
+    }
+
+    private void sendControl(int opcode, byte[] payload) {
+        if (!isOpen()) return;
+
+        try {
+            writeFrame(opcode, true, false, payload, 0, payload.length);
+        }
+        catch (IOException e) {
+            abort(e.getMessage());
+        }
+    }
+
+    private void sendClose(byte[] payload) {
+        synchronized (frameLock) {
+            if (!isOpen || isCloseSent) return;
+
+            try {
+                writeFrame(OPCODE_CLOSE, true, false, payload, 0, payload.length);
+                isCloseSent = true;
+
+                // The reading thread gives up on the other end's answer after a while
+                socket.setSoTimeout(CLOSE_TIME_OUT);
+            }
+            catch (IOException e) {
+                abort(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes a frame with a single write. The header and payload are copied into a pooled buffer, where the
+     * payload is masked in place; unmasked frames too large for the pool skip the copy.
+     */
+    private void writeFrame(int opcode, boolean isFinal, boolean isCompressed, byte[] payload, int offset, int length) throws IOException {
+        int headerSize = 2 + ((length > 65535) ? 8 : (length > 125) ? 2 : 0) + (isClient ? 4 : 0);
+
+        synchronized (frameLock) {
+            if (isCloseSent) throw new IOException("WebSocket close frame already sent");
+
+            boolean isCopied = isClient || headerSize + length <= BufferPool.CHUNK_SIZE;
+            ByteBuffer buffer = POOL.acquire(isCopied ? headerSize + length : headerSize);
+
+            try {
+                buffer.put((byte) ((isFinal ? 0x80 : 0) | (isCompressed ? 0x40 : 0) | opcode));
+
+                int maskBit = isClient ? 0x80 : 0;
+
+                if (length > 65535) {
+                    buffer.put((byte) (maskBit | 127));
+                    buffer.putLong(length);
+                } else if (length > 125) {
+                    buffer.put((byte) (maskBit | 126));
+                    buffer.putShort((short) length);
+                } else {
+                    buffer.put((byte) (maskBit | length));
+                }
+
+                int maskKey = 0;
+
+                if (isClient) {
+                    // Mask keys only need to be unpredictable to scripts running in a browser
+                    maskKey = ThreadLocalRandom.current().nextInt();
+                    buffer.putInt(maskKey);
+                }
+
+                if (isCopied) {
+                    buffer.put(payload, offset, length);
+
+                    if (isClient) mask(buffer.array(), headerSize, length, maskKey);
+
+                    out.write(buffer.array(), 0, buffer.position());
+                } else {
+                    out.write(buffer.array(), 0, buffer.position());
+                    out.write(payload, offset, length);
+                }
+
+                out.flush();
+            }
+            finally {
+                POOL.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Masks or unmasks data in place, eight bytes at a time.
+     */
+    static void mask(byte[] data, int offset, int length, int maskKey) {
+        ByteBuffer view = ByteBuffer.wrap(data);
+        long longMask = ((maskKey & 0xFFFFFFFFL) << 32) | (maskKey & 0xFFFFFFFFL);
+        int i = 0;
+
+        for (; i + 8 <= length; i += 8) {
+            view.putLong(offset + i, view.getLong(offset + i) ^ longMask);
+        }
+
+        for (; i < length; i++) {
+            data[offset + i] ^= (byte) (maskKey >>> (24 - 8 * (i & 3)));
+        }
+    }
+
+    /**
+     * Thrown when the other end breaks the protocol. The connection is closed with the exception's status code.
+     */
+    private static class ProtocolException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int code;
+
+        private ProtocolException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    /**
+     * Receives the messages of a connection, for the server or client that owns it.
+     */
+    interface Listener {
+        void onMessage(WebSocket webSocket, String message);
+
+        void onBinaryMessage(WebSocket webSocket, byte[] message);
+
+        void onClosed(WebSocket webSocket, int code, String reason);
+    }
+}
@@ -0,0 +1,408 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.websocket
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.websocket;
+
+import com.linoagli.comprotocols.DnsResolver;
+import com.linoagli.comprotocols.Log;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Provides a simplified client side implementation of a WebSocket connection, see RFC 6455.
+ *
+ * Like the {@link com.linoagli.comprotocols.tcp.TCPClient}, the client connects on a worker thread of its own and
+ * reports through its {@link Callback}. Both <i>ws://</i> and <i>wss://</i> urls are supported. The connection is
+ * pinged when it goes silent, see {@link #setPingInterval(long)}, and messages may be compressed with the
+ * <i>permessage-deflate</i> extension if the server accepts it, see {@link #setCompressionEnabled(boolean)}.
+ */
+public class WebSocketClient {
+    public static final int DEFAULT_CONNECT_TIME_OUT = 5000;
+
+    private Callback callback;
+
+    private final Map<String, String> requestHeaders = new LinkedHashMap<>();
+    private volatile WebSocket webSocket;
+    private WorkerThread workerThread;
+    private String url;
+    private int connectTimeOut = DEFAULT_CONNECT_TIME_OUT;
+    private int maxMessageSize = WebSocket.DEFAULT_MAX_MESSAGE_SIZE;
+    private int maxFrameSize = WebSocket.DEFAULT_MAX_FRAME_SIZE;
+    private long pingInterval = WebSocketServer.DEFAULT_PING_INTERVAL;
+    private boolean isCompressionEnabled = false;
+
+    public WebSocketClient(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Sets the time out of the connection and of the opening handshake.
+     * This value defaults to <b>5000</b> milliseconds
+     *
+     * @param connectTimeOut the time out in milliseconds
+     */
+    public void setConnectTimeOut(int connectTimeOut) {
+        this.connectTimeOut = connectTimeOut;
+    }
+
+    /**
+     * Sets the maximum size of a received message, once decompressed. A server sending larger messages is
+     * disconnected with the status code <b>1009</b>.
+     * This value defaults to <b>16 MiB</b>
+     *
+     * @param maxMessageSize the maximum size in bytes
+     */
+    public void setMaxMessageSize(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Sets the maximum payload size of a sent frame. Longer messages are sent in fragments.
+     * This value defaults to <b>16370</b> bytes, so that each frame fits a pooled buffer
+     *
+     * @param maxFrameSize the maximum size in bytes
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = Math.max(1, maxFrameSize);
+    }
+
+    /**
+     * Sets how long the connection may stay silent before it is pinged. The connection is dropped if the ping isn't
+     * answered within another interval. A value of <b>0</b> disables the keep alive.
+     * This value defaults to <b>30000</b> milliseconds
+     *
+     * @param pingInterval the interval in milliseconds
+     */
+    public void setPingInterval(long pingInterval) {
+        this.pingInterval = pingInterval;
+    }
+
+    /**
+     * Sets whether or not the <i>permessage-deflate</i> extension is offered to the server.
+     * This value defaults to <b>false</b>
+     *
+     * @param isCompressionEnabled whether or not to compress messages
+     */
+    public void setCompressionEnabled(boolean isCompressionEnabled) {
+        this.isCompressionEnabled = isCompressionEnabled;
+    }
+
+    /**
+     * Sets a header of the opening handshake request, such as <i>Authorization</i>.
+     *
+     * @param name the header name
+     * @param value the header value
+     */
+    public void setHeader(String name, String value) {
+        requestHeaders.put(name, value);
+    }
+
+    /**
+     * @return the url this client connects to.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the open connection, or <b>null</b> if the client is not connected.
+     */
+    public WebSocket getWebSocket() {
+        return webSocket;
+    }
+
+    /**
+     * @return whether or not this client is connected.
+     */
+    public boolean isConnected() {
+        WebSocket webSocket = this.webSocket;
+
+        return webSocket != null && webSocket.isOpen();
+    }
+
+    /**
+     * Attempt to connect to a WebSocket server.
+     *
+     * @param url the url of the server, such as <i>ws://localhost:8080/chat</i>
+     */
+    public void connect(String url) {
+        disconnect();
+
+        this.url = url;
+
+        workerThread = new WorkerThread(url);
+        workerThread.start();
+    }
+
+    /**
+     * Closes this client's connection to the server with a normal closure status.
+     */
+    public void disconnect() {
+        WebSocket webSocket = this.webSocket;
+
+        if (webSocket != null) webSocket.close();
+
+        workerThread = null;
+    }
+
+    /**
+     * Sends a text message to the server.
+     *
+     * @param message the message
+     */
+    public void send(String message) {
+        WebSocket webSocket = this.webSocket;
+
+        if (webSocket == null) {
+            Log.warn(WebSocketClient.class, "WebSocket client is not connected. Message discarded.");
+            return;
+        }
+
+        webSocket.send(message);
+    }
+
+    /**
+     * Sends a binary message to the server.
+     *
+     * @param message the message
+     */
+    public void send(byte[] message) {
+        WebSocket webSocket = this.webSocket;
+
+        if (webSocket == null) {
+            Log.warn(WebSocketClient.class, "WebSocket client is not connected. Message discarded.");
+            return;
+        }
+
+        webSocket.send(message);
+    }
+
+    /**
+     * Performs the client side of the opening handshake.
+     */
+    private WebSocket open(URI uri) throws IOException {
+        String scheme = uri.getScheme();
+        boolean isSecure = "wss".equalsIgnoreCase(scheme);
+
+        if (!isSecure && !"ws".equalsIgnoreCase(scheme)) throw new IOException("Unsupported WebSocket scheme: " + scheme);
+
+        String host = uri.getHost();
+        int port = (uri.getPort() > 0) ? uri.getPort() : (isSecure ? 443 : 80);
+        String path = ((uri.getRawPath() == null || uri.getRawPath().isEmpty()) ? "/" : uri.getRawPath())
+                + ((uri.getRawQuery() != null) ? "?" + uri.getRawQuery() : "");
+
+        Socket socket = new Socket();
+
+        try {
+            socket.connect(new InetSocketAddress(DnsResolver.getDefault().resolve(host), port), connectTimeOut);
+
+            if (isSecure) socket = ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, host, port, true);
+
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(connectTimeOut);
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+
+            byte[] nonce = new byte[16];
+            ThreadLocalRandom.current().nextBytes(nonce);
+            String key = Base64.getEncoder().encodeToString(nonce);
+
+            StringBuilder request = new StringBuilder();
+            request.append("GET ").append(path).append(" HTTP/1.1\r\n");
+            request.append("Host: ").append(host).append((uri.getPort() > 0) ? ":" + port : "").append("\r\n");
+            request.append("Upgrade: websocket\r\n");
+            request.append("Connection: Upgrade\r\n");
+            request.append("Sec-WebSocket-Key: ").append(key).append("\r\n");
+            request.append("Sec-WebSocket-Version: 13\r\n");
+
+            if (isCompressionEnabled) request.append("Sec-WebSocket-Extensions: ").append(PerMessageDeflate.offer()).append("\r\n");
+
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                request.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+
+            request.append("\r\n");
+
+            out.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            String[] lines = Handshake.readHead(in);
+            Map<String, String> headers = Handshake.parseHeaders(lines);
+            String[] statusLine = lines[0].split(" ", 3);
+
+            if (statusLine.length < 2 || !statusLine[1].equals("101")) throw new IOException("WebSocket handshake refused: " + lines[0]);
+
+            if (!Handshake.hasToken(headers.get("upgrade"), "websocket")
+                    || !Handshake.hasToken(headers.get("connection"), "upgrade")
+                    || !Handshake.acceptKey(key).equals(headers.get("sec-websocket-accept"))) {
+                throw new IOException("Invalid WebSocket handshake response");
+            }
+
+            String extensions = headers.get("sec-websocket-extensions");
+
+            if (extensions != null && !isCompressionEnabled) throw new IOException("Unexpected WebSocket extension: " + extensions);
+
+            PerMessageDeflate deflate;
+
+            try {
+                deflate = PerMessageDeflate.acceptResponse(extensions);
+            }
+            catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+
+            socket.setSoTimeout(0);
+
+            return new WebSocket(socket, in, out, true, path, headers, deflate, maxMessageSize, maxFrameSize, new WebSocket.Listener() {
+                @Override
+                public void onMessage(WebSocket webSocket, String message) {
+                    if (callback != null) callback.onMessageReceived(message);
+                }
+
+                @Override
+                public void onBinaryMessage(WebSocket webSocket, byte[] message) {
+                    if (callback != null) callback.onBinaryMessageReceived(message);
+                }
+
+                @Override
+                public void onClosed(WebSocket webSocket, int code, String reason) {
+                    if (WebSocketClient.this.webSocket == webSocket) WebSocketClient.this.webSocket = null;
+
+                    if (callback != null) callback.onDisconnected(code, reason);
+                }
+            });
+        }
+        catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * This thread connects to the server, then reads its messages until the connection is closed.
+     */
+    private class WorkerThread extends Thread {
+        private final String url;
+
+        private WorkerThread(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public void run() {
+            WebSocket webSocket;
+
+            try {
+                webSocket = open(new URI(url));
+            }
+            catch (Exception e) {
+                Log.error(WebSocketClient.class, e);
+
+                if (callback != null) callback.onConnectionFailed(url);
+
+                return;
+            }
+
+            WebSocketClient.this.webSocket = webSocket;
+
+            if (callback != null) callback.onConnected(url);
+
+            KeepAliveThread keepAliveThread = new KeepAliveThread(webSocket);
+            keepAliveThread.start();
+
+            webSocket.run();
+
+            keepAliveThread.cancel();
+        }
+    }
+
+    /**
+     * This thread pings the connection when it goes silent and drops it once it stops answering.
+     */
+    private class KeepAliveThread extends Thread {
+        private final long SLEEP_TIME = 1000;
+        private final WebSocket webSocket;
+        private volatile boolean runLoop = true;
+
+        private KeepAliveThread(WebSocket webSocket) {
+            this.webSocket = webSocket;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (runLoop) {
+                webSocket.checkAlive(System.currentTimeMillis(), pingInterval);
+
+                try {
+                    Thread.sleep(SLEEP_TIME);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void cancel() {
+            runLoop = false;
+            interrupt();
+        }
+    }
+
+    /**
+     * The WebSocket client events callback interface
+     */
+    public interface Callback {
+        /**
+         * Notifies the object implementing this interface that the client completed the opening handshake.
+         *
+         * @param url the url of the server
+         */
+        public void onConnected(String url);
+
+        /**
+         * Notifies the object implementing this interface that the client failed to connect, or that the server
+         * refused the opening handshake.
+         *
+         * @param url the url of the server
+         */
+        public void onConnectionFailed(String url);
+
+        /**
+         * Notifies the object implementing this interface that the connection was closed.
+         *
+         * @param code the status code of the closing handshake, <b>1006</b> if the connection was lost without one
+         * @param reason the reason given by the server, or a description of the failure
+         */
+        public void onDisconnected(int code, String reason);
+
+        /**
+         * Notifies the object implementing this interface that a text message was received.
+         *
+         * @param message the message
+         */
+        public void onMessageReceived(String message);
+
+        /**
+         * Notifies the object implementing this interface that a binary message was received.
+         *
+         * @param message the message
+         */
+        public default void onBinaryMessageReceived(byte[] message) {}
+    }
+}
@@ -0,0 +1,418 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.websocket
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.websocket;
+
+import com.linoagli.comprotocols.Log;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides a simplified server side implementation of WebSocket connections, see RFC 6455.
+ *
+ * Like the {@link com.linoagli.comprotocols.tcp.TCPServer}, each connection gets a thread of its own, which performs
+ * the opening handshake and then reads the connection's messages. Idle connections are pinged and dropped once
+ * they stop answering, see {@link #setPingInterval(long)}. Messages may be compressed with the
+ * <i>permessage-deflate</i> extension when clients offer it, see {@link #setCompressionEnabled(boolean)}.
+ */
+public class WebSocketServer {
+    public static final int DEFAULT_BACKLOG = 50;
+    public static final long DEFAULT_PING_INTERVAL = 30000;
+    public static final int HANDSHAKE_TIME_OUT = 10000;
+
+    private Callback callback;
+
+    private final Set<WebSocket> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private IncomingConnectionsThread incomingConnectionsThread;
+    private KeepAliveThread keepAliveThread;
+    private int port;
+    private int backlog = DEFAULT_BACKLOG;
+    private int maxMessageSize = WebSocket.DEFAULT_MAX_MESSAGE_SIZE;
+    private int maxFrameSize = WebSocket.DEFAULT_MAX_FRAME_SIZE;
+    private long pingInterval = DEFAULT_PING_INTERVAL;
+    private boolean isCompressionEnabled = false;
+
+    public WebSocketServer(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * @return the port this server instance is listening to, which is the port picked by the system if it was
+     * started on port <b>0</b>.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Sets the maximum length of the queue of incoming connections.
+     * This value defaults to <b>50</b>
+     *
+     * @param backlog the backlog
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * Sets the maximum size of a received message, once decompressed. Connections sending larger messages are
+     * closed with the status code <b>1009</b>.
+     * This value defaults to <b>16 MiB</b>
+     *
+     * @param maxMessageSize the maximum size in bytes
+     */
+    public void setMaxMessageSize(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Sets the maximum payload size of a sent frame. Longer messages are sent in fragments.
+     * This value defaults to <b>16370</b> bytes, so that each frame fits a pooled buffer
+     *
+     * @param maxFrameSize the maximum size in bytes
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = Math.max(1, maxFrameSize);
+    }
+
+    /**
+     * Sets how long a connection may stay silent before it is pinged. Connections that don't answer the ping within
+     * another interval are dropped. A value of <b>0</b> disables the keep alive.
+     * This value defaults to <b>30000</b> milliseconds
+     *
+     * @param pingInterval the interval in milliseconds
+     */
+    public void setPingInterval(long pingInterval) {
+        this.pingInterval = pingInterval;
+    }
+
+    /**
+     * Sets whether or not the <i>permessage-deflate</i> extension is accepted when clients offer it.
+     * This value defaults to <b>false</b>
+     *
+     * @param isCompressionEnabled whether or not to compress messages
+     */
+    public void setCompressionEnabled(boolean isCompressionEnabled) {
+        this.isCompressionEnabled = isCompressionEnabled;
+    }
+
+    /**
+     * @return the number of open connections.
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return whether or not this server instance is up and running (listening for incoming connections and messages)
+     */
+    public boolean isRunning() {
+        return incomingConnectionsThread != null && incomingConnectionsThread.isRunning;
+    }
+
+    /**
+     * Boots up this server instance and starts listening for incoming WebSocket connections.
+     *
+     * @param port the port this server is listening to, or <b>0</b> to let the system pick one
+     */
+    public void start(int port) {
+        try {
+            serverSocket = new ServerSocket(port, backlog);
+            this.port = serverSocket.getLocalPort();
+
+            keepAliveThread = new KeepAliveThread();
+            keepAliveThread.start();
+
+            incomingConnectionsThread = new IncomingConnectionsThread();
+            incomingConnectionsThread.start();
+        }
+        catch (Exception e) {
+            Log.error(WebSocketServer.class, e);
+            stop();
+        }
+    }
+
+    /**
+     * Sends a text message to every open connection.
+     *
+     * @param message the message
+     */
+    public void broadcast(String message) {
+        for (WebSocket webSocket : connections) {
+            if (webSocket.isOpen()) webSocket.send(message);
+        }
+    }
+
+    /**
+     * Sends a binary message to every open connection.
+     *
+     * @param message the message
+     */
+    public void broadcast(byte[] message) {
+        for (WebSocket webSocket : connections) {
+            if (webSocket.isOpen()) webSocket.send(message);
+        }
+    }
+
+    /**
+     * This will close all connections with the status code <b>1001</b>, power down the server instance and clean
+     * up all resources.
+     */
+    public void stop() {
+        if (incomingConnectionsThread != null) {
+            incomingConnectionsThread.cancel();
+            incomingConnectionsThread = null;
+        }
+
+        if (keepAliveThread != null) {
+            keepAliveThread.cancel();
+            keepAliveThread = null;
+        }
+
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                Log.error(WebSocketServer.class, e);
+            }
+
+            serverSocket = null;
+        }
+
+        for (WebSocket webSocket : connections) webSocket.close(WebSocket.CLOSE_GOING_AWAY, "Server stopping");
+    }
+
+    /**
+     * Performs the server side of the opening handshake.
+     *
+     * @return the open connection, or <b>null</b> if the request was turned down.
+     */
+    private WebSocket accept(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(HANDSHAKE_TIME_OUT);
+
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+
+        String[] lines = Handshake.readHead(in);
+        String[] requestLine = lines[0].split(" ");
+        Map<String, String> headers = Handshake.parseHeaders(lines);
+        String key = headers.get("sec-websocket-key");
+
+        if (requestLine.length != 3 || !requestLine[0].equals("GET") || !requestLine[2].equals("HTTP/1.1")
+                || !Handshake.hasToken(headers.get("upgrade"), "websocket")
+                || !Handshake.hasToken(headers.get("connection"), "upgrade")
+                || key == null) {
+            reject(out, "400 Bad Request", "");
+            return null;
+        }
+
+        if (!"13".equals(headers.get("sec-websocket-version"))) {
+            reject(out, "426 Upgrade Required", "Sec-WebSocket-Version: 13\r\n");
+            return null;
+        }
+
+        PerMessageDeflate deflate = isCompressionEnabled ? PerMessageDeflate.acceptOffer(headers.get("sec-websocket-extensions")) : null;
+
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + Handshake.acceptKey(key) + "\r\n"
+                + ((deflate != null) ? "Sec-WebSocket-Extensions: " + deflate.getResponseHeader() + "\r\n" : "")
+                + "\r\n";
+
+        out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+
+        socket.setSoTimeout(0);
+
+        return new WebSocket(socket, in, out, false, requestLine[1], headers, deflate, maxMessageSize, maxFrameSize, new WebSocket.Listener() {
+            @Override
+            public void onMessage(WebSocket webSocket, String message) {
+                if (callback != null) callback.onMessageReceived(webSocket, message);
+            }
+
+            @Override
+            public void onBinaryMessage(WebSocket webSocket, byte[] message) {
+                if (callback != null) callback.onBinaryMessageReceived(webSocket, message);
+            }
+
+            @Override
+            public void onClosed(WebSocket webSocket, int code, String reason) {
+                connections.remove(webSocket);
+
+                if (callback != null) callback.onDisconnected(webSocket, code, reason);
+            }
+        });
+    }
+
+    private static void reject(OutputStream out, String status, String headers) throws IOException {
+        String response = "HTTP/1.1 " + status + "\r\n" + headers + "Content-Length: 0\r\nConnection: close\r\n\r\n";
+
+        out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    /**
+     * This thread is in charge of waiting for new incoming connections and starting a thread for each of them.
+     */
+    private class IncomingConnectionsThread extends Thread {
+        private volatile boolean runLoop = true;
+        private volatile boolean isRunning = false;
+
+        @Override
+        public void run() {
+            isRunning = true;
+
+            while (runLoop) {
+                try {
+                    if (callback != null) callback.onWaitingForConnection(port);
+
+                    new ConnectionThread(serverSocket.accept()).start();
+                }
+                catch (Exception e) {
+                    if (!runLoop) break;
+
+                    if (e instanceof SocketException) {
+                        Log.info(WebSocketServer.class, "{}", e.getMessage());
+                    } else {
+                        Log.error(WebSocketServer.class, e);
+                    }
+                }
+            }
+
+            isRunning = false;
+        }
+
+        private void cancel() {
+            runLoop = false;
+        }
+    }
+
+    /**
+     * This thread performs a connection's opening handshake, then reads its messages until it is closed.
+     */
+    private class ConnectionThread extends Thread {
+        private final Socket socket;
+
+        private ConnectionThread(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            WebSocket webSocket = null;
+
+            try {
+                webSocket = accept(socket);
+            }
+            catch (IOException e) {
+                Log.warn(WebSocketServer.class, "WebSocket handshake failed with {}: {}", socket.getInetAddress(), e.getMessage());
+            }
+
+            if (webSocket == null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    Log.error(WebSocketServer.class, e);
+                }
+
+                return;
+            }
+
+            connections.add(webSocket);
+
+            if (callback != null) callback.onConnected(webSocket);
+
+            webSocket.run();
+        }
+    }
+
+    /**
+     * This thread pings the silent connections and drops the ones that stopped answering.
+     */
+    private class KeepAliveThread extends Thread {
+        private final long SLEEP_TIME = 1000;
+        private volatile boolean runLoop = true;
+
+        @Override
+        public void run() {
+            while (runLoop) {
+                long now = System.currentTimeMillis();
+
+                for (WebSocket webSocket : connections) webSocket.checkAlive(now, pingInterval);
+
+                try {
+                    Thread.sleep(SLEEP_TIME);
+                } catch (InterruptedException e) {
+                    Log.error(WebSocketServer.class, e);
+                }
+            }
+        }
+
+        private void cancel() {
+            runLoop = false;
+        }
+    }
+
+    /**
+     * The WebSocket server callback interface.
+     */
+    public interface Callback {
+        /**
+         * Notifies the object implementing this interface that the WebSocketServer is currently waiting for an
+         * incoming connection.
+         *
+         * @param port the port number that the server is listening to
+         */
+        public void onWaitingForConnection(int port);
+
+        /**
+         * Notifies the object implementing this interface that a client completed the opening handshake.
+         *
+         * @param webSocket the newly opened connection
+         */
+        public void onConnected(WebSocket webSocket);
+
+        /**
+         * Notifies the object implementing this interface that a text message was received. Called on the
+         * connection's thread, in the order the messages were sent.
+         *
+         * @param webSocket the connection the message was received on
+         * @param message the message
+         */
+        public void onMessageReceived(WebSocket webSocket, String message);
+
+        /**
+         * Notifies the object implementing this interface that a binary message was received. Called on the
+         * connection's thread, in the order the messages were sent.
+         *
+         * @param webSocket the connection the message was received on
+         * @param message the message
+         */
+        public default void onBinaryMessageReceived(WebSocket webSocket, byte[] message) {}
+
+        /**
+         * Notifies the object implementing this interface that a connection was closed.
+         *
+         * @param webSocket the closed connection
+         * @param code the status code of the closing handshake, <b>1006</b> if the connection was lost without one
+         * @param reason the reason given by the other end, or a description of the failure
+         */
+        public default void onDisconnected(WebSocket webSocket, int code, String reason) {}
+    }
+}
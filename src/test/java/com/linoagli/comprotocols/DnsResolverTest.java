@@ -0,0 +1,221 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DnsResolverTest {
+    private static final InetAddress FIRST = address(10, 0, 0, 1);
+    private static final InetAddress SECOND = address(10, 0, 0, 2);
+
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicBoolean isFailing = new AtomicBoolean(false);
+    private volatile InetAddress current = FIRST;
+    private final DnsResolver resolver = new DnsResolver(host -> {
+        lookups.incrementAndGet();
+
+        if (isFailing.get() || host.startsWith("missing")) throw new UnknownHostException(host);
+
+        return new InetAddress[] { current };
+    });
+
+    @Test
+    public void cachesResolvedNames() throws Exception {
+        assertSame(FIRST, resolver.resolve("example.com"));
+        assertSame(FIRST, resolver.resolve("EXAMPLE.com"));
+        assertSame(FIRST, resolver.resolveAsync("example.com").getNow(null));
+
+        assertEquals(1, lookups.get());
+        assertSame(FIRST, resolver.getCached("example.com"));
+        assertEquals(1, resolver.getCacheSize());
+    }
+
+    @Test
+    public void concurrentLookupsOfANameShareOneQuery() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        DnsResolver slowResolver = new DnsResolver(host -> {
+            lookups.incrementAndGet();
+
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new UnknownHostException(host);
+            }
+
+            return new InetAddress[] { FIRST };
+        });
+
+        CompletableFuture<InetAddress> first = slowResolver.resolveAsync("example.com");
+        CompletableFuture<InetAddress> second = slowResolver.resolveAsync("example.com");
+        release.countDown();
+
+        assertSame(FIRST, first.get(2, TimeUnit.SECONDS));
+        assertSame(FIRST, second.get(2, TimeUnit.SECONDS));
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void cachesFailuresForTheNegativeTimeToLive() throws Exception {
+        resolver.setNegativeTimeToLive(100);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                resolver.resolve("missing.example.com");
+                fail("resolved a missing name");
+            } catch (UnknownHostException e) {
+                assertEquals(1, lookups.get());
+            }
+        }
+
+        assertNull(resolver.getCached("missing.example.com"));
+
+        Thread.sleep(150);
+
+        try {
+            resolver.resolve("missing.example.com");
+        } catch (UnknownHostException e) {
+            assertEquals(2, lookups.get());
+        }
+    }
+
+    @Test
+    public void looksNamesUpAgainOnceTheyExpire() throws Exception {
+        resolver.setTimeToLive(100);
+        resolver.resolve("example.com");
+        current = SECOND;
+
+        Thread.sleep(150);
+
+        assertNull(resolver.getCached("example.com"));
+        assertSame(SECOND, resolver.resolve("example.com"));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void refreshesBusyNamesInTheBackground() throws Exception {
+        resolver.setTimeToLive(500);
+        resolver.resolve("example.com");
+        current = SECOND;
+
+        // Past four fifths of the time to live, the cached address is served while a refresh runs
+        Thread.sleep(420);
+
+        assertSame(FIRST, resolver.resolveAsync("example.com").getNow(null));
+        assertTrue(TestUtils.waitFor(1000, () -> resolver.getCached("example.com") == SECOND));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void aNegativeCachePropertyCachesForever() {
+        Security.setProperty("comprotocols.test.ttl", "-1");
+        assertEquals(DnsResolver.FOREVER, DnsResolver.securityPropertyMillis("comprotocols.test.ttl", 30));
+
+        Security.setProperty("comprotocols.test.ttl", "0");
+        assertEquals(0, DnsResolver.securityPropertyMillis("comprotocols.test.ttl", 30));
+
+        Security.setProperty("comprotocols.test.ttl", "7");
+        assertEquals(7000, DnsResolver.securityPropertyMillis("comprotocols.test.ttl", 30));
+
+        assertEquals(30000, DnsResolver.securityPropertyMillis("comprotocols.test.unset", 30));
+    }
+
+    @Test
+    public void namesCachedForeverNeverExpireNorRefresh() throws Exception {
+        resolver.setTimeToLive(DnsResolver.FOREVER);
+        resolver.resolve("example.com");
+
+        resolver.setTimeToLive(-1);
+        resolver.resolve("other.example.com");
+
+        current = SECOND;
+        Thread.sleep(50);
+
+        assertSame(FIRST, resolver.resolve("example.com"));
+        assertSame(FIRST, resolver.resolve("other.example.com"));
+        assertSame(FIRST, resolver.getCached("example.com"));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void aFailedRefreshKeepsTheCachedAddresses() throws Exception {
+        resolver.setTimeToLive(500);
+        resolver.resolve("example.com");
+        isFailing.set(true);
+
+        Thread.sleep(420);
+
+        assertSame(FIRST, resolver.resolveAsync("example.com").getNow(null));
+        assertTrue(TestUtils.waitFor(1000, () -> lookups.get() == 2));
+        assertSame(FIRST, resolver.resolve("example.com"));
+    }
+
+    @Test
+    public void addressLiteralsAreNeverLookedUp() throws Exception {
+        assertArrayEquals(new byte[] {127, 0, 0, 1}, resolver.resolve("127.0.0.1").getAddress());
+        assertTrue(resolver.resolve("::1").isLoopbackAddress());
+
+        assertEquals(0, lookups.get());
+        assertEquals(0, resolver.getCacheSize());
+    }
+
+    @Test
+    public void invalidatedNamesAreLookedUpAgain() throws Exception {
+        resolver.resolve("example.com");
+        resolver.invalidate("Example.com");
+        resolver.resolve("example.com");
+
+        resolver.clear();
+        resolver.resolve("example.com");
+
+        assertEquals(3, lookups.get());
+    }
+
+    @Test
+    public void theCacheIsBounded() throws Exception {
+        resolver.setMaxEntries(10);
+
+        for (int i = 0; i < 50; i++) resolver.resolve("host" + i + ".example.com");
+
+        assertTrue(resolver.getCacheSize() <= 10);
+        assertSame(FIRST, resolver.getCached("host49.example.com"));
+    }
+
+    @Test
+    public void asyncFailuresCarryTheUnknownHostException() throws Exception {
+        try {
+            resolver.resolveAsync("missing.example.com").get(2, TimeUnit.SECONDS);
+            fail("resolved a missing name");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnknownHostException);
+        }
+    }
+
+    private static InetAddress address(int a, int b, int c, int d) {
+        try {
+            return InetAddress.getByAddress(new byte[] {(byte) a, (byte) b, (byte) c, (byte) d});
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
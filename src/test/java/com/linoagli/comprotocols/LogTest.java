@@ -0,0 +1,132 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LogTest {
+    private final List<Log.Event> events = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        Log.setSink(events::add);
+        Log.setLevel(Log.Level.INFO);
+    }
+
+    @After
+    public void tearDown() {
+        Log.flush(1000);
+        Log.setSink(null);
+        Log.setLevel(Log.Level.INFO);
+    }
+
+    @Test
+    public void dropsEventsBelowTheLevel() {
+        Log.debug(LogTest.class, "hidden");
+        Log.info(LogTest.class, "shown");
+        Log.log(Log.Level.OFF, LogTest.class, "never");
+
+        assertTrue(Log.flush(1000));
+        assertEquals(1, events.size());
+        assertEquals("shown", events.get(0).getMessage());
+
+        Log.setLevel(Log.Level.TRACE);
+        Log.trace(LogTest.class, "traced");
+
+        assertTrue(Log.flush(1000));
+        assertEquals("traced", events.get(1).getMessage());
+        assertEquals(Log.Level.TRACE, Log.getLevel());
+        assertTrue(Log.isEnabled(Log.Level.DEBUG));
+    }
+
+    @Test
+    public void recordsWhereEventsComeFrom() throws Exception {
+        Thread thread = new Thread(() -> Log.warn(LogTest.class, "from a thread"), "LogTest-Thread");
+        thread.start();
+        thread.join();
+
+        assertTrue(Log.flush(1000));
+
+        Log.Event event = events.get(0);
+        assertEquals(Log.Level.WARN, event.getLevel());
+        assertSame(LogTest.class, event.getSource());
+        assertEquals("LogTest-Thread", event.getThreadName());
+        assertTrue(Math.abs(System.currentTimeMillis() - event.getTime()) < 5000);
+    }
+
+    @Test
+    public void fillsInTemplatesLazily() {
+        Log.info(LogTest.class, "{} + {} = {}", 1, 2);
+        Log.log(Log.Level.INFO, LogTest.class, "{} + {} = {}", 1, 2, 3);
+        Log.info(LogTest.class, "no placeholder", "extra");
+        Log.info(LogTest.class, "null {}", (Object) null);
+
+        assertTrue(Log.flush(1000));
+        assertEquals("1 + 2 = {}", events.get(0).getMessage());
+        assertEquals("1 + 2 = 3", events.get(1).getMessage());
+        assertEquals("no placeholder", events.get(2).getMessage());
+        assertEquals("null null", events.get(3).getMessage());
+    }
+
+    @Test
+    public void keepsTheExceptionOfAnEvent() {
+        IOException exception = new IOException("broken pipe");
+
+        Log.error(LogTest.class, exception);
+        Log.error(LogTest.class, "Could not send to {}", "host", exception);
+        Log.error(LogTest.class, "Nothing thrown: {}", "fine");
+
+        assertTrue(Log.flush(1000));
+        assertEquals("java.io.IOException: broken pipe", events.get(0).getMessage());
+        assertSame(exception, events.get(0).getThrowable());
+        assertEquals("Could not send to host", events.get(1).getMessage());
+        assertSame(exception, events.get(1).getThrowable());
+        assertNull(events.get(2).getThrowable());
+    }
+
+    @Test
+    public void dropsEventsInsteadOfBlockingWhenTheRingIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Log.setSink(event -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            events.add(event);
+        });
+
+        long dropped = Log.getDroppedCount();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < Log.RING_CAPACITY + 1000; i++) Log.info(LogTest.class, "event {}", i);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertTrue(Log.getDroppedCount() - dropped >= 900);
+        assertFalse(Log.flush(50));
+
+        release.countDown();
+
+        assertTrue(Log.flush(5000));
+        assertEquals("event 0", events.get(0).getMessage());
+    }
+}
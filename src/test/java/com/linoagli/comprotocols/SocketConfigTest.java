@@ -0,0 +1,146 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import org.junit.Test;
+
+import java.net.DatagramSocket;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class SocketConfigTest {
+    @Test
+    public void looksPresetsUpByName() {
+        assertOptions(SocketConfig.lowLatency(), SocketConfig.forName(SocketConfig.PRESET_LOW_LATENCY));
+        assertOptions(SocketConfig.bulkThroughput(), SocketConfig.forName(SocketConfig.PRESET_BULK_THROUGHPUT));
+        assertOptions(new SocketConfig(), SocketConfig.forName(SocketConfig.PRESET_DEFAULT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownPresets() {
+        SocketConfig.forName("fastest");
+    }
+
+    @Test
+    public void theDefaultsLeaveSocketsAlone() throws Exception {
+        try (Socket configured = new Socket(); Socket untouched = new Socket()) {
+            new SocketConfig().apply(configured);
+
+            assertEquals(untouched.getTcpNoDelay(), configured.getTcpNoDelay());
+            assertEquals(untouched.getKeepAlive(), configured.getKeepAlive());
+            assertEquals(untouched.getSendBufferSize(), configured.getSendBufferSize());
+            assertEquals(untouched.getSoLinger(), configured.getSoLinger());
+        }
+    }
+
+    @Test
+    public void lowLatencyDisablesNagleAndProbesDeadPeers() throws Exception {
+        try (Socket socket = new Socket()) {
+            SocketConfig.lowLatency().apply(socket);
+
+            assertTrue(socket.getTcpNoDelay());
+            assertTrue(socket.getKeepAlive());
+        }
+
+        SocketOption<Integer> keepIdle = extendedOption("TCP_KEEPIDLE");
+        SocketOption<Integer> keepCount = extendedOption("TCP_KEEPCOUNT");
+
+        try (SocketChannel channel = SocketChannel.open()) {
+            SocketConfig.lowLatency().apply(channel);
+
+            assertTrue(channel.getOption(StandardSocketOptions.TCP_NODELAY));
+            assertTrue(channel.getOption(StandardSocketOptions.SO_KEEPALIVE));
+
+            assumeTrue(keepIdle != null && channel.supportedOptions().contains(keepIdle));
+            assertEquals(30, (int) channel.getOption(keepIdle));
+            assertEquals(3, (int) channel.getOption(keepCount));
+        }
+    }
+
+    @Test
+    public void bulkThroughputRaisesTheBuffers() throws Exception {
+        try (Socket configured = new Socket(); Socket untouched = new Socket()) {
+            SocketConfig.bulkThroughput().apply(configured);
+
+            assertFalse(configured.getTcpNoDelay());
+            assertTrue(configured.getKeepAlive());
+            assertTrue(configured.getReceiveBufferSize() >= untouched.getReceiveBufferSize());
+            assertTrue(configured.getSendBufferSize() >= untouched.getSendBufferSize());
+        }
+    }
+
+    @Test
+    public void appliesTheOptionsEachSocketTypeSupports() throws Exception {
+        SocketConfig config = new SocketConfig()
+                .setTcpNoDelay(true)
+                .setReuseAddress(true)
+                .setReceiveBufferSize(64 * 1024)
+                .setLinger(0);
+
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            config.apply(serverSocket);
+
+            assertTrue(serverSocket.getReuseAddress());
+        }
+
+        try (Socket socket = new Socket()) {
+            config.apply(socket);
+
+            assertTrue(socket.getTcpNoDelay());
+            assertEquals(0, socket.getSoLinger());
+        }
+
+        try (DatagramSocket socket = new DatagramSocket(null)) {
+            config.apply(socket);
+
+            assertTrue(socket.getReuseAddress());
+        }
+
+        // TCP options are skipped on a datagram channel
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            config.apply(channel);
+
+            assertTrue(channel.getOption(StandardSocketOptions.SO_REUSEADDR));
+        }
+    }
+
+    private static void assertOptions(SocketConfig expected, SocketConfig actual) {
+        try (Socket expectedSocket = new Socket(); Socket actualSocket = new Socket()) {
+            expected.apply(expectedSocket);
+            actual.apply(actualSocket);
+
+            assertEquals(expectedSocket.getTcpNoDelay(), actualSocket.getTcpNoDelay());
+            assertEquals(expectedSocket.getKeepAlive(), actualSocket.getKeepAlive());
+            assertEquals(expectedSocket.getReceiveBufferSize(), actualSocket.getReceiveBufferSize());
+            assertEquals(expectedSocket.getSendBufferSize(), actualSocket.getSendBufferSize());
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @return the extended socket option with the given name, looked up by reflection as it only exists on some
+     * runtimes, or <b>null</b>.
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Integer> extendedOption(String name) {
+        try {
+            return (SocketOption<Integer>) Class.forName("jdk.net.ExtendedSocketOptions").getField(name).get(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
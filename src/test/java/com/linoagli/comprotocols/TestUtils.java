@@ -0,0 +1,47 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Helpers shared by the tests.
+ */
+public class TestUtils {
+    private TestUtils() {}
+
+    /**
+     * @return a TCP port that was free at the time of the call.
+     */
+    public static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            socket.setReuseAddress(true);
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Polls the condition until it holds or the time out elapses.
+     *
+     * @param timeOut the maximum time to wait in milliseconds
+     * @param condition the condition
+     * @return whether or not the condition held before the time out.
+     */
+    public static boolean waitFor(long timeOut, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeOut;
+
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) return false;
+
+            Thread.sleep(5);
+        }
+
+        return true;
+    }
+}
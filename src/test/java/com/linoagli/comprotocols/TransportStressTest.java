@@ -0,0 +1,294 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import com.linoagli.comprotocols.tcp.TCPClient;
+import com.linoagli.comprotocols.tcp.TCPServer;
+import com.linoagli.comprotocols.udp.UDPListener;
+import com.linoagli.comprotocols.udp.UDPSender;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Restarts the transports over and over, and stops them while connections, queries and packets are in flight.
+ * Whatever happens, no port stays bound, no thread lingers and no runtime exception escapes, whether thrown on a
+ * transport thread or caught and logged by it.
+ */
+public class TransportStressTest {
+    private static final int ROUNDS = 20;
+
+    // Shared threads that outlive any one transport
+    private static final String[] SHARED_THREADS = {
+            "comprotocols-log", "DnsResolver-", "AdaptiveConcurrencyLimiter-", "Common-Cleaner", "Attach Listener"
+    };
+
+    private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+    private Set<Thread> threadsBefore;
+    private Thread.UncaughtExceptionHandler previousHandler;
+
+    @Before
+    public void setUp() {
+        threadsBefore = new HashSet<>(Thread.getAllStackTraces().keySet());
+
+        previousHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> failures.add(e));
+
+        Log.setSink(event -> {
+            if (event.getThrowable() instanceof RuntimeException) failures.add(event.getThrowable());
+        });
+    }
+
+    @After
+    public void tearDown() {
+        Log.flush(1000);
+        Log.setSink(null);
+        Thread.setDefaultUncaughtExceptionHandler(previousHandler);
+    }
+
+    @Test
+    public void tcpServerRestartsOnTheSamePort() throws Exception {
+        int port = TestUtils.freePort();
+        TCPServer server = createServer();
+
+        for (int i = 0; i < ROUNDS; i++) {
+            server.start(port);
+            assertTrue(TestUtils.waitFor(2000, server::isRunning));
+
+            TCPClient client = new TCPClient(new QuietCallback());
+            client.connect(InetAddress.getLoopbackAddress(), port);
+            client.query("round " + i);
+
+            // Stopped while the client may still be connecting or sending
+            server.stop();
+            client.disconnect();
+
+            assertTrue("port " + port + " still bound after round " + i, isTcpPortFree(port));
+        }
+
+        assertClean();
+    }
+
+    @Test
+    public void tcpServerStopsWhileClientsConnectAndSend() throws Exception {
+        int port = TestUtils.freePort();
+        TCPServer server = createServer();
+        AtomicBoolean isDone = new AtomicBoolean(false);
+        AtomicInteger connects = new AtomicInteger();
+        List<Thread> churners = new ArrayList<>();
+
+        server.start(port);
+
+        for (int t = 0; t < 4; t++) {
+            Thread churner = new Thread(() -> {
+                TCPClient client = new TCPClient(new QuietCallback());
+
+                while (!isDone.get()) {
+                    client.connect(InetAddress.getLoopbackAddress(), port);
+                    connects.incrementAndGet();
+
+                    for (int q = 0; q < 5; q++) client.query("query " + q);
+
+                    client.disconnect();
+                }
+            }, "TransportStressTest-Churner-" + t);
+            churners.add(churner);
+            churner.start();
+        }
+
+        for (int i = 0; i < ROUNDS; i++) {
+            Thread.sleep(20);
+            server.stop();
+            server.start(port);
+        }
+
+        isDone.set(true);
+        for (Thread churner : churners) churner.join(5000);
+        server.stop();
+
+        assertTrue(connects.get() > ROUNDS);
+        assertTrue(isTcpPortFree(port));
+        assertClean();
+    }
+
+    @Test
+    public void tcpClientReconnectsWhileItsServerComesAndGoes() throws Exception {
+        int port = TestUtils.freePort();
+        TCPServer server = createServer();
+        CountDownLatch answered = new CountDownLatch(1);
+        TCPClient client = new TCPClient(new QuietCallback() {
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if ("echo last".equals(dataPacket.data)) answered.countDown();
+            }
+        });
+
+        for (int i = 0; i < ROUNDS; i++) {
+            if (i % 2 == 0) server.start(port);
+
+            client.connect(InetAddress.getLoopbackAddress(), port);
+            client.query("query " + i);
+
+            if (i % 2 == 1) server.stop();
+        }
+
+        // The client still works once things settle
+        server.start(port);
+        client.connect(InetAddress.getLoopbackAddress(), port);
+        assertTrue(TestUtils.waitFor(2000, client::isRunning));
+        client.query("last");
+
+        assertTrue(answered.await(2, TimeUnit.SECONDS));
+
+        client.disconnect();
+        server.stop();
+
+        assertTrue(isTcpPortFree(port));
+        assertClean();
+    }
+
+    @Test
+    public void udpListenerRestartsWhilePacketsArrive() throws Exception {
+        int port = TestUtils.freePort();
+        AtomicBoolean isDone = new AtomicBoolean(false);
+        UDPListener listener = new UDPListener(port, new UDPListener.Callback() {
+            @Override
+            public void onStarted(int port) {}
+
+            @Override
+            public void onStopping() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {}
+        });
+
+        Thread sender = new Thread(() -> {
+            while (!isDone.get()) {
+                UDPSender.send(InetAddress.getLoopbackAddress(), port, "packet");
+
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "TransportStressTest-Sender");
+        sender.start();
+
+        for (int i = 0; i < ROUNDS; i++) {
+            listener.start();
+
+            // Every other round is stopped right away, before the listener may even have bound its port
+            if (i % 2 == 0) assertTrue(TestUtils.waitFor(2000, listener::isRunning));
+
+            listener.stop();
+
+            assertTrue("port " + port + " still bound after round " + i, isUdpPortFree(port));
+        }
+
+        isDone.set(true);
+        sender.join(2000);
+
+        assertClean();
+    }
+
+    private void assertClean() throws InterruptedException {
+        boolean isSettled = TestUtils.waitFor(5000, () -> lingeringThreads().isEmpty());
+
+        Log.flush(1000);
+
+        assertEquals(new ArrayList<Throwable>(), failures);
+        assertTrue("lingering threads: " + lingeringThreads(), isSettled);
+    }
+
+    private List<String> lingeringThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && !threadsBefore.contains(thread))
+                .map(Thread::getName)
+                .filter(name -> {
+                    for (String shared : SHARED_THREADS) {
+                        if (name.startsWith(shared)) return false;
+                    }
+
+                    return true;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static TCPServer createServer() {
+        TCPServer server = new TCPServer(new EchoCallback());
+
+        // Every client connects from the loopback address, and a connection racing a stop may arrive late
+        server.setAllowMultipleConnectionsFromSameAddress(true);
+
+        return server;
+    }
+
+    private static boolean isTcpPortFree(int port) {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(port));
+
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean isUdpPortFree(int port) {
+        try (DatagramSocket socket = new DatagramSocket(port)) {
+            return socket.getLocalPort() == port;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static class EchoCallback implements TCPServer.Callback {
+        @Override
+        public void onWaitingForConnection(int port) {}
+
+        @Override
+        public void onConnected(TCPServer.Connection connection) {}
+
+        @Override
+        public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {
+            connection.respond("echo " + dataPacket.data);
+        }
+    }
+
+    private static class QuietCallback implements TCPClient.Callback {
+        @Override
+        public void onConnected(InetAddress serverIp, int port) {}
+
+        @Override
+        public void onConnectionFailed(InetAddress serverIp, int port) {}
+
+        @Override
+        public void onDisconnected() {}
+
+        @Override
+        public void onDataReceived(DataPacket dataPacket) {}
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteQueueTest {
+    private final List<Boolean> transitions = new ArrayList<>();
+
+    @Test
+    public void writesEveryPendingMessageAsOneBatch() throws Exception {
+        WriteQueue queue = new WriteQueue(null);
+        CountingStream out = new CountingStream();
+
+        queue.offer("one\n".getBytes());
+        queue.offer("two\n".getBytes());
+        queue.offer("three\n".getBytes());
+
+        assertEquals(3, queue.writeBatch(out, 0));
+        assertEquals("one\ntwo\nthree\n", out.toString());
+        assertEquals(1, out.writes);
+        assertEquals(1, out.flushes);
+        assertEquals(0, queue.getPendingBytes());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void splitsBatchesLargerThanTheBatchBuffer() throws Exception {
+        WriteQueue queue = new WriteQueue(null, 8);
+        CountingStream out = new CountingStream();
+        byte[] large = new byte[20];
+        Arrays.fill(large, (byte) 'x');
+
+        queue.offer("abcd".getBytes());
+        queue.offer("efgh".getBytes());
+        queue.offer(large);
+        queue.offer("ij".getBytes());
+
+        assertEquals(4, queue.writeBatch(out, 0));
+        assertEquals("abcdefgh" + new String(large) + "ij", out.toString());
+        assertEquals(1, out.flushes);
+    }
+
+    @Test
+    public void conflatedMessageReplacesThePendingOneInPlace() throws Exception {
+        WriteQueue queue = new WriteQueue(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        queue.offer("a1;".getBytes(), "a");
+        queue.offer("b1;".getBytes(), "b");
+        queue.offer("a2;".getBytes(), "a");
+        queue.offer("plain;".getBytes());
+
+        assertEquals(3, queue.size());
+        assertEquals(12, queue.getPendingBytes());
+        assertEquals(3, queue.writeBatch(out, 0));
+        assertEquals("a2;b1;plain;", out.toString());
+    }
+
+    @Test
+    public void conflationStopsOnceTheMessageWasWritten() throws Exception {
+        WriteQueue queue = new WriteQueue(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        queue.offer("a1;".getBytes(), "a");
+        queue.writeBatch(out, 0);
+        queue.offer("a2;".getBytes(), "a");
+        queue.offer("a3;".getBytes(), "a");
+        queue.writeBatch(out, 0);
+
+        assertEquals("a1;a3;", out.toString());
+    }
+
+    @Test
+    public void reportsBackpressureAboveTheHighWaterMarkAndLiftsItAtHalf() throws Exception {
+        WriteQueue queue = new WriteQueue(transitions::add);
+        queue.setHighWaterMark(10);
+
+        queue.offer(new byte[6]);
+        assertFalse(queue.isBackpressured());
+
+        queue.offer(new byte[4]);
+        assertFalse("the mark itself is not above it", queue.isBackpressured());
+
+        queue.offer(new byte[1]);
+        assertTrue(queue.isBackpressured());
+        queue.offer(new byte[1]);
+        assertEquals(Arrays.asList(true), transitions);
+
+        queue.writeBatch(new ByteArrayOutputStream(), 0);
+        assertFalse(queue.isBackpressured());
+        assertEquals(Arrays.asList(true, false), transitions);
+    }
+
+    @Test
+    public void staysBackpressuredUntilDrainedToHalfTheMark() throws Exception {
+        WriteQueue queue = new WriteQueue(transitions::add);
+        queue.setHighWaterMark(10);
+
+        queue.offer(new byte[11]);
+        queue.writeBatch(new ByteArrayOutputStream(), 0);
+        queue.offer(new byte[4]);
+        assertFalse(queue.isBackpressured());
+
+        queue.offer(new byte[8]);
+        assertTrue(queue.isBackpressured());
+        assertEquals(12, queue.getPendingBytes());
+        assertEquals(Arrays.asList(true, false, true), transitions);
+    }
+
+    @Test
+    public void writeBatchTimesOutWithNothingQueued() throws Exception {
+        WriteQueue queue = new WriteQueue(null);
+
+        assertEquals(0, queue.writeBatch(new ByteArrayOutputStream(), 20));
+    }
+
+    @Test
+    public void closingReleasesTheWriterAndDiscardsMessages() throws Exception {
+        final WriteQueue queue = new WriteQueue(null);
+        final int[] result = {Integer.MIN_VALUE};
+
+        Thread writer = new Thread(() -> {
+            try {
+                result[0] = queue.writeBatch(new ByteArrayOutputStream(), 0);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        Thread.sleep(50);
+
+        queue.close();
+        writer.join(1000);
+
+        assertFalse(writer.isAlive());
+        assertEquals(-1, result[0]);
+        assertFalse(queue.offer("late".getBytes()));
+        assertEquals(0, queue.getPendingBytes());
+    }
+
+    @Test
+    public void concurrentOffersAreNeitherLostNorInterleaved() throws Exception {
+        final WriteQueue queue = new WriteQueue(null, 64);
+        final int threads = 4;
+        final int perThread = 2000;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<Thread> producers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) queue.offer(Utils.encodeLine(id + ":" + i));
+            });
+            producers.add(producer);
+            producer.start();
+        }
+
+        int written = 0;
+
+        while (written < threads * perThread) written += queue.writeBatch(out, 1000);
+
+        for (Thread producer : producers) producer.join();
+
+        String[] lines = out.toString().split("\n");
+        int[] next = new int[threads];
+
+        assertEquals(threads * perThread, lines.length);
+
+        for (String line : lines) {
+            String[] parts = line.split(":");
+            int id = Integer.parseInt(parts[0]);
+
+            assertEquals("messages of a thread keep their order", next[id]++, Integer.parseInt(parts[1]));
+        }
+    }
+
+    @Test
+    public void encodeLineAppendsALineFeed() {
+        assertArrayEquals("hi\n".getBytes(), Utils.encodeLine("hi"));
+    }
+
+    private static class CountingStream extends OutputStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int writes;
+        private int flushes;
+
+        @Override
+        public void write(int b) {
+            writes++;
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writes++;
+            bytes.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushes++;
+        }
+
+        @Override
+        public String toString() {
+            return bytes.toString();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.bluetooth
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.bluetooth;
+
+import com.intel.bluetooth.EmulatorTestsHelper;
+
+import javax.bluetooth.BluetoothStateException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs code against the in-process bluecove emulator. Every call gets a bluetooth stack, and so a device, of its
+ * own.
+ */
+class BluetoothEmulator {
+    private static boolean isStarted = false;
+
+    private BluetoothEmulator() {}
+
+    /**
+     * Runs the task on a new emulated device and waits for it to complete.
+     *
+     * @param task the task
+     * @return the task's result
+     */
+    static <T> T call(Callable<T> task) throws Exception {
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        start(() -> {
+            try {
+                result.set(task.call());
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        }).join();
+
+        if (failure.get() != null) throw failure.get();
+
+        return result.get();
+    }
+
+    /**
+     * Runs the task on a new emulated device, in a thread of its own.
+     *
+     * @param task the task
+     * @return the started thread
+     */
+    static synchronized Thread start(Runnable task) throws BluetoothStateException {
+        if (!isStarted) {
+            EmulatorTestsHelper.startInProcessServer();
+            isStarted = true;
+        }
+
+        return EmulatorTestsHelper.runNewEmulatorStack(task);
+    }
+}
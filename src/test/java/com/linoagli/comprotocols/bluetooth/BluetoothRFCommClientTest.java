@@ -0,0 +1,156 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.bluetooth
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.bluetooth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.bluetooth.LocalDevice;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BluetoothRFCommClientTest {
+    private static final String SERVICE_UUID = "b0a3f5c1-7d2e-4f6a-8c9b-1e2d3c4b5a69";
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final CountDownLatch waiting = new CountDownLatch(1);
+    private BluetoothRFCommServer server;
+    private String serverAddress;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new BluetoothRFCommServer(new BluetoothRFCommServer.Callback() {
+            @Override
+            public void onWaitingForConnection(String serviceUUID) {
+                waiting.countDown();
+            }
+
+            @Override
+            public void onConnected(BluetoothRFCommServer.Session session) {
+                connections.incrementAndGet();
+            }
+
+            @Override
+            public void onDataReceived(BluetoothRFCommServer.Session session, String data) {
+                session.respond("echo " + data);
+            }
+        });
+
+        serverAddress = BluetoothEmulator.call(() -> {
+            server.start(SERVICE_UUID);
+            return LocalDevice.getLocalDevice().getBluetoothAddress();
+        });
+
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void discoversTheServiceAndReusesReleasedSessions() throws Exception {
+        BluetoothEmulator.call(() -> {
+            BluetoothRFCommClient client = new BluetoothRFCommClient();
+
+            BluetoothRFCommClient.Session first = client.open(serverAddress, SERVICE_UUID);
+            assertEquals("echo one", first.query("one"));
+            first.release();
+
+            BluetoothRFCommClient.Session second = client.open(serverAddress, SERVICE_UUID);
+            assertSame("a released session is pooled", first, second);
+            assertEquals("echo two", second.query("two"));
+            second.close();
+            assertFalse(second.isOpen());
+
+            BluetoothRFCommClient.Session third = client.open(serverAddress, SERVICE_UUID);
+            assertNotSame("a closed session is not reused", second, third);
+            assertEquals("echo three", third.query("three"));
+            third.close();
+
+            client.shutdown();
+            return null;
+        });
+
+        assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void closesReleasedSessionsWhenPoolingIsDisabled() throws Exception {
+        BluetoothEmulator.call(() -> {
+            BluetoothRFCommClient client = new BluetoothRFCommClient();
+            client.setSessionIdleTimeOut(0);
+
+            BluetoothRFCommClient.Session session = client.open(serverAddress, SERVICE_UUID);
+            session.release();
+            assertFalse(session.isOpen());
+
+            client.shutdown();
+            return null;
+        });
+    }
+
+    @Test
+    public void closingReleasesAPendingReceive() throws Exception {
+        BluetoothEmulator.call(() -> {
+            BluetoothRFCommClient client = new BluetoothRFCommClient();
+            BluetoothRFCommClient.Session session = client.open(serverAddress, SERVICE_UUID);
+
+            // The service never sends anything unasked, so this blocks until the session is closed
+            CompletableFuture<String> received = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return session.receive();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+
+            Thread.sleep(200);
+            assertFalse(received.isDone());
+
+            CompletableFuture.runAsync(session::close).get(2, TimeUnit.SECONDS);
+
+            assertNull(received.get(2, TimeUnit.SECONDS));
+            assertFalse(session.isOpen());
+
+            client.shutdown();
+            return null;
+        });
+    }
+
+    @Test
+    public void failsForAServiceTheDeviceDoesNotOffer() throws Exception {
+        BluetoothEmulator.call(() -> {
+            BluetoothRFCommClient client = new BluetoothRFCommClient();
+            client.setDiscoveryTimeOut(5000);
+
+            try {
+                client.open(serverAddress, "00000000-0000-4000-8000-000000000001");
+                fail("connected to a missing service");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("not found"));
+            }
+
+            client.shutdown();
+            return null;
+        });
+    }
+}
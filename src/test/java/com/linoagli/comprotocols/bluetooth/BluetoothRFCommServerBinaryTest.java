@@ -0,0 +1,157 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.bluetooth
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.bluetooth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.bluetooth.LocalDevice;
+import javax.microedition.io.Connector;
+import javax.microedition.io.StreamConnection;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BluetoothRFCommServerBinaryTest {
+    private static final String SERVICE_UUID = "5c4ea7d2-6a2b-4a77-9a55-0d3f3c2b1e10";
+
+    private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+    private final BlockingQueue<BluetoothRFCommServer.Session> disconnected = new LinkedBlockingQueue<>();
+    private final AtomicLong progress = new AtomicLong();
+    private final CountDownLatch waiting = new CountDownLatch(1);
+    private BluetoothRFCommServer server;
+    private String serverUrl;
+    private StreamConnection client;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new BluetoothRFCommServer(new BluetoothRFCommServer.Callback() {
+            @Override
+            public void onWaitingForConnection(String serviceUUID) {
+                waiting.countDown();
+            }
+
+            @Override
+            public void onConnected(BluetoothRFCommServer.Session session) {}
+
+            @Override
+            public void onDataReceived(BluetoothRFCommServer.Session session, String data) {}
+
+            @Override
+            public void onBinaryDataReceived(BluetoothRFCommServer.Session session, byte[] data) {
+                received.add(data);
+
+                if (data.length == 4) {
+                    int size = ((data[0] & 0xFF) << 24) | ((data[1] & 0xFF) << 16) | ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+
+                    try {
+                        session.sendStream(new ByteArrayInputStream(pattern(size)), size, (sent, total) -> progress.set(sent));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                } else {
+                    session.respond(data);
+                }
+            }
+
+            @Override
+            public void onDisconnected(BluetoothRFCommServer.Session session) {
+                disconnected.add(session);
+            }
+        });
+        server.setMode(BluetoothRFCommServer.Mode.BINARY);
+        server.setBufferSize(4096);
+        server.setMaxFrameSize(1024 * 1024);
+
+        String address = BluetoothEmulator.call(() -> {
+            server.start(SERVICE_UUID);
+            return LocalDevice.getLocalDevice().getBluetoothAddress();
+        });
+
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+        serverUrl = "btspp://" + address + ":1";
+
+        client = BluetoothEmulator.call(() -> (StreamConnection) Connector.open(serverUrl));
+        in = new DataInputStream(client.openInputStream());
+        out = new DataOutputStream(client.openOutputStream());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        in.close();
+        out.close();
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void exchangesLengthPrefixedMessages() throws Exception {
+        byte[] message = pattern(10000);
+
+        writeFrame(message);
+        writeFrame(new byte[0]);
+
+        assertArrayEquals(message, received.poll(5, TimeUnit.SECONDS));
+        assertArrayEquals(message, readFrame());
+        assertEquals(0, received.poll(5, TimeUnit.SECONDS).length);
+        assertEquals(0, readFrame().length);
+    }
+
+    @Test
+    public void streamsLargeMessagesOneBufferAtATime() throws Exception {
+        int size = 300 * 1000;
+
+        writeFrame(new byte[] {0, (byte) (size >>> 16), (byte) (size >>> 8), (byte) size});
+
+        assertArrayEquals(pattern(size), readFrame());
+        assertEquals(size, progress.get());
+    }
+
+    @Test
+    public void closesSessionsSendingFramesAboveTheMaximumSize() throws Exception {
+        out.writeInt(2 * 1024 * 1024);
+        out.flush();
+
+        assertNotNull(disconnected.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, server.getSessionCount());
+    }
+
+    private void writeFrame(byte[] message) throws IOException {
+        out.writeInt(message.length);
+        out.write(message);
+        out.flush();
+    }
+
+    private byte[] readFrame() throws IOException {
+        byte[] message = new byte[in.readInt()];
+        in.readFully(message);
+
+        return message;
+    }
+
+    private static byte[] pattern(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+
+        return bytes;
+    }
+}
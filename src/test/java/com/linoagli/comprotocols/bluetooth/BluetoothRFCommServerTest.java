@@ -0,0 +1,177 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.bluetooth
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.bluetooth;
+
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.bluetooth.LocalDevice;
+import javax.microedition.io.Connector;
+import javax.microedition.io.StreamConnection;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BluetoothRFCommServerTest {
+    private static final String SERVICE_UUID = "27012f0c-68af-4fbf-8dbe-6bbaf7aa432a";
+
+    private final BlockingQueue<BluetoothRFCommServer.Session> connected = new LinkedBlockingQueue<>();
+    private final BlockingQueue<BluetoothRFCommServer.Session> disconnected = new LinkedBlockingQueue<>();
+    private final CountDownLatch waiting = new CountDownLatch(1);
+    private BluetoothRFCommServer server;
+    private String serverUrl;
+
+    @After
+    public void tearDown() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void servesSeveralClientsAtTheSameTime() throws Exception {
+        start(BluetoothRFCommServer.Mode.TEXT, 7);
+
+        final int clients = 3;
+        final CyclicBarrier allConnected = new CyclicBarrier(clients + 1);
+        final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < clients; i++) {
+            final int id = i;
+
+            threads.add(BluetoothEmulator.start(() -> {
+                try {
+                    StreamConnection connection = (StreamConnection) Connector.open(serverUrl);
+                    OutputStream out = connection.openOutputStream();
+                    BufferedReader in = new BufferedReader(new InputStreamReader(connection.openInputStream()));
+
+                    out.write(("hi " + id + "\n").getBytes());
+                    out.flush();
+                    responses.add(in.readLine());
+
+                    allConnected.await(5, TimeUnit.SECONDS);
+                    allConnected.await(5, TimeUnit.SECONDS);
+
+                    // The connection is only released once its streams are closed too
+                    in.close();
+                    out.close();
+                    connection.close();
+                } catch (Exception e) {
+                    responses.add("failed: " + e);
+                }
+            }));
+        }
+
+        allConnected.await(5, TimeUnit.SECONDS);
+        assertEquals(clients, server.getSessionCount());
+        allConnected.await(5, TimeUnit.SECONDS);
+
+        List<String> received = new ArrayList<>();
+        for (int i = 0; i < clients; i++) received.add(responses.poll(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < clients; i++) assertTrue(received.toString(), received.contains("echo hi " + i));
+
+        for (Thread thread : threads) thread.join(5000);
+        assertTrue(TestUtils.waitFor(2000, () -> server.getSessionCount() == 0));
+    }
+
+    @Test
+    public void closesConnectionsAboveTheMaximumNumberOfSessions() throws Exception {
+        start(BluetoothRFCommServer.Mode.TEXT, 1);
+
+        StreamConnection first = BluetoothEmulator.call(() -> (StreamConnection) Connector.open(serverUrl));
+        assertNotNull(connected.poll(2, TimeUnit.SECONDS));
+
+        int read = BluetoothEmulator.call(() -> {
+            StreamConnection second = (StreamConnection) Connector.open(serverUrl);
+
+            try {
+                return second.openInputStream().read();
+            } catch (IOException e) {
+                return -1;
+            } finally {
+                second.close();
+            }
+        });
+
+        assertEquals(-1, read);
+        assertEquals(1, server.getSessionCount());
+        first.close();
+    }
+
+    @Test
+    public void sendingOnAClosedSessionFailsCleanly() throws Exception {
+        start(BluetoothRFCommServer.Mode.BINARY, 7);
+
+        StreamConnection client = BluetoothEmulator.call(() -> (StreamConnection) Connector.open(serverUrl));
+        BluetoothRFCommServer.Session session = connected.poll(2, TimeUnit.SECONDS);
+        assertNotNull(session);
+
+        client.close();
+        assertTrue(disconnected.poll(2, TimeUnit.SECONDS) == session);
+        assertFalse(session.isOpen());
+
+        session.respond("ignored"); // Logged and dropped
+
+        try {
+            session.sendStream(new ByteArrayInputStream(new byte[16]), 16, null);
+            fail("sent on a closed session");
+        } catch (IOException e) {
+            assertEquals("Session is closed", e.getMessage());
+        }
+    }
+
+    private void start(BluetoothRFCommServer.Mode mode, int maxSessions) throws Exception {
+        server = new BluetoothRFCommServer(new BluetoothRFCommServer.Callback() {
+            @Override
+            public void onWaitingForConnection(String serviceUUID) {
+                waiting.countDown();
+            }
+
+            @Override
+            public void onConnected(BluetoothRFCommServer.Session session) {
+                connected.add(session);
+            }
+
+            @Override
+            public void onDataReceived(BluetoothRFCommServer.Session session, String data) {
+                session.respond("echo " + data);
+            }
+
+            @Override
+            public void onDisconnected(BluetoothRFCommServer.Session session) {
+                disconnected.add(session);
+            }
+        });
+        server.setMode(mode);
+        server.setMaxSessions(maxSessions);
+
+        String address = BluetoothEmulator.call(() -> {
+            server.start(SERVICE_UUID);
+            return LocalDevice.getLocalDevice().getBluetoothAddress();
+        });
+
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+        serverUrl = "btspp://" + address + ":1";
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.bluetooth
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.bluetooth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ServiceDiscoveryCacheTest {
+    private static final String URL = "btspp://0000110000AA:3;authenticate=false;encrypt=false;master=false";
+
+    @Test
+    public void normalizesAddressesAndUUIDs() {
+        ServiceDiscoveryCache cache = new ServiceDiscoveryCache(60000);
+
+        cache.put("00:00:11:00:00:aa", "27012F0C-68AF-4FBF-8DBE-6BBAF7AA432A", URL);
+
+        assertEquals(URL, cache.get("0000110000AA", "27012f0c68af4fbf8dbe6bbaf7aa432a"));
+        assertNull(cache.get("0000110000AB", "27012f0c68af4fbf8dbe6bbaf7aa432a"));
+    }
+
+    @Test
+    public void expiresEntriesAfterTheirTTL() throws Exception {
+        ServiceDiscoveryCache cache = new ServiceDiscoveryCache(30);
+
+        cache.put("0000110000AA", "1101", URL);
+        assertEquals(URL, cache.get("0000110000AA", "1101"));
+
+        Thread.sleep(50);
+
+        assertNull(cache.get("0000110000AA", "1101"));
+    }
+
+    @Test
+    public void theTTLAppliesToEntriesAddedAfterItChanged() throws Exception {
+        ServiceDiscoveryCache cache = new ServiceDiscoveryCache(60000);
+        cache.setTTL(0);
+
+        cache.put("0000110000AA", "1101", URL);
+
+        assertNull(cache.get("0000110000AA", "1101"));
+    }
+
+    @Test
+    public void invalidatesAndClearsEntries() {
+        ServiceDiscoveryCache cache = new ServiceDiscoveryCache(60000);
+
+        cache.put("0000110000AA", "1101", URL);
+        cache.put("0000110000AB", "1101", URL);
+        cache.invalidate("00:00:11:00:00:AA", "1101");
+
+        assertNull(cache.get("0000110000AA", "1101"));
+        assertEquals(URL, cache.get("0000110000AB", "1101"));
+
+        cache.clear();
+
+        assertNull(cache.get("0000110000AB", "1101"));
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.capture
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.capture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CaptureJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsRecordsBackWithTheirFields() throws Exception {
+        File directory = folder.newFolder();
+        long before = System.currentTimeMillis() * 1000000L;
+
+        try (CaptureJournal journal = new CaptureJournal(directory, 4096)) {
+            int connectionId = journal.nextConnectionId();
+            ByteBuffer data = ByteBuffer.wrap(new byte[] {0, 1, 2, 3, 4});
+            data.position(1);
+
+            journal.record(connectionId, CaptureJournal.Direction.INBOUND, "/127.0.0.1:1234", data);
+            journal.record(connectionId, CaptureJournal.Direction.OUTBOUND, "/127.0.0.1:1234", ByteBuffer.allocate(0));
+
+            assertEquals("the buffer's position is left untouched", 1, data.position());
+            assertEquals(2, journal.getRecordCount());
+        }
+
+        try (CaptureReader reader = new CaptureReader(directory)) {
+            CaptureRecord first = reader.next();
+            CaptureRecord second = reader.next();
+
+            assertEquals(1, first.getConnectionId());
+            assertEquals(CaptureJournal.Direction.INBOUND, first.getDirection());
+            assertEquals("/127.0.0.1:1234", first.getPeer());
+            assertArrayEquals(new byte[] {1, 2, 3, 4}, first.getData());
+            assertTrue(first.getTimestamp() >= before - 1000000L);
+            assertTrue(second.getTimestamp() >= first.getTimestamp());
+
+            assertEquals(CaptureJournal.Direction.OUTBOUND, second.getDirection());
+            assertEquals(0, second.getData().length);
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void rollsOverToNewSegments() throws Exception {
+        File directory = folder.newFolder();
+
+        try (CaptureJournal journal = new CaptureJournal(directory, 4096)) {
+            for (int i = 0; i < 100; i++) record(journal, i, 200);
+        }
+
+        assertTrue(CaptureJournal.listSegments(directory).length >= 5);
+
+        try (CaptureReader reader = new CaptureReader(directory)) {
+            for (int i = 0; i < 100; i++) assertEquals(i, ByteBuffer.wrap(reader.next().getData()).getInt());
+
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void dropsMessagesLargerThanASegment() throws Exception {
+        File directory = folder.newFolder();
+
+        try (CaptureJournal journal = new CaptureJournal(directory, 4096)) {
+            record(journal, 1, 5000);
+            record(journal, 2, 10);
+
+            assertEquals(1, journal.getRecordCount());
+            assertEquals(1, journal.getDroppedCount());
+        }
+
+        try (CaptureReader reader = new CaptureReader(directory)) {
+            assertEquals(2, ByteBuffer.wrap(reader.next().getData()).getInt());
+        }
+    }
+
+    @Test
+    public void newSessionsAreAppendedAfterExistingSegments() throws Exception {
+        File directory = folder.newFolder();
+
+        try (CaptureJournal journal = new CaptureJournal(directory, 4096)) {
+            record(journal, 1, 10);
+        }
+
+        try (CaptureJournal journal = new CaptureJournal(directory, 4096)) {
+            record(journal, 2, 10);
+        }
+
+        assertEquals(2, CaptureJournal.listSegments(directory).length);
+
+        try (CaptureReader reader = new CaptureReader(directory)) {
+            assertEquals(1, ByteBuffer.wrap(reader.next().getData()).getInt());
+            assertEquals(2, ByteBuffer.wrap(reader.next().getData()).getInt());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void ignoresRecordsAfterClosing() throws Exception {
+        File directory = folder.newFolder();
+        CaptureJournal journal = new CaptureJournal(directory, 4096);
+
+        journal.close();
+        record(journal, 1, 10);
+
+        assertEquals(0, journal.getRecordCount());
+        assertNull(new CaptureReader(directory).next());
+    }
+
+    @Test
+    public void rejectsFilesThatAreNotSegments() throws Exception {
+        File directory = folder.newFolder();
+
+        try (FileOutputStream out = new FileOutputStream(new File(directory, "capture-000000.journal"))) {
+            out.write(new byte[4096]);
+        }
+
+        try {
+            new CaptureReader(directory).next();
+            fail("read a file that is not a segment");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static void record(CaptureJournal journal, int value, int length) {
+        ByteBuffer data = ByteBuffer.allocate(length);
+        data.putInt(0, value);
+
+        journal.record(0, CaptureJournal.Direction.INBOUND, "peer", data);
+    }
+}
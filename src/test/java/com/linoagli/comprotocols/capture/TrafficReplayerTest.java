@@ -0,0 +1,175 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.capture
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.capture;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+import com.linoagli.comprotocols.tcp.TCPClient;
+import com.linoagli.comprotocols.tcp.TCPServer;
+import com.linoagli.comprotocols.udp.UDPListener;
+import com.linoagli.comprotocols.udp.UDPSender;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrafficReplayerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+    private TCPServer server;
+    private UDPListener listener;
+
+    @After
+    public void tearDown() {
+        if (server != null) server.stop();
+        if (listener != null) listener.stop();
+    }
+
+    @Test
+    public void replaysRecordedTCPTrafficAgainstAnotherServer() throws Exception {
+        File directory = folder.newFolder();
+        CaptureJournal journal = new CaptureJournal(directory, 64 * 1024);
+
+        int port = startServer(journal);
+        final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+        final CountDownLatch connected = new CountDownLatch(1);
+        TCPClient client = new TCPClient(new TCPClient.Callback() {
+            @Override
+            public void onConnected(InetAddress serverIp, int port) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(InetAddress serverIp, int port) {}
+
+            @Override
+            public void onDisconnected() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if (!TCPServer.LINE_PING_RESPONSE.equals(dataPacket.data)) responses.add(dataPacket.data);
+            }
+        });
+        client.connect(InetAddress.getLoopbackAddress(), port);
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 20; i++) client.query("q" + i);
+        for (int i = 0; i < 20; i++) assertEquals("echo q" + i, responses.poll(2, TimeUnit.SECONDS));
+
+        client.disconnect();
+        server.stop();
+        journal.close();
+
+        assertTrue(journal.getRecordCount() >= 2);
+        received.clear();
+
+        // Replay the client's side against a fresh server
+        port = startServer(null);
+        TrafficReplayer replayer = new TrafficReplayer();
+        replayer.setSpeed(0);
+        replayer.setDrainTime(500);
+
+        TrafficReplayer.Result result = replayer.replay(directory, TrafficReplayer.Transport.TCP, InetAddress.getLoopbackAddress(), port);
+
+        assertEquals(1, result.getConnections());
+        for (int i = 0; i < 20; i++) assertEquals("q" + i, received.poll(2, TimeUnit.SECONDS));
+        assertTrue(result.getBytesReceived() >= "echo q0\n".length() * 20);
+    }
+
+    @Test
+    public void replaysUDPPacketsAtTheRecordedPace() throws Exception {
+        File directory = folder.newFolder();
+        CaptureJournal journal = new CaptureJournal(directory, 64 * 1024);
+        int port = TestUtils.freePort();
+
+        startListener(port, null);
+
+        // The first packet pays for loading the receive path; recording it would bunch up the next ones
+        UDPSender.send(InetAddress.getLoopbackAddress(), port, "warm up");
+        assertEquals("warm up", received.poll(2, TimeUnit.SECONDS));
+        listener.setCaptureJournal(journal);
+
+        for (int i = 0; i < 5; i++) {
+            UDPSender.send(InetAddress.getLoopbackAddress(), port, "p" + i);
+            Thread.sleep(40);
+        }
+
+        assertTrue(TestUtils.waitFor(2000, () -> journal.getRecordCount() == 5));
+        listener.stop();
+        journal.close();
+        received.clear();
+
+        startListener(port, null);
+
+        TrafficReplayer replayer = new TrafficReplayer();
+        TrafficReplayer.Result result = replayer.replay(directory, TrafficReplayer.Transport.UDP, InetAddress.getLoopbackAddress(), port);
+
+        assertEquals(5, result.getMessagesSent());
+        // The packets were recorded about 40 ms apart
+        assertTrue(result.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(120));
+
+        for (int i = 0; i < 5; i++) assertTrue(received.poll(2, TimeUnit.SECONDS).startsWith("p"));
+    }
+
+    private int startServer(CaptureJournal journal) throws Exception {
+        int port = TestUtils.freePort();
+
+        server = new TCPServer(new TCPServer.Callback() {
+            @Override
+            public void onWaitingForConnection(int port) {}
+
+            @Override
+            public void onConnected(TCPServer.Connection connection) {}
+
+            @Override
+            public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {
+                received.add(dataPacket.data);
+                connection.respond("echo " + dataPacket.data);
+            }
+        });
+        server.setCaptureJournal(journal);
+        server.start(port);
+
+        return port;
+    }
+
+    private void startListener(int port, CaptureJournal journal) throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+
+        listener = new UDPListener(port, new UDPListener.Callback() {
+            @Override
+            public void onStarted(int port) {
+                started.countDown();
+            }
+
+            @Override
+            public void onStopping() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                received.add(dataPacket.data);
+            }
+        });
+        listener.setCaptureJournal(journal);
+        listener.start();
+
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+    }
+}
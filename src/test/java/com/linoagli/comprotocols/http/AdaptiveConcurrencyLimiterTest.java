@@ -0,0 +1,163 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import com.linoagli.comprotocols.TestUtils;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+    private static final String HOST = "example.com:80";
+
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+
+    @Test
+    public void queuesRequestsOverTheLimit() throws Exception {
+        limiter.setInitialLimit(2);
+
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire(HOST);
+        assertNotNull(first);
+        assertNotNull(limiter.acquire(HOST));
+
+        AtomicReference<AdaptiveConcurrencyLimiter.Permit> granted = new AtomicReference<>();
+        AtomicInteger rejections = new AtomicInteger();
+        limiter.acquire(HOST, granted::set, rejections::incrementAndGet);
+
+        assertNull(granted.get());
+        assertEquals(1, limiter.getQueueSize(HOST));
+        assertEquals(2, limiter.getInFlightCount(HOST));
+
+        first.abandon();
+
+        assertNotNull(granted.get());
+        assertEquals(0, limiter.getQueueSize(HOST));
+        assertEquals(2, limiter.getInFlightCount(HOST));
+        assertEquals(0, rejections.get());
+    }
+
+    @Test
+    public void rejectsRightAwayOnceTheQueueIsFull() {
+        limiter.setInitialLimit(1);
+        limiter.setMaxQueueSize(1);
+        limiter.acquire(HOST);
+
+        AtomicInteger rejections = new AtomicInteger();
+        limiter.acquire(HOST, permit -> {}, rejections::incrementAndGet);
+        limiter.acquire(HOST, permit -> {}, rejections::incrementAndGet);
+
+        assertEquals(1, rejections.get());
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(1, limiter.getQueueSize(HOST));
+    }
+
+    @Test
+    public void queuedRequestsExpireEvenIfNoPermitIsReleased() throws Exception {
+        limiter.setInitialLimit(1);
+        limiter.setMaxQueueTime(100);
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire(HOST);
+
+        AtomicInteger acquisitions = new AtomicInteger();
+        AtomicInteger rejections = new AtomicInteger();
+        limiter.acquire(HOST, permit -> acquisitions.incrementAndGet(), rejections::incrementAndGet);
+
+        assertTrue(TestUtils.waitFor(2000, () -> rejections.get() == 1));
+        assertEquals(0, limiter.getQueueSize(HOST));
+        assertEquals(1, limiter.getRejectedCount());
+
+        // The expired request is not granted the permit that frees up later
+        held.release(false);
+        Thread.sleep(50);
+
+        assertEquals(0, acquisitions.get());
+        assertEquals(1, rejections.get());
+        assertEquals(0, limiter.getInFlightCount(HOST));
+    }
+
+    @Test
+    public void blockingAcquireGivesUpAfterTheMaxQueueTime() {
+        limiter.setInitialLimit(1);
+        limiter.setMaxQueueTime(100);
+        limiter.acquire(HOST);
+
+        long start = System.nanoTime();
+
+        assertNull(limiter.acquire(HOST));
+        assertTrue(System.nanoTime() - start >= 90_000_000L);
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(0, limiter.getQueueSize(HOST));
+    }
+
+    @Test
+    public void droppedRequestsCutTheLimit() {
+        limiter.setInitialLimit(10);
+
+        limiter.acquire(HOST).release(true);
+
+        assertEquals(9, limiter.getLimit(HOST));
+        assertEquals(0, limiter.getInFlightCount(HOST));
+    }
+
+    @Test
+    public void abandonedPermitsLeaveTheLimitAlone() {
+        limiter.setInitialLimit(10);
+
+        limiter.acquire(HOST).abandon();
+
+        assertEquals(10, limiter.getLimit(HOST));
+        assertEquals(0, limiter.getInFlightCount(HOST));
+    }
+
+    @Test
+    public void fastRequestsRaiseTheLimitOfABusyHost() {
+        limiter.setInitialLimit(4);
+        limiter.setLatencyTolerance(1_000_000);
+
+        // Keeps the host busy, so that the limit is worth raising
+        limiter.acquire(HOST);
+        limiter.acquire(HOST);
+
+        for (int i = 0; i < 40; i++) limiter.acquire(HOST).release(false);
+
+        assertTrue(limiter.getLimit(HOST) > 4);
+    }
+
+    @Test
+    public void theLimitStaysWithinItsBounds() {
+        limiter.setInitialLimit(3);
+        limiter.setLimitBounds(2, 3);
+        limiter.setBackoffRatio(0.1);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(HOST).release(true);
+            sleepQuietly(5);
+        }
+
+        assertEquals(2, limiter.getLimit(HOST));
+    }
+
+    @Test
+    public void hostsAreNamedWithTheirPort() {
+        assertEquals("example.com:80", AdaptiveConcurrencyLimiter.hostOf("http://Example.com/path"));
+        assertEquals("example.com:8443", AdaptiveConcurrencyLimiter.hostOf("https://example.com:8443"));
+        assertNull(AdaptiveConcurrencyLimiter.hostOf("not a url"));
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HedgingPolicyTest {
+    private static final String HOST = "example.com:80";
+
+    private final HedgingPolicy policy = new HedgingPolicy();
+
+    @Test
+    public void doesNotHedgeUntilEnoughLatenciesAreKnown() {
+        policy.setMinSamples(5);
+
+        for (int i = 0; i < 4; i++) {
+            policy.recordLatency(HOST, 10);
+            assertEquals(-1, policy.getHedgeDelay(HOST));
+        }
+
+        policy.recordLatency(HOST, 10);
+
+        assertEquals(10, policy.getHedgeDelay(HOST));
+        assertEquals(-1, policy.getHedgeDelay("other.example.com:80"));
+    }
+
+    @Test
+    public void hedgesAfterThePercentileOfRecentLatencies() {
+        policy.setMinSamples(1);
+
+        for (int i = 1; i <= 100; i++) policy.recordLatency(HOST, i);
+
+        assertEquals(95, policy.getHedgeDelay(HOST));
+
+        policy.setPercentile(50);
+        assertEquals(50, policy.getHedgeDelay(HOST));
+    }
+
+    @Test
+    public void onlyTheLatestLatenciesCount() {
+        policy.setMinSamples(1);
+        policy.setPercentile(100);
+
+        policy.recordLatency(HOST, 1000);
+        for (int i = 0; i < HedgingPolicy.WINDOW_SIZE; i++) policy.recordLatency(HOST, 10);
+
+        assertEquals(10, policy.getHedgeDelay(HOST));
+    }
+
+    @Test
+    public void theBudgetCapsHedges() {
+        policy.setBudgetRatio(0.25);
+
+        for (int i = 0; i < HedgingPolicy.BUDGET_RESERVE; i++) assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+
+        for (int i = 0; i < 4; i++) policy.onRequest();
+
+        assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import com.linoagli.comprotocols.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpRequestTest {
+    private final AtomicInteger flakyCount = new AtomicInteger();
+    private final AtomicInteger slowCount = new AtomicInteger();
+    private HttpServer server;
+    private String baseUrl;
+    private String host;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new HttpServer(port -> {});
+        server.route(HttpRequest.Method.GET, "/fast", request -> request.respond(200, "fast"));
+        server.route(HttpRequest.Method.GET, "/flaky", request -> {
+            // Fails every other request
+            if (flakyCount.incrementAndGet() % 2 == 1) {
+                request.respond(503, "busy");
+            } else {
+                request.respond(200, "done");
+            }
+        });
+        server.route(HttpRequest.Method.GET, "/slow", request -> {
+            slowCount.incrementAndGet();
+
+            new Thread(() -> {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                request.respond(200, "slow");
+            }).start();
+        });
+        server.start(0);
+
+        assertTrue(TestUtils.waitFor(2000, server::isRunning));
+
+        baseUrl = "http://127.0.0.1:" + server.getPort();
+        host = "127.0.0.1:" + server.getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void retriesTransientFailures() {
+        RetryPolicy retry = new RetryPolicy();
+        retry.setBackoff(1, 1);
+
+        HttpRequest request = new HttpRequest();
+        request.setRetryPolicy(retry);
+        request.post(HttpRequest.Method.GET, baseUrl + "/flaky", null);
+
+        assertEquals(200, request.getResponseCode());
+        assertEquals("done", request.getResponseString());
+        assertEquals(2, flakyCount.get());
+    }
+
+    @Test
+    public void eachAttemptGivesItsPermitBack() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(10);
+
+        RetryPolicy retry = new RetryPolicy();
+        retry.setBackoff(1, 1);
+
+        HttpRequest request = new HttpRequest();
+        request.setConcurrencyLimiter(limiter);
+        request.setRetryPolicy(retry);
+        request.post(HttpRequest.Method.GET, baseUrl + "/flaky", null);
+
+        assertEquals(200, request.getResponseCode());
+        assertEquals(0, limiter.getInFlightCount(host));
+
+        // The overloaded first attempt fed the limit on its own, before the retry
+        assertEquals(9, limiter.getLimit(host));
+    }
+
+    @Test
+    public void hedgesNeedASparePermit() throws Exception {
+        assertEquals(2, countSlowRequests(null));
+        assertEquals(2, countSlowRequests(new AdaptiveConcurrencyLimiter()));
+
+        AdaptiveConcurrencyLimiter busyLimiter = new AdaptiveConcurrencyLimiter();
+        busyLimiter.setInitialLimit(1);
+        busyLimiter.setLimitBounds(1, 1);
+
+        assertEquals(1, countSlowRequests(busyLimiter));
+        assertEquals(0, busyLimiter.getInFlightCount(host));
+    }
+
+    /**
+     * Sends a slow request once its host's latency is known, so that it is hedged if the limiter allows it.
+     *
+     * @return the number of requests the server received.
+     */
+    private int countSlowRequests(AdaptiveConcurrencyLimiter limiter) throws Exception {
+        HedgingPolicy hedging = new HedgingPolicy();
+        hedging.setMinSamples(1);
+        slowCount.set(0);
+
+        HttpRequest request = new HttpRequest();
+        request.setHedgingPolicy(hedging);
+        request.setConcurrencyLimiter(limiter);
+        request.post(HttpRequest.Method.GET, baseUrl + "/fast", null);
+
+        request.post(HttpRequest.Method.GET, baseUrl + "/slow", null);
+
+        assertEquals("slow", request.getResponseString());
+
+        // A cancelled hedge may still reach the server shortly after the winner's response
+        Thread.sleep(100);
+
+        return slowCount.get();
+    }
+}
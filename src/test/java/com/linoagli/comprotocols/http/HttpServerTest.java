@@ -0,0 +1,162 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import com.linoagli.comprotocols.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpServerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new HttpServer(port -> {});
+        server.route(HttpRequest.Method.GET, "/hello", request -> request.respond(200, "hello " + request.getParameter("name")));
+        server.route(HttpRequest.Method.POST, "/echo", request -> request.respond(200, request.getBodyString()));
+        server.route(HttpRequest.Method.GET, "/late/*", request -> {
+            // Answered out of order: the first request is answered last
+            long delay = request.getPath().endsWith("1") ? 200 : 0;
+
+            new Thread(() -> {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                request.respond(200, request.getPath());
+            }).start();
+        });
+        server.start(0);
+
+        assertTrue(TestUtils.waitFor(2000, server::isRunning));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void answersRoutedRequests() throws Exception {
+        HttpRequest request = new HttpRequest();
+        request.post(HttpRequest.Method.GET, url("/hello"), "name=world");
+
+        assertEquals(200, request.getResponseCode());
+        assertEquals("hello world", request.getResponseString());
+
+        request.post(HttpRequest.Method.POST, url("/echo"), "a=1&b=2");
+
+        assertEquals("a=1&b=2", request.getResponseString());
+    }
+
+    @Test
+    public void answersUnroutedRequestsWithNotFound() throws Exception {
+        HttpRequest request = new HttpRequest();
+        request.post(HttpRequest.Method.GET, url("/nowhere"), null);
+
+        assertEquals(404, request.getResponseCode());
+    }
+
+    @Test
+    public void answersPipelinedRequestsInOrder() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.setSoTimeout(5000);
+            send(socket, "GET /late/1 HTTP/1.1\r\n\r\nGET /late/2 HTTP/1.1\r\n\r\nGET /late/3 HTTP/1.1\r\nConnection: close\r\n\r\n");
+
+            String responses = readAll(socket.getInputStream());
+
+            assertTrue(responses, responses.indexOf("/late/1") < responses.indexOf("/late/2"));
+            assertTrue(responses, responses.indexOf("/late/2") < responses.indexOf("/late/3"));
+            assertTrue(responses, responses.contains("Connection: close"));
+        }
+    }
+
+    @Test
+    public void readsChunkedBodies() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.setSoTimeout(5000);
+            send(socket, "POST /echo HTTP/1.1\r\nTransfer-Encoding: chunked\r\nConnection: close\r\n\r\n"
+                    + "3\r\nabc\r\n3\r\ndef\r\n0\r\n\r\n");
+
+            String response = readAll(socket.getInputStream());
+
+            assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            assertTrue(response, response.endsWith("\r\n\r\nabcdef"));
+        }
+    }
+
+    @Test
+    public void answersBadRequestsAndClosesTheConnection() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.setSoTimeout(5000);
+            send(socket, "NONSENSE\r\n\r\n");
+
+            String response = readAll(socket.getInputStream());
+
+            assertTrue(response, response.startsWith("HTTP/1.1 400"));
+            assertTrue(response, response.contains("Connection: close"));
+        }
+    }
+
+    @Test
+    public void servesFilesBelowTheDirectoryOnly() throws Exception {
+        File directory = folder.newFolder("static");
+        Files.write(new File(directory, "page.txt").toPath(), "page".getBytes(StandardCharsets.UTF_8));
+        folder.newFile("secret.txt");
+        server.routeDirectory("/static", directory);
+
+        HttpRequest request = new HttpRequest();
+        request.post(HttpRequest.Method.GET, url("/static/page.txt"), null);
+
+        assertEquals(200, request.getResponseCode());
+        assertEquals("page", request.getResponseString());
+
+        request.post(HttpRequest.Method.GET, url("/static/..%2Fsecret.txt"), null);
+
+        assertEquals(404, request.getResponseCode());
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getPort() + path;
+    }
+
+    private static void send(Socket socket, String data) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(data.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+
+        while ((count = in.read(buffer)) != -1) out.write(buffer, 0, count);
+
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+}
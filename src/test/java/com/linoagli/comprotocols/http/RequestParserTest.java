@@ -0,0 +1,147 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import com.linoagli.comprotocols.BufferPool;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestParserTest {
+    private final RequestParser parser = new RequestParser(new BufferPool(16), 1024, 4096);
+
+    @Test
+    public void parsesARequestFedOneByteAtATime() throws Exception {
+        String request = "POST /submit?x=1 HTTP/1.1\r\nHost: example.com\r\nContent-Length: 5\r\n\r\nhello";
+        byte[] bytes = request.getBytes(StandardCharsets.ISO_8859_1);
+        RequestParser.ParsedRequest parsed = null;
+
+        for (int i = 0; i < bytes.length; i++) {
+            assertNull(parsed);
+            parsed = parser.parse(ByteBuffer.wrap(bytes, i, 1));
+        }
+
+        assertEquals("POST", parsed.method);
+        assertEquals("/submit?x=1", parsed.target);
+        assertEquals("HTTP/1.1", parsed.version);
+        assertEquals("example.com", parsed.headers.get("host"));
+        assertTrue(parsed.isKeepAlive);
+        assertEquals("hello", bodyOf(parsed));
+    }
+
+    @Test
+    public void leavesPipelinedRequestsInTheBuffer() throws Exception {
+        ByteBuffer in = ascii("\r\nGET /a HTTP/1.1\r\n\r\nGET /b HTTP/1.1\nConnection: close\n\n");
+
+        RequestParser.ParsedRequest first = parser.parse(in);
+        assertEquals("/a", first.target);
+        assertTrue(in.hasRemaining());
+
+        RequestParser.ParsedRequest second = parser.parse(in);
+        assertEquals("/b", second.target);
+        assertFalse(second.isKeepAlive);
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    public void parsesChunkedBodiesWithExtensionsAndTrailers() throws Exception {
+        RequestParser.ParsedRequest parsed = parser.parse(ascii("PUT /c HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "5;name=value\r\nhello\r\n"
+                + "6\r\n world\r\n"
+                + "0\r\nChecksum: 1\r\n\r\n"));
+
+        assertEquals("hello world", bodyOf(parsed));
+        assertEquals(11, parsed.bodySize);
+    }
+
+    @Test
+    public void spreadsLargeBodiesOverPooledBuffers() throws Exception {
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 3000) body.append("0123456789");
+
+        RequestParser.ParsedRequest parsed = new RequestParser(new BufferPool(16), 1024, 1024 * 1024).parse(
+                ascii("POST / HTTP/1.1\r\nContent-Length: 3000\r\n\r\n" + body));
+
+        assertEquals(body.toString(), bodyOf(parsed));
+    }
+
+    @Test
+    public void appliesTheKeepAliveRulesOfEachVersion() throws Exception {
+        assertFalse(parser.parse(ascii("GET / HTTP/1.0\r\n\r\n")).isKeepAlive);
+        assertTrue(parser.parse(ascii("GET / HTTP/1.0\r\nConnection: Keep-Alive\r\n\r\n")).isKeepAlive);
+        assertTrue(parser.parse(ascii("GET / HTTP/1.1\r\n\r\n")).isKeepAlive);
+    }
+
+    @Test
+    public void mergesRepeatedHeaders() throws Exception {
+        RequestParser.ParsedRequest parsed = parser.parse(ascii("GET / HTTP/1.1\r\nAccept: a\r\nACCEPT: b\r\n\r\n"));
+
+        assertEquals("a, b", parsed.headers.get("accept"));
+    }
+
+    @Test
+    public void flagsRequestsExpectingAContinue() throws Exception {
+        assertNull(parser.parse(ascii("POST / HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 2\r\n\r\n")));
+        assertTrue(parser.takeContinueExpected());
+        assertFalse(parser.takeContinueExpected());
+
+        assertEquals("ok", bodyOf(parser.parse(ascii("ok"))));
+    }
+
+    @Test
+    public void rejectsInvalidRequests() {
+        assertRejected(400, "GET /\r\n\r\n");
+        assertRejected(505, "GET / HTTP/2.0\r\n\r\n");
+        assertRejected(400, "GET / HTTP/1.1\r\nHost example.com\r\n\r\n");
+        assertRejected(400, "GET / HTTP/1.1\r\nA: 1\r\n folded\r\n\r\n");
+        assertRejected(400, "POST / HTTP/1.1\r\nContent-Length: ten\r\n\r\n");
+        assertRejected(413, "POST / HTTP/1.1\r\nContent-Length: 5000\r\n\r\n");
+        assertRejected(501, "POST / HTTP/1.1\r\nTransfer-Encoding: gzip\r\n\r\n");
+        assertRejected(400, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n");
+        assertRejected(413, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n2000\r\n");
+        assertRejected(400, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n1\r\nabc\r\n");
+
+        StringBuilder longHeader = new StringBuilder("GET / HTTP/1.1\r\nX: ");
+        while (longHeader.length() < 2048) longHeader.append('x');
+        assertRejected(431, longHeader + "\r\n\r\n");
+    }
+
+    private void assertRejected(int status, String request) {
+        try {
+            new RequestParser(new BufferPool(16), 1024, 4096).parse(ascii(request));
+            fail("accepted " + request);
+        } catch (RequestParser.BadRequestException e) {
+            assertEquals(request, status, e.status);
+        }
+    }
+
+    private static ByteBuffer ascii(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String bodyOf(RequestParser.ParsedRequest parsed) {
+        List<Byte> bytes = new ArrayList<>();
+
+        for (ByteBuffer buffer : parsed.body) {
+            while (buffer.hasRemaining()) bytes.add(buffer.get());
+        }
+
+        byte[] array = new byte[bytes.size()];
+        for (int i = 0; i < array.length; i++) array[i] = bytes.get(i);
+
+        return new String(array, StandardCharsets.ISO_8859_1);
+    }
+}
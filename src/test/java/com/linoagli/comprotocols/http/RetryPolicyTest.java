@@ -0,0 +1,93 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.http
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.http;
+
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+    private final RetryPolicy policy = new RetryPolicy();
+
+    @Test
+    public void retriesTransientFailuresOnly() {
+        assertTrue(RetryPolicy.isRetryable(503, null));
+        assertTrue(RetryPolicy.isRetryable(429, null));
+        assertTrue(RetryPolicy.isRetryable(-1, new SocketTimeoutException()));
+
+        assertFalse(RetryPolicy.isRetryable(200, null));
+        assertFalse(RetryPolicy.isRetryable(500, null));
+        assertFalse(RetryPolicy.isRetryable(404, null));
+        assertFalse(RetryPolicy.isRetryable(-1, new UnknownHostException("nowhere")));
+        assertFalse(RetryPolicy.isRetryable(-1, new MalformedURLException()));
+        assertFalse(RetryPolicy.isRetryable(-1, new IllegalStateException()));
+    }
+
+    @Test
+    public void backsOffWithinAGrowingCeiling() {
+        policy.setBackoff(10, 25);
+        policy.setMaxAttempts(10);
+        policy.setBudgetRatio(1);
+
+        for (int i = 0; i < 20; i++) {
+            policy.onRequest();
+            assertTrue(policy.getRetryDelay(HttpRequest.Method.GET, 1, 503, null) <= 10);
+
+            policy.onRequest();
+            assertTrue(policy.getRetryDelay(HttpRequest.Method.GET, 2, 503, null) <= 20);
+
+            policy.onRequest();
+            long delay = policy.getRetryDelay(HttpRequest.Method.GET, 8, 503, null);
+            assertTrue(delay >= 0 && delay <= 25);
+        }
+    }
+
+    @Test
+    public void stopsAfterTheMaximumAttempts() {
+        policy.setMaxAttempts(2);
+
+        assertTrue(policy.getRetryDelay(HttpRequest.Method.GET, 1, 503, null) >= 0);
+        assertEquals(-1, policy.getRetryDelay(HttpRequest.Method.GET, 2, 503, null));
+    }
+
+    @Test
+    public void leavesNonIdempotentRequestsAloneUnlessAllowed() {
+        assertEquals(-1, policy.getRetryDelay(HttpRequest.Method.POST, 1, 503, null));
+        assertEquals(-1, policy.getRetryDelay(HttpRequest.Method.PATCH, 1, 503, null));
+        assertTrue(policy.getRetryDelay(HttpRequest.Method.PUT, 1, 503, null) >= 0);
+
+        policy.setRetryNonIdempotent(true);
+
+        assertTrue(policy.getRetryDelay(HttpRequest.Method.POST, 1, 503, null) >= 0);
+    }
+
+    @Test
+    public void theBudgetCapsRetries() {
+        policy.setBudgetRatio(0.5);
+
+        // The reserve goes first
+        for (int i = 0; i < RetryPolicy.BUDGET_RESERVE; i++) {
+            assertTrue(policy.getRetryDelay(HttpRequest.Method.GET, 1, 503, null) >= 0);
+        }
+
+        assertEquals(-1, policy.getRetryDelay(HttpRequest.Method.GET, 1, 503, null));
+
+        // Then one retry for every two requests
+        policy.onRequest();
+        assertEquals(-1, policy.getRetryDelay(HttpRequest.Method.GET, 1, 503, null));
+
+        policy.onRequest();
+        assertTrue(policy.getRetryDelay(HttpRequest.Method.GET, 1, 503, null) >= 0);
+        assertEquals(-1, policy.getRetryDelay(HttpRequest.Method.GET, 1, 503, null));
+    }
+}
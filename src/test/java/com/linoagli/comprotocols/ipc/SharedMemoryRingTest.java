@@ -0,0 +1,161 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.ipc
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.ipc;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SharedMemoryRingTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void wrapsMessagesThatDoNotFitBeforeTheEnd() throws Exception {
+        SharedMemoryRing ring = SharedMemoryRing.create(folder.newFile(), 64);
+
+        // 20 byte messages take 24 byte records; the third one does not fit in the last 16 bytes
+        assertTrue(ring.offer(message(1, 20), 0, 20));
+        assertTrue(ring.offer(message(2, 20), 0, 20));
+        assertFalse("the padding and the record need room at the start", ring.offer(message(3, 20), 0, 20));
+
+        assertArrayEquals(message(1, 20), ring.poll());
+        assertTrue(ring.offer(message(3, 20), 0, 20));
+
+        assertArrayEquals(message(2, 20), ring.poll());
+        assertArrayEquals(message(3, 20), ring.poll());
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void writesPartOfAnArray() throws Exception {
+        SharedMemoryRing ring = SharedMemoryRing.create(folder.newFile(), 64);
+        byte[] data = message(0, 10);
+
+        assertTrue(ring.offer(data, 2, 5));
+        assertTrue(ring.offer(data, 0, 0));
+
+        assertArrayEquals(new byte[] {2, 3, 4, 5, 6}, ring.poll());
+        assertEquals(0, ring.poll().length);
+    }
+
+    @Test
+    public void rejectsMessagesLargerThanHalfTheRing() throws Exception {
+        SharedMemoryRing ring = SharedMemoryRing.create(folder.newFile(), 64);
+
+        assertEquals(28, ring.getMaxMessageSize());
+        assertTrue(ring.offer(new byte[28], 0, 28));
+
+        try {
+            ring.offer(new byte[29], 0, 29);
+            fail("accepted a message larger than the limit");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void rejectsInvalidCapacitiesAndFiles() throws Exception {
+        for (int capacity : new int[] {32, 100}) {
+            try {
+                SharedMemoryRing.create(folder.newFile(), capacity);
+                fail("created a ring of " + capacity + " bytes");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+
+        File notARing = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(notARing)) {
+            out.write(new byte[SharedMemoryRing.HEADER_SIZE + 64]);
+        }
+
+        try {
+            SharedMemoryRing.open(notARing);
+            fail("opened a file that is not a ring");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void separateMappingsShareTheRingAndItsFlags() throws Exception {
+        File file = folder.newFile();
+        SharedMemoryRing producer = SharedMemoryRing.create(file, 1024);
+        SharedMemoryRing consumer = SharedMemoryRing.open(file);
+
+        assertFalse(producer.isAttached());
+        consumer.markAttached();
+        assertTrue(producer.isAttached());
+
+        producer.offer(message(7, 100), 0, 100);
+
+        assertArrayEquals(message(7, 100), consumer.poll());
+        assertTrue(producer.isEmpty());
+
+        producer.markClosed();
+        assertTrue(consumer.isClosed());
+    }
+
+    @Test
+    public void transfersMessagesInOrderBetweenThreads() throws Exception {
+        File file = folder.newFile();
+        final SharedMemoryRing producer = SharedMemoryRing.create(file, 4096);
+        final SharedMemoryRing consumer = SharedMemoryRing.open(file);
+        final int count = 200000;
+        final AtomicReference<String> failure = new AtomicReference<String>();
+
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    byte[] data;
+                    while ((data = consumer.poll()) == null) Thread.yield();
+
+                    int length = i % 300;
+                    if (data.length != 4 + length || ByteBuffer.wrap(data).getInt() != i) {
+                        failure.set("message " + i + " was corrupted");
+                        return;
+                    }
+                }
+            }
+        };
+        reader.start();
+
+        for (int i = 0; i < count; i++) {
+            byte[] data = ByteBuffer.allocate(4 + i % 300).putInt(i).array();
+            while (!producer.offer(data, 0, data.length)) Thread.yield();
+        }
+
+        reader.join(30000);
+
+        assertNull(failure.get());
+        assertFalse(reader.isAlive());
+        assertTrue(producer.isEmpty());
+    }
+
+    private static byte[] message(int seed, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) data[i] = (byte) (seed + i);
+
+        return data;
+    }
+}
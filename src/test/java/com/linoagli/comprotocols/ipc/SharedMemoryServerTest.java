@@ -0,0 +1,292 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.ipc
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.ipc;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharedMemoryServerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+    private final CountDownLatch serverDisconnected = new CountDownLatch(1);
+    private final CountDownLatch clientDisconnected = new CountDownLatch(1);
+    private SharedMemoryServer server;
+    private SharedMemoryClient client;
+    private volatile CountDownLatch connected;
+    private volatile long responseDelay = 0;
+    private long clientHeartbeatTimeOut = SharedMemoryServer.DEFAULT_HEARTBEAT_TIME_OUT;
+    private volatile Consumer<String> onResponse;
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder();
+
+        server = new SharedMemoryServer(new SharedMemoryServer.Callback() {
+            @Override
+            public void onWaitingForConnection(File directory) {}
+
+            @Override
+            public void onConnected(SharedMemoryServer.Connection connection) {}
+
+            @Override
+            public void onDataReceived(SharedMemoryServer.Connection connection, DataPacket dataPacket) {
+                connection.respond("echo " + dataPacket.data);
+            }
+
+            @Override
+            public void onDisconnected(SharedMemoryServer.Connection connection) {
+                serverDisconnected.countDown();
+            }
+        });
+        server.start(directory);
+    }
+
+    @After
+    public void tearDown() {
+        if (client != null) client.disconnect();
+        server.stop();
+    }
+
+    @Test
+    public void exchangesQueriesAndResponses() throws Exception {
+        connect(64 * 1024);
+
+        for (int i = 0; i < 10000; i++) client.query("q" + i);
+
+        for (int i = 0; i < 10000; i++) assertEquals("echo q" + i, responses.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queriesWaitForRoomInAFullRing() throws Exception {
+        // A ring this small holds a handful of queries, so most sends wait for the server to catch up
+        connect(256);
+
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < 100; i++) query.append('x');
+
+        for (int i = 0; i < 500; i++) client.query(query.toString());
+
+        for (int i = 0; i < 500; i++) assertEquals("echo " + query, responses.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void disconnectingClosesBothSidesAndRemovesTheFiles() throws Exception {
+        connect(4096);
+        assertEquals(1, server.getConnectionCount());
+
+        client.disconnect();
+
+        assertTrue(serverDisconnected.await(2, TimeUnit.SECONDS));
+        assertTrue(clientDisconnected.await(2, TimeUnit.SECONDS));
+        assertEquals(0, server.getConnectionCount());
+        assertTrue(TestUtils.waitFor(2000, () -> directory.list().length == 0));
+    }
+
+    @Test
+    public void stoppingTheServerDisconnectsItsClients() throws Exception {
+        connect(4096);
+
+        server.stop();
+
+        assertTrue(clientDisconnected.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void reconnectingLeavesTheNewConnectionAlone() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        onResponse = response -> {
+            if (response.equals("echo block")) {
+                blocked.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        connect(4096);
+
+        // The first worker is held in its callback while the client reconnects, and only winds down afterwards
+        client.query("block");
+        assertTrue(blocked.await(2, TimeUnit.SECONDS));
+
+        connected = new CountDownLatch(1);
+        client.connect(directory);
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+
+        released.countDown();
+        assertTrue(clientDisconnected.await(2, TimeUnit.SECONDS));
+
+        // So it must not have closed the new rings on its way out
+        assertTrue(client.isRunning());
+
+        for (int i = 0; i < 100; i++) client.query("q" + i);
+
+        assertEquals("echo block", responses.poll(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) assertEquals("echo q" + i, responses.poll(5, TimeUnit.SECONDS));
+
+        assertTrue(TestUtils.waitFor(2000, () -> server.getConnectionCount() == 1));
+        assertEquals(2, directory.list().length);
+    }
+
+    @Test
+    public void aClientThatDiesWithoutClosingTimesOut() throws Exception {
+        server.setHeartbeatTimeOut(300);
+
+        // Rings nobody beats on, as left behind by a killed process
+        SharedMemoryRing out = connectDeadClient("dead", 4096);
+
+        assertTrue(TestUtils.waitFor(2000, out::isAttached));
+        assertEquals(1, server.getConnectionCount());
+
+        assertTrue(serverDisconnected.await(2, TimeUnit.SECONDS));
+        assertEquals(0, server.getConnectionCount());
+        assertTrue(TestUtils.waitFor(2000, () -> directory.list().length == 0));
+    }
+
+    @Test
+    public void respondingToADeadClientGivesUpOnceItsRingIsFull() throws Exception {
+        server.setHeartbeatTimeOut(300);
+
+        SharedMemoryRing out = connectDeadClient("dead", 256);
+        assertTrue(TestUtils.waitFor(2000, out::isAttached));
+
+        // The echoes fill the client's ring after a couple of queries, and nobody drains it
+        byte[] query = new byte[100];
+        for (int i = 0; i < 3; i++) assertTrue(TestUtils.waitFor(2000, () -> out.offer(query, 0, query.length)));
+
+        assertTrue(serverDisconnected.await(2, TimeUnit.SECONDS));
+        assertEquals(0, server.getConnectionCount());
+    }
+
+    @Test
+    public void aSlowClientDoesNotTimeOut() throws Exception {
+        server.setHeartbeatTimeOut(200);
+        responseDelay = 500;
+
+        connect(256);
+
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < 100; i++) query.append('x');
+
+        // The client's callback blocks longer than the time out while the server waits for room in its ring
+        for (int i = 0; i < 5; i++) client.query(query.toString());
+
+        for (int i = 0; i < 5; i++) assertEquals("echo " + query, responses.poll(5, TimeUnit.SECONDS));
+
+        assertEquals(1, serverDisconnected.getCount());
+        assertTrue(client.isRunning());
+    }
+
+    @Test
+    public void aServerThatDiesWithoutClosingTimesOut() throws Exception {
+        // Stands in for a killed server: it picks the connection up once and never beats
+        File deadDirectory = folder.newFolder();
+        clientHeartbeatTimeOut = 300;
+
+        Thread deadServer = new Thread(() -> {
+            String[] markers;
+
+            while ((markers = deadDirectory.list((dir, name) -> name.endsWith(".connect"))).length == 0) Thread.yield();
+
+            String id = markers[0].substring(0, markers[0].length() - SharedMemoryServer.CONNECT_SUFFIX.length());
+
+            try {
+                SharedMemoryRing.open(new File(deadDirectory, id + ".s2c")).markAttached();
+                SharedMemoryRing.open(new File(deadDirectory, id + ".c2s")).markAttached();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        deadServer.start();
+
+        connect(4096, deadDirectory);
+        deadServer.join();
+
+        assertTrue(clientDisconnected.await(2, TimeUnit.SECONDS));
+        assertFalse(client.isRunning());
+    }
+
+    private SharedMemoryRing connectDeadClient(String id, int ringCapacity) throws Exception {
+        File in = new File(directory, id + SharedMemoryServer.SERVER_TO_CLIENT_SUFFIX);
+        File out = new File(directory, id + SharedMemoryServer.CLIENT_TO_SERVER_SUFFIX);
+
+        SharedMemoryRing.create(in, ringCapacity);
+        SharedMemoryRing ring = SharedMemoryRing.create(out, ringCapacity);
+
+        assertTrue(new File(directory, id + SharedMemoryServer.CONNECT_SUFFIX).createNewFile());
+
+        return ring;
+    }
+
+    private void connect(int ringCapacity) throws Exception {
+        connect(ringCapacity, directory);
+    }
+
+    private void connect(int ringCapacity, File directory) throws Exception {
+        connected = new CountDownLatch(1);
+
+        client = new SharedMemoryClient(new SharedMemoryClient.Callback() {
+            @Override
+            public void onConnected(File directory) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(File directory) {}
+
+            @Override
+            public void onDisconnected() {
+                clientDisconnected.countDown();
+            }
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if (onResponse != null) onResponse.accept(dataPacket.data);
+
+                if (responseDelay > 0) {
+                    try {
+                        Thread.sleep(responseDelay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                responses.add(dataPacket.data);
+            }
+        });
+        client.setRingCapacity(ringCapacity);
+        client.setSpinCount(100);
+        client.setHeartbeatTimeOut(clientHeartbeatTimeOut);
+        client.connect(directory);
+
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.jfr
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class EventsTest {
+    private static final String PREFIX = "com.linoagli.comprotocols.";
+    private static final String[] NAMES = {
+            "Connection", "MessageRead", "MessageWrite", "HttpRequest", "DatagramReceive"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Recording recording;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Events.isAvailable());
+    }
+
+    @After
+    public void tearDown() {
+        if (recording != null) recording.close();
+    }
+
+    @Test
+    public void recordsNothingWithoutARecording() {
+        CountingPeer peer = new CountingPeer();
+
+        assertNull(Events.beginRead());
+        assertNull(Events.beginHttpRequest());
+
+        Events.commitRead(null, Events.TRANSPORT_TCP, peer, 10);
+        Events.connection(Events.TRANSPORT_TCP, Events.ACTION_ACCEPT, peer);
+
+        // The peer address is only turned into a string for recorded events
+        assertEquals(0, peer.count.get());
+    }
+
+    @Test
+    public void recordsConnections() throws Exception {
+        startRecording();
+
+        Object connect = Events.beginConnect();
+        Events.commitConnect(connect, Events.TRANSPORT_TCP, "server:1234", false);
+        Events.connection(Events.TRANSPORT_UNIX, Events.ACTION_DISCONNECT, "client");
+
+        List<RecordedEvent> events = stopRecording("Connection");
+
+        assertEquals(2, events.size());
+        assertEquals("TCP", events.get(0).getString("transport"));
+        assertEquals("connect", events.get(0).getString("action"));
+        assertEquals("server:1234", events.get(0).getString("peer"));
+        assertFalse(events.get(0).getBoolean("isSuccessful"));
+        assertEquals("disconnect", events.get(1).getString("action"));
+        assertTrue(events.get(1).getBoolean("isSuccessful"));
+    }
+
+    @Test
+    public void recordsReadsAndWrites() throws Exception {
+        startRecording();
+
+        Events.commitRead(Events.beginRead(), Events.TRANSPORT_TCP, "peer", 42);
+        Events.commitWrite(Events.beginWrite(), Events.TRANSPORT_TCP, "peer", 3, 300);
+
+        RecordedEvent read = stopRecording("MessageRead").get(0);
+        assertEquals(42, read.getLong("size"));
+        assertEquals("peer", read.getString("peer"));
+
+        RecordedEvent write = readEvents("MessageWrite").get(0);
+        assertEquals(3, write.getInt("messages"));
+        assertEquals(300, write.getLong("size"));
+    }
+
+    @Test
+    public void recordsHttpRequestsAndDatagrams() throws Exception {
+        startRecording();
+
+        Object event = Events.beginHttpRequest();
+        Events.commitHttpRequest(event, "GET", "http://example.com/", 200, 1_000_000, 5_000_000, 512);
+        Events.commitDatagramReceive(Events.beginDatagramReceive(), "sender", 9000, 64);
+
+        RecordedEvent request = stopRecording("HttpRequest").get(0);
+        assertEquals("GET", request.getString("method"));
+        assertEquals("http://example.com/", request.getString("url"));
+        assertEquals(200, request.getInt("status"));
+        assertEquals(1_000_000, request.getDuration("connectTime").toNanos());
+        assertEquals(5_000_000, request.getDuration("timeToFirstByte").toNanos());
+        assertEquals(512, request.getLong("responseSize"));
+
+        RecordedEvent datagram = readEvents("DatagramReceive").get(0);
+        assertEquals(9000, datagram.getInt("port"));
+        assertEquals(64, datagram.getLong("size"));
+    }
+
+    private void startRecording() {
+        recording = new Recording();
+
+        for (String name : NAMES) recording.enable(PREFIX + name).withoutThreshold();
+
+        recording.start();
+    }
+
+    private List<RecordedEvent> stopRecording(String name) throws IOException {
+        recording.stop();
+        recording.dump(folder.getRoot().toPath().resolve("events.jfr"));
+
+        return readEvents(name);
+    }
+
+    private List<RecordedEvent> readEvents(String name) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("events.jfr");
+
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(PREFIX + name))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .collect(Collectors.toList());
+    }
+
+    private static class CountingPeer {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public String toString() {
+            count.incrementAndGet();
+            return "counted";
+        }
+    }
+}
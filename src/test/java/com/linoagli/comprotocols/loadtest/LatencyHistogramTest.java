@@ -0,0 +1,137 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LatencyHistogramTest {
+    @Test
+    public void percentilesAreWithinThePrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) histogram.recordValue(value * 1000);
+
+        assertEquals(100000, histogram.getTotalCount());
+        assertEquals(1000, histogram.getMinValue());
+        assertEquals(100000000, histogram.getMaxValue());
+        assertEquals(50000500, histogram.getMean(), 1);
+
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            double expected = percentile * 1000000;
+            long actual = histogram.getValueAtPercentile(percentile);
+
+            assertEquals("p" + percentile, expected, actual, expected / 1000);
+        }
+
+        assertEquals(100000000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 2000; value++) histogram.recordValue(value);
+
+        assertEquals(999, histogram.getValueAtPercentile(50));
+        assertEquals(1000, histogram.getCountAtOrBelow(999));
+        assertEquals(0, histogram.getMinValue());
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.SECONDS.toNanos(1), 2);
+
+        histogram.recordValue(-5);
+        histogram.recordValue(TimeUnit.SECONDS.toNanos(10));
+
+        assertEquals(0, histogram.getMinValue());
+        assertEquals(TimeUnit.SECONDS.toNanos(1), histogram.getMaxValue());
+        assertEquals(2, histogram.getCountAtOrBelow(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void correctsForCoordinatedOmission() {
+        LatencyHistogram corrected = new LatencyHistogram();
+        LatencyHistogram uncorrected = new LatencyHistogram();
+        long interval = TimeUnit.MILLISECONDS.toNanos(10);
+
+        // 99 fast measurements, then a one second stall that held back the measurements that should have followed
+        for (int i = 0; i < 99; i++) {
+            corrected.recordValueWithExpectedInterval(TimeUnit.MILLISECONDS.toNanos(1), interval);
+            uncorrected.recordValue(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        corrected.recordValueWithExpectedInterval(TimeUnit.SECONDS.toNanos(1), interval);
+        uncorrected.recordValue(TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(100, uncorrected.getTotalCount());
+        assertEquals(199, corrected.getTotalCount());
+        assertTrue(uncorrected.getValueAtPercentile(90) < TimeUnit.MILLISECONDS.toNanos(2));
+        assertTrue(corrected.getValueAtPercentile(90) > TimeUnit.MILLISECONDS.toNanos(750));
+        // The missing measurements would have waited 990, 980, ... and 10 ms
+        assertEquals(100, corrected.getCountAtOrBelow(TimeUnit.MILLISECONDS.toNanos(10)));
+    }
+
+    @Test
+    public void aZeroIntervalDisablesTheCorrection() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.recordValueWithExpectedInterval(TimeUnit.SECONDS.toNanos(1), 0);
+
+        assertEquals(1, histogram.getTotalCount());
+    }
+
+    @Test
+    public void histogramsCanBeAddedAndReset() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.recordValue(1000);
+        second.recordValue(2000);
+        second.recordValue(3000);
+
+        first.add(second);
+
+        assertEquals(3, first.getTotalCount());
+        assertEquals(3000, first.getMaxValue());
+
+        first.reset();
+
+        assertEquals(0, first.getTotalCount());
+        assertEquals(0, first.getMinValue());
+        assertEquals(0, first.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void rejectsInvalidPrecisions() {
+        for (int digits : new int[] {0, 6}) {
+            try {
+                new LatencyHistogram(1000, digits);
+                fail("accepted " + digits + " significant digits");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void outputsTheHgrmFormat() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) histogram.recordValue(value * 1000000);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.outputPercentileDistribution(new PrintStream(bytes), 1000000);
+        String[] lines = bytes.toString().split("\n");
+
+        assertTrue(lines[0].trim().startsWith("Value"));
+        assertTrue(lines[lines.length - 2].startsWith("#[Max     =     1000.000, Total count    =         1000]"));
+    }
+}
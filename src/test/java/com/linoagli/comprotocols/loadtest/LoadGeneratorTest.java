@@ -0,0 +1,148 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.loadtest
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.loadtest;
+
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadGeneratorTest {
+    @Test
+    public void theOpenModelAccountsForRequestsHeldBackByAStall() throws Exception {
+        StallingTarget target = new StallingTarget(100, 200);
+        LoadGenerator generator = new LoadGenerator(target);
+
+        LoadReport report = generator.runOpenModel(1000, 500);
+
+        assertEquals(report.getSentCount(), report.getCompletedCount());
+        assertEquals(0, report.getFailedCount());
+        assertTrue(target.isClosed);
+        // The requests scheduled during the stall were sent late, which only the corrected histogram shows
+        assertTrue(report.getUncorrectedHistogram().getValueAtPercentile(75) < TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(report.getCorrectedHistogram().getValueAtPercentile(75) > TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(report.getCorrectedHistogram().getMaxValue() >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test
+    public void theClosedModelCorrectsWithTheExpectedInterval() throws Exception {
+        StallingTarget target = new StallingTarget(10, 200);
+        LoadGenerator generator = new LoadGenerator(target);
+        generator.setExpectedInterval(10);
+
+        LoadReport report = generator.runClosedModel(1, 500, 10);
+
+        long uncorrected = report.getUncorrectedHistogram().getTotalCount();
+        long corrected = report.getCorrectedHistogram().getTotalCount();
+
+        assertEquals(report.getCompletedCount(), uncorrected);
+        // The stall held back about 19 requests at a 10 ms interval
+        assertTrue(corrected - uncorrected >= 15);
+    }
+
+    @Test
+    public void countsTimeOutsAndFailures() throws Exception {
+        LoadTarget target = new LoadTarget() {
+            @Override
+            public void open() {}
+
+            @Override
+            public void send(Request request) {
+                // Odd requests never complete
+                if (request.getSequence() % 2 == 0) request.complete(false);
+            }
+
+            @Override
+            public void close() {}
+        };
+        LoadGenerator generator = new LoadGenerator(target);
+        generator.setTimeOut(100);
+
+        LoadReport report = generator.runOpenModel(100, 200);
+
+        assertEquals(20, report.getSentCount());
+        assertEquals(10, report.getFailedCount());
+        assertEquals(10, report.getTimedOutCount());
+        assertEquals(0, report.getUncorrectedHistogram().getTotalCount());
+    }
+
+    @Test
+    public void requestsSentDuringTheWarmUpAreNotRecorded() throws Exception {
+        StallingTarget target = new StallingTarget(-1, 0);
+        LoadGenerator generator = new LoadGenerator(target);
+        generator.setWarmUpTime(200);
+
+        LoadReport report = generator.runOpenModel(100, 200);
+
+        assertEquals(40, target.sent.get());
+        assertEquals(20, report.getSentCount());
+        assertEquals(20, report.getCompletedCount());
+    }
+
+    @Test
+    public void drivesATCPEchoServer() throws Exception {
+        int port = TestUtils.freePort();
+        EchoServer server = new EchoServer(port, 0, 0);
+        server.start();
+
+        try {
+            LoadGenerator generator = new LoadGenerator(new TCPLoadTarget(InetAddress.getLoopbackAddress(), port, 64));
+            generator.setTimeOut(2000);
+
+            LoadReport report = generator.runClosedModel(4, 300, 0);
+
+            assertTrue(report.getCompletedCount() > 0);
+            assertEquals(0, report.getFailedCount() + report.getTimedOutCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Completes requests as they are sent, stalling the sender once.
+     */
+    private static class StallingTarget implements LoadTarget {
+        private final long stallSequence;
+        private final long stallTime;
+        private final AtomicLong sent = new AtomicLong();
+        private volatile boolean isClosed = false;
+
+        StallingTarget(long stallSequence, long stallTime) {
+            this.stallSequence = stallSequence;
+            this.stallTime = stallTime;
+        }
+
+        @Override
+        public void open() {}
+
+        @Override
+        public void send(Request request) {
+            sent.incrementAndGet();
+
+            if (request.getSequence() == stallSequence) {
+                try {
+                    Thread.sleep(stallTime);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            request.complete(true);
+        }
+
+        @Override
+        public void close() {
+            isClosed = true;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+import com.linoagli.comprotocols.Utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CodecTest {
+    private final List<byte[]> inbound = new ArrayList<byte[]>();
+    private final List<byte[]> outbound = new ArrayList<byte[]>();
+    private final Pipeline pipeline = new Pipeline(
+            data -> inbound.add(Utils.toByteArray(data)), data -> outbound.add(Utils.toByteArray(data)));
+
+    @Test
+    public void lineCodecSplitsLinesAcrossAndWithinReads() throws Exception {
+        pipeline.addLast("lines", new LineCodec());
+
+        pipeline.fireInbound(PipelineTest.bytes("one\r\ntw"));
+        assertEquals(1, inbound.size());
+
+        pipeline.fireInbound(PipelineTest.bytes("o\n\nthree\nfo"));
+
+        assertEquals(4, inbound.size());
+        assertEquals("one", new String(inbound.get(0)));
+        assertEquals("two", new String(inbound.get(1)));
+        assertEquals("", new String(inbound.get(2)));
+        assertEquals("three", new String(inbound.get(3)));
+    }
+
+    @Test
+    public void lineCodecHandlesOneByteReads() throws Exception {
+        pipeline.addLast("lines", new LineCodec());
+
+        for (byte b : "ab\r\ncd\n".getBytes()) pipeline.fireInbound(ByteBuffer.wrap(new byte[] {b}));
+
+        assertEquals(2, inbound.size());
+        assertEquals("ab", new String(inbound.get(0)));
+        assertEquals("cd", new String(inbound.get(1)));
+    }
+
+    @Test
+    public void lineCodecAppendsANewLineToOutboundMessages() throws Exception {
+        pipeline.addLast("lines", new LineCodec());
+
+        pipeline.fireOutbound(PipelineTest.bytes("hello"));
+
+        assertEquals("hello\n", new String(outbound.get(0)));
+    }
+
+    @Test
+    public void lineCodecRejectsOverlongLines() throws Exception {
+        pipeline.addLast("lines", new LineCodec(8));
+
+        pipeline.fireInbound(PipelineTest.bytes("12345678\n"));
+
+        try {
+            pipeline.fireInbound(PipelineTest.bytes("123456789"));
+            fail("accepted a line longer than the limit");
+        } catch (IOException e) {
+            assertEquals(1, inbound.size());
+        }
+    }
+
+    @Test
+    public void lengthFieldCodecRoundTripsFramesSplitAtEveryOffset() throws Exception {
+        pipeline.addLast("frames", new LengthFieldCodec());
+
+        pipeline.fireOutbound(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+        pipeline.fireOutbound(ByteBuffer.allocate(0));
+        pipeline.fireOutbound(ByteBuffer.wrap(new byte[300]));
+
+        ByteBuffer stream = ByteBuffer.allocate(4 + 3 + 4 + 4 + 300);
+        for (byte[] frame : outbound) stream.put(frame);
+        byte[] encoded = stream.array();
+        assertEquals(0, stream.remaining());
+
+        for (int split = 0; split <= encoded.length; split++) {
+            inbound.clear();
+
+            pipeline.fireInbound(ByteBuffer.wrap(encoded, 0, split));
+            pipeline.fireInbound(ByteBuffer.wrap(encoded, split, encoded.length - split));
+
+            assertEquals("split at " + split, 3, inbound.size());
+            assertArrayEquals(new byte[] {1, 2, 3}, inbound.get(0));
+            assertEquals(0, inbound.get(1).length);
+            assertEquals(300, inbound.get(2).length);
+        }
+    }
+
+    @Test
+    public void lengthFieldCodecRejectsOversizedAndNegativeLengths() throws Exception {
+        pipeline.addLast("frames", new LengthFieldCodec(16));
+
+        for (int length : new int[] {17, -1}) {
+            ByteBuffer header = ByteBuffer.allocate(4).putInt(length);
+            header.flip();
+
+            try {
+                pipeline.fireInbound(header);
+                fail("accepted a frame length of " + length);
+            } catch (IOException e) {
+                assertEquals(0, inbound.size());
+            }
+
+            pipeline.remove("frames");
+            pipeline.addLast("frames", new LengthFieldCodec(16));
+        }
+    }
+
+    @Test
+    public void byteAccumulatorCompactsAndGrows() {
+        ByteAccumulator accumulator = new ByteAccumulator();
+        byte[] chunk = new byte[200];
+        for (int i = 0; i < chunk.length; i++) chunk[i] = (byte) i;
+
+        accumulator.append(ByteBuffer.wrap(chunk));
+        accumulator.skip(150);
+        // Fits once the consumed bytes are compacted away
+        accumulator.append(ByteBuffer.wrap(chunk));
+        assertEquals(250, accumulator.size());
+        assertEquals((byte) 150, accumulator.get(0));
+        assertEquals(49, accumulator.indexOf((byte) 199));
+
+        // Needs a larger array
+        accumulator.append(ByteBuffer.wrap(chunk));
+        assertEquals(450, accumulator.size());
+
+        byte[] taken = Utils.toByteArray(accumulator.take(50));
+        assertEquals((byte) 150, taken[0]);
+        assertEquals((byte) 199, taken[49]);
+        assertEquals(0, accumulator.get(0));
+
+        accumulator.skip(400);
+        assertEquals(0, accumulator.size());
+        assertEquals(-1, accumulator.indexOf((byte) 0));
+    }
+}
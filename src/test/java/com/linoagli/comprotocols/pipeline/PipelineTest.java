@@ -0,0 +1,150 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.pipeline
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.pipeline;
+
+import com.linoagli.comprotocols.Utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class PipelineTest {
+    private final List<String> inbound = new ArrayList<String>();
+    private final List<String> outbound = new ArrayList<String>();
+    private final Pipeline pipeline = new Pipeline(data -> inbound.add(text(data)), data -> outbound.add(text(data)));
+
+    @Test
+    public void runsInboundFirstToLastAndOutboundLastToFirst() throws Exception {
+        pipeline.addLast("b", new Tag("b")).addFirst("a", new Tag("a")).addLast("c", new Tag("c"));
+
+        pipeline.fireInbound(bytes("x"));
+        pipeline.fireOutbound(bytes("y"));
+
+        assertEquals("x<a<b<c", inbound.get(0));
+        assertEquals("y>c>b>a", outbound.get(0));
+    }
+
+    @Test
+    public void anEmptyPipelinePassesDataStraightThrough() throws Exception {
+        pipeline.fireInbound(bytes("in"));
+        pipeline.fireOutbound(bytes("out"));
+
+        assertEquals("in", inbound.get(0));
+        assertEquals("out", outbound.get(0));
+    }
+
+    @Test
+    public void stagesCanBeLookedUpAndRemoved() throws Exception {
+        Tag a = new Tag("a");
+        pipeline.addLast("a", a).addLast("b", new Tag("b"));
+
+        assertSame(a, pipeline.get("a"));
+        assertSame(a, pipeline.remove("a"));
+        assertNull(pipeline.get("a"));
+        assertNull(pipeline.remove("a"));
+        assertEquals(1, pipeline.size());
+
+        pipeline.fireInbound(bytes("x"));
+
+        assertEquals("x<b", inbound.get(0));
+    }
+
+    @Test
+    public void stageNamesAreUnique() {
+        pipeline.addLast("a", new Tag("a"));
+
+        try {
+            pipeline.addFirst("a", new Tag("a"));
+            fail("added a second stage named a");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, pipeline.size());
+        }
+    }
+
+    @Test
+    public void aStageRemovedWhileDataTravelsThroughItDeliversToTheSink() throws Exception {
+        pipeline.addLast("self-removing", new Handler() {
+            @Override
+            public void onInbound(HandlerContext context, ByteBuffer data) throws IOException {
+                context.getPipeline().remove(context.getName());
+                context.fireInbound(data);
+            }
+        }).addLast("b", new Tag("b"));
+
+        pipeline.fireInbound(bytes("x"));
+
+        assertEquals("x", inbound.get(0));
+        assertEquals(1, pipeline.size());
+    }
+
+    @Test
+    public void aStageCanDropOrSplitMessages() throws Exception {
+        pipeline.addLast("split", new Handler() {
+            @Override
+            public void onInbound(HandlerContext context, ByteBuffer data) throws IOException {
+                for (String part : text(data).split(",")) {
+                    if (!part.isEmpty()) context.fireInbound(bytes(part));
+                }
+            }
+        });
+
+        pipeline.fireInbound(bytes("a,,b"));
+
+        assertEquals(2, inbound.size());
+        assertEquals("b", inbound.get(1));
+    }
+
+    @Test
+    public void trafficCounterCountsMessagesAndBytesBothWays() throws Exception {
+        TrafficCounter counter = new TrafficCounter();
+        pipeline.addLast("counter", counter);
+
+        pipeline.fireInbound(bytes("abc"));
+        pipeline.fireInbound(bytes("de"));
+        pipeline.fireOutbound(bytes("f"));
+
+        assertEquals(2, counter.getInboundMessages());
+        assertEquals(5, counter.getInboundBytes());
+        assertEquals(1, counter.getOutboundMessages());
+        assertEquals(1, counter.getOutboundBytes());
+        assertEquals(2, inbound.size());
+    }
+
+    static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes());
+    }
+
+    static String text(ByteBuffer data) {
+        return new String(Utils.toByteArray(data));
+    }
+
+    private static class Tag implements Handler {
+        private final String tag;
+
+        Tag(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public void onInbound(HandlerContext context, ByteBuffer data) throws IOException {
+            context.fireInbound(bytes(text(data) + "<" + tag));
+        }
+
+        @Override
+        public void onOutbound(HandlerContext context, ByteBuffer data) throws IOException {
+            context.fireOutbound(bytes(text(data) + ">" + tag));
+        }
+    }
+}
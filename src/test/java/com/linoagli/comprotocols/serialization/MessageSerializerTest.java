@@ -0,0 +1,218 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.serialization
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.serialization;
+
+import com.linoagli.comprotocols.Utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MessageSerializerTest {
+    private final MessageSerializer serializer = new MessageSerializer()
+            .register(1, Point.class, new PointCodec())
+            .register(300, Path.class, new PathCodec());
+
+    @Test
+    public void roundTripsRegisteredMessages() throws Exception {
+        Point point = new Point(-3, 7, "origin");
+
+        byte[] bytes = serializer.serialize(point);
+        Point decoded = serializer.deserialize(bytes, Point.class);
+
+        assertEquals(1, bytes[0]);
+        assertEquals(point.x, decoded.x);
+        assertEquals(point.y, decoded.y);
+        assertEquals(point.label, decoded.label);
+    }
+
+    @Test
+    public void roundTripsNestedMessages() throws Exception {
+        Path path = new Path();
+        for (int i = 0; i < 100; i++) path.points.add(new Point(i, -i, (i % 2 == 0) ? null : "p" + i));
+
+        Path decoded = (Path) serializer.deserialize(serializer.serialize(path));
+
+        assertEquals(100, decoded.points.size());
+        assertEquals(99, decoded.points.get(99).x);
+        assertEquals(-99, decoded.points.get(99).y);
+        assertEquals("p99", decoded.points.get(99).label);
+        assertNull(decoded.points.get(98).label);
+    }
+
+    @Test
+    public void messagesCanBeWrittenBackToBack() throws Exception {
+        MessageWriter writer = new MessageWriter();
+        serializer.serialize(new Point(1, 2, "a"), writer);
+        serializer.serialize(new Point(3, 4, "b"), writer);
+
+        MessageReader reader = new MessageReader(writer.toByteArray());
+
+        assertEquals("a", ((Point) serializer.deserialize(reader)).label);
+        assertEquals("b", ((Point) serializer.deserialize(reader)).label);
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test
+    public void deserializesFromASlicedBuffer() throws Exception {
+        byte[] message = serializer.serialize(new Point(5, 6, "sliced"));
+        ByteBuffer buffer = ByteBuffer.allocate(message.length + 20);
+        buffer.position(10);
+        buffer.put(message);
+        buffer.position(10).limit(10 + message.length);
+
+        assertEquals("sliced", ((Point) serializer.deserialize(buffer.slice())).label);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(message.length).put(message);
+        direct.flip();
+
+        assertEquals("sliced", ((Point) serializer.deserialize(direct)).label);
+    }
+
+    @Test
+    public void largeMessagesDoNotBreakThePooledBuffer() throws Exception {
+        StringBuilder label = new StringBuilder();
+        for (int i = 0; i < 100000; i++) label.append('x');
+
+        byte[] large = serializer.serialize(new Point(0, 0, label.toString()));
+        byte[] small = serializer.serialize(new Point(1, 1, "small"));
+
+        assertEquals(100000, ((Point) serializer.deserialize(large)).label.length());
+        assertEquals("small", ((Point) serializer.deserialize(small)).label);
+    }
+
+    @Test
+    public void rejectsUnknownAndUnexpectedTypes() throws Exception {
+        byte[] unknown = new MessageWriter().writeVarInt(2).writeInt(0).toByteArray();
+
+        try {
+            serializer.deserialize(unknown);
+            fail("decoded an unknown type id");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Unknown"));
+        }
+
+        try {
+            serializer.deserialize(serializer.serialize(new Point(0, 0, null)), Path.class);
+            fail("decoded a Point as a Path");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        try {
+            serializer.serialize("not registered");
+            fail("serialized an unregistered type");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void rejectsConflictingRegistrations() {
+        try {
+            serializer.register(2, Point.class, new PointCodec());
+            fail("registered a type twice");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        try {
+            serializer.register(1, String.class, null);
+            fail("registered two types with the same id");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        try {
+            serializer.register(MessageSerializer.MAX_TYPE_ID + 1, String.class, null);
+            fail("registered an out of range type id");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        assertFalse(serializer.isRegistered(String.class));
+    }
+
+    @Test
+    public void olderMessagesDecodeWithNewerCodecs() throws Exception {
+        byte[] old = new MessageWriter().writeVarInt(1).writeSignedVarInt(1).writeSignedVarInt(2).toByteArray();
+
+        Point decoded = serializer.deserialize(old, Point.class);
+
+        assertEquals(2, decoded.y);
+        assertNull(decoded.label);
+    }
+
+    @Test
+    public void base64EncodesStringsAsUTF8() {
+        String encoded = Utils.encodeBase64("h\u00e9llo");
+
+        assertArrayEquals("h\u00e9llo".getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(encoded));
+    }
+
+    private static class Point {
+        private final int x;
+        private final int y;
+        private final String label;
+
+        Point(int x, int y, String label) {
+            this.x = x;
+            this.y = y;
+            this.label = label;
+        }
+    }
+
+    private static class Path {
+        private final List<Point> points = new ArrayList<Point>();
+    }
+
+    private static class PointCodec implements MessageCodec<Point> {
+        @Override
+        public void encode(Point message, MessageWriter writer) {
+            writer.writeSignedVarInt(message.x).writeSignedVarInt(message.y).writeString(message.label);
+        }
+
+        @Override
+        public Point decode(MessageReader reader) throws IOException {
+            int x = reader.readSignedVarInt();
+            int y = reader.readSignedVarInt();
+            // The label was appended in a later version of the message
+            String label = reader.hasRemaining() ? reader.readString() : null;
+
+            return new Point(x, y, label);
+        }
+    }
+
+    private class PathCodec implements MessageCodec<Path> {
+        @Override
+        public void encode(Path message, MessageWriter writer) {
+            writer.writeVarInt(message.points.size());
+            for (Point point : message.points) serializer.serialize(point, writer);
+        }
+
+        @Override
+        public Path decode(MessageReader reader) throws IOException {
+            Path path = new Path();
+            int count = reader.readVarInt();
+            for (int i = 0; i < count; i++) path.points.add((Point) serializer.deserialize(reader));
+
+            return path;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.serialization
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.serialization;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class MessageWriterTest {
+    private static final int[] INTS = {0, 1, -1, 63, 64, 127, 128, 16383, 16384, Integer.MAX_VALUE, Integer.MIN_VALUE};
+    private static final long[] LONGS = {0, 1, -1, 127, 128, 1L << 35, Long.MAX_VALUE, Long.MIN_VALUE};
+
+    @Test
+    public void roundTripsEveryFieldType() throws Exception {
+        MessageWriter writer = new MessageWriter(1);
+
+        writer.writeBoolean(true).writeBoolean(false).writeByte(0xFF).writeFloat(1.5f).writeDouble(-0.25);
+        for (int value : INTS) writer.writeVarInt(value).writeSignedVarInt(value).writeInt(value);
+        for (long value : LONGS) writer.writeVarLong(value).writeSignedVarLong(value).writeLong(value);
+        writer.writeString("ascii").writeString("h\u00e9llo \u20ac \ud83d\ude00").writeString("").writeString(null);
+        writer.writeBytes(new byte[] {1, 2, 3}).writeBytes(new byte[0]).writeBytes(null);
+
+        MessageReader reader = new MessageReader(writer.toByteArray());
+
+        assertEquals(true, reader.readBoolean());
+        assertEquals(false, reader.readBoolean());
+        assertEquals((byte) 0xFF, reader.readByte());
+        assertEquals(1.5f, reader.readFloat(), 0);
+        assertEquals(-0.25, reader.readDouble(), 0);
+        for (int value : INTS) {
+            assertEquals(value, reader.readVarInt());
+            assertEquals(value, reader.readSignedVarInt());
+            assertEquals(value, reader.readInt());
+        }
+        for (long value : LONGS) {
+            assertEquals(value, reader.readVarLong());
+            assertEquals(value, reader.readSignedVarLong());
+            assertEquals(value, reader.readLong());
+        }
+        assertEquals("ascii", reader.readString());
+        assertEquals("h\u00e9llo \u20ac \ud83d\ude00", reader.readString());
+        assertEquals("", reader.readString());
+        assertNull(reader.readString());
+        assertArrayEquals(new byte[] {1, 2, 3}, reader.readBytes());
+        assertEquals(0, reader.readBytes().length);
+        assertNull(reader.readBytes());
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test
+    public void smallValuesTakeFewBytes() {
+        assertEquals(1, new MessageWriter().writeVarInt(127).size());
+        assertEquals(2, new MessageWriter().writeVarInt(128).size());
+        assertEquals(1, new MessageWriter().writeSignedVarInt(-64).size());
+        assertEquals(5, new MessageWriter().writeVarInt(-1).size());
+        assertEquals(6, new MessageWriter().writeString("hello").size());
+    }
+
+    @Test
+    public void resetReusesTheBuffer() {
+        MessageWriter writer = new MessageWriter(4);
+        writer.writeLong(1).writeLong(2);
+        int capacity = writer.capacity();
+
+        writer.reset().writeByte(7);
+
+        assertEquals(1, writer.size());
+        assertEquals(capacity, writer.capacity());
+        assertArrayEquals(new byte[] {7}, writer.toByteArray());
+        assertEquals(1, writer.toByteBuffer().remaining());
+    }
+
+    @Test
+    public void readsAreBoundedByTheGivenRange() throws Exception {
+        byte[] bytes = new MessageWriter().writeInt(1).writeInt(2).writeInt(3).toByteArray();
+        MessageReader reader = new MessageReader(bytes, 4, 4);
+
+        assertEquals(4, reader.remaining());
+        assertEquals(2, reader.readInt());
+
+        try {
+            reader.readByte();
+            fail("read past the end of the range");
+        } catch (EOFException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void truncatedFieldsFail() throws Exception {
+        byte[] bytes = new MessageWriter().writeString("hello").writeLong(1).toByteArray();
+
+        for (int length = 0; length < bytes.length; length++) {
+            MessageReader reader = new MessageReader(Arrays.copyOf(bytes, length));
+
+            try {
+                reader.readString();
+                reader.readLong();
+                fail("decoded a message truncated to " + length + " bytes");
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void malformedVarIntsFail() {
+        byte[] bytes = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80};
+
+        try {
+            new MessageReader(bytes).readVarInt();
+            fail("decoded a variable length integer longer than 5 bytes");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
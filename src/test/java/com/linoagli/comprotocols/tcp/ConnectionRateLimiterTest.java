@@ -0,0 +1,71 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionRateLimiterTest {
+    private final InetAddress first = InetAddress.getLoopbackAddress();
+    private final InetAddress second = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+
+    public ConnectionRateLimiterTest() throws Exception {}
+
+    @Test
+    public void admitsTheBurstThenRejects() {
+        ConnectionRateLimiter limiter = new ConnectionRateLimiter(0.001, 3);
+
+        assertTrue(limiter.tryAcquire(first));
+        assertTrue(limiter.tryAcquire(first));
+        assertTrue(limiter.tryAcquire(first));
+        assertFalse(limiter.tryAcquire(first));
+    }
+
+    @Test
+    public void keepsOneBucketPerAddress() {
+        ConnectionRateLimiter limiter = new ConnectionRateLimiter(0.001, 1);
+
+        assertTrue(limiter.tryAcquire(first));
+        assertFalse(limiter.tryAcquire(first));
+        assertTrue(limiter.tryAcquire(second));
+    }
+
+    @Test
+    public void refillsAtTheConfiguredRate() throws Exception {
+        ConnectionRateLimiter limiter = new ConnectionRateLimiter(100, 1);
+
+        assertTrue(limiter.tryAcquire(first));
+        assertFalse(limiter.tryAcquire(first));
+
+        Thread.sleep(30);
+
+        assertTrue(limiter.tryAcquire(first));
+    }
+
+    @Test
+    public void evictingIdleBucketsKeepsTheRateOfBusyOnes() {
+        ConnectionRateLimiter limiter = new ConnectionRateLimiter(0.001, 1);
+
+        assertTrue(limiter.tryAcquire(first));
+
+        limiter.evictIdle();
+
+        assertFalse(limiter.tryAcquire(first));
+    }
+
+    @Test
+    public void aBurstBelowOneStillAdmitsOneConnection() {
+        ConnectionRateLimiter limiter = new ConnectionRateLimiter(0.001, 0);
+
+        assertTrue(limiter.tryAcquire(first));
+        assertFalse(limiter.tryAcquire(first));
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TCPLineRoundTripTest {
+    private TCPServer server;
+    private TCPClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) client.disconnect();
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void queuedQueriesAreAnsweredInOrder() throws Exception {
+        int port = TestUtils.freePort();
+        int count = 500;
+        final List<String> responses = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch answered = new CountDownLatch(count);
+
+        server = new TCPServer(new TCPServer.Callback() {
+            @Override
+            public void onWaitingForConnection(int port) {}
+
+            @Override
+            public void onConnected(TCPServer.Connection connection) {}
+
+            @Override
+            public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {
+                connection.respond("echo " + dataPacket.data);
+            }
+        });
+        server.start(port);
+
+        client = new TCPClient(new TCPClient.Callback() {
+            @Override
+            public void onConnected(InetAddress serverIp, int port) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(InetAddress serverIp, int port) {}
+
+            @Override
+            public void onDisconnected() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if (TCPServer.LINE_PING_RESPONSE.equals(dataPacket.data)) return;
+
+                responses.add(dataPacket.data);
+                answered.countDown();
+            }
+        });
+        client.connect(InetAddress.getLoopbackAddress(), port);
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+
+        for (int i = 0; i < count; i++) client.query("q" + i);
+
+        assertTrue(answered.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < count; i++) assertEquals("echo q" + i, responses.get(i));
+    }
+}
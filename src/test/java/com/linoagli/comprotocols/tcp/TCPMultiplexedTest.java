@@ -0,0 +1,203 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TCPMultiplexedTest {
+    private final BlockingQueue<TCPServer.Request> requests = new LinkedBlockingQueue<TCPServer.Request>();
+    private final BlockingQueue<String> unsolicited = new LinkedBlockingQueue<String>();
+    private TCPServer server;
+    private TCPClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) client.disconnect();
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void responsesCompleteInTheOrderTheyAreSent() throws Exception {
+        start(true);
+
+        List<CompletableFuture<DataPacket>> futures = new ArrayList<CompletableFuture<DataPacket>>();
+        final List<String> completionOrder = Collections.synchronizedList(new ArrayList<String>());
+
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<DataPacket> future = client.request("q" + i);
+            future.thenAccept(dataPacket -> completionOrder.add(dataPacket.data));
+            futures.add(future);
+        }
+
+        List<TCPServer.Request> received = new ArrayList<TCPServer.Request>();
+        for (int i = 0; i < 3; i++) received.add(requests.poll(2, TimeUnit.SECONDS));
+        // The client's keep-alive ping may be pending as well
+        assertTrue(client.getPendingRequestCount() >= 3);
+
+        // Answer the last query first; the earlier ones must not hold it back
+        for (int i = 2; i >= 0; i--) {
+            TCPServer.Request request = received.get(i);
+            request.respond("echo " + request.getDataPacket().data);
+
+            assertEquals("echo q" + i, futures.get(i).get(2, TimeUnit.SECONDS).data);
+            for (int j = 0; j < i; j++) assertFalse(futures.get(j).isDone());
+        }
+
+        assertEquals("echo q2", completionOrder.get(0));
+        assertEquals("echo q0", completionOrder.get(2));
+        assertTrue(TestUtils.waitFor(2000, () -> client.getPendingRequestCount() == 0));
+        assertTrue(unsolicited.isEmpty());
+    }
+
+    @Test
+    public void eachQueryIsAnsweredOnlyOnce() throws Exception {
+        start(true);
+
+        CompletableFuture<DataPacket> future = client.request("q");
+        TCPServer.Request request = requests.poll(2, TimeUnit.SECONDS);
+
+        request.respond("first");
+        request.respond("second");
+
+        assertEquals("first", future.get(2, TimeUnit.SECONDS).data);
+        assertTrue(request.isAnswered());
+        assertTrue(request.getStreamId() != 0);
+
+        // The discarded response must not be taken for the answer of the next query
+        CompletableFuture<DataPacket> next = client.request("next");
+        requests.poll(2, TimeUnit.SECONDS).respond("third");
+
+        assertEquals("third", next.get(2, TimeUnit.SECONDS).data);
+        assertTrue(unsolicited.isEmpty());
+    }
+
+    @Test
+    public void messagesSentOnTheirOwnArriveOnStreamZero() throws Exception {
+        start(true);
+
+        CompletableFuture<DataPacket> future = client.request("q");
+        TCPServer.Request request = requests.poll(2, TimeUnit.SECONDS);
+
+        request.getConnection().respond("notice");
+        request.respond("answer");
+
+        assertEquals("notice", unsolicited.poll(2, TimeUnit.SECONDS));
+        assertEquals("answer", future.get(2, TimeUnit.SECONDS).data);
+    }
+
+    @Test
+    public void binaryPayloadsSurvive() throws Exception {
+        start(true);
+
+        byte[] payload = new byte[256];
+        for (int i = 0; i < payload.length; i++) payload[i] = (byte) i;
+
+        CompletableFuture<DataPacket> future = client.request(payload);
+        TCPServer.Request request = requests.poll(2, TimeUnit.SECONDS);
+
+        assertArrayEquals(payload, request.getDataPacket().bytes);
+
+        request.respond(request.getDataPacket().bytes);
+
+        assertArrayEquals(payload, future.get(2, TimeUnit.SECONDS).bytes);
+    }
+
+    @Test
+    public void pendingRequestsFailWhenTheClientDisconnects() throws Exception {
+        start(true);
+
+        CompletableFuture<DataPacket> future = client.request("never answered");
+        assertTrue(requests.poll(2, TimeUnit.SECONDS) != null);
+
+        client.disconnect();
+
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            fail("a pending request completed without a response");
+        } catch (ExecutionException e) {
+            assertEquals(0, client.getPendingRequestCount());
+        }
+    }
+
+    @Test
+    public void requestsNeedTheMultiplexedMode() throws Exception {
+        start(false);
+
+        try {
+            client.request("q").get(2, TimeUnit.SECONDS);
+            fail("sent a request in the line mode");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private void start(boolean isMultiplexed) throws Exception {
+        int port = TestUtils.freePort();
+        final CountDownLatch connected = new CountDownLatch(1);
+
+        server = new TCPServer(new TCPServer.Callback() {
+            @Override
+            public void onWaitingForConnection(int port) {}
+
+            @Override
+            public void onConnected(TCPServer.Connection connection) {}
+
+            @Override
+            public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {}
+
+            @Override
+            public void onRequestReceived(TCPServer.Connection connection, TCPServer.Request request) {
+                requests.add(request);
+            }
+        });
+        server.setMultiplexed(isMultiplexed);
+        server.start(port);
+
+        client = new TCPClient(new TCPClient.Callback() {
+            @Override
+            public void onConnected(InetAddress serverIp, int port) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(InetAddress serverIp, int port) {}
+
+            @Override
+            public void onDisconnected() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if (!TCPServer.LINE_PING_RESPONSE.equals(dataPacket.data)) unsolicited.add(dataPacket.data);
+            }
+        });
+        client.setMultiplexed(isMultiplexed);
+        client.connect(InetAddress.getLoopbackAddress(), port);
+
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+    }
+}
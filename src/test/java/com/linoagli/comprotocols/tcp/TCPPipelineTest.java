@@ -0,0 +1,103 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+import com.linoagli.comprotocols.Utils;
+import com.linoagli.comprotocols.pipeline.Handler;
+import com.linoagli.comprotocols.pipeline.HandlerContext;
+import com.linoagli.comprotocols.pipeline.TrafficCounter;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TCPPipelineTest {
+    private TCPServer server;
+    private TCPClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) client.disconnect();
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void installedStagesSeeTheTrafficOfEveryConnection() throws Exception {
+        int port = TestUtils.freePort();
+        final TrafficCounter counter = new TrafficCounter();
+        final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+        final CountDownLatch connected = new CountDownLatch(1);
+
+        server = new TCPServer(new TCPServer.Callback() {
+            @Override
+            public void onWaitingForConnection(int port) {}
+
+            @Override
+            public void onConnected(TCPServer.Connection connection) {}
+
+            @Override
+            public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {
+                connection.respond("echo " + dataPacket.data);
+            }
+        });
+        server.setPipelineInitializer(pipeline -> pipeline
+                .addFirst("counter", counter)
+                .addLast("upper-case", new Handler() {
+                    @Override
+                    public void onInbound(HandlerContext context, ByteBuffer data) throws IOException {
+                        String text = new String(Utils.toByteArray(data));
+                        // The client's keep-alive pings must reach the server untouched
+                        if (!text.equals(TCPClient.LINE_PING_QUERY)) text = text.toUpperCase();
+                        context.fireInbound(ByteBuffer.wrap(text.getBytes()));
+                    }
+                }));
+        server.start(port);
+
+        client = new TCPClient(new TCPClient.Callback() {
+            @Override
+            public void onConnected(InetAddress serverIp, int port) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(InetAddress serverIp, int port) {}
+
+            @Override
+            public void onDisconnected() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if (!TCPServer.LINE_PING_RESPONSE.equals(dataPacket.data)) responses.add(dataPacket.data);
+            }
+        });
+        client.connect(InetAddress.getLoopbackAddress(), port);
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+
+        client.query("hello");
+        client.query("world");
+
+        assertEquals("echo HELLO", responses.poll(2, TimeUnit.SECONDS));
+        assertEquals("echo WORLD", responses.poll(2, TimeUnit.SECONDS));
+
+        // The counter sits on the connection side of the line codec, so it sees the raw reads and framed writes
+        assertTrue(TestUtils.waitFor(2000, () -> counter.getOutboundMessages() >= 2));
+        assertTrue(counter.getInboundBytes() >= "hello\nworld\n".length());
+        assertTrue(counter.getOutboundBytes() >= "echo HELLO\necho WORLD\n".length());
+    }
+}
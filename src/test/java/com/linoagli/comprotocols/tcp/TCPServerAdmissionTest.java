@@ -0,0 +1,112 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TCPServerAdmissionTest {
+    private final AtomicInteger connected = new AtomicInteger();
+    private final List<Socket> sockets = new ArrayList<>();
+    private TCPServer server;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        port = TestUtils.freePort();
+        server = new TCPServer(new TCPServer.Callback() {
+            @Override
+            public void onWaitingForConnection(int port) {}
+
+            @Override
+            public void onConnected(TCPServer.Connection connection) {
+                connected.incrementAndGet();
+            }
+
+            @Override
+            public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {}
+        });
+        server.setAllowMultipleConnectionsFromSameAddress(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Socket socket : sockets) socket.close();
+
+        server.stop();
+    }
+
+    @Test
+    public void drainsABurstOfConnectionsWithoutSleeping() throws Exception {
+        server.setBacklog(200);
+        server.start(port);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < 100; i++) sockets.add(new Socket(InetAddress.getLoopbackAddress(), port));
+
+        assertTrue(TestUtils.waitFor(2000, () -> connected.get() == 100));
+        assertTrue("accepting took too long", System.nanoTime() - start < 2_000_000_000L);
+        assertEquals(100, server.getConnectionCount());
+    }
+
+    @Test
+    public void closesConnectionsAboveTheMaximum() throws Exception {
+        server.setMaxConnections(2);
+        server.start(port);
+
+        sockets.add(new Socket(InetAddress.getLoopbackAddress(), port));
+        sockets.add(new Socket(InetAddress.getLoopbackAddress(), port));
+        assertTrue(TestUtils.waitFor(2000, () -> connected.get() == 2));
+
+        Socket rejected = new Socket(InetAddress.getLoopbackAddress(), port);
+        sockets.add(rejected);
+
+        assertTrue(isClosedByServer(rejected));
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    @Test
+    public void closesConnectionsAboveTheRateLimit() throws Exception {
+        server.setConnectionRateLimit(0.01, 2);
+        server.start(port);
+
+        for (int i = 0; i < 3; i++) sockets.add(new Socket(InetAddress.getLoopbackAddress(), port));
+
+        assertTrue(isClosedByServer(sockets.get(2)));
+        assertFalse(isClosedByServer(sockets.get(0)));
+        assertEquals(2, connected.get());
+    }
+
+    private static boolean isClosedByServer(Socket socket) throws IOException {
+        socket.setSoTimeout(500);
+
+        try {
+            return socket.getInputStream().read() < 0;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true; // Reset by the server
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TCPServerAsyncTest {
+    private final BlockingQueue<Pending> pending = new LinkedBlockingQueue<Pending>();
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+    private TCPServer server;
+    private TCPClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) client.disconnect();
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void lineModeResponsesKeepTheOrderOfTheirQueries() throws Exception {
+        start(false, 16);
+
+        for (int i = 0; i < 4; i++) client.query("q" + i);
+
+        List<Pending> received = new ArrayList<Pending>();
+        for (int i = 0; i < 4; i++) received.add(pending.poll(2, TimeUnit.SECONDS));
+
+        // Complete backwards; nothing may be written until the first query is answered
+        received.get(3).future.complete("a3");
+        received.get(2).future.completeExceptionally(new IllegalStateException("expected"));
+        received.get(1).future.complete(null);
+        assertNull(responses.poll(200, TimeUnit.MILLISECONDS));
+
+        received.get(0).future.complete("a0");
+
+        assertEquals("a0", responses.poll(2, TimeUnit.SECONDS));
+        // Failed and null completions are answered with an empty line, so the client stays in step
+        assertEquals("", responses.poll(2, TimeUnit.SECONDS));
+        assertEquals("", responses.poll(2, TimeUnit.SECONDS));
+        assertEquals("a3", responses.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void multiplexedResponsesAreWrittenAsTheyComplete() throws Exception {
+        start(true, 16);
+
+        CompletableFuture<DataPacket> first = client.request("q0");
+        CompletableFuture<DataPacket> second = client.request("q1");
+        CompletableFuture<DataPacket> third = client.request("q2");
+
+        Pending p0 = pending.poll(2, TimeUnit.SECONDS);
+        Pending p1 = pending.poll(2, TimeUnit.SECONDS);
+        Pending p2 = pending.poll(2, TimeUnit.SECONDS);
+
+        p1.future.complete("a1");
+        assertEquals("a1", second.get(2, TimeUnit.SECONDS).data);
+        assertFalse(first.isDone());
+
+        p2.future.complete(null);
+        p0.future.complete("a0");
+        assertEquals("a0", first.get(2, TimeUnit.SECONDS).data);
+        // A null response leaves the query unanswered
+        assertFalse(third.isDone());
+    }
+
+    @Test
+    public void inFlightQueriesAreLimitedPerConnection() throws Exception {
+        start(true, 2);
+
+        List<CompletableFuture<DataPacket>> futures = new ArrayList<CompletableFuture<DataPacket>>();
+        for (int i = 0; i < 5; i++) futures.add(client.request("q" + i));
+
+        Pending p0 = pending.poll(2, TimeUnit.SECONDS);
+        Pending p1 = pending.poll(2, TimeUnit.SECONDS);
+
+        // The read thread waits for a free slot instead of handing more queries to the handler
+        assertNull(pending.poll(300, TimeUnit.MILLISECONDS));
+        assertEquals(2, p0.connection.getInFlightRequestCount());
+
+        p0.future.complete("a0");
+        Pending p2 = pending.poll(2, TimeUnit.SECONDS);
+        assertEquals("q2", p2.dataPacket.data);
+        assertNull(pending.poll(200, TimeUnit.MILLISECONDS));
+
+        p1.future.complete("a1");
+        p2.future.complete("a2");
+        for (int i = 3; i < 5; i++) pending.poll(2, TimeUnit.SECONDS).future.complete("a" + i);
+
+        for (int i = 0; i < 5; i++) assertEquals("a" + i, futures.get(i).get(2, TimeUnit.SECONDS).data);
+        assertTrue(TestUtils.waitFor(2000, () -> p0.connection.getInFlightRequestCount() == 0));
+    }
+
+    @Test
+    public void changingTheLimitLeavesLiveConnectionsCountingAgainstTheirOwn() throws Exception {
+        start(true, 4);
+
+        CompletableFuture<DataPacket> future = client.request("q0");
+        Pending p0 = pending.poll(2, TimeUnit.SECONDS);
+
+        // Only applies to connections accepted afterwards
+        server.setMaxInFlightRequests(16);
+        assertEquals(1, p0.connection.getInFlightRequestCount());
+
+        p0.future.complete("a0");
+        assertEquals("a0", future.get(2, TimeUnit.SECONDS).data);
+        assertTrue(TestUtils.waitFor(2000, () -> p0.connection.getInFlightRequestCount() == 0));
+    }
+
+    private void start(boolean isMultiplexed, int maxInFlightRequests) throws Exception {
+        int port = TestUtils.freePort();
+        final CountDownLatch connected = new CountDownLatch(1);
+
+        server = new TCPServer(new TCPServer.Callback() {
+            @Override
+            public void onWaitingForConnection(int port) {}
+
+            @Override
+            public void onConnected(TCPServer.Connection connection) {}
+
+            @Override
+            public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {}
+        });
+        server.setMultiplexed(isMultiplexed);
+        server.setMaxInFlightRequests(maxInFlightRequests);
+        server.setAsyncHandler((connection, dataPacket) -> {
+            Pending query = new Pending(connection, dataPacket);
+            pending.add(query);
+
+            return query.future;
+        });
+        server.start(port);
+
+        client = new TCPClient(new TCPClient.Callback() {
+            @Override
+            public void onConnected(InetAddress serverIp, int port) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(InetAddress serverIp, int port) {}
+
+            @Override
+            public void onDisconnected() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if (!TCPServer.LINE_PING_RESPONSE.equals(dataPacket.data)) responses.add(dataPacket.data);
+            }
+        });
+        client.setMultiplexed(isMultiplexed);
+        client.connect(InetAddress.getLoopbackAddress(), port);
+
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+    }
+
+    private static class Pending {
+        private final TCPServer.Connection connection;
+        private final DataPacket dataPacket;
+        private final CompletableFuture<String> future = new CompletableFuture<String>();
+
+        Pending(TCPServer.Connection connection, DataPacket dataPacket) {
+            this.connection = connection;
+            this.dataPacket = dataPacket;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TCPServerPublishTest {
+    private final BlockingQueue<String> pushed = new LinkedBlockingQueue<>();
+    private final CountDownLatch connected = new CountDownLatch(1);
+    private TCPServer server;
+    private TCPClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) client.disconnect();
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void publishedMessagesReachMultiplexedSubscribersWithoutDisturbingResponses() throws Exception {
+        start(true);
+
+        assertEquals("subscribed", client.request("subscribe prices").get(2, TimeUnit.SECONDS).data);
+        assertEquals(1, server.getSubscriberCount("prices"));
+
+        assertEquals(1, server.publish("prices", "EURUSD 1.0842"));
+        assertEquals(1, server.publish("prices", "EURUSD 1.0843"));
+        assertEquals(0, server.publish("rates", "ignored"));
+
+        assertEquals("EURUSD 1.0842", pushed.poll(2, TimeUnit.SECONDS));
+        assertEquals("EURUSD 1.0843", pushed.poll(2, TimeUnit.SECONDS));
+
+        // Responses still match their queries once messages were pushed
+        assertEquals("echo after", client.request("after").get(2, TimeUnit.SECONDS).data);
+        assertEquals(0, client.getPendingRequestCount());
+
+        client.disconnect();
+        assertTrue(TestUtils.waitFor(2000, () -> server.getSubscriberCount("prices") == 0));
+    }
+
+    @Test
+    public void unsubscribedConnectionsStopReceiving() throws Exception {
+        start(true);
+
+        client.request("subscribe prices").get(2, TimeUnit.SECONDS);
+        client.request("unsubscribe prices").get(2, TimeUnit.SECONDS);
+
+        assertEquals(0, server.getSubscriberCount("prices"));
+        assertEquals(0, server.publish("prices", "EURUSD 1.0842"));
+    }
+
+    @Test
+    public void topicsAreRefusedInTheLineMode() throws Exception {
+        start(false);
+
+        client.query("subscribe prices");
+        Thread.sleep(200);
+
+        assertEquals(0, server.getSubscriberCount("prices"));
+        assertEquals(0, server.publish("prices", "EURUSD 1.0842"));
+    }
+
+    private void start(boolean isMultiplexed) throws Exception {
+        int port = TestUtils.freePort();
+
+        server = new TCPServer(new TCPServer.Callback() {
+            @Override
+            public void onWaitingForConnection(int port) {}
+
+            @Override
+            public void onConnected(TCPServer.Connection connection) {}
+
+            @Override
+            public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {
+                if (dataPacket.data.startsWith("subscribe ")) connection.subscribe(dataPacket.data.substring(10));
+            }
+
+            @Override
+            public void onRequestReceived(TCPServer.Connection connection, TCPServer.Request request) {
+                String query = request.getDataPacket().data;
+
+                if (query.startsWith("subscribe ")) {
+                    connection.subscribe(query.substring(10));
+                    request.respond("subscribed");
+                } else if (query.startsWith("unsubscribe ")) {
+                    connection.unsubscribe(query.substring(12));
+                    request.respond("unsubscribed");
+                } else {
+                    request.respond("echo " + query);
+                }
+            }
+        });
+        server.setMultiplexed(isMultiplexed);
+        server.start(port);
+
+        client = new TCPClient(new TCPClient.Callback() {
+            @Override
+            public void onConnected(InetAddress serverIp, int port) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(InetAddress serverIp, int port) {}
+
+            @Override
+            public void onDisconnected() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if (!TCPServer.LINE_PING_RESPONSE.equals(dataPacket.data)) pushed.add(dataPacket.data);
+            }
+        });
+        client.setMultiplexed(isMultiplexed);
+        client.connect(InetAddress.getLoopbackAddress(), port);
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.tcp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.tcp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class TCPUnixDomainSocketTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<DataPacket> received = new LinkedBlockingQueue<DataPacket>();
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+    private final CountDownLatch connected = new CountDownLatch(1);
+    private final CountDownLatch connectionFailed = new CountDownLatch(1);
+    private TCPServer server;
+    private TCPClient client;
+    private File socketPath;
+
+    @Before
+    public void setUp() {
+        assumeTrue("Unix domain sockets require Java 16 or later", UnixDomainSockets.isSupported());
+
+        socketPath = new File(folder.getRoot(), "server.sock");
+
+        server = new TCPServer(new TCPServer.Callback() {
+            @Override
+            public void onWaitingForConnection(int port) {}
+
+            @Override
+            public void onConnected(TCPServer.Connection connection) {}
+
+            @Override
+            public void onDataReceived(TCPServer.Connection connection, DataPacket dataPacket) {
+                received.add(dataPacket);
+                connection.respond("echo " + dataPacket.data);
+            }
+
+            @Override
+            public void onRequestReceived(TCPServer.Connection connection, TCPServer.Request request) {
+                request.respond("echo " + request.getDataPacket().data);
+            }
+        });
+
+        client = new TCPClient(new TCPClient.Callback() {
+            @Override
+            public void onConnected(InetAddress serverIp, int port) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(InetAddress serverIp, int port) {
+                connectionFailed.countDown();
+            }
+
+            @Override
+            public void onDisconnected() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                if (!TCPServer.LINE_PING_RESPONSE.equals(dataPacket.data)) responses.add(dataPacket.data);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (client != null) client.disconnect();
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void exchangesLinesOverASocketFile() throws Exception {
+        server.start(socketPath);
+        client.connect(socketPath);
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 100; i++) client.query("q" + i);
+
+        for (int i = 0; i < 100; i++) assertEquals("echo q" + i, responses.poll(2, TimeUnit.SECONDS));
+
+        DataPacket dataPacket = received.poll();
+        assertEquals(InetAddress.getLoopbackAddress(), dataPacket.address);
+        assertEquals(0, dataPacket.port);
+        assertEquals(socketPath, server.getSocketPath());
+        assertEquals(socketPath, client.getSocketPath());
+    }
+
+    @Test
+    public void supportsTheMultiplexedMode() throws Exception {
+        server.setMultiplexed(true);
+        server.start(socketPath);
+        client.setMultiplexed(true);
+        client.connect(socketPath);
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+
+        assertEquals("echo q", client.request("q").get(2, TimeUnit.SECONDS).data);
+    }
+
+    @Test
+    public void replacesAStaleSocketFileAndRemovesItOnStop() throws Exception {
+        assertTrue(socketPath.createNewFile());
+
+        server.start(socketPath);
+        assertTrue(TestUtils.waitFor(1000, server::isRunning));
+
+        server.stop();
+
+        assertFalse(socketPath.exists());
+    }
+
+    @Test
+    public void reportsAMissingSocketFile() throws Exception {
+        client.connect(socketPath);
+
+        assertTrue(connectionFailed.await(2, TimeUnit.SECONDS));
+        assertNull(responses.poll());
+    }
+
+    @Test
+    public void multipleClientsShareTheLoopbackAddress() throws Exception {
+        server.start(socketPath);
+        client.connect(socketPath);
+        assertTrue(connected.await(2, TimeUnit.SECONDS));
+
+        final CountDownLatch secondConnected = new CountDownLatch(1);
+        TCPClient second = new TCPClient(new TCPClient.Callback() {
+            @Override
+            public void onConnected(InetAddress serverIp, int port) {
+                secondConnected.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(InetAddress serverIp, int port) {}
+
+            @Override
+            public void onDisconnected() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {}
+        });
+
+        try {
+            second.connect(socketPath);
+            assertTrue(secondConnected.await(2, TimeUnit.SECONDS));
+
+            // Unlike TCP connections from the same address, the first connection is kept
+            assertTrue(TestUtils.waitFor(2000, () -> server.getConnectionCount() == 2));
+            client.query("still connected");
+            assertEquals("echo still connected", responses.poll(2, TimeUnit.SECONDS));
+        } finally {
+            second.disconnect();
+        }
+    }
+}
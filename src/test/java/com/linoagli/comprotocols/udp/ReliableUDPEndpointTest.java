@@ -0,0 +1,291 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.udp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.udp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReliableUDPEndpointTest {
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    private final List<ReliableUDPEndpoint> endpoints = new ArrayList<>();
+    private final List<LossyRelay> relays = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (ReliableUDPEndpoint endpoint : endpoints) endpoint.stop();
+        for (LossyRelay relay : relays) relay.close();
+    }
+
+    @Test
+    public void deliversMessagesOfAStreamInOrder() throws Exception {
+        Recorder received = new Recorder();
+        ReliableUDPEndpoint receiver = start(received);
+        ReliableUDPEndpoint sender = start(new Recorder());
+
+        for (int i = 0; i < 200; i++) sender.send(LOOPBACK, receiver.getPort(), 7, ("m" + i).getBytes());
+
+        for (int i = 0; i < 200; i++) {
+            Received message = received.poll();
+            assertNotNull(message);
+            assertEquals(7, message.streamId);
+            assertEquals("m" + i, message.dataPacket.data);
+        }
+    }
+
+    @Test
+    public void reassemblesMessagesWithMoreFragmentsThanTheReceiveWindow() throws Exception {
+        Recorder received = new Recorder();
+        Recorder senderEvents = new Recorder();
+        ReliableUDPEndpoint receiver = create(received);
+        receiver.setReceiveWindow(64);
+        receiver.start();
+        ReliableUDPEndpoint sender = start(senderEvents);
+        sender.setSegmentSize(100);
+
+        byte[] message = randomBytes(100 * 1000 + 17); // 1001 fragments, well past the window of 64
+
+        assertTrue(sender.send(LOOPBACK, receiver.getPort(), 0, message));
+
+        Received delivered = received.poll();
+        assertNotNull(delivered);
+        assertArrayEquals(message, delivered.dataPacket.bytes);
+        assertTrue(senderEvents.failures.isEmpty());
+    }
+
+    @Test
+    public void recoversFromLossAndReorderingThroughSelectiveRetransmission() throws Exception {
+        Recorder received = new Recorder();
+        ReliableUDPEndpoint receiver = start(received);
+        ReliableUDPEndpoint sender = start(new Recorder());
+        sender.setSegmentSize(500);
+        LossyRelay relay = new LossyRelay(new InetSocketAddress(LOOPBACK, receiver.getPort()), 0.1);
+        relays.add(relay);
+
+        List<byte[]> messages = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            byte[] message = randomBytes(1 + i * 97);
+            messages.add(message);
+            sender.send(LOOPBACK, relay.getPort(), 1, message);
+        }
+
+        for (byte[] message : messages) {
+            Received delivered = received.poll();
+            assertNotNull("message lost", delivered);
+            assertArrayEquals(message, delivered.dataPacket.bytes);
+        }
+
+        assertTrue("the relay dropped nothing", relay.dropped > 0);
+    }
+
+    @Test
+    public void rejectsMessagesWithTooManyFragments() throws Exception {
+        ReliableUDPEndpoint sender = start(new Recorder());
+        sender.setSegmentSize(1);
+
+        assertFalse(sender.send(LOOPBACK, 9, 0, new byte[ReliableUDPEndpoint.MAX_MESSAGE_FRAGMENTS + 1]));
+        assertFalse(create(new Recorder()).send(LOOPBACK, 9, 0, new byte[1]));
+    }
+
+    @Test
+    public void reportsMessagesThatCantBeDelivered() throws Exception {
+        Recorder events = new Recorder();
+        ReliableUDPEndpoint sender = start(events);
+        sender.setMaxTransmissions(2);
+
+        try (DatagramSocket silent = new DatagramSocket(0)) {
+            sender.send(LOOPBACK, silent.getLocalPort(), 3, "nobody home".getBytes());
+
+            assertEquals(Integer.valueOf(3), events.failures.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void ignoresNewSendersOnceThePeerLimitIsReached() throws Exception {
+        Recorder received = new Recorder();
+        ReliableUDPEndpoint receiver = create(received);
+        receiver.setMaxPeers(1);
+        receiver.start();
+        ReliableUDPEndpoint first = start(new Recorder());
+        ReliableUDPEndpoint second = start(new Recorder());
+
+        first.send(LOOPBACK, receiver.getPort(), 0, "first".getBytes());
+        assertEquals("first", received.poll().dataPacket.data);
+
+        second.send(LOOPBACK, receiver.getPort(), 0, "second".getBytes());
+        assertNull(received.messages.poll(300, TimeUnit.MILLISECONDS));
+        assertEquals(1, receiver.getPeerCount());
+    }
+
+    @Test
+    public void evictsIdlePeers() throws Exception {
+        Recorder received = new Recorder();
+        final ReliableUDPEndpoint receiver = create(received);
+        receiver.setPeerIdleTimeOut(100);
+        receiver.start();
+        final ReliableUDPEndpoint sender = start(new Recorder());
+        sender.setPeerIdleTimeOut(100);
+
+        sender.send(LOOPBACK, receiver.getPort(), 0, "hello".getBytes());
+        assertNotNull(received.poll());
+        assertEquals(1, receiver.getPeerCount());
+
+        assertTrue(TestUtils.waitFor(2000, () -> receiver.getPeerCount() == 0 && sender.getPeerCount() == 0));
+
+        // A peer that was evicted is recreated by the next message, in a new session
+        sender.send(LOOPBACK, receiver.getPort(), 0, "again".getBytes());
+        assertEquals("again", received.poll().dataPacket.data);
+    }
+
+    @Test
+    public void acknowledgementsFromUnknownSendersCreateNoState() throws Exception {
+        final ReliableUDPEndpoint receiver = start(new Recorder());
+        byte[] ack = new byte[20];
+        ack[0] = 0x52;
+        ack[1] = 2;
+
+        try (DatagramSocket stray = new DatagramSocket(0)) {
+            for (int i = 0; i < 10; i++) stray.send(new DatagramPacket(ack, ack.length, LOOPBACK, receiver.getPort()));
+        }
+
+        Thread.sleep(100);
+        assertEquals(0, receiver.getPeerCount());
+    }
+
+    private ReliableUDPEndpoint start(Recorder recorder) {
+        ReliableUDPEndpoint endpoint = create(recorder);
+        endpoint.start();
+        assertTrue(endpoint.isRunning());
+
+        return endpoint;
+    }
+
+    private ReliableUDPEndpoint create(Recorder recorder) {
+        ReliableUDPEndpoint endpoint = new ReliableUDPEndpoint(0, recorder);
+        endpoints.add(endpoint);
+
+        return endpoint;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+
+        return bytes;
+    }
+
+    private static class Received {
+        private final int streamId;
+        private final DataPacket dataPacket;
+
+        private Received(int streamId, DataPacket dataPacket) {
+            this.streamId = streamId;
+            this.dataPacket = dataPacket;
+        }
+    }
+
+    private static class Recorder implements ReliableUDPEndpoint.Callback {
+        private final BlockingQueue<Received> messages = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Integer> failures = new LinkedBlockingQueue<>();
+
+        private Received poll() throws InterruptedException {
+            return messages.poll(10, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void onStarted(int port) {}
+
+        @Override
+        public void onStopping() {}
+
+        @Override
+        public void onDataReceived(int streamId, DataPacket dataPacket) {
+            messages.add(new Received(streamId, dataPacket));
+        }
+
+        @Override
+        public void onDeliveryFailed(InetAddress address, int port, int streamId) {
+            failures.add(streamId);
+        }
+    }
+
+    /**
+     * Forwards datagrams between a single client and a target, dropping a share of them in both directions.
+     */
+    private static class LossyRelay extends Thread {
+        private final DatagramSocket socket = new DatagramSocket(0, LOOPBACK);
+        private final SocketAddress target;
+        private final double lossRate;
+        private final Random random = new Random(42);
+        private volatile SocketAddress client;
+        private volatile int dropped;
+
+        private LossyRelay(SocketAddress target, double lossRate) throws Exception {
+            this.target = target;
+            this.lossRate = lossRate;
+            setDaemon(true);
+            start();
+        }
+
+        private int getPort() {
+            return socket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[65535];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+            while (!socket.isClosed()) {
+                try {
+                    packet.setLength(buffer.length);
+                    socket.receive(packet);
+
+                    boolean isFromTarget = packet.getSocketAddress().equals(target);
+                    if (!isFromTarget) client = packet.getSocketAddress();
+
+                    if (random.nextDouble() < lossRate) {
+                        dropped++;
+                        continue;
+                    }
+
+                    SocketAddress destination = isFromTarget ? client : target;
+                    if (destination != null) socket.send(new DatagramPacket(buffer, packet.getLength(), destination));
+                } catch (Exception e) {
+                    return;
+                }
+            }
+        }
+
+        private void close() {
+            socket.close();
+        }
+    }
+}
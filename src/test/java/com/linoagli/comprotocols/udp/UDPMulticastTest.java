@@ -0,0 +1,149 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.udp
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.udp;
+
+import com.linoagli.comprotocols.DataPacket;
+import com.linoagli.comprotocols.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+public class UDPMulticastTest {
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private InetAddress group;
+    private NetworkInterface networkInterface;
+    private InetAddress source;
+    private UDPListener listener;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        networkInterface = findMulticastInterface();
+        assumeNotNull(networkInterface);
+
+        source = findInet4Address(networkInterface);
+
+        group = InetAddress.getByName("239.255.42.99");
+        port = TestUtils.freePort();
+        listener = new UDPListener(port, new UDPListener.Callback() {
+            @Override
+            public void onStarted(int port) {}
+
+            @Override
+            public void onStopping() {}
+
+            @Override
+            public void onDataReceived(DataPacket dataPacket) {
+                received.add(dataPacket.data);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (listener != null) listener.stop();
+    }
+
+    @Test
+    public void receivesPacketsSentToAJoinedGroup() throws Exception {
+        listener.joinGroup(group, networkInterface);
+        start();
+
+        UDPSender.sendMulticast(group, port, "hello group", 1, true, networkInterface);
+
+        assertEquals("hello group", received.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stopsReceivingOnceTheGroupIsLeft() throws Exception {
+        listener.joinGroup(group, networkInterface);
+        start();
+        listener.leaveGroup(group);
+
+        UDPSender.sendMulticast(group, port, "after leaving", 1, true, networkInterface);
+
+        assertNull(received.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void sourcesBlockedBeforeStartAreApplied() throws Exception {
+        listener.joinGroup(group, networkInterface);
+        listener.blockSource(group, source);
+        start();
+
+        assertBlocked();
+    }
+
+    @Test
+    public void blockedSourcesSurviveARestart() throws Exception {
+        listener.joinGroup(group, networkInterface);
+        start();
+        listener.blockSource(group, source);
+        assertBlocked();
+
+        listener.stop();
+        start();
+
+        assertBlocked();
+    }
+
+    private void assertBlocked() throws Exception {
+        UDPSender.sendMulticast(group, port, "blocked", 1, true, networkInterface);
+        assertNull(received.poll(300, TimeUnit.MILLISECONDS));
+
+        // Unicast packets are not subject to the group's source filter, which shows the listener is still up
+        UDPSender.send(InetAddress.getLoopbackAddress(), port, "unicast");
+        assertEquals("unicast", received.poll(2, TimeUnit.SECONDS));
+    }
+
+    private void start() throws Exception {
+        listener.start();
+        assertTrue(TestUtils.waitFor(2000, listener::isRunning));
+    }
+
+    /**
+     * Packets sent with loopback enabled come back through the sending interface, with its address as the source.
+     * The loopback interface is preferred, when it supports multicast.
+     */
+    private static NetworkInterface findMulticastInterface() throws Exception {
+        NetworkInterface found = null;
+        Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+
+        while (interfaces.hasMoreElements()) {
+            NetworkInterface ni = interfaces.nextElement();
+
+            if (!ni.isUp() || !ni.supportsMulticast() || findInet4Address(ni) == null) continue;
+            if (ni.isLoopback()) return ni;
+            if (found == null) found = ni;
+        }
+
+        return found;
+    }
+
+    private static InetAddress findInet4Address(NetworkInterface ni) {
+        for (InetAddress address : Collections.list(ni.getInetAddresses())) {
+            if (address instanceof Inet4Address) return address;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.websocket
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.websocket;
+
+import com.linoagli.comprotocols.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WebSocketEchoTest {
+    private WebSocketServer server;
+    private WebSocketClient client;
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+    private final List<byte[]> binaryMessages = new CopyOnWriteArrayList<>();
+    private final AtomicInteger closeCode = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new WebSocketServer(new WebSocketServer.Callback() {
+            @Override
+            public void onWaitingForConnection(int port) {}
+
+            @Override
+            public void onConnected(WebSocket webSocket) {}
+
+            @Override
+            public void onMessageReceived(WebSocket webSocket, String message) {
+                webSocket.send(message);
+            }
+
+            @Override
+            public void onBinaryMessageReceived(WebSocket webSocket, byte[] message) {
+                webSocket.send(message);
+            }
+        });
+        server.setCompressionEnabled(true);
+        server.start(0);
+
+        assertTrue(TestUtils.waitFor(2000, server::isRunning));
+
+        client = new WebSocketClient(new WebSocketClient.Callback() {
+            @Override
+            public void onConnected(String url) {}
+
+            @Override
+            public void onConnectionFailed(String url) {}
+
+            @Override
+            public void onDisconnected(int code, String reason) {
+                closeCode.set(code);
+            }
+
+            @Override
+            public void onMessageReceived(String message) {
+                messages.add(message);
+            }
+
+            @Override
+            public void onBinaryMessageReceived(byte[] message) {
+                binaryMessages.add(message);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        client.disconnect();
+        server.stop();
+    }
+
+    @Test
+    public void echoesTextAndBinaryMessages() throws Exception {
+        connect(false);
+
+        client.send("hello");
+        client.send("caf\u00e9 \u2603");
+        client.send(new byte[] {0, 1, 2, (byte) 0xFF});
+
+        assertTrue(TestUtils.waitFor(2000, () -> messages.size() == 2 && binaryMessages.size() == 1));
+        assertEquals(Arrays.asList("hello", "caf\u00e9 \u2603"), messages);
+        assertArrayEquals(new byte[] {0, 1, 2, (byte) 0xFF}, binaryMessages.get(0));
+    }
+
+    @Test
+    public void reassemblesFragmentedMessages() throws Exception {
+        client.setMaxFrameSize(100);
+        connect(false);
+
+        StringBuilder message = new StringBuilder();
+        while (message.length() < 10_000) message.append("fragment ").append(message.length()).append(' ');
+
+        client.send(message.toString());
+
+        assertTrue(TestUtils.waitFor(2000, () -> messages.size() == 1));
+        assertEquals(message.toString(), messages.get(0));
+    }
+
+    @Test
+    public void compressesMessagesWhenBothEndsAgree() throws Exception {
+        connect(true);
+
+        assertTrue(client.getWebSocket().isCompressed());
+
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 500; i++) message.append("compressible ");
+
+        for (int i = 0; i < 3; i++) client.send(message.toString());
+        client.send("short");
+
+        assertTrue(TestUtils.waitFor(2000, () -> messages.size() == 4));
+        assertEquals(message.toString(), messages.get(2));
+        assertEquals("short", messages.get(3));
+    }
+
+    @Test
+    public void reportsTheServersClosingCode() throws Exception {
+        connect(false);
+
+        server.stop();
+
+        assertTrue(TestUtils.waitFor(2000, () -> closeCode.get() == WebSocket.CLOSE_GOING_AWAY));
+    }
+
+    @Test
+    public void closesConnectionsSendingUnmaskedFrames() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write(("GET /chat HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+
+            String head = Handshake.readHead(in)[0];
+            assertTrue(head, head.contains("101"));
+
+            // Frames from a client must be masked
+            out.write(new byte[] {(byte) 0x81, 0x02, 'h', 'i'});
+
+            assertEquals(0x88, in.read());
+            int length = in.read();
+            assertTrue(length >= 2);
+            assertEquals(WebSocket.CLOSE_PROTOCOL_ERROR, (in.read() << 8) | in.read());
+        }
+    }
+
+    private void connect(boolean isCompressionEnabled) throws Exception {
+        client.setCompressionEnabled(isCompressionEnabled);
+        client.connect("ws://127.0.0.1:" + server.getPort() + "/echo");
+
+        assertTrue(TestUtils.waitFor(2000, client::isConnected));
+        assertTrue(TestUtils.waitFor(2000, () -> server.getConnectionCount() == 1));
+    }
+}
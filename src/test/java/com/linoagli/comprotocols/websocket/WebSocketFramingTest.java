@@ -0,0 +1,63 @@
+/**
+ * comm-protocols Project.
+ * com.linoagli.comprotocols.websocket
+ *
+ * @author Olubusayo K. Faye-Lino Agli, username: linoagli
+ */
+package com.linoagli.comprotocols.websocket;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WebSocketFramingTest {
+    @Test
+    public void masksLikeTheBytewiseDefinition() {
+        Random random = new Random(42);
+        int maskKey = 0x37FA213D;
+
+        for (int offset = 0; offset < 9; offset++) {
+            for (int length = 0; length < 40; length++) {
+                byte[] data = new byte[offset + length + 3];
+                random.nextBytes(data);
+
+                byte[] expected = data.clone();
+                for (int i = 0; i < length; i++) expected[offset + i] ^= (byte) (maskKey >>> (24 - 8 * (i % 4)));
+
+                WebSocket.mask(data, offset, length, maskKey);
+
+                assertArrayEquals("offset " + offset + ", length " + length, expected, data);
+            }
+        }
+    }
+
+    @Test
+    public void maskingTwiceRestoresTheData() {
+        byte[] data = "Hello, masked world".getBytes();
+        byte[] original = data.clone();
+
+        WebSocket.mask(data, 0, data.length, 0xCAFEBABE);
+        assertFalse(Arrays.equals(original, data));
+
+        WebSocket.mask(data, 0, data.length, 0xCAFEBABE);
+        assertArrayEquals(original, data);
+    }
+
+    @Test
+    public void computesTheAcceptKeyOfTheSpecification() {
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", Handshake.acceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+    }
+
+    @Test
+    public void findsTokensInHeaderLists() {
+        assertTrue(Handshake.hasToken("keep-alive, Upgrade", "upgrade"));
+        assertFalse(Handshake.hasToken("keep-alive", "upgrade"));
+        assertFalse(Handshake.hasToken(null, "upgrade"));
+    }
+}